@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p> Live statistics of a {@link Session} cache, both in total and per entity {@link Class}. Every lookup of the cache
+ * is counted as a hit or a miss, including the lookups made while constructing query results. Entities which couldn't
+ * be cached because caching is disabled are counted as rejected puts, and entities the cache dropped to stay within
+ * its bounds as evictions. The size is the number of entities the cache currently holds. </p> <p> {@link #reset()}
+ * zeroes the counters without affecting the size, so that the cache can be measured over a window of interest. The
+ * {@code record} methods are invoked by the framework as the cache is used, possibly from several threads, so every
+ * method is synchronized. </p>
+ *
+ * @author Tyler Treat
+ * @version 1.1.0 09/05/13
+ * @since 1.1.0
+ */
+public class CacheStatistics {
+
+    private Map<Class<?>, Counters> mCounters;
+    private Counters mTotal;
+    private Class<?> mLastClass;
+    private Counters mLastCounters;
+
+    /**
+     * Constructs a new {@code CacheStatistics}.
+     */
+    public CacheStatistics() {
+        mCounters = new HashMap<Class<?>, Counters>();
+        mTotal = new Counters();
+    }
+
+    /**
+     * Records a lookup of an entity of the given {@link Class}.
+     *
+     * @param c   the {@code Class} of the entity looked up
+     * @param hit {@code true} if the entity was found in the cache, {@code false} if not
+     */
+    public synchronized void recordLookup(Class<?> c, boolean hit) {
+        Counters counters = getCounters(c);
+        if (hit) {
+            counters.mHits++;
+            mTotal.mHits++;
+        } else {
+            counters.mMisses++;
+            mTotal.mMisses++;
+        }
+    }
+
+    /**
+     * Records that an entity of the given {@link Class} was not cached because caching is disabled.
+     *
+     * @param c the {@code Class} of the entity
+     */
+    public synchronized void recordRejectedPut(Class<?> c) {
+        getCounters(c).mRejectedPuts++;
+        mTotal.mRejectedPuts++;
+    }
+
+    /**
+     * Records that an entity of the given {@link Class} was evicted from the cache.
+     *
+     * @param c the {@code Class} of the entity
+     */
+    public synchronized void recordEviction(Class<?> c) {
+        getCounters(c).mEvictions++;
+        mTotal.mEvictions++;
+    }
+
+    /**
+     * Records a change in the number of cached entities of the given {@link Class}.
+     *
+     * @param c     the {@code Class} of the entities
+     * @param delta the number of entities added, or removed if negative
+     */
+    public synchronized void recordSizeChange(Class<?> c, int delta) {
+        getCounters(c).mSize += delta;
+        mTotal.mSize += delta;
+    }
+
+    /**
+     * Records that the cache was cleared.
+     */
+    public synchronized void recordClear() {
+        for (Counters counters : mCounters.values())
+            counters.mSize = 0;
+        mTotal.mSize = 0;
+    }
+
+    /**
+     * Returns the number of lookups which found their entity in the cache.
+     *
+     * @return number of hits
+     */
+    public synchronized long getHitCount() {
+        return mTotal.mHits;
+    }
+
+    /**
+     * Returns the number of lookups of entities of the given {@link Class} which found their entity in the cache.
+     *
+     * @param c the entity {@code Class}
+     * @return number of hits
+     */
+    public synchronized long getHitCount(Class<?> c) {
+        Counters counters = mCounters.get(c);
+        return counters == null ? 0 : counters.mHits;
+    }
+
+    /**
+     * Returns the number of lookups which didn't find their entity in the cache.
+     *
+     * @return number of misses
+     */
+    public synchronized long getMissCount() {
+        return mTotal.mMisses;
+    }
+
+    /**
+     * Returns the number of lookups of entities of the given {@link Class} which didn't find their entity in the
+     * cache.
+     *
+     * @param c the entity {@code Class}
+     * @return number of misses
+     */
+    public synchronized long getMissCount(Class<?> c) {
+        Counters counters = mCounters.get(c);
+        return counters == null ? 0 : counters.mMisses;
+    }
+
+    /**
+     * Returns the fraction of lookups which found their entity in the cache.
+     *
+     * @return hit ratio between {@code 0} and {@code 1}, or {@code 0} if there were no lookups
+     */
+    public synchronized double getHitRatio() {
+        return mTotal.getHitRatio();
+    }
+
+    /**
+     * Returns the fraction of lookups of entities of the given {@link Class} which found their entity in the cache.
+     *
+     * @param c the entity {@code Class}
+     * @return hit ratio between {@code 0} and {@code 1}, or {@code 0} if there were no lookups
+     */
+    public synchronized double getHitRatio(Class<?> c) {
+        Counters counters = mCounters.get(c);
+        return counters == null ? 0 : counters.getHitRatio();
+    }
+
+    /**
+     * Returns the number of entities which weren't cached because caching was disabled.
+     *
+     * @return number of rejected puts
+     */
+    public synchronized long getRejectedPutCount() {
+        return mTotal.mRejectedPuts;
+    }
+
+    /**
+     * Returns the number of entities of the given {@link Class} which weren't cached because caching was disabled.
+     *
+     * @param c the entity {@code Class}
+     * @return number of rejected puts
+     */
+    public synchronized long getRejectedPutCount(Class<?> c) {
+        Counters counters = mCounters.get(c);
+        return counters == null ? 0 : counters.mRejectedPuts;
+    }
+
+    /**
+     * Returns the number of entities evicted from the cache.
+     *
+     * @return number of evictions
+     */
+    public synchronized long getEvictionCount() {
+        return mTotal.mEvictions;
+    }
+
+    /**
+     * Returns the number of entities of the given {@link Class} evicted from the cache.
+     *
+     * @param c the entity {@code Class}
+     * @return number of evictions
+     */
+    public synchronized long getEvictionCount(Class<?> c) {
+        Counters counters = mCounters.get(c);
+        return counters == null ? 0 : counters.mEvictions;
+    }
+
+    /**
+     * Returns the number of entities currently held by the cache.
+     *
+     * @return number of cached entities
+     */
+    public synchronized int getSize() {
+        return mTotal.mSize;
+    }
+
+    /**
+     * Returns the number of entities of the given {@link Class} currently held by the cache.
+     *
+     * @param c the entity {@code Class}
+     * @return number of cached entities
+     */
+    public synchronized int getSize(Class<?> c) {
+        Counters counters = mCounters.get(c);
+        return counters == null ? 0 : counters.mSize;
+    }
+
+    /**
+     * Returns the entity classes which have been looked up in or stored to the cache.
+     *
+     * @return {@link Set} of entity classes
+     */
+    public synchronized Set<Class<?>> getEntityClasses() {
+        return Collections.unmodifiableSet(new HashSet<Class<?>>(mCounters.keySet()));
+    }
+
+    /**
+     * Zeroes the hit, miss, rejected put and eviction counters. The size is unaffected, since it reflects the current
+     * contents of the cache.
+     */
+    public synchronized void reset() {
+        for (Counters counters : mCounters.values())
+            counters.reset();
+        mTotal.reset();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("CacheStatistics[hits=%d, misses=%d, rejectedPuts=%d, evictions=%d, size=%d]",
+                mTotal.mHits, mTotal.mMisses, mTotal.mRejectedPuts, mTotal.mEvictions, mTotal.mSize);
+    }
+
+    private Counters getCounters(Class<?> c) {
+        // Lookups tend to come in runs of the same class, so the last counters save a map lookup
+        if (c == mLastClass)
+            return mLastCounters;
+        Counters counters = mCounters.get(c);
+        if (counters == null) {
+            counters = new Counters();
+            mCounters.put(c, counters);
+        }
+        mLastClass = c;
+        mLastCounters = counters;
+        return counters;
+    }
+
+    /**
+     * Counters of either the whole cache or the entities of a single {@link Class}.
+     */
+    private static class Counters {
+
+        private long mHits;
+        private long mMisses;
+        private long mRejectedPuts;
+        private long mEvictions;
+        private int mSize;
+
+        public double getHitRatio() {
+            long lookups = mHits + mMisses;
+            return lookups == 0 ? 0 : (double) mHits / lookups;
+        }
+
+        public void reset() {
+            mHits = 0;
+            mMisses = 0;
+            mRejectedPuts = 0;
+            mEvictions = 0;
+        }
+
+    }
+
+}
@@ -22,7 +22,7 @@ package com.clarionmedia.infinitum.orm;
  * </p>
  * 
  * @author Tyler Treat
- * @version 1.0 02/12/12
+ * @version 1.1.0 09/03/13
  * @since 1.0
  */
 public class OrmConstants {
@@ -34,4 +34,14 @@ public class OrmConstants {
 		Transient, Persistent
 	}
 
+	/**
+	 * Indicates what becomes of entities evicted from a {@code Session} cache.
+	 * {@code Discard} drops them, while {@code Soft} and {@code Weak} retain
+	 * them through soft or weak references until the garbage collector
+	 * reclaims them.
+	 */
+	public static enum CacheOverflow {
+		Discard, Soft, Weak
+	}
+
 }
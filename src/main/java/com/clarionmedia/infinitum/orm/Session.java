@@ -66,7 +66,7 @@ import com.clarionmedia.infinitum.orm.sqlite.impl.SqliteSession;
  * </p>
  * 
  * @author Tyler Treat
- * @version 1.0 03/15/12
+ * @version 1.1.0 09/05/13
  * @since 1.0
  */
 public interface Session {
@@ -184,35 +184,97 @@ public interface Session {
 	int getCacheSize();
 
 	/**
-	 * Caches the given model identified by the given hash code.
+	 * Caches the given model identified by its {@link Class} and primary key.
+	 * If the cache is full, its least recently used models are evicted.
 	 * 
-	 * @param hash
-	 *            the hash code which maps to the model
+	 * @param c
+	 *            the {@code Class} of the model
+	 * @param id
+	 *            the primary key of the model
 	 * @param model
 	 *            the {@link Object} to cache
-	 * @return {@code true} if the model was cached, {@code false} if not
+	 * @return {@code true} if the model was cached, {@code false} if caching
+	 *         is disabled
+	 */
+	boolean cache(Class<?> c, Serializable id, Object model);
+
+	/**
+	 * Caches the given model identified by its {@link Class} and integer
+	 * primary key, without boxing the primary key.
+	 * 
+	 * @param c
+	 *            the {@code Class} of the model
+	 * @param id
+	 *            the primary key of the model
+	 * @param model
+	 *            the {@link Object} to cache
+	 * @return {@code true} if the model was cached, {@code false} if caching
+	 *         is disabled
+	 */
+	boolean cache(Class<?> c, long id, Object model);
+
+	/**
+	 * Indicates if the session cache contains the model of the given
+	 * {@link Class} with the given primary key.
+	 * 
+	 * @param c
+	 *            the {@code Class} of the model
+	 * @param id
+	 *            the primary key to check for
+	 * @return {@code true} if the cache contains the model, {@code false} if
+	 *         not
+	 */
+	boolean checkCache(Class<?> c, Serializable id);
+
+	/**
+	 * Indicates if the session cache contains the model of the given
+	 * {@link Class} with the given integer primary key, without boxing the
+	 * primary key.
+	 * 
+	 * @param c
+	 *            the {@code Class} of the model
+	 * @param id
+	 *            the primary key to check for
+	 * @return {@code true} if the cache contains the model, {@code false} if
+	 *         not
 	 */
-	boolean cache(int hash, Object model);
+	boolean checkCache(Class<?> c, long id);
 
 	/**
-	 * Indicates if the session cache contains the given hash code.
+	 * Returns the model of the given {@link Class} with the given primary key
+	 * from the session cache.
 	 * 
-	 * @param hash
-	 *            the hash code to check for
-	 * @return {@code true} if the cache contains the hash code, {@code false}
-	 *         if not
+	 * @param c
+	 *            the {@code Class} of the model
+	 * @param id
+	 *            the primary key of the model to retrieve
+	 * @return the model {@link Object} or {@code null} if no such entity exists
+	 *         in the cache
+	 */
+	Object searchCache(Class<?> c, Serializable id);
+
+	/**
+	 * Returns the model of the given {@link Class} with the given integer
+	 * primary key from the session cache, without boxing the primary key.
+	 * 
+	 * @param c
+	 *            the {@code Class} of the model
+	 * @param id
+	 *            the primary key of the model to retrieve
+	 * @return the model {@link Object} or {@code null} if no such entity exists
+	 *         in the cache
 	 */
-	boolean checkCache(int hash);
+	Object searchCache(Class<?> c, long id);
 
 	/**
-	 * Returns the model with the given hash code from the session cache.
+	 * Returns the {@link CacheStatistics} of the session cache, which count
+	 * its hits, misses, rejected puts and evictions and track its size, both
+	 * in total and per entity {@link Class}. The statistics are updated as the
+	 * cache is used and can be reset with {@link CacheStatistics#reset()}.
 	 * 
-	 * @param hash
-	 *            the hash code of the model to retrieve
-	 * @return the model {@link Object} identified by the given hash code or
-	 *         {@code null} if no such entity exists in the cache
+	 * @return {@code CacheStatistics} of the session cache
 	 */
-	Object searchCache(int hash);
+	CacheStatistics getCacheStatistics();
 
 	/**
 	 * Persists the given {@link Object} to the database. This method is not
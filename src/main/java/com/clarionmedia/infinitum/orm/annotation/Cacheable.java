@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p> This annotation indicates that instances of the annotated persistent class are kept in the second-level cache,
+ * which is shared by every session in the process and outlives them. The annotation configures the class's cache
+ * region. </p>
+ *
+ * @author Tyler Treat
+ * @version 1.1.0 08/31/13
+ * @since 1.1.0
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Cacheable {
+
+    /**
+     * Returns the maximum number of entities kept in the cache region, beyond which the least recently used entities
+     * are evicted.
+     *
+     * @return region capacity
+     */
+    int capacity() default 100;
+
+    /**
+     * Returns the number of milliseconds an entity is kept in the cache region before it is reloaded from the
+     * database. A time to live of 0 keeps entities until they are evicted or written.
+     *
+     * @return time to live in milliseconds
+     */
+    long timeToLive() default 0;
+
+    /**
+     * Indicates if the cache region is read-only. Read-only regions share the cached entities themselves between
+     * sessions, so they must not be modified, while read-write regions keep the entities' rows and construct a new
+     * entity for each session.
+     *
+     * @return {@code true} if the region is read-only, {@code false} if it is read-write
+     */
+    boolean readOnly() default false;
+
+}
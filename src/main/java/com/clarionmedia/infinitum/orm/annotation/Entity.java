@@ -76,6 +76,16 @@ public @interface Entity {
 	 */
 	boolean lazy() default true;
 
+	/**
+	 * Indicates if the entity is saved or updated using an
+	 * {@code INSERT OR IGNORE} statement, followed by an update only if a row
+	 * with its primary key already exists, rather than an update followed by
+	 * an insert. This favors entities which are usually new.
+	 * 
+	 * @return {@code true} if upserting is enabled, {@code false} if not
+	 */
+	boolean upsert() default false;
+
 	/**
 	 * Returns the REST endpoint name for this entity.
 	 * 
@@ -29,7 +29,7 @@ import java.lang.annotation.Target;
  * </p>
  * 
  * @author Tyler Treat
- * @version 1.1.0 06/14/13
+ * @version 1.1.0 08/25/13
  * @since 1.0
  */
 @Documented
@@ -68,4 +68,15 @@ public @interface ManyToMany {
 	 */
 	String name();
 
+	/**
+	 * Returns the maximum number of entities whose related entities are
+	 * fetched together when a query returns several entities. Rather than
+	 * joining each entity's relationship table separately, the related
+	 * entities are fetched with one query per batch and grouped by the entity
+	 * they belong to. A batch size of 0 disables batch fetching.
+	 * 
+	 * @return batch size
+	 */
+	int batchSize() default 0;
+
 }
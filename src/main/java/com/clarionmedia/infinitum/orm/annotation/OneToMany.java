@@ -27,7 +27,7 @@ import java.lang.annotation.Target;
  * relationship with another persistent class. </p>
  *
  * @author Tyler Treat
- * @version 1.1.0 06/15/13
+ * @version 1.1.0 08/24/13
  * @since 1.0
  */
 @Documented
@@ -51,4 +51,14 @@ public @interface OneToMany {
      */
     String name();
 
+    /**
+     * Returns the maximum number of entities whose collections are fetched together when a query returns several
+     * entities. Rather than querying each entity's collection separately, the collections are fetched with one query
+     * per batch and distributed to the entities, which applies to lazily loaded collections as well. A batch size of
+     * 0 disables batch fetching.
+     *
+     * @return batch size
+     */
+    int batchSize() default 0;
+
 }
@@ -27,7 +27,7 @@ import java.util.List;
  * <p> Specialization of {@link Criteria} for querying on entity associations. </p>
  *
  * @author Tyler Treat
- * @version 1.1.0 06/17/13
+ * @version 1.1.0 08/31/13
  * @since 1.0
  */
 public interface AssociationCriteria<T> extends Criteria<T> {
@@ -78,6 +78,23 @@ public interface AssociationCriteria<T> extends Criteria<T> {
      */
     AssociationCriteria<T> offset(int offset);
 
+    /**
+     * Projects the root query results onto the given properties of the root entity.
+     *
+     * @param properties the names of the non-relationship properties to select, in result order
+     * @return this {@code AssociationCriteria} to allow for method chaining
+     * @throws InfinitumRuntimeException if a property is not a non-relationship property of the root entity
+     */
+    AssociationCriteria<T> select(String... properties) throws InfinitumRuntimeException;
+
+    /**
+     * Enables or disables the query cache for the root {@code Criteria} query.
+     *
+     * @param cacheable {@code true} to cache the root query results, {@code false} to always execute the query
+     * @return this {@code AssociationCriteria} to allow for method chaining
+     */
+    AssociationCriteria<T> cacheable(boolean cacheable);
+
     /**
      * Retrieves a unique query result for the root {@code Criteria} query.
      *
@@ -29,7 +29,7 @@ import java.util.List;
  * Criterion}, which act as restrictions on a query. </p>
  *
  * @author Tyler Treat
- * @version 1.1.0 06/16/13
+ * @version 1.1.0 09/05/13
  * @since 1.0
  */
 public interface Criteria<T> {
@@ -107,6 +107,28 @@ public interface Criteria<T> {
      */
     List<T> list();
 
+    /**
+     * Returns a {@link CriteriaIterator} over the query results, which constructs one result at a time as it is
+     * iterated. Results are cached in the {@link Session} like those returned by {@link #list()}.
+     *
+     * @return {@code CriteriaIterator} over the query results
+     * @throws InfinitumRuntimeException if the {@code Criteria} fetches any associations
+     */
+    CriteriaIterator<T> iterate() throws InfinitumRuntimeException;
+
+    /**
+     * Returns a {@link CriteriaIterator} over the query results, which constructs one result at a time as it is
+     * iterated. Results which are not cached in the {@link Session} can be garbage collected as soon as they are no
+     * longer referenced, making this suitable for iterating over very large results. Eagerly loaded references back to
+     * an uncached result resolve to the same instance, but lazily loaded ones don't, since they are resolved after the
+     * result has been constructed.
+     *
+     * @param cacheResults {@code true} if results should be cached in the {@code Session}, {@code false} if not
+     * @return {@code CriteriaIterator} over the query results
+     * @throws InfinitumRuntimeException if the {@code Criteria} fetches any associations
+     */
+    CriteriaIterator<T> iterate(boolean cacheResults) throws InfinitumRuntimeException;
+
     /**
      * Retrieves a unique query result for the {@code Criteria} query.
      *
@@ -166,4 +188,151 @@ public interface Criteria<T> {
      */
     List<AssociationCriteria<?>> getAssociationCriteria();
 
+    /**
+     * Fetches the given association along with the results of this {@code Criteria} in the same query, rather than
+     * loading it separately for each result. To-many associations populate each result's collection with every
+     * associated entity, while limits and offsets still apply to the results themselves.
+     *
+     * @param association the name of the association {@link java.lang.reflect.Field}
+     * @return this {@code Criteria} to allow for method chaining
+     * @throws InfinitumRuntimeException if the association is not a relationship of the {@code Criteria} entity
+     */
+    Criteria<T> fetch(String association) throws InfinitumRuntimeException;
+
+    /**
+     * Returns the names of the associations fetched along with the results of this {@code Criteria}.
+     *
+     * @return {@code List} of association names
+     */
+    List<String> getFetches();
+
+    /**
+     * Projects the results of this {@code Criteria} onto the given properties, so that only their columns are
+     * queried. Projected results are retrieved with {@link #listTuples()}, {@link #listAs(Class)} or {@link
+     * #listLongs()} and are never hydrated into entities, cached in the {@link Session} or loaded with their
+     * relationships. Fetched associations are ignored for projected results, and {@link #list()}, {@link #unique()}
+     * and {@link #iterate()} cannot be used once properties are selected.
+     *
+     * @param properties the names of the non-relationship properties to select, in result order
+     * @return this {@code Criteria} to allow for method chaining
+     * @throws InfinitumRuntimeException if a property is not a non-relationship property of the {@code Criteria}
+     *                                   entity
+     */
+    Criteria<T> select(String... properties) throws InfinitumRuntimeException;
+
+    /**
+     * Returns the names of the properties selected by this {@code Criteria}, or an empty {@link List} if it queries
+     * entire entities.
+     *
+     * @return {@code List} of property names
+     */
+    List<String> getProjections();
+
+    /**
+     * Retrieves the projected query results as a {@link List} of arrays, each holding the values of the selected
+     * properties in the order they were selected. {@code null} columns are {@code null} array elements.
+     *
+     * @return projected query results
+     * @throws InfinitumRuntimeException if the {@code Criteria} does not select any properties
+     */
+    List<Object[]> listTuples() throws InfinitumRuntimeException;
+
+    /**
+     * Retrieves the projected query results as instances of the given type. A single selected property whose type
+     * is assignable to {@code type} is returned as is. Otherwise, each result is constructed with a constructor
+     * taking the selected properties in order or, if there is no such constructor, with the no-argument constructor
+     * and its fields named after the selected properties populated.
+     *
+     * @param type the type of the results to return
+     * @return projected query results
+     * @throws InfinitumRuntimeException if the {@code Criteria} does not select any properties or the results cannot
+     *                                   be mapped to {@code type}
+     */
+    <E> List<E> listAs(Class<E> type) throws InfinitumRuntimeException;
+
+    /**
+     * Retrieves the values of the single selected property as an array of {@code long}, without boxing. {@code null}
+     * columns are read as {@code 0}.
+     *
+     * @return projected query results
+     * @throws InfinitumRuntimeException if the {@code Criteria} does not select exactly one property
+     */
+    long[] listLongs() throws InfinitumRuntimeException;
+
+    /**
+     * Pages through the query results by keyset rather than by offset, so that each page is found through the
+     * ordering columns instead of by skipping the preceding results. Results are ordered by the {@code Criteria}
+     * orderings followed by the primary key, which breaks ties, and only results after the given keys are returned.
+     * Ordering properties should not be {@code null} for keyset paging.
+     *
+     * @param keys the values of each ordering property followed by the primary key, or no values for the first page
+     * @return this {@code Criteria} to allow for method chaining
+     */
+    Criteria<T> seek(Object... keys);
+
+    /**
+     * Pages through the query results by keyset, returning only the results ordered after the given entity.
+     *
+     * @param entity the last entity of the previous page
+     * @return this {@code Criteria} to allow for method chaining
+     * @throws InfinitumRuntimeException if an ordering property is not a property of the {@code Criteria} entity
+     * @see #seek(Object...)
+     */
+    Criteria<T> after(T entity) throws InfinitumRuntimeException;
+
+    /**
+     * Pages through the query results by keyset, returning only the results after the page which produced the given
+     * continuation token.
+     *
+     * @param continuationToken the token of the previous {@link CriteriaPage}
+     * @return this {@code Criteria} to allow for method chaining
+     * @throws InfinitumRuntimeException if the token is malformed
+     * @see #seek(Object...)
+     */
+    Criteria<T> resume(String continuationToken) throws InfinitumRuntimeException;
+
+    /**
+     * Retrieves the next page of query results by keyset, ignoring any limit or offset. The returned {@link
+     * CriteriaPage} carries the continuation token for the following page.
+     *
+     * @param pageSize the maximum number of results in the page
+     * @return {@code CriteriaPage} of query results
+     * @throws IllegalArgumentException if {@code pageSize} is less than {@code 1}
+     * @see #seek(Object...)
+     */
+    CriteriaPage<T> listPage(int pageSize);
+
+    /**
+     * Indicates if this {@code Criteria} pages through its results by keyset.
+     *
+     * @return {@code true} if results are paged by keyset, {@code false} if not
+     */
+    boolean isKeysetPaged();
+
+    /**
+     * Returns the keys which results are returned after when paging by keyset, which is empty for the first page.
+     *
+     * @return {@link List} of ordering property values followed by the primary key
+     */
+    List<Object> getSeekKeys();
+
+    /**
+     * Enables or disables the query cache for this {@code Criteria}. The primary keys of the results of a cacheable
+     * {@code Criteria} are cached by its SQL and bind values, so that running the same query again resolves its
+     * results from the {@link Session} or second-level cache rather than the database. Cached results are discarded
+     * as soon as any table the query reads is written, and the query is executed again if any of its results is no
+     * longer cached. Only {@link #list()} and {@link #unique()} use the query cache.
+     *
+     * @param cacheable {@code true} to cache the query results, {@code false} to always execute the query
+     * @return this {@code Criteria} to allow for method chaining
+     */
+    Criteria<T> cacheable(boolean cacheable);
+
+    /**
+     * Indicates if the results of this {@code Criteria} are cached in the query cache.
+     *
+     * @return {@code true} if the query results are cached, {@code false} if not
+     */
+    boolean isCacheable();
+
 }
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.criteria;
+
+import java.util.Iterator;
+
+/**
+ * <p> {@link Iterator} over the results of a {@link Criteria} query which constructs one entity for each call to
+ * {@link #next()} rather than constructing every result up front. The underlying query results are released as soon
+ * as iteration completes, but must be released with {@link #close()} if iteration is abandoned. </p>
+ *
+ * @author Tyler Treat
+ * @version 1.1.0 08/26/13
+ * @since 1.1.0
+ */
+public interface CriteriaIterator<T> extends Iterator<T> {
+
+    /**
+     * Releases the underlying query results. Once closed, {@link #hasNext()} returns {@code false}. Closing an
+     * iterator more than once has no effect.
+     */
+    void close();
+
+}
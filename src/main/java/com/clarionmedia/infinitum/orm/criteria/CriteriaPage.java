@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.criteria;
+
+import java.util.List;
+
+/**
+ * <p> A page of {@link Criteria} query results retrieved with {@link Criteria#listPage(int)}. The page carries an
+ * opaque continuation token which resumes the query after its last result with {@link Criteria#resume(String)}. </p>
+ *
+ * @author Tyler Treat
+ * @version 1.1.0 08/29/13
+ * @since 1.1.0
+ */
+public class CriteriaPage<T> {
+
+    private final List<T> mResults;
+    private final String mContinuationToken;
+
+    /**
+     * Constructs a new {@code CriteriaPage}.
+     *
+     * @param results           the results in this page
+     * @param continuationToken the token to resume the query after this page, or {@code null} if it is the last page
+     */
+    public CriteriaPage(List<T> results, String continuationToken) {
+        mResults = results;
+        mContinuationToken = continuationToken;
+    }
+
+    /**
+     * Returns the results in this page.
+     *
+     * @return {@link List} of results
+     */
+    public List<T> getResults() {
+        return mResults;
+    }
+
+    /**
+     * Returns the token which resumes the query after the last result in this page.
+     *
+     * @return continuation token or {@code null} if this is the last page
+     */
+    public String getContinuationToken() {
+        return mContinuationToken;
+    }
+
+    /**
+     * Indicates if there are more results after this page.
+     *
+     * @return {@code true} if there is another page, {@code false} if not
+     */
+    public boolean hasNext() {
+        return mContinuationToken != null;
+    }
+
+}
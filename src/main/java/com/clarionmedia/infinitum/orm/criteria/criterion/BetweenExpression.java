@@ -17,6 +17,7 @@
 package com.clarionmedia.infinitum.orm.criteria.criterion;
 
 import java.lang.reflect.Field;
+import java.util.List;
 
 import com.clarionmedia.infinitum.orm.context.InfinitumOrmContext;
 import com.clarionmedia.infinitum.orm.criteria.Criteria;
@@ -59,6 +60,11 @@ public class BetweenExpression extends Criterion {
 
 	@Override
 	public String toSql(Criteria<?> criteria) throws InvalidCriteriaException {
+		return toSql(criteria, null);
+	}
+
+	@Override
+	public String toSql(Criteria<?> criteria, List<Object> args) throws InvalidCriteriaException {
 		StringBuilder query = new StringBuilder();
 		Class<?> clazz = criteria.getEntityClass();
 		Field field = null;
@@ -68,15 +74,10 @@ public class BetweenExpression extends Criterion {
 		    throw new InvalidCriteriaException(String.format("Invalid Criteria for type '%s'", clazz.getName()));
 		String columnName = policy.getFieldColumnName(field);
 		query.append(columnName).append(' ').append(SqlConstants.OP_BETWEEN).append(' ');
-		if (criteria.getObjectMapper().isTextColumn(field))
-			query.append("'").append(mLow.toString()).append("'");
-		else
-			query.append(mLow.toString());
+		boolean isText = criteria.getObjectMapper().isTextColumn(field);
+		appendValue(query, mLow.toString(), isText, args);
 		query.append(' ').append(SqlConstants.AND).append(' ');
-		if (criteria.getObjectMapper().isTextColumn(field))
-			query.append("'").append(mHigh.toString()).append("'");
-		else
-			query.append(mHigh.toString());
+		appendValue(query, mHigh.toString(), isText, args);
 		return query.toString();
 	}
 
@@ -24,6 +24,7 @@ import com.clarionmedia.infinitum.orm.sql.SqlConstants;
 
 import java.io.Serializable;
 import java.lang.reflect.Field;
+import java.util.List;
 
 /**
  * <p> Represents a binary logical expression {@link Criterion}. </p>
@@ -54,6 +55,11 @@ public class BinaryExpression extends Criterion {
 
     @Override
     public String toSql(Criteria<?> criteria) throws InvalidCriteriaException {
+        return toSql(criteria, null);
+    }
+
+    @Override
+    public String toSql(Criteria<?> criteria, List<Object> args) throws InvalidCriteriaException {
         StringBuilder query = new StringBuilder();
         Class<?> c = criteria.getEntityClass();
         Field f;
@@ -75,17 +81,12 @@ public class BinaryExpression extends Criterion {
             query.append(')');
         query.append(' ').append(mOperator).append(' ');
         // If it's a related object, use its primary key
+        boolean isText = criteria.getObjectMapper().isTextColumn(f);
         if (policy.isToOneRelationship(f)) {
             Serializable pk = policy.getPrimaryKey(mValue);
-            if (criteria.getObjectMapper().isTextColumn(f))
-                query.append("'").append(pk).append("'");
-            else
-                query.append(pk);
+            appendValue(query, pk, isText, args);
         } else {
-            if (criteria.getObjectMapper().isTextColumn(f))
-                query.append("'").append(mValue).append("'");
-            else
-                query.append(mValue);
+            appendValue(query, mValue, isText, args);
         }
         return query.toString();
     }
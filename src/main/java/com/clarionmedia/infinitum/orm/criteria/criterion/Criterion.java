@@ -17,6 +17,7 @@
 package com.clarionmedia.infinitum.orm.criteria.criterion;
 
 import java.io.Serializable;
+import java.util.List;
 
 import com.clarionmedia.infinitum.context.ContextFactory;
 import com.clarionmedia.infinitum.orm.criteria.Criteria;
@@ -57,6 +58,21 @@ public abstract class Criterion implements Serializable {
     public abstract String toSql(Criteria<?> criteria)
             throws InvalidCriteriaException;
 
+    /**
+     * Retrieves the parameterized SQL fragment for the {@code Criterion} as a {@link String}. Values being compared
+     * against are replaced by {@code ?} placeholders and appended to the given bind arguments in placeholder order, so
+     * that queries differing only by value share the same SQL. {@code Criterion} implementations which do not compare
+     * against values need not override this.
+     *
+     * @param criteria the {@link Criteria} this {@code Criterion} belongs to
+     * @param args     the {@link List} to append bind arguments to
+     * @return parameterized SQL {@code String}
+     * @throws InvalidCriteriaException if there was a problem creating the {@code Criteria} instance
+     */
+    public String toSql(Criteria<?> criteria, List<Object> args) throws InvalidCriteriaException {
+        return toSql(criteria);
+    }
+
     /**
      * Returns the name of the {@link Field} this {@code Criterion} is being applied to.
      *
@@ -76,4 +92,24 @@ public abstract class Criterion implements Serializable {
         return this;
     }
 
+    /**
+     * Appends the given value to the SQL fragment, either as a {@code ?} placeholder bound to {@code args} or, if
+     * {@code args} is {@code null}, as a literal.
+     *
+     * @param query  the SQL fragment being built
+     * @param value  the value to append
+     * @param isText indicates if the value is compared against a text column
+     * @param args   the {@link List} to append bind arguments to, or {@code null} to inline literals
+     */
+    protected void appendValue(StringBuilder query, Object value, boolean isText, List<Object> args) {
+        if (args != null) {
+            query.append('?');
+            args.add(value);
+        } else if (isText) {
+            query.append("'").append(value).append("'");
+        } else {
+            query.append(value);
+        }
+    }
+
 }
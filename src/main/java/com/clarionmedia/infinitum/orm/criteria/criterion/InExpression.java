@@ -17,6 +17,7 @@
 package com.clarionmedia.infinitum.orm.criteria.criterion;
 
 import java.lang.reflect.Field;
+import java.util.List;
 
 import com.clarionmedia.infinitum.orm.context.InfinitumOrmContext;
 import com.clarionmedia.infinitum.orm.criteria.Criteria;
@@ -55,6 +56,11 @@ public class InExpression extends Criterion {
 
 	@Override
 	public String toSql(Criteria<?> criteria) throws InvalidCriteriaException {
+		return toSql(criteria, null);
+	}
+
+	@Override
+	public String toSql(Criteria<?> criteria, List<Object> args) throws InvalidCriteriaException {
 		StringBuilder query = new StringBuilder();
 		Class<?> c = criteria.getEntityClass();
 		Field f = null;
@@ -71,14 +77,12 @@ public class InExpression extends Criterion {
 		}
 		String colName = policy.getFieldColumnName(f);
 		query.append(colName).append(' ').append(SqlConstants.OP_IN).append(" (");
+		boolean isText = criteria.getObjectMapper().isTextColumn(f);
 		String prefix = "";
 		for (Object val : mValues) {
 			query.append(prefix);
 			prefix = ", ";
-			if (criteria.getObjectMapper().isTextColumn(f))
-				query.append("'").append(val.toString()).append("'");
-			else
-				query.append(val.toString());
+			appendValue(query, val.toString(), isText, args);
 		}
 		query.append(')');
 		return query.toString();
@@ -16,6 +16,8 @@
 
 package com.clarionmedia.infinitum.orm.criteria.criterion;
 
+import java.util.List;
+
 import com.clarionmedia.infinitum.orm.criteria.Criteria;
 import com.clarionmedia.infinitum.orm.exception.InvalidCriteriaException;
 
@@ -49,4 +51,10 @@ public class LogicalExpression extends Criterion {
 				.append(mRhs.toSql(criteria)).append(')').toString();
 	}
 
+	@Override
+	public String toSql(Criteria<?> criteria, List<Object> args) throws InvalidCriteriaException {
+		return new StringBuilder("(").append(mLhs.toSql(criteria, args)).append(' ').append(mOperator).append(' ')
+				.append(mRhs.toSql(criteria, args)).append(')').toString();
+	}
+
 }
@@ -16,6 +16,8 @@
 
 package com.clarionmedia.infinitum.orm.criteria.criterion;
 
+import java.util.List;
+
 import com.clarionmedia.infinitum.orm.criteria.Criteria;
 import com.clarionmedia.infinitum.orm.exception.InvalidCriteriaException;
 import com.clarionmedia.infinitum.orm.sql.SqlConstants;
@@ -45,4 +47,10 @@ public class NotExpression extends Criterion {
 				.toString();
 	}
 
+	@Override
+	public String toSql(Criteria<?> criteria, List<Object> args) throws InvalidCriteriaException {
+		return new StringBuilder(SqlConstants.NEGATION).append(" (").append(mExpression.toSql(criteria, args))
+				.append(')').toString();
+	}
+
 }
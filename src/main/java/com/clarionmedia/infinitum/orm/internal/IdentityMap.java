@@ -0,0 +1,683 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.internal;
+
+import com.clarionmedia.infinitum.orm.CacheStatistics;
+import com.clarionmedia.infinitum.orm.OrmConstants.CacheOverflow;
+
+import java.io.Serializable;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p> Identity map which caches entities by their {@link Class} and primary key. Entities are segmented by class, and
+ * each segment keys its entities by primitive {@code long} in an open-addressing table, so that integer primary keys
+ * are looked up without boxing and entities of different classes or with different keys never collide. {@code String}
+ * and other non-integer primary keys fall back to a {@link HashMap} in their segment. </p> <p> The map strongly holds
+ * at most its maximum size of entities and, if it has a {@link Weigher}, at most its maximum weight of entities. The
+ * least recently used entities are evicted when either is exceeded, except for the entity cached last. Evicted
+ * entities are discarded or, depending on the map's {@link CacheOverflow}, retained through soft or weak references so
+ * that they can still be found until the garbage collector reclaims them. An overflowed entity which is found again is
+ * strongly held again. Looking up a strongly held entity doesn't allocate. </p> <p> Evictions and the number of
+ * strongly held entities of each class are recorded in the map's {@link CacheStatistics}, if it has any. </p> <p>
+ * The map is thread-safe, since a session and its cache can be shared by several threads. </p>
+ *
+ * @author Tyler Treat
+ * @version 1.1.0 09/05/13
+ * @since 1.1.0
+ */
+public class IdentityMap {
+
+    private static final int INITIAL_SEGMENT_CAPACITY = 16;
+
+    private Map<Class<?>, Segment> mSegments;
+    private Class<?> mLastClass;
+    private Segment mLastSegment;
+    private Entry mHead;
+    private ReferenceQueue<Object> mReferenceQueue;
+    private Weigher mWeigher;
+    private CacheStatistics mStatistics;
+    private CacheOverflow mOverflow;
+    private int mMaxSize;
+    private long mMaxWeight;
+    private int mSize;
+    private long mWeight;
+    private int mOverflowSize;
+
+    /**
+     * Constructs a new {@code IdentityMap} bounded by the number of entities it holds.
+     *
+     * @param maxSize the maximum number of entities the map can hold
+     */
+    public IdentityMap(int maxSize) {
+        this(maxSize, Long.MAX_VALUE, null);
+    }
+
+    /**
+     * Constructs a new {@code IdentityMap} bounded by both the number and the estimated weight of the entities it
+     * holds.
+     *
+     * @param maxSize   the maximum number of entities the map can hold
+     * @param maxWeight the maximum total weight of the entities the map can hold
+     * @param weigher   the {@link Weigher} estimating the weight of each entity, or {@code null} if entities aren't
+     *                  weighed
+     */
+    public IdentityMap(int maxSize, long maxWeight, Weigher weigher) {
+        mSegments = new HashMap<Class<?>, Segment>();
+        mHead = new Entry(null, 0, null);
+        mHead.mPrev = mHead;
+        mHead.mNext = mHead;
+        mReferenceQueue = new ReferenceQueue<Object>();
+        mOverflow = CacheOverflow.Discard;
+        mMaxSize = maxSize;
+        mMaxWeight = maxWeight;
+        mWeigher = weigher;
+    }
+
+    /**
+     * Returns the entity of the given {@link Class} with the given primary key.
+     *
+     * @param c  the {@code Class} of the entity
+     * @param id the primary key of the entity
+     * @return entity or {@code null} if the map doesn't contain it
+     */
+    public synchronized Object get(Class<?> c, long id) {
+        expungeOverflow();
+        Segment segment = getSegment(c);
+        if (segment == null)
+            return null;
+        return touch(segment.find(id));
+    }
+
+    /**
+     * Returns the entity of the given {@link Class} with the given primary key.
+     *
+     * @param c  the {@code Class} of the entity
+     * @param id the primary key of the entity
+     * @return entity or {@code null} if the map doesn't contain it
+     */
+    public synchronized Object get(Class<?> c, Serializable id) {
+        if (isIntegral(id))
+            return get(c, ((Number) id).longValue());
+        expungeOverflow();
+        Segment segment = getSegment(c);
+        if (segment == null || id == null)
+            return null;
+        return touch(segment.find(id));
+    }
+
+    /**
+     * Indicates if the map contains the entity of the given {@link Class} with the given primary key.
+     *
+     * @param c  the {@code Class} of the entity
+     * @param id the primary key of the entity
+     * @return {@code true} if the map contains the entity, {@code false} if not
+     */
+    public synchronized boolean contains(Class<?> c, long id) {
+        expungeOverflow();
+        Segment segment = getSegment(c);
+        return segment != null && isPresent(segment.find(id));
+    }
+
+    /**
+     * Indicates if the map contains the entity of the given {@link Class} with the given primary key.
+     *
+     * @param c  the {@code Class} of the entity
+     * @param id the primary key of the entity
+     * @return {@code true} if the map contains the entity, {@code false} if not
+     */
+    public synchronized boolean contains(Class<?> c, Serializable id) {
+        if (isIntegral(id))
+            return contains(c, ((Number) id).longValue());
+        expungeOverflow();
+        Segment segment = getSegment(c);
+        return segment != null && id != null && isPresent(segment.find(id));
+    }
+
+    /**
+     * Caches the given entity by its {@link Class} and primary key, replacing any entity already cached with them.
+     *
+     * @param c      the {@code Class} of the entity
+     * @param id     the primary key of the entity
+     * @param entity the entity to cache
+     * @return the entity which was replaced or {@code null} if there was none
+     */
+    public synchronized Object put(Class<?> c, long id, Object entity) {
+        expungeOverflow();
+        Segment segment = getOrCreateSegment(c);
+        Entry entry = segment.find(id);
+        if (entry == null) {
+            entry = new Entry(segment, id, null);
+            segment.insert(entry);
+        }
+        return store(entry, entity);
+    }
+
+    /**
+     * Caches the given entity by its {@link Class} and primary key, replacing any entity already cached with them.
+     *
+     * @param c      the {@code Class} of the entity
+     * @param id     the primary key of the entity
+     * @param entity the entity to cache
+     * @return the entity which was replaced or {@code null} if there was none
+     * @throws IllegalArgumentException if {@code id} is {@code null}
+     */
+    public synchronized Object put(Class<?> c, Serializable id, Object entity) throws IllegalArgumentException {
+        if (isIntegral(id))
+            return put(c, ((Number) id).longValue(), entity);
+        if (id == null)
+            throw new IllegalArgumentException("Cannot cache an entity without a primary key.");
+        expungeOverflow();
+        Segment segment = getOrCreateSegment(c);
+        Entry entry = segment.find(id);
+        if (entry == null) {
+            entry = new Entry(segment, 0, id);
+            segment.insert(entry);
+        }
+        return store(entry, entity);
+    }
+
+    /**
+     * Removes the entity of the given {@link Class} with the given primary key.
+     *
+     * @param c  the {@code Class} of the entity
+     * @param id the primary key of the entity
+     * @return the entity which was removed or {@code null} if the map didn't contain it
+     */
+    public synchronized Object remove(Class<?> c, long id) {
+        expungeOverflow();
+        Segment segment = getSegment(c);
+        if (segment == null)
+            return null;
+        return remove(segment.find(id));
+    }
+
+    /**
+     * Removes the entity of the given {@link Class} with the given primary key.
+     *
+     * @param c  the {@code Class} of the entity
+     * @param id the primary key of the entity
+     * @return the entity which was removed or {@code null} if the map didn't contain it
+     */
+    public synchronized Object remove(Class<?> c, Serializable id) {
+        if (isIntegral(id))
+            return remove(c, ((Number) id).longValue());
+        expungeOverflow();
+        Segment segment = getSegment(c);
+        if (segment == null || id == null)
+            return null;
+        return remove(segment.find(id));
+    }
+
+    /**
+     * Removes every entity from the map, including overflowed entities.
+     */
+    public synchronized void clear() {
+        mSegments.clear();
+        mLastClass = null;
+        mLastSegment = null;
+        mHead.mPrev = mHead;
+        mHead.mNext = mHead;
+        // References to the discarded entries may still be enqueued, so they go to a queue which is never polled
+        mReferenceQueue = new ReferenceQueue<Object>();
+        mSize = 0;
+        mWeight = 0;
+        mOverflowSize = 0;
+        if (mStatistics != null)
+            mStatistics.recordClear();
+    }
+
+    /**
+     * Returns the number of entities strongly held by the map.
+     *
+     * @return number of entities
+     */
+    public synchronized int size() {
+        return mSize;
+    }
+
+    /**
+     * Returns the number of overflowed entities held through soft or weak references, including any which have been
+     * reclaimed but not yet expunged.
+     *
+     * @return number of overflowed entities
+     */
+    public synchronized int getOverflowSize() {
+        return mOverflowSize;
+    }
+
+    /**
+     * Returns the total weight of the entities strongly held by the map.
+     *
+     * @return total weight
+     */
+    public synchronized long getWeight() {
+        return mWeight;
+    }
+
+    /**
+     * Returns the maximum number of entities the map can hold.
+     *
+     * @return maximum number of entities
+     */
+    public synchronized int getMaxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * Sets the maximum number of entities the map can hold, evicting the least recently used entities if it holds
+     * more.
+     *
+     * @param maxSize the maximum number of entities
+     */
+    public synchronized void setMaxSize(int maxSize) {
+        mMaxSize = maxSize;
+        trim(null);
+    }
+
+    /**
+     * Returns the maximum total weight of the entities the map can hold.
+     *
+     * @return maximum weight
+     */
+    public synchronized long getMaxWeight() {
+        return mMaxWeight;
+    }
+
+    /**
+     * Sets the maximum total weight of the entities the map can hold, evicting the least recently used entities if
+     * they weigh more.
+     *
+     * @param maxWeight the maximum weight
+     */
+    public synchronized void setMaxWeight(long maxWeight) {
+        mMaxWeight = maxWeight;
+        trim(null);
+    }
+
+    /**
+     * Returns the {@link CacheOverflow} determining what becomes of evicted entities.
+     *
+     * @return {@code CacheOverflow}
+     */
+    public synchronized CacheOverflow getOverflow() {
+        return mOverflow;
+    }
+
+    /**
+     * Sets the {@link CacheOverflow} determining what becomes of entities evicted from now on. Entities which have
+     * already overflowed are retained until they are reclaimed, removed or the map is cleared.
+     *
+     * @param overflow the {@code CacheOverflow} to use
+     */
+    public synchronized void setOverflow(CacheOverflow overflow) {
+        mOverflow = overflow;
+    }
+
+    /**
+     * Returns the {@link CacheStatistics} the map records its evictions and size in.
+     *
+     * @return {@code CacheStatistics} or {@code null} if the map doesn't record statistics
+     */
+    public synchronized CacheStatistics getStatistics() {
+        return mStatistics;
+    }
+
+    /**
+     * Sets the {@link CacheStatistics} the map records its evictions and size in. The statistics should be attached
+     * while the map is empty so that their size matches its contents.
+     *
+     * @param statistics the {@code CacheStatistics} to record in, or {@code null} to record none
+     */
+    public synchronized void setStatistics(CacheStatistics statistics) {
+        mStatistics = statistics;
+    }
+
+    private static boolean isIntegral(Serializable id) {
+        return id instanceof Long || id instanceof Integer || id instanceof Short || id instanceof Byte;
+    }
+
+    private Segment getSegment(Class<?> c) {
+        // Entities tend to be looked up by class in runs, so the last segment saves a map lookup
+        if (c == mLastClass)
+            return mLastSegment;
+        Segment segment = mSegments.get(c);
+        if (segment != null) {
+            mLastClass = c;
+            mLastSegment = segment;
+        }
+        return segment;
+    }
+
+    private Segment getOrCreateSegment(Class<?> c) {
+        Segment segment = getSegment(c);
+        if (segment == null) {
+            segment = new Segment(c);
+            mSegments.put(c, segment);
+            mLastClass = c;
+            mLastSegment = segment;
+        }
+        return segment;
+    }
+
+    private boolean isPresent(Entry entry) {
+        return entry != null && (entry.mReference == null || entry.mReference.get() != null);
+    }
+
+    private Object touch(Entry entry) {
+        if (entry == null)
+            return null;
+        if (entry.mReference == null) {
+            unlink(entry);
+            linkLast(entry);
+            return entry.mValue;
+        }
+        Object value = entry.mReference.get();
+        if (value == null) {
+            // Reclaimed before its reference was enqueued
+            remove(entry);
+            return null;
+        }
+        // Overflowed entities which are used again are strongly held again
+        store(entry, value);
+        return value;
+    }
+
+    private Object store(Entry entry, Object entity) {
+        Object old = null;
+        if (entry.mReference != null) {
+            old = entry.mReference.get();
+            entry.mReference.clear();
+            entry.mReference = null;
+            mOverflowSize--;
+            adjustSize(entry, 1);
+        } else if (entry.mValue != null) {
+            old = entry.mValue;
+            unlink(entry);
+            mWeight -= entry.mWeight;
+        } else {
+            adjustSize(entry, 1);
+        }
+        entry.mValue = entity;
+        entry.mWeight = mWeigher == null ? 0 : mWeigher.weigh(entity);
+        linkLast(entry);
+        mWeight += entry.mWeight;
+        trim(entry);
+        return old;
+    }
+
+    private void trim(Entry keep) {
+        while (mSize > mMaxSize || mWeight > mMaxWeight) {
+            Entry eldest = mHead.mNext;
+            // The entity cached last is kept even if it alone exceeds the maximum weight
+            if (eldest == mHead || eldest == keep)
+                return;
+            evict(eldest);
+        }
+    }
+
+    private void evict(Entry entry) {
+        unlink(entry);
+        adjustSize(entry, -1);
+        mWeight -= entry.mWeight;
+        if (mStatistics != null)
+            mStatistics.recordEviction(entry.mSegment.mClass);
+        switch (mOverflow) {
+            case Soft:
+                entry.mReference = new SoftEntryReference(entry, mReferenceQueue);
+                break;
+            case Weak:
+                entry.mReference = new WeakEntryReference(entry, mReferenceQueue);
+                break;
+            default:
+                entry.mSegment.delete(entry);
+                return;
+        }
+        entry.mValue = null;
+        mOverflowSize++;
+    }
+
+    private Object remove(Entry entry) {
+        if (entry == null)
+            return null;
+        Object value;
+        if (entry.mReference != null) {
+            value = entry.mReference.get();
+            entry.mReference.clear();
+            entry.mReference = null;
+            mOverflowSize--;
+        } else {
+            value = entry.mValue;
+            unlink(entry);
+            adjustSize(entry, -1);
+            mWeight -= entry.mWeight;
+        }
+        entry.mSegment.delete(entry);
+        return value;
+    }
+
+    private void expungeOverflow() {
+        Reference<?> reference;
+        while ((reference = mReferenceQueue.poll()) != null) {
+            Entry entry = ((EntryReference) reference).getEntry();
+            // The entry may have been stored again since its reference was reclaimed
+            if (entry.mReference == reference) {
+                entry.mReference = null;
+                entry.mSegment.delete(entry);
+                mOverflowSize--;
+            }
+        }
+    }
+
+    private void adjustSize(Entry entry, int delta) {
+        mSize += delta;
+        if (mStatistics != null)
+            mStatistics.recordSizeChange(entry.mSegment.mClass, delta);
+    }
+
+    private void linkLast(Entry entry) {
+        entry.mPrev = mHead.mPrev;
+        entry.mNext = mHead;
+        mHead.mPrev.mNext = entry;
+        mHead.mPrev = entry;
+    }
+
+    private void unlink(Entry entry) {
+        entry.mPrev.mNext = entry.mNext;
+        entry.mNext.mPrev = entry.mPrev;
+    }
+
+    /**
+     * Estimates the weight of the entities held by an {@link IdentityMap}, typically in bytes.
+     */
+    public static interface Weigher {
+
+        /**
+         * Estimates the weight of the given entity.
+         *
+         * @param entity the entity to weigh
+         * @return estimated weight
+         */
+        int weigh(Object entity);
+
+    }
+
+    /**
+     * Entities of a single class, keyed by primitive primary key in an open-addressing table with linear probing, or
+     * by their primary key {@link Object} if it isn't an integer.
+     */
+    private static class Segment {
+
+        private Class<?> mClass;
+        private long[] mKeys;
+        private Entry[] mEntries;
+        private int mCount;
+        private Map<Object, Entry> mKeyedEntries;
+
+        public Segment(Class<?> c) {
+            mClass = c;
+            mKeys = new long[INITIAL_SEGMENT_CAPACITY];
+            mEntries = new Entry[INITIAL_SEGMENT_CAPACITY];
+        }
+
+        public Entry find(long id) {
+            int mask = mEntries.length - 1;
+            for (int i = indexFor(id, mask); mEntries[i] != null; i = (i + 1) & mask) {
+                if (mKeys[i] == id)
+                    return mEntries[i];
+            }
+            return null;
+        }
+
+        public Entry find(Object id) {
+            return mKeyedEntries == null ? null : mKeyedEntries.get(id);
+        }
+
+        public void insert(Entry entry) {
+            if (entry.mKey != null) {
+                if (mKeyedEntries == null)
+                    mKeyedEntries = new HashMap<Object, Entry>();
+                mKeyedEntries.put(entry.mKey, entry);
+                return;
+            }
+            // Keep the table at most half full so that probe sequences stay short
+            if ((mCount + 1) * 2 > mEntries.length)
+                resize(mEntries.length * 2);
+            place(entry);
+            mCount++;
+        }
+
+        public void delete(Entry entry) {
+            if (entry.mKey != null) {
+                mKeyedEntries.remove(entry.mKey);
+                return;
+            }
+            int mask = mEntries.length - 1;
+            int hole = indexFor(entry.mId, mask);
+            while (mEntries[hole] != entry)
+                hole = (hole + 1) & mask;
+            mEntries[hole] = null;
+            mCount--;
+            // Shift back the entries following the hole which would no longer be found past it
+            for (int i = (hole + 1) & mask; mEntries[i] != null; i = (i + 1) & mask) {
+                int home = indexFor(mKeys[i], mask);
+                if (((i - home) & mask) >= ((i - hole) & mask)) {
+                    mKeys[hole] = mKeys[i];
+                    mEntries[hole] = mEntries[i];
+                    mEntries[i] = null;
+                    hole = i;
+                }
+            }
+        }
+
+        private void resize(int capacity) {
+            Entry[] entries = mEntries;
+            mKeys = new long[capacity];
+            mEntries = new Entry[capacity];
+            for (Entry entry : entries) {
+                if (entry != null)
+                    place(entry);
+            }
+        }
+
+        private void place(Entry entry) {
+            int mask = mEntries.length - 1;
+            int i = indexFor(entry.mId, mask);
+            while (mEntries[i] != null)
+                i = (i + 1) & mask;
+            mKeys[i] = entry.mId;
+            mEntries[i] = entry;
+        }
+
+        private static int indexFor(long id, int mask) {
+            // Primary keys are usually sequential, so spread them before masking
+            int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+            return (hash ^ (hash >>> 16)) & mask;
+        }
+
+    }
+
+    /**
+     * Cached entity, which is either strongly held and linked in order of use so that the least recently used entity
+     * is evicted first, or overflowed and held through a reference.
+     */
+    private static class Entry {
+
+        private Segment mSegment;
+        private long mId;
+        private Object mKey;
+        private Object mValue;
+        private int mWeight;
+        private Reference<Object> mReference;
+        private Entry mPrev;
+        private Entry mNext;
+
+        public Entry(Segment segment, long id, Object key) {
+            mSegment = segment;
+            mId = id;
+            mKey = key;
+        }
+
+    }
+
+    /**
+     * Reference to an overflowed entity which knows its {@link Entry}, so that the entry can be expunged once the
+     * entity has been reclaimed.
+     */
+    private static interface EntryReference {
+
+        Entry getEntry();
+
+    }
+
+    private static class SoftEntryReference extends SoftReference<Object> implements EntryReference {
+
+        private Entry mEntry;
+
+        public SoftEntryReference(Entry entry, ReferenceQueue<Object> queue) {
+            super(entry.mValue, queue);
+            mEntry = entry;
+        }
+
+        @Override
+        public Entry getEntry() {
+            return mEntry;
+        }
+
+    }
+
+    private static class WeakEntryReference extends WeakReference<Object> implements EntryReference {
+
+        private Entry mEntry;
+
+        public WeakEntryReference(Entry entry, ReferenceQueue<Object> queue) {
+            super(entry.mValue, queue);
+            mEntry = entry;
+        }
+
+        @Override
+        public Entry getEntry() {
+            return mEntry;
+        }
+
+    }
+
+}
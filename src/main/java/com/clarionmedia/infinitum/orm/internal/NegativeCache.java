@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.internal;
+
+import java.io.Serializable;
+
+/**
+ * <p> Bounded cache of the {@link Class} and primary key pairs which are known not to exist in the datastore, so that
+ * loading them again doesn't need to query it. The least recently recorded or checked keys are discarded once the
+ * cache is full. Keys are held in an {@link IdentityMap}, so integer primary keys are matched regardless of their boxed
+ * type. </p> <p> Each missing key is recorded along with the write version of its table at the time it was looked up,
+ * and is only considered missing while the table's version is unchanged. This way rows inserted by cascades, other
+ * sessions or any other writer invalidate the key without having to be reported individually. The cache is
+ * thread-safe. </p>
+ *
+ * @author Tyler Treat
+ * @version 1.1.0 09/05/13
+ * @since 1.1.0
+ */
+public class NegativeCache {
+
+    private IdentityMap mMisses;
+
+    /**
+     * Constructs a new {@code NegativeCache}.
+     *
+     * @param maxSize the maximum number of keys the cache can hold
+     */
+    public NegativeCache(int maxSize) {
+        mMisses = new IdentityMap(maxSize);
+    }
+
+    /**
+     * Records that no entity of the given {@link Class} has the given primary key.
+     *
+     * @param c       the {@code Class} of the entity
+     * @param id      the primary key which was not found
+     * @param version the write version of the entity's table, read before it was looked up
+     */
+    public synchronized void add(Class<?> c, Serializable id, long version) {
+        if (id != null && mMisses.getMaxSize() > 0)
+            mMisses.put(c, id, version);
+    }
+
+    /**
+     * Indicates if no entity of the given {@link Class} is known to have the given primary key. A key recorded under
+     * another version of the entity's table is discarded, since a row may have been inserted with it since.
+     *
+     * @param c       the {@code Class} of the entity
+     * @param id      the primary key to check
+     * @param version the current write version of the entity's table
+     * @return {@code true} if the primary key is known to be missing, {@code false} if not
+     */
+    public synchronized boolean contains(Class<?> c, Serializable id, long version) {
+        Object recorded = mMisses.get(c, id);
+        if (recorded == null)
+            return false;
+        if ((Long) recorded == version)
+            return true;
+        mMisses.remove(c, id);
+        return false;
+    }
+
+    /**
+     * Forgets that no entity of the given {@link Class} has the given primary key, for instance because one has been
+     * saved with it.
+     *
+     * @param c  the {@code Class} of the entity
+     * @param id the primary key to forget
+     */
+    public synchronized void remove(Class<?> c, Serializable id) {
+        mMisses.remove(c, id);
+    }
+
+    /**
+     * Forgets every missing primary key.
+     */
+    public synchronized void clear() {
+        mMisses.clear();
+    }
+
+    /**
+     * Returns the number of missing primary keys held by the cache.
+     *
+     * @return number of keys
+     */
+    public synchronized int size() {
+        return mMisses.size();
+    }
+
+    /**
+     * Returns the maximum number of keys the cache can hold.
+     *
+     * @return maximum number of keys
+     */
+    public synchronized int getMaxSize() {
+        return mMisses.getMaxSize();
+    }
+
+    /**
+     * Sets the maximum number of keys the cache can hold, discarding the least recently used keys if it holds more. A
+     * maximum size of {@code 0} disables the cache.
+     *
+     * @param maxSize the maximum number of keys
+     */
+    public synchronized void setMaxSize(int maxSize) {
+        mMisses.setMaxSize(maxSize);
+    }
+
+}
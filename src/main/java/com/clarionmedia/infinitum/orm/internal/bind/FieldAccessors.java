@@ -0,0 +1,269 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.internal.bind;
+
+import com.clarionmedia.infinitum.orm.persistence.FieldAccessor;
+
+import java.lang.reflect.Field;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p> Resolves and caches the {@link FieldAccessor} for each persistent {@link Field}. Accessors registered with
+ * {@link #register(FieldAccessor)}, e.g. ones generated for an entity at build time, take precedence. Any other field
+ * falls back to a reflective accessor which is made accessible once and specialized by field type, so primitive
+ * fields are read and written with the typed {@code Field} methods rather than boxed. </p> <p> Each registration
+ * advances the {@link #getGeneration() generation}, which components holding on to resolved accessors compare against
+ * to discard them. </p>
+ *
+ * @author Tyler Treat
+ * @version 1.1.0 09/05/13
+ * @since 1.1.0
+ */
+public final class FieldAccessors {
+
+    private static final Map<Field, FieldAccessor> ACCESSORS = new ConcurrentHashMap<Field, FieldAccessor>();
+
+    private static volatile int sGeneration;
+
+    private FieldAccessors() {
+    }
+
+    /**
+     * Returns the {@link FieldAccessor} for the given {@link Field}, creating a reflective one if none has been
+     * registered.
+     *
+     * @param field the {@code Field} to retrieve an accessor for
+     * @return {@code FieldAccessor} for {@code field}
+     */
+    public static FieldAccessor forField(Field field) {
+        FieldAccessor accessor = ACCESSORS.get(field);
+        if (accessor == null) {
+            accessor = createReflectiveAccessor(field);
+            ACCESSORS.put(field, accessor);
+        }
+        return accessor;
+    }
+
+    /**
+     * Registers the given {@link FieldAccessor} to be used for its {@link Field} in place of reflection.
+     *
+     * @param accessor the {@code FieldAccessor} to register
+     */
+    public static synchronized void register(FieldAccessor accessor) {
+        ACCESSORS.put(accessor.getField(), accessor);
+        sGeneration++;
+    }
+
+    /**
+     * Returns the number of accessors registered so far. Accessors resolved under an earlier generation may have been
+     * replaced by a registered one.
+     *
+     * @return current generation
+     */
+    public static int getGeneration() {
+        return sGeneration;
+    }
+
+    private static FieldAccessor createReflectiveAccessor(Field field) {
+        field.setAccessible(true);
+        Class<?> type = field.getType();
+        if (type == int.class)
+            return new IntAccessor(field);
+        if (type == long.class)
+            return new LongAccessor(field);
+        if (type == short.class)
+            return new ShortAccessor(field);
+        if (type == byte.class)
+            return new ByteAccessor(field);
+        if (type == float.class)
+            return new FloatAccessor(field);
+        if (type == double.class)
+            return new DoubleAccessor(field);
+        if (type == boolean.class)
+            return new BooleanAccessor(field);
+        if (type == char.class)
+            return new CharAccessor(field);
+        return new ReflectiveAccessor(field);
+    }
+
+    private static class ReflectiveAccessor extends FieldAccessor {
+
+        protected final Field mField;
+
+        public ReflectiveAccessor(Field field) {
+            super(field);
+            mField = field;
+        }
+
+        @Override
+        public Object get(Object model) throws IllegalAccessException {
+            return mField.get(model);
+        }
+
+        @Override
+        public void set(Object model, Object value) throws IllegalAccessException {
+            mField.set(model, value);
+        }
+
+    }
+
+    private static class IntAccessor extends ReflectiveAccessor {
+
+        public IntAccessor(Field field) {
+            super(field);
+        }
+
+        @Override
+        public int getInt(Object model) throws IllegalAccessException {
+            return mField.getInt(model);
+        }
+
+        @Override
+        public void setInt(Object model, int value) throws IllegalAccessException {
+            mField.setInt(model, value);
+        }
+
+    }
+
+    private static class LongAccessor extends ReflectiveAccessor {
+
+        public LongAccessor(Field field) {
+            super(field);
+        }
+
+        @Override
+        public long getLong(Object model) throws IllegalAccessException {
+            return mField.getLong(model);
+        }
+
+        @Override
+        public void setLong(Object model, long value) throws IllegalAccessException {
+            mField.setLong(model, value);
+        }
+
+    }
+
+    private static class ShortAccessor extends ReflectiveAccessor {
+
+        public ShortAccessor(Field field) {
+            super(field);
+        }
+
+        @Override
+        public short getShort(Object model) throws IllegalAccessException {
+            return mField.getShort(model);
+        }
+
+        @Override
+        public void setShort(Object model, short value) throws IllegalAccessException {
+            mField.setShort(model, value);
+        }
+
+    }
+
+    private static class ByteAccessor extends ReflectiveAccessor {
+
+        public ByteAccessor(Field field) {
+            super(field);
+        }
+
+        @Override
+        public byte getByte(Object model) throws IllegalAccessException {
+            return mField.getByte(model);
+        }
+
+        @Override
+        public void setByte(Object model, byte value) throws IllegalAccessException {
+            mField.setByte(model, value);
+        }
+
+    }
+
+    private static class FloatAccessor extends ReflectiveAccessor {
+
+        public FloatAccessor(Field field) {
+            super(field);
+        }
+
+        @Override
+        public float getFloat(Object model) throws IllegalAccessException {
+            return mField.getFloat(model);
+        }
+
+        @Override
+        public void setFloat(Object model, float value) throws IllegalAccessException {
+            mField.setFloat(model, value);
+        }
+
+    }
+
+    private static class DoubleAccessor extends ReflectiveAccessor {
+
+        public DoubleAccessor(Field field) {
+            super(field);
+        }
+
+        @Override
+        public double getDouble(Object model) throws IllegalAccessException {
+            return mField.getDouble(model);
+        }
+
+        @Override
+        public void setDouble(Object model, double value) throws IllegalAccessException {
+            mField.setDouble(model, value);
+        }
+
+    }
+
+    private static class BooleanAccessor extends ReflectiveAccessor {
+
+        public BooleanAccessor(Field field) {
+            super(field);
+        }
+
+        @Override
+        public boolean getBoolean(Object model) throws IllegalAccessException {
+            return mField.getBoolean(model);
+        }
+
+        @Override
+        public void setBoolean(Object model, boolean value) throws IllegalAccessException {
+            mField.setBoolean(model, value);
+        }
+
+    }
+
+    private static class CharAccessor extends ReflectiveAccessor {
+
+        public CharAccessor(Field field) {
+            super(field);
+        }
+
+        @Override
+        public char getChar(Object model) throws IllegalAccessException {
+            return mField.getChar(model);
+        }
+
+        @Override
+        public void setChar(Object model, char value) throws IllegalAccessException {
+            mField.setChar(model, value);
+        }
+
+    }
+
+}
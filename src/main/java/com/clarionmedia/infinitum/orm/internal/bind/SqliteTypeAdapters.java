@@ -22,6 +22,7 @@ import java.util.Date;
 import android.content.ContentValues;
 
 import com.clarionmedia.infinitum.orm.ResultSet;
+import com.clarionmedia.infinitum.orm.persistence.FieldAccessor;
 import com.clarionmedia.infinitum.orm.persistence.TypeResolutionPolicy.SqliteDataType;
 import com.clarionmedia.infinitum.orm.sqlite.SqliteTypeAdapter;
 
@@ -31,7 +32,7 @@ import com.clarionmedia.infinitum.orm.sqlite.SqliteTypeAdapter;
  * </p>
  * 
  * @author Tyler Treat
- * @version 1.0 03/17/12
+ * @version 1.1.0 08/17/13
  */
 public final class SqliteTypeAdapters {
 	
@@ -42,6 +43,10 @@ public final class SqliteTypeAdapters {
 			field.set(model, result.getString(index));
 		}
 		@Override
+		public void mapToObject(ResultSet result, int index, FieldAccessor accessor, Object model) throws IllegalArgumentException, IllegalAccessException {
+			accessor.set(model, result.getString(index));
+		}
+		@Override
 		public void mapToColumn(String value, String column, ContentValues values) {
 			values.put(column, value);
 		}
@@ -58,6 +63,10 @@ public final class SqliteTypeAdapters {
 			field.set(model, result.getInt(index));
 		}
 		@Override
+		public void mapToObject(ResultSet result, int index, FieldAccessor accessor, Object model) throws IllegalArgumentException, IllegalAccessException {
+			accessor.setInt(model, result.getInt(index));
+		}
+		@Override
 		public void mapToColumn(Integer value, String column, ContentValues values) {
 			values.put(column, value);
 		}
@@ -74,6 +83,10 @@ public final class SqliteTypeAdapters {
 			field.set(model, result.getLong(index));
 		}
 		@Override
+		public void mapToObject(ResultSet result, int index, FieldAccessor accessor, Object model) throws IllegalArgumentException, IllegalAccessException {
+			accessor.setLong(model, result.getLong(index));
+		}
+		@Override
 		public void mapToColumn(Long value, String column, ContentValues values) {
 			values.put(column, value);
 		}
@@ -90,6 +103,10 @@ public final class SqliteTypeAdapters {
 			field.set(model, result.getFloat(index));
 		}
 		@Override
+		public void mapToObject(ResultSet result, int index, FieldAccessor accessor, Object model) throws IllegalArgumentException, IllegalAccessException {
+			accessor.setFloat(model, result.getFloat(index));
+		}
+		@Override
 		public void mapToColumn(Float value, String column, ContentValues values) {
 			values.put(column, value);
 		}
@@ -106,6 +123,10 @@ public final class SqliteTypeAdapters {
 			field.set(model, result.getDouble(index));
 		}
 		@Override
+		public void mapToObject(ResultSet result, int index, FieldAccessor accessor, Object model) throws IllegalArgumentException, IllegalAccessException {
+			accessor.setDouble(model, result.getDouble(index));
+		}
+		@Override
 		public void mapToColumn(Double value, String column, ContentValues values) {
 			values.put(column, value);
 		}
@@ -122,6 +143,10 @@ public final class SqliteTypeAdapters {
 			field.set(model, result.getShort(index));
 		}
 		@Override
+		public void mapToObject(ResultSet result, int index, FieldAccessor accessor, Object model) throws IllegalArgumentException, IllegalAccessException {
+			accessor.setShort(model, result.getShort(index));
+		}
+		@Override
 		public void mapToColumn(Short value, String column, ContentValues values) {
 			values.put(column, value);
 		}
@@ -139,6 +164,10 @@ public final class SqliteTypeAdapters {
 			field.set(model, b == 1);
 		}
 		@Override
+		public void mapToObject(ResultSet result, int index, FieldAccessor accessor, Object model) throws IllegalArgumentException, IllegalAccessException {
+			accessor.setBoolean(model, result.getInt(index) == 1);
+		}
+		@Override
 		public void mapToColumn(Boolean value, String column, ContentValues values) {
 			values.put(column, value);
 		}
@@ -155,6 +184,10 @@ public final class SqliteTypeAdapters {
 			field.set(model, result.getBlob(index)[0]);
 		}
 		@Override
+		public void mapToObject(ResultSet result, int index, FieldAccessor accessor, Object model) throws IllegalArgumentException, IllegalAccessException {
+			accessor.setByte(model, result.getBlob(index)[0]);
+		}
+		@Override
 		public void mapToColumn(Byte value, String column, ContentValues values) {
 			values.put(column, value);
 		}
@@ -171,6 +204,10 @@ public final class SqliteTypeAdapters {
 			field.set(model, result.getBlob(index));
 		}
 		@Override
+		public void mapToObject(ResultSet result, int index, FieldAccessor accessor, Object model) throws IllegalArgumentException, IllegalAccessException {
+			accessor.set(model, result.getBlob(index));
+		}
+		@Override
 		public void mapToColumn(byte[] value, String column, ContentValues values) {
 			values.put(column, value);
 		}
@@ -187,6 +224,10 @@ public final class SqliteTypeAdapters {
 			field.set(model, result.getString(index).charAt(0));
 		}
 		@Override
+		public void mapToObject(ResultSet result, int index, FieldAccessor accessor, Object model) throws IllegalArgumentException, IllegalAccessException {
+			accessor.setChar(model, result.getString(index).charAt(0));
+		}
+		@Override
 		public void mapToColumn(Character value, String column, ContentValues values) {
 			values.put(column, value.toString());
 		}
@@ -204,6 +245,10 @@ public final class SqliteTypeAdapters {
 			field.set(model, new Date(dateMillis));
 		}
 		@Override
+		public void mapToObject(ResultSet result, int index, FieldAccessor accessor, Object model) throws IllegalArgumentException, IllegalAccessException {
+			accessor.set(model, new Date(result.getLong(index)));
+		}
+		@Override
 		public void mapToColumn(Date value, String column, ContentValues values) {
 			values.put(column, value.getTime());
 		}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.persistence;
+
+import java.lang.reflect.Field;
+
+/**
+ * <p> Reads and writes the value of a single persistent {@link Field} of a domain model. Accessors are resolved once
+ * per field and reused for every entity, and provide typed methods so that primitive values don't need to be boxed.
+ * The typed methods default to boxing through {@link #get(Object)} and {@link #set(Object, Object)}, so an accessor
+ * only has to implement those two, overriding the typed methods where it can avoid the boxing. </p>
+ *
+ * @author Tyler Treat
+ * @version 1.1.0 09/05/13
+ * @since 1.1.0
+ */
+public abstract class FieldAccessor {
+
+    private Field mField;
+
+    /**
+     * Constructs a new {@code FieldAccessor} for the given {@link Field}.
+     *
+     * @param field the {@code Field} to access
+     */
+    public FieldAccessor(Field field) {
+        mField = field;
+    }
+
+    /**
+     * Returns the {@link Field} this accessor reads and writes.
+     *
+     * @return {@code Field}
+     */
+    public Field getField() {
+        return mField;
+    }
+
+    /**
+     * Returns the field's value for the given model, boxing primitive values.
+     *
+     * @param model the model to read from
+     * @return field value
+     * @throws IllegalAccessException if the field is not accessible
+     */
+    public abstract Object get(Object model) throws IllegalAccessException;
+
+    /**
+     * Sets the field's value for the given model, unboxing primitive values.
+     *
+     * @param model the model to write to
+     * @param value the value to set
+     * @throws IllegalAccessException if the field is not accessible
+     */
+    public abstract void set(Object model, Object value) throws IllegalAccessException;
+
+    /**
+     * Returns the value of an {@code int} field for the given model, without boxing it if the accessor can.
+     *
+     * @param model the model to read from
+     * @return field value
+     * @throws IllegalAccessException if the field is not accessible
+     */
+    public int getInt(Object model) throws IllegalAccessException {
+        return (Integer) get(model);
+    }
+
+    /**
+     * Sets the value of an {@code int} field for the given model, without boxing it if the accessor can.
+     *
+     * @param model the model to write to
+     * @param value the value to set
+     * @throws IllegalAccessException if the field is not accessible
+     */
+    public void setInt(Object model, int value) throws IllegalAccessException {
+        set(model, value);
+    }
+
+    /**
+     * Returns the value of a {@code long} field for the given model, without boxing it if the accessor can.
+     *
+     * @param model the model to read from
+     * @return field value
+     * @throws IllegalAccessException if the field is not accessible
+     */
+    public long getLong(Object model) throws IllegalAccessException {
+        return (Long) get(model);
+    }
+
+    /**
+     * Sets the value of a {@code long} field for the given model, without boxing it if the accessor can.
+     *
+     * @param model the model to write to
+     * @param value the value to set
+     * @throws IllegalAccessException if the field is not accessible
+     */
+    public void setLong(Object model, long value) throws IllegalAccessException {
+        set(model, value);
+    }
+
+    /**
+     * Returns the value of a {@code short} field for the given model, without boxing it if the accessor can.
+     *
+     * @param model the model to read from
+     * @return field value
+     * @throws IllegalAccessException if the field is not accessible
+     */
+    public short getShort(Object model) throws IllegalAccessException {
+        return (Short) get(model);
+    }
+
+    /**
+     * Sets the value of a {@code short} field for the given model, without boxing it if the accessor can.
+     *
+     * @param model the model to write to
+     * @param value the value to set
+     * @throws IllegalAccessException if the field is not accessible
+     */
+    public void setShort(Object model, short value) throws IllegalAccessException {
+        set(model, value);
+    }
+
+    /**
+     * Returns the value of a {@code byte} field for the given model, without boxing it if the accessor can.
+     *
+     * @param model the model to read from
+     * @return field value
+     * @throws IllegalAccessException if the field is not accessible
+     */
+    public byte getByte(Object model) throws IllegalAccessException {
+        return (Byte) get(model);
+    }
+
+    /**
+     * Sets the value of a {@code byte} field for the given model, without boxing it if the accessor can.
+     *
+     * @param model the model to write to
+     * @param value the value to set
+     * @throws IllegalAccessException if the field is not accessible
+     */
+    public void setByte(Object model, byte value) throws IllegalAccessException {
+        set(model, value);
+    }
+
+    /**
+     * Returns the value of a {@code float} field for the given model, without boxing it if the accessor can.
+     *
+     * @param model the model to read from
+     * @return field value
+     * @throws IllegalAccessException if the field is not accessible
+     */
+    public float getFloat(Object model) throws IllegalAccessException {
+        return (Float) get(model);
+    }
+
+    /**
+     * Sets the value of a {@code float} field for the given model, without boxing it if the accessor can.
+     *
+     * @param model the model to write to
+     * @param value the value to set
+     * @throws IllegalAccessException if the field is not accessible
+     */
+    public void setFloat(Object model, float value) throws IllegalAccessException {
+        set(model, value);
+    }
+
+    /**
+     * Returns the value of a {@code double} field for the given model, without boxing it if the accessor can.
+     *
+     * @param model the model to read from
+     * @return field value
+     * @throws IllegalAccessException if the field is not accessible
+     */
+    public double getDouble(Object model) throws IllegalAccessException {
+        return (Double) get(model);
+    }
+
+    /**
+     * Sets the value of a {@code double} field for the given model, without boxing it if the accessor can.
+     *
+     * @param model the model to write to
+     * @param value the value to set
+     * @throws IllegalAccessException if the field is not accessible
+     */
+    public void setDouble(Object model, double value) throws IllegalAccessException {
+        set(model, value);
+    }
+
+    /**
+     * Returns the value of a {@code boolean} field for the given model, without boxing it if the accessor can.
+     *
+     * @param model the model to read from
+     * @return field value
+     * @throws IllegalAccessException if the field is not accessible
+     */
+    public boolean getBoolean(Object model) throws IllegalAccessException {
+        return (Boolean) get(model);
+    }
+
+    /**
+     * Sets the value of a {@code boolean} field for the given model, without boxing it if the accessor can.
+     *
+     * @param model the model to write to
+     * @param value the value to set
+     * @throws IllegalAccessException if the field is not accessible
+     */
+    public void setBoolean(Object model, boolean value) throws IllegalAccessException {
+        set(model, value);
+    }
+
+    /**
+     * Returns the value of a {@code char} field for the given model, without boxing it if the accessor can.
+     *
+     * @param model the model to read from
+     * @return field value
+     * @throws IllegalAccessException if the field is not accessible
+     */
+    public char getChar(Object model) throws IllegalAccessException {
+        return (Character) get(model);
+    }
+
+    /**
+     * Sets the value of a {@code char} field for the given model, without boxing it if the accessor can.
+     *
+     * @param model the model to write to
+     * @param value the value to set
+     * @throws IllegalAccessException if the field is not accessible
+     */
+    public void setChar(Object model, char value) throws IllegalAccessException {
+        set(model, value);
+    }
+
+}
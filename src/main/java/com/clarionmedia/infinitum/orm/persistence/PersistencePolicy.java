@@ -40,7 +40,7 @@ import java.util.*;
  * </p>
  *
  * @author Tyler Treat
- * @version 1.1.0 04/25/13
+ * @version 1.1.0 09/05/13
  * @see AnnotationsPersistencePolicy
  * @see XmlPersistencePolicy
  * @since 1.0
@@ -226,6 +226,17 @@ public abstract class PersistencePolicy {
      */
     public abstract Cascade getCascadeMode(Class<?> c);
 
+    /**
+     * Indicates if the given persistent {@link Class} is saved or updated with a single upsert statement. Upserting is
+     * disabled unless a policy overrides this method to enable it.
+     *
+     * @param c the {@code Class} to check upsert status for
+     * @return {@code true} if upserting is enabled, {@code false} if not
+     */
+    public boolean isUpsert(Class<?> c) {
+        return false;
+    }
+
     /**
      * Indicates if the given persistent {@link Field} is part of an entity relationship, either many-to-many, many
      * -to-one,
@@ -237,6 +237,14 @@ public class AnnotationsPersistencePolicy extends PersistencePolicy {
 		return entity.cascade();
 	}
 
+	@Override
+	public boolean isUpsert(Class<?> c) {
+		if (!c.isAnnotationPresent(Entity.class))
+			return false;
+		Entity entity = c.getAnnotation(Entity.class);
+		return entity.upsert();
+	}
+
 	@Override
 	public boolean isRelationship(Field f) {
 		return f.isAnnotationPresent(ManyToMany.class) || f.isAnnotationPresent(ManyToOne.class) || f.isAnnotationPresent(OneToMany.class)
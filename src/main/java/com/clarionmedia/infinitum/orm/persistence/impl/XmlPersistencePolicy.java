@@ -181,6 +181,14 @@ public class XmlPersistencePolicy extends PersistencePolicy {
 		return mapping.getCascade();
 	}
 
+	@Override
+	public boolean isUpsert(Class<?> c) {
+		if (!isPersistent(c) || !mTypePolicy.isDomainModel(c))
+			throw new IllegalArgumentException("Class '" + c.getName() + "' is transient.");
+		EntityMapping mapping = loadEntityMapping(c);
+		return mapping.isUpsert();
+	}
+
 	@Override
 	public boolean isRelationship(Field f) {
 		EntityMapping mapping = loadEntityMapping(f.getDeclaringClass());
@@ -375,6 +383,10 @@ public class XmlPersistencePolicy extends PersistencePolicy {
 			return mClassMapping.mLazy;
 		}
 
+		public boolean isUpsert() {
+			return mClassMapping.mUpsert;
+		}
+
 		public Cascade getCascade() {
 			String cascade = mClassMapping.mCascade;
 			if (cascade == null)
@@ -441,6 +453,9 @@ public class XmlPersistencePolicy extends PersistencePolicy {
 			@Attribute(name = "cascade", required = false)
 			private String mCascade;
 
+			@Attribute(name = "upsert", required = false)
+			private boolean mUpsert;
+
 			@Attribute(name = "rest", required = false)
 			private String mRest;
 
@@ -32,7 +32,7 @@ import java.lang.reflect.Type;
  * </p>
  * 
  * @author Tyler Treat
- * @version 1.1.0 06/15/13
+ * @version 1.1.0 08/25/13
  * @since 1.0
  */
 public class ManyToManyRelationship extends ModelRelationship {
@@ -61,6 +61,7 @@ public class ManyToManyRelationship extends ModelRelationship {
 		mFirstFieldName = mtm.keyField();
 		mSecondFieldName = mtm.foreignField();
 		mName = mtm.name();
+		mBatchSize = mtm.batchSize();
 	}
 
 	public String getTableName() {
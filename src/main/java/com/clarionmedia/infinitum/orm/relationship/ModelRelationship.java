@@ -39,6 +39,7 @@ public abstract class ModelRelationship {
 	protected Class<?> mSecond;
 	protected RelationType mRelationType;
 	protected String mName;
+	protected int mBatchSize;
 	protected ClassReflector mClassReflector;
 	
 	public ModelRelationship() {
@@ -81,4 +82,27 @@ public abstract class ModelRelationship {
 		mName = name;
 	}
 
+	/**
+	 * Returns the maximum number of entities whose related entities are
+	 * fetched together by a single query when loading a result containing
+	 * several entities. A batch size of 0 or less disables batch fetching, so
+	 * each entity's related entities are fetched separately.
+	 * 
+	 * @return batch size
+	 */
+	public int getBatchSize() {
+		return mBatchSize;
+	}
+
+	/**
+	 * Sets the maximum number of entities whose related entities are fetched
+	 * together by a single query.
+	 * 
+	 * @param batchSize
+	 *            the batch size, or 0 to disable batch fetching
+	 */
+	public void setBatchSize(int batchSize) {
+		mBatchSize = batchSize;
+	}
+
 }
@@ -27,7 +27,7 @@ import java.lang.reflect.Type;
  * <p> This class encapsulates a one-to-many relationship between two models. </p>
  *
  * @author Tyler Treat
- * @version 1.1.0 06/15/13
+ * @version 1.1.0 08/24/13
  * @since 1.0
  */
 public class OneToManyRelationship extends ForeignKeyRelationship {
@@ -55,6 +55,7 @@ public class OneToManyRelationship extends ForeignKeyRelationship {
         setOwner(mSecond);
         mName = otm.name();
         mColumn = otm.column();
+        mBatchSize = otm.batchSize();
     }
 
     public void setColumn(String mColumn) {
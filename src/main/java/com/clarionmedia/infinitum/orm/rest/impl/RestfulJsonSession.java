@@ -38,7 +38,7 @@ import com.google.gson.JsonSyntaxException;
  * </p>
  * 
  * @author Tyler Treat
- * @version 1.0 03/21/12
+ * @version 1.1.0 09/02/13
  * @since 1.0
  */
 public class RestfulJsonSession extends RestfulSession {
@@ -71,8 +71,7 @@ public class RestfulJsonSession extends RestfulSession {
 				// Otherwise fallback to Gson
 				else
 					ret = new Gson().fromJson(jsonResponse, type);
-				int objHash = mPersistencePolicy.computeModelHash(ret);
-				cache(objHash, ret);
+				cache(type, id, ret);
 				return ret;
 			}
 		} catch (JsonSyntaxException e) {
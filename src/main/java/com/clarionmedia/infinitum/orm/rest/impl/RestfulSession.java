@@ -23,13 +23,14 @@ import com.clarionmedia.infinitum.context.RestfulContext;
 import com.clarionmedia.infinitum.context.RestfulContext.MessageType;
 import com.clarionmedia.infinitum.di.annotation.Autowired;
 import com.clarionmedia.infinitum.exception.InfinitumRuntimeException;
-import com.clarionmedia.infinitum.internal.caching.LruCache;
 import com.clarionmedia.infinitum.logging.Logger;
 import com.clarionmedia.infinitum.logging.impl.SmartLogger;
+import com.clarionmedia.infinitum.orm.CacheStatistics;
 import com.clarionmedia.infinitum.orm.Session;
 import com.clarionmedia.infinitum.orm.context.InfinitumOrmContext;
 import com.clarionmedia.infinitum.orm.criteria.Criteria;
 import com.clarionmedia.infinitum.orm.exception.SQLGrammarException;
+import com.clarionmedia.infinitum.orm.internal.IdentityMap;
 import com.clarionmedia.infinitum.orm.internal.OrmPreconditions;
 import com.clarionmedia.infinitum.orm.persistence.PersistencePolicy;
 import com.clarionmedia.infinitum.orm.persistence.TypeAdapter;
@@ -56,7 +57,7 @@ import java.util.Map;
  * or re-implemented for specific business needs. </p>
  *
  * @author Tyler Treat
- * @version 1.1.0 04/25/13
+ * @version 1.1.0 09/05/13
  * @since 1.0
  */
 public abstract class RestfulSession implements Session {
@@ -76,7 +77,8 @@ public abstract class RestfulSession implements Session {
     protected Logger mLogger;
     protected RestfulMapper mMapper;
     protected RestfulClient mRestClient;
-    protected LruCache<Integer, Object> mSessionCache;
+    protected IdentityMap mSessionCache;
+    protected CacheStatistics mCacheStatistics;
     protected int mCacheSize;
 
     /**
@@ -84,7 +86,9 @@ public abstract class RestfulSession implements Session {
      */
     public RestfulSession() {
         mCacheSize = DEFAULT_CACHE_SIZE;
-        mSessionCache = new LruCache<Integer, Object>(mCacheSize);
+        mCacheStatistics = new CacheStatistics();
+        mSessionCache = new IdentityMap(mCacheSize);
+        mSessionCache.setStatistics(mCacheStatistics);
         mLogger = new SmartLogger(getClass().getSimpleName());
         mRestClient = new CachingEnabledRestfulClient(ContextFactory.getInstance().getAndroidContext());
     }
@@ -177,6 +181,7 @@ public abstract class RestfulSession implements Session {
     @Override
     public Session setCacheSize(int cacheSize) {
         mCacheSize = cacheSize;
+        mSessionCache.setMaxSize(cacheSize);
         return this;
     }
 
@@ -186,21 +191,57 @@ public abstract class RestfulSession implements Session {
     }
 
     @Override
-    public boolean cache(int hash, Object model) {
-        if (mSessionCache.size() >= mCacheSize)
+    public boolean cache(Class<?> c, Serializable id, Object model) {
+        // A full cache evicts its least recently used entities, so puts are only rejected if caching is disabled
+        if (mCacheSize <= 0) {
+            mCacheStatistics.recordRejectedPut(c);
             return false;
-        mSessionCache.put(hash, model);
+        }
+        mSessionCache.put(c, id, model);
+        return true;
+    }
+
+    @Override
+    public boolean cache(Class<?> c, long id, Object model) {
+        if (mCacheSize <= 0) {
+            mCacheStatistics.recordRejectedPut(c);
+            return false;
+        }
+        mSessionCache.put(c, id, model);
         return true;
     }
 
     @Override
-    public boolean checkCache(int hash) {
-        return mSessionCache.containsKey(hash);
+    public boolean checkCache(Class<?> c, Serializable id) {
+        boolean cached = mSessionCache.contains(c, id);
+        mCacheStatistics.recordLookup(c, cached);
+        return cached;
+    }
+
+    @Override
+    public boolean checkCache(Class<?> c, long id) {
+        boolean cached = mSessionCache.contains(c, id);
+        mCacheStatistics.recordLookup(c, cached);
+        return cached;
+    }
+
+    @Override
+    public Object searchCache(Class<?> c, Serializable id) {
+        Object cached = mSessionCache.get(c, id);
+        mCacheStatistics.recordLookup(c, cached != null);
+        return cached;
+    }
+
+    @Override
+    public Object searchCache(Class<?> c, long id) {
+        Object cached = mSessionCache.get(c, id);
+        mCacheStatistics.recordLookup(c, cached != null);
+        return cached;
     }
 
     @Override
-    public Object searchCache(int hash) {
-        return mSessionCache.get(hash);
+    public CacheStatistics getCacheStatistics() {
+        return mCacheStatistics;
     }
 
     @SuppressWarnings("unchecked")
@@ -209,9 +250,9 @@ public abstract class RestfulSession implements Session {
         OrmPreconditions.checkForOpenSession(mIsOpen);
         OrmPreconditions.checkPersistenceForLoading(type, mPersistencePolicy);
         // TODO Validate primary key
-        int objHash = mPersistencePolicy.computeModelHash(type, id);
-        if (checkCache(objHash))
-            return (T) searchCache(objHash);
+        Object cached = searchCache(type, id);
+        if (cached != null)
+            return (T) cached;
         return loadEntity(type, id);
     }
 
@@ -37,7 +37,7 @@ import com.clarionmedia.infinitum.web.rest.impl.RestResponse;
  * </p>
  * 
  * @author Tyler Treat
- * @version 1.0 05/21/12
+ * @version 1.1.0 09/02/13
  * @since 1.0
  */
 public class RestfulXmlSession extends RestfulSession {
@@ -71,10 +71,8 @@ public class RestfulXmlSession extends RestfulSession {
 				// Otherwise fallback to Simple
 				else
 					ret = new Persister().read(type, xmlResponse);
-				if (ret != null) {
-				    int objHash = mPersistencePolicy.computeModelHash(ret);
-				    cache(objHash, ret);
-				}
+				if (ret != null)
+				    cache(type, id, ret);
 				return ret;
 			}
 		} catch (Exception e) {
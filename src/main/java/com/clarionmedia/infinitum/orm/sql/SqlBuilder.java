@@ -90,6 +90,30 @@ public interface SqlBuilder {
 	 */
 	String createCountQuery(Criteria<?> criteria);
 
+	/**
+	 * Generates a parameterized SQL query from the given {@link Criteria}.
+	 * Values being queried on are bound to {@code ?} placeholders rather than
+	 * inlined, so that queries differing only by value share the same SQL and
+	 * can reuse a compiled statement.
+	 *
+	 * @param criteria
+	 *            the {@code Criteria} to build the SQL query from
+	 * @return {@link SqlStatement} containing the SQL query and its bind
+	 *         arguments
+	 */
+	SqlStatement createPreparedQuery(Criteria<?> criteria);
+
+	/**
+	 * Generates a parameterized SQL query from the given {@link Criteria} for
+	 * counting records.
+	 *
+	 * @param criteria
+	 *            the {@code Criteria} to build the SQL query from
+	 * @return {@link SqlStatement} containing the SQL query and its bind
+	 *         arguments
+	 */
+	SqlStatement createPreparedCountQuery(Criteria<?> criteria);
+
 	/**
 	 * Generates a SQL query {@link String} from the given
 	 * {@link ManyToManyRelationship} which retrieves rows of the given
@@ -122,6 +146,55 @@ public interface SqlBuilder {
 			Serializable id, Class<?> direction)
 			throws InfinitumRuntimeException;
 
+	/**
+	 * Generates a parameterized version of the query produced by
+	 * {@link #createManyToManyJoinQuery(ManyToManyRelationship, Serializable, Class)}
+	 * with the given ID bound as its argument.
+	 *
+	 * @param rel
+	 *            the {@link ManyToManyRelationship} containing the association
+	 *            being queried
+	 * @param id
+	 *            the ID in which the associated records are linked with
+	 * @param direction
+	 *            the direction the relationship is being queried in, returning
+	 *            records of this {@link Class}
+	 * @return {@link SqlStatement} containing the SQL query and its bind
+	 *         arguments
+	 * @throws InfinitumRuntimeException
+	 *             if the direction {@code Class} is not a part of the given
+	 *             {@code ManyToManyRelationship}
+	 */
+	SqlStatement createPreparedManyToManyJoinQuery(ManyToManyRelationship rel,
+			Serializable id, Class<?> direction)
+			throws InfinitumRuntimeException;
+
+	/**
+	 * Generates a parameterized SQL query which retrieves the rows of the
+	 * given direction type associated with any of the given IDs through the
+	 * given {@link ManyToManyRelationship}. Each row is returned along with
+	 * the ID it is associated with in the column
+	 * {@link SqlConstants#MANY_TO_MANY_OWNER_KEY}, so a row associated with
+	 * several IDs is returned once for each of them.
+	 *
+	 * @param rel
+	 *            the {@code ManyToManyRelationship} containing the association
+	 *            being queried
+	 * @param ids
+	 *            the IDs in which the associated records are linked with
+	 * @param direction
+	 *            the direction the relationship is being queried in, returning
+	 *            records of this {@link Class}
+	 * @return {@link SqlStatement} containing the SQL query and its bind
+	 *         arguments
+	 * @throws InfinitumRuntimeException
+	 *             if the direction {@code Class} is not a part of the given
+	 *             {@code ManyToManyRelationship}
+	 */
+	SqlStatement createPreparedManyToManyBatchJoinQuery(ManyToManyRelationship rel,
+			List<Serializable> ids, Class<?> direction)
+			throws InfinitumRuntimeException;
+
 	/**
 	 * Generates a SQL {@link String} consisting of the query for deleting stale
 	 * many-to-many relationships.
@@ -200,4 +273,178 @@ public interface SqlBuilder {
 	 */
 	String createUpdateQuery(Object model, Object related, String column);
 
+	/**
+	 * Generates a parameterized SQL statement for updating the foreign key in
+	 * a one-to-one relationship.
+	 *
+	 * @param relationship
+	 *            the {@link OneToOneRelationship} for this relationship query
+	 * @param model
+	 *            the model containing the foreign key to update
+	 * @param related
+	 *            the related entity
+	 * @return {@link SqlStatement} containing the SQL update and its bind
+	 *         arguments
+	 */
+	SqlStatement createPreparedUpdateOneToOneForeignKeyQuery(
+			OneToOneRelationship relationship, Object model, Object related);
+
+	/**
+	 * Generates a parameterized SQL statement for deleting relationships from
+	 * a many-to-many table.
+	 *
+	 * @param obj
+	 *            owner of the relationship to be deleted
+	 * @param rel
+	 *            the relationship type
+	 * @return {@link SqlStatement} containing the SQL delete and its bind
+	 *         arguments
+	 */
+	SqlStatement createPreparedManyToManyDeleteQuery(Object obj,
+			ManyToManyRelationship rel);
+
+	/**
+	 * Generates a parameterized SQL statement for updating a model
+	 * relationship.
+	 *
+	 * @param model
+	 *            the model to update
+	 * @param related
+	 *            the related model
+	 * @param column
+	 *            the foreign key column
+	 * @return {@link SqlStatement} containing the SQL update and its bind
+	 *         arguments
+	 */
+	SqlStatement createPreparedUpdateQuery(Object model, Object related,
+			String column);
+
+	/**
+	 * Generates a parameterized SQL insert statement for the given table and
+	 * columns, e.g. {@code INSERT INTO foo (bar, baz) VALUES (?, ?)}. The
+	 * statement is meant to be compiled once and re-bound for each row
+	 * inserted.
+	 *
+	 * @param tableName
+	 *            the name of the table to insert into
+	 * @param columns
+	 *            the columns being inserted, in bind order
+	 * @return SQL insert statement
+	 */
+	String createInsertStatement(String tableName, List<String> columns);
+
+	/**
+	 * Generates a parameterized SQL upsert statement for the given table and
+	 * columns, e.g.
+	 * {@code INSERT OR IGNORE INTO foo (id, bar) VALUES (?, ?)}. The columns
+	 * should include the primary key so that the insert is skipped if a row
+	 * with that key already exists, in which case the row should be updated
+	 * in place instead. Unlike {@code INSERT OR REPLACE}, this never deletes
+	 * the existing row, so its unmapped columns, referencing rows and delete
+	 * triggers are left alone.
+	 *
+	 * @param tableName
+	 *            the name of the table to upsert into
+	 * @param columns
+	 *            the columns being written, in bind order
+	 * @return SQL upsert statement
+	 */
+	String createUpsertStatement(String tableName, List<String> columns);
+
+	/**
+	 * Generates a parameterized "where clause" {@link String} which matches
+	 * rows of the given persistent {@link Class} by primary key, e.g.
+	 * {@code id IN (?, ?, ?)}. Note that the actual {@code String} "where" is
+	 * not included with the resulting output.
+	 *
+	 * @param c
+	 *            the {@code Class} whose primary key is being matched
+	 * @param keyCount
+	 *            the number of primary keys to be bound to the clause
+	 * @return where clause {@code String}
+	 */
+	String createPrimaryKeyInClause(Class<?> c, int keyCount);
+
+	/**
+	 * Generates a parameterized SQL statement which sets a foreign key column
+	 * to the same value for several rows of the given persistent
+	 * {@link Class}, e.g. {@code UPDATE foo SET bar_id = ? WHERE id IN (?, ?)}.
+	 * The foreign key value is bound first, followed by the primary keys of
+	 * the rows to update.
+	 *
+	 * @param c
+	 *            the {@code Class} whose rows are being updated
+	 * @param column
+	 *            the foreign key column to set
+	 * @param keyCount
+	 *            the number of primary keys to be bound to the statement
+	 * @return SQL update statement
+	 */
+	String createUpdateForeignKeyStatement(Class<?> c, String column, int keyCount);
+
+	/**
+	 * Generates a parameterized "where clause" {@link String} which matches
+	 * rows in the given {@link ManyToManyRelationship}'s table belonging to
+	 * entities of the given {@link Class}, e.g. {@code foo_id_1 IN (?, ?)}.
+	 * Note that the actual {@code String} "where" is not included with the
+	 * resulting output.
+	 *
+	 * @param c
+	 *            the {@code Class} of the relationship owners being matched
+	 * @param rel
+	 *            the {@code ManyToManyRelationship} to match rows for
+	 * @param keyCount
+	 *            the number of primary keys to be bound to the clause
+	 * @return where clause {@code String}
+	 */
+	String createManyToManyInClause(Class<?> c, ManyToManyRelationship rel, int keyCount);
+
+	/**
+	 * Generates a parameterized SQL query which retrieves the keys of the
+	 * entities related to an entity of the given {@link Class} through the
+	 * given {@link ManyToManyRelationship}, e.g.
+	 * {@code SELECT bar_id_2 FROM foo_bar WHERE foo_id_1 = ?}. The owning
+	 * entity's key is bound to the query.
+	 *
+	 * @param c
+	 *            the {@code Class} of the relationship owner
+	 * @param rel
+	 *            the {@code ManyToManyRelationship} to retrieve keys for
+	 * @return SQL query
+	 */
+	String createManyToManyKeysQuery(Class<?> c, ManyToManyRelationship rel);
+
+	/**
+	 * Generates a parameterized SQL statement which inserts several rows into
+	 * the given {@link ManyToManyRelationship}'s table, ignoring rows which
+	 * already exist, e.g.
+	 * {@code INSERT OR IGNORE INTO foo_bar (foo_id_1, bar_id_2) SELECT ?, ? UNION ALL SELECT ?, ?}.
+	 * The keys of each row are bound in table column order.
+	 *
+	 * @param rel
+	 *            the {@code ManyToManyRelationship} to insert rows for
+	 * @param rowCount
+	 *            the number of rows to be bound to the statement
+	 * @return SQL insert statement
+	 */
+	String createManyToManyInsertStatement(ManyToManyRelationship rel, int rowCount);
+
+	/**
+	 * Generates a parameterized SQL statement which deletes rows linking an
+	 * entity of the given {@link Class} to several related entities in the
+	 * given {@link ManyToManyRelationship}'s table, e.g.
+	 * {@code DELETE FROM foo_bar WHERE foo_id_1 = ? AND bar_id_2 IN (?, ?)}.
+	 * The owning entity's key is bound first, followed by the keys of the
+	 * related entities.
+	 *
+	 * @param c
+	 *            the {@code Class} of the relationship owner
+	 * @param rel
+	 *            the {@code ManyToManyRelationship} to delete rows for
+	 * @param keyCount
+	 *            the number of related keys to be bound to the statement
+	 * @return SQL delete statement
+	 */
+	String createManyToManyDeleteStatement(Class<?> c, ManyToManyRelationship rel, int keyCount);
+
 }
@@ -22,7 +22,7 @@ package com.clarionmedia.infinitum.orm.sql;
  * </p>
  *
  * @author Tyler Treat
- * @version 1.0.6 04/02/13
+ * @version 1.1.0 09/05/13
  * @since 1.0
  */
 public class SqlConstants {
@@ -47,6 +47,18 @@ public class SqlConstants {
     public static final String SET = "SET";
     public static final String ORDER_BY = "ORDER BY";
     public static final String COLLATE_NOCASE = "COLLATE NOCASE";
+    public static final String VALUES = "VALUES";
+    public static final String DEFAULT_VALUES = "DEFAULT VALUES";
+    public static final String SELECT = "SELECT";
+    public static final String FROM = "FROM";
+    public static final String UNION_ALL = "UNION ALL";
+    public static final String AS = "AS";
+    public static final String LEFT_JOIN = "LEFT JOIN";
+    public static final String ON = "ON";
+
+    // SQLite limits
+    public static final int MAX_BIND_PARAMETERS = 999;
+    public static final int MAX_COMPOUND_SELECT_TERMS = 500;
 
     // SQL Operators
     public static final String OP_EQUALS = "=";
@@ -65,7 +77,13 @@ public class SqlConstants {
     public static final String SELECT_ALL_FROM = "SELECT * FROM ";
     public static final String SELECT_COUNT_FROM = "SELECT count(*) FROM ";
     public static final String ALIASED_SELECT_ALL_FROM = "SELECT %s.* FROM ";
+    public static final String MANY_TO_MANY_OWNER_KEY = "infinitum_owner_key";
+    public static final String FETCH_ALIAS = "fetch%d";
     public static final String DELETE_FROM = "DELETE FROM ";
+    public static final String INSERT_INTO = "INSERT INTO ";
+    public static final String INSERT_OR_IGNORE_INTO = "INSERT OR IGNORE INTO ";
     public static final String DELETE_FROM_WHERE = "DELETE FROM %s WHERE ";
+    public static final String SELECT_CHANGES = "SELECT changes()";
+    public static final String SELECT_LAST_INSERT_ROWID = "SELECT last_insert_rowid()";
 
 }
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.sql;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p> Encapsulates a parameterized SQL {@link String} along with the ordered arguments bound to its {@code ?}
+ * placeholders. Since the SQL no longer depends on the values being queried, statements of the same shape can be
+ * reused from SQLite's compiled statement cache. </p>
+ *
+ * @author Tyler Treat
+ * @version 1.1.0 07/22/13
+ * @since 1.1.0
+ */
+public class SqlStatement {
+
+    private final String mSql;
+    private final Object[] mArgs;
+
+    /**
+     * Constructs a new {@code SqlStatement}.
+     *
+     * @param sql  the parameterized SQL
+     * @param args the arguments to bind, in placeholder order
+     */
+    public SqlStatement(String sql, List<Object> args) {
+        mSql = sql;
+        mArgs = args.toArray();
+    }
+
+    /**
+     * Returns the parameterized SQL.
+     *
+     * @return SQL {@code String}
+     */
+    public String getSql() {
+        return mSql;
+    }
+
+    /**
+     * Returns the arguments to bind, in placeholder order, for use with {@code SQLiteDatabase#execSQL(String,
+     * Object[])}.
+     *
+     * @return bind arguments
+     */
+    public Object[] getArgs() {
+        return mArgs;
+    }
+
+    /**
+     * Returns the arguments to bind as {@link String} values, in placeholder order, for use with {@code
+     * SQLiteDatabase#rawQuery(String, String[])}. Column affinity converts them back when compared against numeric
+     * columns, and {@link Boolean} values are bound as {@code 1} or {@code 0} to match how they are stored.
+     *
+     * @return bind arguments as {@code Strings}
+     */
+    public String[] getStringArgs() {
+        String[] ret = new String[mArgs.length];
+        for (int i = 0; i < mArgs.length; i++) {
+            Object arg = mArgs[i];
+            if (arg instanceof Boolean)
+                ret[i] = (Boolean) arg ? "1" : "0";
+            else
+                ret[i] = arg == null ? null : arg.toString();
+        }
+        return ret;
+    }
+
+    /**
+     * Indicates if this {@code SqlStatement} has any arguments to bind.
+     *
+     * @return {@code true} if there are bind arguments, {@code false} if not
+     */
+    public boolean hasArgs() {
+        return mArgs.length > 0;
+    }
+
+    @Override
+    public String toString() {
+        return mSql + " " + Arrays.toString(mArgs);
+    }
+
+}
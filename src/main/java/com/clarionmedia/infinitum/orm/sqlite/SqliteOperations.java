@@ -17,11 +17,13 @@
 package com.clarionmedia.infinitum.orm.sqlite;
 
 import java.lang.reflect.Field;
+import java.util.Collection;
 import java.util.Map;
 
 import android.database.Cursor;
 import android.database.SQLException;
 
+import com.clarionmedia.infinitum.exception.InfinitumRuntimeException;
 import com.clarionmedia.infinitum.orm.DatastoreOperations;
 import com.clarionmedia.infinitum.orm.exception.SQLGrammarException;
 import com.clarionmedia.infinitum.orm.persistence.TypeAdapter;
@@ -106,6 +108,36 @@ public interface SqliteOperations extends DatastoreOperations {
 	 */
 	boolean isAutocommit();
 
+	/**
+	 * Persists the given collection of {@code Objects} to the database. Models
+	 * are grouped by type so that a single compiled insert statement is reused
+	 * for every row of a table, and rows are inserted in chunks, each of which
+	 * is wrapped in its own transaction.
+	 * 
+	 * @param models
+	 *            the {@code Objects} to persist to the database
+	 * @return the row IDs of the inserted records, in the iteration order of
+	 *         {@code models}, with -1 indicating a failed insert and 0
+	 *         indicating a model which had already been persisted by a cascade
+	 * @throws InfinitumRuntimeException
+	 *             if one or more of the models is marked transient
+	 */
+	long[] saveAll(Collection<?> models) throws InfinitumRuntimeException;
+
+	/**
+	 * Deletes the given collection of {@code Objects} from the database.
+	 * Models are grouped by type and deleted by primary key in chunks sized to
+	 * SQLite's bind parameter limit, along with their many-to-many
+	 * relationships.
+	 * 
+	 * @param models
+	 *            the {@code Objects} to delete from the database
+	 * @return the number of records deleted
+	 * @throws InfinitumRuntimeException
+	 *             if one or more of the models is marked transient
+	 */
+	int deleteAll(Collection<?> models) throws InfinitumRuntimeException;
+
 	/**
 	 * Executes the given SQL query on the database for a result.
 	 * 
@@ -117,6 +149,20 @@ public interface SqliteOperations extends DatastoreOperations {
 	 */
 	Cursor executeForResult(String sql) throws SQLGrammarException;
 
+	/**
+	 * Executes the given parameterized SQL query on the database for a
+	 * result, binding the given arguments to its {@code ?} placeholders.
+	 * 
+	 * @param sql
+	 *            the parameterized SQL query to execute
+	 * @param args
+	 *            the arguments to bind, in placeholder order
+	 * @return {@link Cursor} containing the results of the query
+	 * @throws SQLGrammarException
+	 *             if the SQL was formatted incorrectly
+	 */
+	Cursor executeForResult(String sql, String[] args) throws SQLGrammarException;
+
 	/**
 	 * Registers the given {@link TypeAdapter} for the specified {@link Class}
 	 * with this {@code SqliteMapper} instance. The {@code TypeAdapter} allows a
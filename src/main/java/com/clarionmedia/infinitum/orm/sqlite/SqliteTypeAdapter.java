@@ -17,6 +17,8 @@
 package com.clarionmedia.infinitum.orm.sqlite;
 
 import android.content.ContentValues;
+import com.clarionmedia.infinitum.orm.ResultSet;
+import com.clarionmedia.infinitum.orm.persistence.FieldAccessor;
 import com.clarionmedia.infinitum.orm.persistence.TypeAdapter;
 import com.clarionmedia.infinitum.orm.persistence.TypeResolutionPolicy.SqliteDataType;
 
@@ -70,6 +72,31 @@ public abstract class SqliteTypeAdapter<T> implements TypeAdapter<T> {
 	 */
 	public abstract void mapObjectToColumn(Object value, String column, ContentValues values);
 
+	/**
+	 * Maps a datastore value to a domain model's field through the given
+	 * {@link FieldAccessor}. Adapters for primitive types should override this
+	 * to use the accessor's typed methods. By default, this delegates to
+	 * {@link #mapToObject(ResultSet, int, java.lang.reflect.Field, Object)}.
+	 * 
+	 * @param result
+	 *            the {@link ResultSet} where the column is being mapped from
+	 * @param index
+	 *            the index of the column holding the data to be mapped
+	 * @param accessor
+	 *            the {@code FieldAccessor} for the field being mapped to
+	 * @param model
+	 *            the model which the field is populating
+	 * @throws IllegalArgumentException
+	 *             if the mapped value is not compatible with the declaring
+	 *             class
+	 * @throws IllegalAccessException
+	 *             if the field is not accessible
+	 */
+	public void mapToObject(ResultSet result, int index, FieldAccessor accessor, Object model)
+			throws IllegalArgumentException, IllegalAccessException {
+		mapToObject(result, index, accessor.getField(), model);
+	}
+
 	/**
 	 * Sets the {@link SqliteDataType} for this {@code SqliteTypeAdapter}. This
 	 * value indicates the data type of the column being mapped to.
@@ -127,4 +127,52 @@ public class SqliteUtils {
 		return sb.toString();
 	}
 
+	/**
+	 * Generates a parameterized "where clause" {@link String} matching rows of
+	 * the given persistent {@link Class} by primary key. Note that the actual
+	 * {@code String} "where" is not included with the resulting output.
+	 * 
+	 * <p>
+	 * For example, passing a {@code Class} {@code Foobar} which has a primary
+	 * key {@code foo} will result in the where clause {@code foo = ?}. The
+	 * primary key value is bound separately, meaning every lookup of the same
+	 * {@code Class} shares the same SQL.
+	 * </p>
+	 * 
+	 * @param c
+	 *            the {@code Class} of the model
+	 * @return parameterized where clause {@code String} for specified
+	 *         {@code Class}
+	 */
+	public String getPreparedWhereClause(Class<?> c) {
+		Field pk = mPersistencePolicy.getPrimaryKeyField(c);
+		return mPersistencePolicy.getFieldColumnName(pk) + " = ?";
+	}
+
+	/**
+	 * Returns the bind arguments for the where clause generated by
+	 * {@link #getPreparedWhereClause(Class)} for the given persistent
+	 * {@link Object}.
+	 * 
+	 * @param model
+	 *            the model to retrieve the where arguments for
+	 * @return where arguments for specified {@code Object}
+	 * @throws InfinitumRuntimeException
+	 *             if the model's primary key is invalid
+	 */
+	public String[] getWhereArgs(Object model) throws InfinitumRuntimeException {
+		if (AbstractProxy.isAopProxy(model)) {
+			model = AbstractProxy.getProxy(model).getTarget();
+		}
+		Field pk = mPersistencePolicy.getPrimaryKeyField(model.getClass());
+		pk.setAccessible(true);
+		Serializable pkVal = null;
+		try {
+			pkVal = (Serializable) mClassReflector.getFieldValue(model, pk);
+		} catch (ClassCastException e) {
+			throw new ModelConfigurationException("Invalid primary key specified for type '" + model.getClass().getName() + "'.");
+		}
+		return new String[] { String.valueOf(pkVal) };
+	}
+
 }
@@ -20,6 +20,8 @@ import android.database.Cursor;
 import com.clarionmedia.infinitum.exception.InfinitumRuntimeException;
 import com.clarionmedia.infinitum.orm.context.InfinitumOrmContext;
 import com.clarionmedia.infinitum.orm.criteria.AssociationCriteria;
+import com.clarionmedia.infinitum.orm.criteria.CriteriaIterator;
+import com.clarionmedia.infinitum.orm.criteria.CriteriaPage;
 import com.clarionmedia.infinitum.orm.criteria.criterion.Criterion;
 import com.clarionmedia.infinitum.orm.relationship.ModelRelationship;
 import com.clarionmedia.infinitum.orm.sql.SqlBuilder;
@@ -32,7 +34,7 @@ import java.util.List;
  * <p>Implementation of {@link AssociationCriteria} for SQLite queries.</p>
  *
  * @author Tyler Treat
- * @version 1.1.0 06/17/13
+ * @version 1.1.0 09/05/13
  * @since 1.0
  */
 public class SqliteAssociationCriteria extends SqliteCriteria<Object> implements AssociationCriteria<Object> {
@@ -81,24 +83,37 @@ public class SqliteAssociationCriteria extends SqliteCriteria<Object> implements
     @Override
     public List<Object> list() {
         SqliteCriteria<?> criteria = getRootCriteria();
+        criteria.checkEntityQuery();
+        if (!criteria.getFetches().isEmpty() || criteria.isCacheable())
+            return new ArrayList<Object>(criteria.list());
 
-        Cursor result = criteria.mSession.executeForResult(criteria.getRepresentation());
+        Cursor result = criteria.executeQuery();
         List<Object> ret = new ArrayList<Object>(result.getCount());
         if (result.getCount() == 0) {
             result.close();
             return ret;
         }
+        // Collections configured with a batch size are fetched for all results at once
+        criteria.mModelFactory.beginBatch();
+        boolean isCreated = false;
         try {
-            while (result.moveToNext()) {
-                Object entity = criteria.mModelFactory.createFromCursor(result, criteria.mEntityClass);
-                ret.add(entity);
-                // Cache results
-                criteria.mSession.cache(criteria.mPersistencePolicy.computeModelHash(entity), entity);
-            }
-            return ret;
+            // Results are cached by the model factory
+            while (result.moveToNext())
+                ret.add(criteria.mModelFactory.createFromCursor(result, criteria.mEntityClass));
+            isCreated = true;
         } finally {
             result.close();
+            if (!isCreated)
+                criteria.mModelFactory.cancelBatch();
         }
+        criteria.mModelFactory.endBatch();
+        return ret;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public CriteriaIterator<Object> iterate(boolean cacheResults) throws InfinitumRuntimeException {
+        return (CriteriaIterator<Object>) getRootCriteria().iterate(cacheResults);
     }
 
     @Override
@@ -109,8 +124,11 @@ public class SqliteAssociationCriteria extends SqliteCriteria<Object> implements
     @Override
     public Object unique() throws InfinitumRuntimeException {
         SqliteCriteria<?> criteria = getRootCriteria();
+        criteria.checkEntityQuery();
+        if (!criteria.getFetches().isEmpty() || criteria.isCacheable())
+            return criteria.unique();
 
-        Cursor result = criteria.mSession.executeForResult(criteria.getRepresentation());
+        Cursor result = criteria.executeQuery();
         if (result.getCount() > 1) {
             throw new InfinitumRuntimeException(String.format("Criteria query for '%s' specified unique result but " +
                     "there were %d results.",
@@ -121,10 +139,7 @@ public class SqliteAssociationCriteria extends SqliteCriteria<Object> implements
         }
         result.moveToFirst();
         try {
-            Object ret = criteria.mModelFactory.createFromCursor(result, criteria.mEntityClass);
-            // Cache result
-            criteria.mSession.cache(criteria.mPersistencePolicy.computeModelHash(ret), ret);
-            return ret;
+            return criteria.mModelFactory.createFromCursor(result, criteria.mEntityClass);
         } finally {
             result.close();
         }
@@ -148,11 +163,83 @@ public class SqliteAssociationCriteria extends SqliteCriteria<Object> implements
         return this;
     }
 
+    @Override
+    public AssociationCriteria<Object> select(String... properties) throws InfinitumRuntimeException {
+        getRootCriteria().select(properties);
+        return this;
+    }
+
+    @Override
+    public List<String> getProjections() {
+        return getRootCriteria().getProjections();
+    }
+
+    @Override
+    public List<Object[]> listTuples() throws InfinitumRuntimeException {
+        return getRootCriteria().listTuples();
+    }
+
+    @Override
+    public <E> List<E> listAs(Class<E> type) throws InfinitumRuntimeException {
+        return getRootCriteria().listAs(type);
+    }
+
+    @Override
+    public long[] listLongs() throws InfinitumRuntimeException {
+        return getRootCriteria().listLongs();
+    }
+
+    @Override
+    public AssociationCriteria<Object> seek(Object... keys) {
+        getRootCriteria().seek(keys);
+        return this;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public AssociationCriteria<Object> after(Object entity) throws InfinitumRuntimeException {
+        ((SqliteCriteria<Object>) getRootCriteria()).after(entity);
+        return this;
+    }
+
+    @Override
+    public AssociationCriteria<Object> resume(String continuationToken) throws InfinitumRuntimeException {
+        getRootCriteria().resume(continuationToken);
+        return this;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public CriteriaPage<Object> listPage(int pageSize) {
+        return (CriteriaPage<Object>) getRootCriteria().listPage(pageSize);
+    }
+
+    @Override
+    public boolean isKeysetPaged() {
+        return getRootCriteria().isKeysetPaged();
+    }
+
+    @Override
+    public List<Object> getSeekKeys() {
+        return getRootCriteria().getSeekKeys();
+    }
+
+    @Override
+    public AssociationCriteria<Object> cacheable(boolean cacheable) {
+        getRootCriteria().cacheable(cacheable);
+        return this;
+    }
+
+    @Override
+    public boolean isCacheable() {
+        return getRootCriteria().isCacheable();
+    }
+
     @Override
     public long count() {
         SqliteCriteria<?> criteria = getRootCriteria();
 
-        Cursor result = criteria.mSession.executeForResult(criteria.mSqlBuilder.createCountQuery(criteria));
+        Cursor result = criteria.executeCountQuery();
         result.moveToFirst();
         long ret = result.getLong(0);
         result.close();
@@ -162,7 +249,7 @@ public class SqliteAssociationCriteria extends SqliteCriteria<Object> implements
     @Override
     public Cursor cursor() {
         SqliteCriteria<?> criteria = getRootCriteria();
-        return criteria.mSession.executeForResult(criteria.getRepresentation());
+        return criteria.executeQuery();
     }
 
     private SqliteCriteria<?> getRootCriteria() {
@@ -32,17 +32,19 @@ import com.clarionmedia.infinitum.orm.persistence.TypeResolutionPolicy.SqliteDat
 import com.clarionmedia.infinitum.orm.relationship.*;
 import com.clarionmedia.infinitum.orm.sql.SqlBuilder;
 import com.clarionmedia.infinitum.orm.sql.SqlConstants;
+import com.clarionmedia.infinitum.orm.sql.SqlStatement;
 import com.clarionmedia.infinitum.reflection.ClassReflector;
 
 import java.io.Serializable;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
  * <p> Implementation of {@link SqlBuilder} for interacting with a SQLite database. </p>
  *
  * @author Tyler Treat
- * @version 1.1.0 06/17/13
+ * @version 1.1.0 09/05/13
  * @since 1.0
  */
 public class SqliteBuilder implements SqlBuilder {
@@ -110,75 +112,39 @@ public class SqliteBuilder implements SqlBuilder {
 
     @Override
     public String createQuery(Criteria<?> criteria) {
-        return createQuery(criteria, SqlConstants.SELECT_ALL_FROM);
+        if (!criteria.getProjections().isEmpty())
+            return createQuery(criteria, createProjectionSelect(criteria), null);
+        String sql = createQuery(criteria, SqlConstants.SELECT_ALL_FROM, null);
+        return criteria.getFetches().isEmpty() ? sql : createFetchQuery(criteria, sql);
+    }
+
+    @Override
+    public SqlStatement createPreparedQuery(Criteria<?> criteria) {
+        List<Object> args = new ArrayList<Object>();
+        if (!criteria.getProjections().isEmpty())
+            return new SqlStatement(createQuery(criteria, createProjectionSelect(criteria), args), args);
+        String sql = createQuery(criteria, SqlConstants.SELECT_ALL_FROM, args);
+        if (!criteria.getFetches().isEmpty())
+            sql = createFetchQuery(criteria, sql);
+        return new SqlStatement(sql, args);
     }
 
     @Override
     public String createCountQuery(Criteria<?> criteria) {
-        Class<?> c = criteria.getEntityClass();
-        StringBuilder query = new StringBuilder(SqlConstants.SELECT_COUNT_FROM).append(mPersistencePolicy
-                .getModelTableName(c));
-        String prefix = " WHERE ";
-        for (Criterion criterion : criteria.getCriterion()) {
-            query.append(prefix);
-            prefix = ' ' + SqlConstants.AND + ' ';
-            query.append(criterion.toSql(criteria));
-        }
-        int limit = criteria.getLimit();
-        if (limit > 0)
-            query.append(' ').append(SqlConstants.LIMIT).append(' ').append(limit);
-        if (criteria.getOffset() > 0) {
-            if (limit == 0)
-                query.append(' ').append(SqlConstants.LIMIT).append(' ').append(Integer.MAX_VALUE);
-            query.append(' ').append(SqlConstants.OFFSET).append(' ').append(criteria.getOffset());
-        }
-        return query.toString();
+        return createCountQuery(criteria, null);
+    }
+
+    @Override
+    public SqlStatement createPreparedCountQuery(Criteria<?> criteria) {
+        List<Object> args = new ArrayList<Object>();
+        String sql = createCountQuery(criteria, args);
+        return new SqlStatement(sql, args);
     }
 
     @Override
     public String createManyToManyJoinQuery(ManyToManyRelationship rel, Serializable id, Class<?> direction)
             throws InfinitumRuntimeException {
-        if (!rel.contains(direction))
-            throw new InfinitumRuntimeException(String.format("'%s' is not a valid direction for relationship " +
-                    "'%s'<=>'%s'.",
-                    direction.getName(), rel.getFirstType().getName(), rel.getSecondType().getName()));
-        StringBuilder query = new StringBuilder(String.format(SqlConstants.ALIASED_SELECT_ALL_FROM, 'x')).append(
-                mPersistencePolicy.getModelTableName(rel.getFirstType())).append(' ');
-        if (direction == rel.getFirstType())
-            query.append("x, ");
-        else
-            query.append("y, ");
-        query.append(mPersistencePolicy.getModelTableName(rel.getSecondType())).append(' ');
-        if (direction == rel.getSecondType() && rel.getFirstType() != rel.getSecondType())
-            query.append("x, ");
-        else
-            query.append("y, ");
-        query.append(rel.getTableName()).append(" z ").append(SqlConstants.WHERE).append(' ').append("z.");
-        if (direction == rel.getFirstType()) {
-            query.append(mPersistencePolicy.getModelTableName(rel.getFirstType())).append('_')
-                    .append(mPersistencePolicy.getFieldColumnName(rel.getFirstField())).append("_1").append(" = ")
-                    .append("x.")
-                    .append(mPersistencePolicy.getFieldColumnName(rel.getFirstField())).append(' ').append
-                    (SqlConstants.AND).append(" z.")
-                    .append(mPersistencePolicy.getModelTableName(rel.getSecondType())).append('_')
-                    .append(mPersistencePolicy.getFieldColumnName(rel.getSecondField())).append("_2").append(" = ")
-                    .append("y.")
-                    .append(mPersistencePolicy.getFieldColumnName(rel.getSecondField())).append(' ').append
-                    (SqlConstants.AND).append(" y.")
-                    .append(mPersistencePolicy.getFieldColumnName(rel.getSecondField())).append(" = ");
-        } else {
-            query.append(mPersistencePolicy.getModelTableName(rel.getSecondType())).append('_')
-                    .append(mPersistencePolicy.getFieldColumnName(rel.getSecondField())).append("_2").append(" = ")
-                    .append("x.")
-                    .append(mPersistencePolicy.getFieldColumnName(rel.getSecondField())).append(' ').append
-                    (SqlConstants.AND).append(" z.")
-                    .append(mPersistencePolicy.getModelTableName(rel.getFirstType())).append('_')
-                    .append(mPersistencePolicy.getFieldColumnName(rel.getFirstField())).append("_1").append(" = ")
-                    .append("y.")
-                    .append(mPersistencePolicy.getFieldColumnName(rel.getFirstField())).append(' ').append
-                    (SqlConstants.AND).append(" y.")
-                    .append(mPersistencePolicy.getFieldColumnName(rel.getFirstField())).append(" = ");
-        }
+        StringBuilder query = createManyToManyJoinQueryPrefix(rel, direction);
         switch (mMapper.getSqliteDataType(id)) {
             case TEXT:
                 query.append("'").append(id).append("'");
@@ -189,6 +155,36 @@ public class SqliteBuilder implements SqlBuilder {
         return query.toString();
     }
 
+    @Override
+    public SqlStatement createPreparedManyToManyJoinQuery(ManyToManyRelationship rel, Serializable id,
+                                                          Class<?> direction) throws InfinitumRuntimeException {
+        List<Object> args = new ArrayList<Object>();
+        args.add(id);
+        return new SqlStatement(createManyToManyJoinQueryPrefix(rel, direction).append('?').toString(), args);
+    }
+
+    @Override
+    public SqlStatement createPreparedManyToManyBatchJoinQuery(ManyToManyRelationship rel, List<Serializable> ids,
+                                                               Class<?> direction) throws InfinitumRuntimeException {
+        if (!rel.contains(direction))
+            throw new InfinitumRuntimeException(String.format("'%s' is not a valid direction for relationship " +
+                    "'%s'<=>'%s'.",
+                    direction.getName(), rel.getFirstType().getName(), rel.getSecondType().getName()));
+        boolean isFirst = direction == rel.getFirstType();
+        Field keyField = isFirst ? rel.getFirstField() : rel.getSecondField();
+        // The owner keys are in the relationship table, so the owners' table doesn't need to be joined
+        StringBuilder query = new StringBuilder(SqlConstants.SELECT).append(" x.*, z.")
+                .append(getManyToManyColumn(rel, !isFirst)).append(' ').append(SqlConstants.AS).append(' ')
+                .append(SqlConstants.MANY_TO_MANY_OWNER_KEY).append(' ').append(SqlConstants.FROM).append(' ')
+                .append(mPersistencePolicy.getModelTableName(direction)).append(" x, ").append(rel.getTableName())
+                .append(" z ").append(SqlConstants.WHERE).append(" z.").append(getManyToManyColumn(rel, isFirst))
+                .append(" = x.").append(mPersistencePolicy.getFieldColumnName(keyField)).append(' ')
+                .append(SqlConstants.AND).append(" z.").append(getManyToManyColumn(rel, !isFirst)).append(' ')
+                .append(SqlConstants.IN).append(" (");
+        appendBindParameters(query, ids.size());
+        return new SqlStatement(query.append(')').toString(), new ArrayList<Object>(ids));
+    }
+
     @Override
     public String createDeleteStaleRelationshipQuery(ManyToManyRelationship rel, Object model,
                                                      List<Serializable> relatedKeys) {
@@ -350,6 +346,115 @@ public class SqliteBuilder implements SqlBuilder {
         return update.toString();
     }
 
+    @Override
+    public SqlStatement createPreparedUpdateOneToOneForeignKeyQuery(OneToOneRelationship relationship, Object model,
+                                                                    Object related) {
+        return createPreparedUpdateQuery(model, related, relationship.getColumn());
+    }
+
+    @Override
+    public SqlStatement createPreparedManyToManyDeleteQuery(Object obj, ManyToManyRelationship rel) {
+        StringBuilder query = new StringBuilder(String.format(SqlConstants.DELETE_FROM_WHERE, rel.getTableName()));
+        if (obj.getClass() == rel.getFirstType())
+            query.append(mPersistencePolicy.getModelTableName(rel.getFirstType())).append('_').append
+                    (mPersistencePolicy.getFieldColumnName(rel.getFirstField())).append("_1");
+        else
+            query.append(mPersistencePolicy.getModelTableName(rel.getSecondType())).append('_').append
+                    (mPersistencePolicy.getFieldColumnName(rel.getSecondField())).append("_2");
+        query.append(" = ?");
+        List<Object> args = new ArrayList<Object>();
+        args.add(mPersistencePolicy.getPrimaryKey(obj));
+        return new SqlStatement(query.toString(), args);
+    }
+
+    @Override
+    public SqlStatement createPreparedUpdateQuery(Object model, Object related, String column) {
+        StringBuilder update = new StringBuilder(SqlConstants.UPDATE).append(" ").append(
+                mPersistencePolicy.getModelTableName(model.getClass()));
+        update.append(" ").append(SqlConstants.SET).append(" ").append(column).append(" = ? ")
+                .append(SqlConstants.WHERE).append(" ")
+                .append(mPersistencePolicy.getFieldColumnName(mPersistencePolicy.getPrimaryKeyField(model.getClass())
+                )).append(" = ?");
+        List<Object> args = new ArrayList<Object>();
+        args.add(mPersistencePolicy.getPrimaryKey(related));
+        args.add(mPersistencePolicy.getPrimaryKey(model));
+        return new SqlStatement(update.toString(), args);
+    }
+
+    @Override
+    public String createInsertStatement(String tableName, List<String> columns) {
+        return createInsertStatement(SqlConstants.INSERT_INTO, tableName, columns);
+    }
+
+    @Override
+    public String createUpsertStatement(String tableName, List<String> columns) {
+        // SQLite versions shipped with older Android releases predate ON CONFLICT ... DO UPDATE, and INSERT OR
+        // REPLACE would delete the existing row, so conflicting rows are left to a subsequent update
+        return createInsertStatement(SqlConstants.INSERT_OR_IGNORE_INTO, tableName, columns);
+    }
+
+    @Override
+    public String createPrimaryKeyInClause(Class<?> c, int keyCount) {
+        StringBuilder clause = new StringBuilder(mPersistencePolicy.getFieldColumnName(mPersistencePolicy
+                .getPrimaryKeyField(c)));
+        clause.append(" ").append(SqlConstants.IN).append(" (");
+        appendBindParameters(clause, keyCount);
+        return clause.append(")").toString();
+    }
+
+    @Override
+    public String createUpdateForeignKeyStatement(Class<?> c, String column, int keyCount) {
+        StringBuilder update = new StringBuilder(SqlConstants.UPDATE).append(" ")
+                .append(mPersistencePolicy.getModelTableName(c)).append(" ").append(SqlConstants.SET).append(" ")
+                .append(column).append(" = ? ").append(SqlConstants.WHERE).append(" ");
+        return update.append(createPrimaryKeyInClause(c, keyCount)).toString();
+    }
+
+    @Override
+    public String createManyToManyInClause(Class<?> c, ManyToManyRelationship rel, int keyCount) {
+        StringBuilder clause = new StringBuilder();
+        if (c == rel.getFirstType())
+            clause.append(mPersistencePolicy.getModelTableName(rel.getFirstType())).append('_').append
+                    (mPersistencePolicy.getFieldColumnName(rel.getFirstField())).append("_1");
+        else
+            clause.append(mPersistencePolicy.getModelTableName(rel.getSecondType())).append('_').append
+                    (mPersistencePolicy.getFieldColumnName(rel.getSecondField())).append("_2");
+        clause.append(" ").append(SqlConstants.IN).append(" (");
+        appendBindParameters(clause, keyCount);
+        return clause.append(")").toString();
+    }
+
+    @Override
+    public String createManyToManyKeysQuery(Class<?> c, ManyToManyRelationship rel) {
+        boolean isFirst = c == rel.getFirstType();
+        return SqlConstants.SELECT + " " + getManyToManyColumn(rel, !isFirst) + " " + SqlConstants.FROM + " " +
+                rel.getTableName() + " " + SqlConstants.WHERE + " " + getManyToManyColumn(rel, isFirst) + " = ?";
+    }
+
+    @Override
+    public String createManyToManyInsertStatement(ManyToManyRelationship rel, int rowCount) {
+        // Multi-row VALUES lists aren't supported by the SQLite versions shipped with older Android releases
+        StringBuilder insert = new StringBuilder(SqlConstants.INSERT_OR_IGNORE_INTO).append(rel.getTableName())
+                .append(" (").append(getManyToManyColumn(rel, true)).append(", ")
+                .append(getManyToManyColumn(rel, false)).append(")");
+        for (int i = 0; i < rowCount; i++) {
+            if (i > 0)
+                insert.append(" ").append(SqlConstants.UNION_ALL);
+            insert.append(" ").append(SqlConstants.SELECT).append(" ?, ?");
+        }
+        return insert.toString();
+    }
+
+    @Override
+    public String createManyToManyDeleteStatement(Class<?> c, ManyToManyRelationship rel, int keyCount) {
+        boolean isFirst = c == rel.getFirstType();
+        StringBuilder delete = new StringBuilder(String.format(SqlConstants.DELETE_FROM_WHERE, rel.getTableName()))
+                .append(getManyToManyColumn(rel, isFirst)).append(" = ? ").append(SqlConstants.AND).append(" ")
+                .append(getManyToManyColumn(rel, !isFirst)).append(" ").append(SqlConstants.IN).append(" (");
+        appendBindParameters(delete, keyCount);
+        return delete.append(")").toString();
+    }
+
     /**
      * Returns a SQL fragment which is a query discriminator for the given {@link AssociationCriteria}. This is used to
      * query on entity associations.
@@ -359,6 +464,11 @@ public class SqliteBuilder implements SqlBuilder {
      * @return SQL fragment
      */
     public String getAssociationCriteriaDiscriminator(Class<?> parentType, AssociationCriteria<?> criteria) {
+        return getAssociationCriteriaDiscriminator(parentType, criteria, null);
+    }
+
+    private String getAssociationCriteriaDiscriminator(Class<?> parentType, AssociationCriteria<?> criteria,
+                                                       List<Object> args) {
         ModelRelationship relationship = criteria.getRelationship();
         StringBuilder sb = new StringBuilder();
 
@@ -372,20 +482,20 @@ public class SqliteBuilder implements SqlBuilder {
             case OneToOne:
                 OneToOneRelationship oto = (OneToOneRelationship) relationship;
                 if (oto.getOwner() == criteria.getEntityClass()) {
-                    appendDiscriminatorForFKRelationshipSlave(sb, oto, parentType, criteria);
+                    appendDiscriminatorForFKRelationshipSlave(sb, oto, parentType, criteria, args);
                 } else {
-                    appendDiscriminatorForFKRelationshipMaster(sb, relationshipField, pkCol, criteria);
+                    appendDiscriminatorForFKRelationshipMaster(sb, relationshipField, pkCol, criteria, args);
                 }
                 break;
             case ManyToOne:
-                appendDiscriminatorForFKRelationshipMaster(sb, relationshipField, pkCol, criteria);
+                appendDiscriminatorForFKRelationshipMaster(sb, relationshipField, pkCol, criteria, args);
                 break;
             case OneToMany:
                 OneToManyRelationship otm = (OneToManyRelationship) relationship;
                 if (otm.getOwner() == criteria.getEntityClass()) {
-                    appendDiscriminatorForFKRelationshipSlave(sb, otm, parentType, criteria);
+                    appendDiscriminatorForFKRelationshipSlave(sb, otm, parentType, criteria, args);
                 } else {
-                    appendDiscriminatorForFKRelationshipMaster(sb, relationshipField, pkCol, criteria);
+                    appendDiscriminatorForFKRelationshipMaster(sb, relationshipField, pkCol, criteria, args);
                 }
                 break;
             case ManyToMany:
@@ -407,7 +517,7 @@ public class SqliteBuilder implements SqlBuilder {
                 sb.append(parentPkCol).append(" ").append(SqlConstants.IN).append(" (SELECT ").append(mtmParent)
                         .append(" FROM ").append(mtm.getTableName()).append(" ").append(SqlConstants.WHERE).append(" " +
                         "").append(mtmChild).append(" ").append(SqlConstants.IN).append(" (");
-                subQuery = createQuery(criteria, "SELECT " + pkCol + " FROM ");
+                subQuery = createQuery(criteria, "SELECT " + pkCol + " FROM ", args);
                 sb.append(subQuery).append("))");
                 break;
         }
@@ -416,24 +526,281 @@ public class SqliteBuilder implements SqlBuilder {
     }
 
     private void appendDiscriminatorForFKRelationshipSlave(StringBuilder sb, ForeignKeyRelationship fkRelationship,
-                                                           Class<?> parentType, AssociationCriteria<?> criteria) {
+                                                           Class<?> parentType, AssociationCriteria<?> criteria,
+                                                           List<Object> args) {
         String fkColumn = fkRelationship.getColumn();
         Field nonOwnerPkField = mPersistencePolicy.getPrimaryKeyField(parentType);
         String nonOwnerPkCol = mPersistencePolicy.getFieldColumnName(nonOwnerPkField);
         sb.append(nonOwnerPkCol).append(" ").append(SqlConstants.IN).append(" (");
-        String subQuery = createQuery(criteria, "SELECT " + fkColumn + " FROM ");
+        String subQuery = createQuery(criteria, "SELECT " + fkColumn + " FROM ", args);
         sb.append(subQuery).append(")");
     }
 
     private void appendDiscriminatorForFKRelationshipMaster(StringBuilder sb, Field relationshipField, String pkCol,
-                                                            AssociationCriteria<?> criteria) {
+                                                            AssociationCriteria<?> criteria, List<Object> args) {
         String fkColumn = mPersistencePolicy.getFieldColumnName(relationshipField);
         sb.append(fkColumn).append(" ").append(SqlConstants.IN).append(" (");
-        String subQuery = createQuery(criteria, "SELECT " + pkCol + " FROM ");
+        String subQuery = createQuery(criteria, "SELECT " + pkCol + " FROM ", args);
         sb.append(subQuery).append(")");
     }
 
-    private String createQuery(Criteria<?> criteria, String selectStatement) {
+    private String createCountQuery(Criteria<?> criteria, List<Object> args) {
+        Class<?> c = criteria.getEntityClass();
+        StringBuilder query = new StringBuilder(SqlConstants.SELECT_COUNT_FROM).append(mPersistencePolicy
+                .getModelTableName(c));
+        String prefix = " WHERE ";
+        for (Criterion criterion : criteria.getCriterion()) {
+            query.append(prefix);
+            prefix = ' ' + SqlConstants.AND + ' ';
+            query.append(args == null ? criterion.toSql(criteria) : criterion.toSql(criteria, args));
+        }
+        int limit = criteria.getLimit();
+        if (limit > 0)
+            query.append(' ').append(SqlConstants.LIMIT).append(' ').append(limit);
+        if (criteria.getOffset() > 0) {
+            if (limit == 0)
+                query.append(' ').append(SqlConstants.LIMIT).append(' ').append(Integer.MAX_VALUE);
+            query.append(' ').append(SqlConstants.OFFSET).append(' ').append(criteria.getOffset());
+        }
+        return query.toString();
+    }
+
+    private String createProjectionSelect(Criteria<?> criteria) {
+        Class<?> c = criteria.getEntityClass();
+        StringBuilder select = new StringBuilder(SqlConstants.SELECT).append(' ');
+        String separator = "";
+        for (String property : criteria.getProjections()) {
+            Field field = mPersistencePolicy.findPersistentField(c, property);
+            if (field == null || mPersistencePolicy.isRelationship(field))
+                throw new InvalidCriteriaException(String.format("Invalid Criteria for type '%s'.", c.getName()));
+            select.append(separator).append(mPersistencePolicy.getFieldColumnName(field));
+            separator = ", ";
+        }
+        return select.append(' ').append(SqlConstants.FROM).append(' ').toString();
+    }
+
+    private String createFetchQuery(Criteria<?> criteria, String query) {
+        Class<?> c = criteria.getEntityClass();
+        String pkCol = mPersistencePolicy.getFieldColumnName(mPersistencePolicy.getPrimaryKeyField(c));
+        StringBuilder select = new StringBuilder(SqlConstants.SELECT).append(" x.*");
+        StringBuilder joins = new StringBuilder();
+        List<String> fetches = criteria.getFetches();
+        for (int i = 0; i < fetches.size(); i++) {
+            Field field = mPersistencePolicy.findPersistentField(c, fetches.get(i));
+            if (field == null || !mPersistencePolicy.isRelationship(field))
+                throw new InvalidCriteriaException(String.format("Invalid Criteria for type '%s'.", c.getName()));
+            ModelRelationship rel = mPersistencePolicy.getRelationship(field);
+            Class<?> associated = rel.getFirstType() == c ? rel.getSecondType() : rel.getFirstType();
+            String alias = String.format(SqlConstants.FETCH_ALIAS, i);
+            String associatedPkCol = mPersistencePolicy.getFieldColumnName(mPersistencePolicy.getPrimaryKeyField
+                    (associated));
+            // Associated columns are aliased so they don't clash with the entity's own columns
+            for (String column : getFetchColumns(associated))
+                select.append(", ").append(alias).append('.').append(column).append(' ').append(SqlConstants.AS)
+                        .append(' ').append(alias).append('_').append(column);
+            joins.append(' ').append(SqlConstants.LEFT_JOIN).append(' ');
+            switch (rel.getRelationType()) {
+                case ManyToOne:
+                    appendFetchJoin(joins, associated, alias, associatedPkCol, "x." + ((ManyToOneRelationship) rel)
+                            .getColumn());
+                    break;
+                case OneToOne:
+                    OneToOneRelationship oto = (OneToOneRelationship) rel;
+                    if (oto.getOwner() == c)
+                        appendFetchJoin(joins, associated, alias, associatedPkCol, "x." + oto.getColumn());
+                    else
+                        appendFetchJoin(joins, associated, alias, oto.getColumn(), "x." + pkCol);
+                    break;
+                case OneToMany:
+                    appendFetchJoin(joins, associated, alias, ((OneToManyRelationship) rel).getColumn(), "x." + pkCol);
+                    break;
+                case ManyToMany:
+                    ManyToManyRelationship mtm = (ManyToManyRelationship) rel;
+                    boolean isFirst = c == mtm.getFirstType();
+                    String joinAlias = alias + "z";
+                    Field keyField = isFirst ? mtm.getFirstField() : mtm.getSecondField();
+                    Field associatedKeyField = isFirst ? mtm.getSecondField() : mtm.getFirstField();
+                    joins.append(mtm.getTableName()).append(' ').append(joinAlias).append(' ')
+                            .append(SqlConstants.ON).append(' ').append(joinAlias).append('.')
+                            .append(getManyToManyColumn(mtm, isFirst)).append(" = x.")
+                            .append(mPersistencePolicy.getFieldColumnName(keyField)).append(' ')
+                            .append(SqlConstants.LEFT_JOIN).append(' ');
+                    appendFetchJoin(joins, associated, alias, mPersistencePolicy.getFieldColumnName
+                            (associatedKeyField), joinAlias + '.' + getManyToManyColumn(mtm, !isFirst));
+                    break;
+            }
+        }
+        // The entity query is a subquery so its restrictions, limit and offset apply to the entities rather than the
+        // joined rows, but its ordering isn't guaranteed to survive the join
+        StringBuilder fetchQuery = select.append(' ').append(SqlConstants.FROM).append(" (").append(query)
+                .append(") x").append(joins);
+        appendOrderings(fetchQuery, criteria, c, "x.");
+        return fetchQuery.toString();
+    }
+
+    private void appendFetchJoin(StringBuilder joins, Class<?> associated, String alias, String column,
+                                 String joinColumn) {
+        joins.append(mPersistencePolicy.getModelTableName(associated)).append(' ').append(alias).append(' ')
+                .append(SqlConstants.ON).append(' ').append(alias).append('.').append(column).append(" = ")
+                .append(joinColumn);
+    }
+
+    private List<String> getFetchColumns(Class<?> c) {
+        // The columns hydrated for an entity, including the foreign keys of its own relationships
+        List<String> columns = new ArrayList<String>();
+        for (Field field : mPersistencePolicy.getPersistentFields(c)) {
+            if (!mPersistencePolicy.isRelationship(field)) {
+                columns.add(mPersistencePolicy.getFieldColumnName(field));
+                continue;
+            }
+            ModelRelationship rel = mPersistencePolicy.getRelationship(field);
+            if (rel instanceof ManyToOneRelationship)
+                columns.add(((ManyToOneRelationship) rel).getColumn());
+            else if (rel instanceof OneToOneRelationship && ((OneToOneRelationship) rel).getOwner() == c)
+                columns.add(((OneToOneRelationship) rel).getColumn());
+        }
+        return columns;
+    }
+
+    private void appendOrderings(StringBuilder query, Criteria<?> criteria, Class<?> c, String qualifier) {
+        boolean isKeysetPaged = criteria.isKeysetPaged();
+        if (criteria.getOrderings().size() == 0 && !isKeysetPaged)
+            return;
+        query.append(' ').append(SqlConstants.ORDER_BY).append(' ');
+        String separator = "";
+        List<Order> orderings = isKeysetPaged ? getKeysetOrderings(criteria, c) : criteria.getOrderings();
+        for (Order ordering : orderings) {
+            query.append(separator);
+            separator = ", ";
+            Field field = mPersistencePolicy.findPersistentField(c, ordering.getProperty());
+            if (field == null)
+                throw new InvalidCriteriaException(String.format("Invalid Criteria for type '%s'.", c.getName()));
+            String column = mPersistencePolicy.getFieldColumnName(field);
+            query.append(qualifier).append(column).append(' ');
+            if (ordering.isIgnoreCase()) {
+                query.append(SqlConstants.COLLATE_NOCASE).append(' ');
+            }
+            query.append(ordering.getOrdering().name());
+        }
+    }
+
+    private List<Order> getKeysetOrderings(Criteria<?> criteria, Class<?> c) {
+        // Keyset paging needs a total ordering, so the primary key breaks ties unless it's already ordered on
+        Field pkField = mPersistencePolicy.getPrimaryKeyField(c);
+        List<Order> orderings = new ArrayList<Order>(criteria.getOrderings().size() + 1);
+        Order.Ordering direction = Order.Ordering.ASC;
+        for (Order ordering : criteria.getOrderings()) {
+            orderings.add(ordering);
+            if (pkField.equals(mPersistencePolicy.findPersistentField(c, ordering.getProperty())))
+                return orderings;
+            direction = ordering.getOrdering();
+        }
+        orderings.add(direction == Order.Ordering.ASC ? Order.asc(pkField.getName()) : Order.desc(pkField.getName()));
+        return orderings;
+    }
+
+    private String createSeekPredicate(Criteria<?> criteria, Class<?> c, List<Object> args) {
+        List<Order> orderings = getKeysetOrderings(criteria, c);
+        List<Object> keys = criteria.getSeekKeys();
+        if (keys.size() != orderings.size())
+            throw new InvalidCriteriaException(String.format("Seek keys for type '%s' must match its orderings " +
+                    "and primary key.", c.getName()));
+        // Row values such as (a, pk) > (?, ?) aren't supported by older SQLite versions, so the comparison is
+        // expanded to a >= ? AND (a > ? OR (a = ? AND pk > ?)), whose leading range can still use an index on a
+        StringBuilder predicate = new StringBuilder();
+        int last = orderings.size() - 1;
+        if (last > 0) {
+            appendSeekComparison(predicate, c, orderings.get(0), getSeekOperator(orderings.get(0), true), keys.get(0),
+                    args);
+            predicate.append(' ').append(SqlConstants.AND).append(' ');
+        }
+        for (int i = 0; i < last; i++) {
+            predicate.append('(');
+            appendSeekComparison(predicate, c, orderings.get(i), getSeekOperator(orderings.get(i), false),
+                    keys.get(i), args);
+            predicate.append(' ').append(SqlConstants.OR).append(" (");
+            appendSeekComparison(predicate, c, orderings.get(i), SqlConstants.OP_EQUALS, keys.get(i), args);
+            predicate.append(' ').append(SqlConstants.AND).append(' ');
+        }
+        appendSeekComparison(predicate, c, orderings.get(last), getSeekOperator(orderings.get(last), false),
+                keys.get(last), args);
+        for (int i = 0; i < last; i++)
+            predicate.append("))");
+        return predicate.toString();
+    }
+
+    private void appendSeekComparison(StringBuilder predicate, Class<?> c, Order ordering, String operator,
+                                      Object key, List<Object> args) {
+        Field field = mPersistencePolicy.findPersistentField(c, ordering.getProperty());
+        if (field == null)
+            throw new InvalidCriteriaException(String.format("Invalid Criteria for type '%s'.", c.getName()));
+        predicate.append(mPersistencePolicy.getFieldColumnName(field)).append(' ');
+        if (ordering.isIgnoreCase())
+            predicate.append(SqlConstants.COLLATE_NOCASE).append(' ');
+        predicate.append(operator).append(' ');
+        if (args != null) {
+            predicate.append('?');
+            args.add(key);
+        } else if (mMapper.isTextColumn(field)) {
+            predicate.append('\'').append(key).append('\'');
+        } else {
+            predicate.append(key);
+        }
+    }
+
+    private String getSeekOperator(Order ordering, boolean inclusive) {
+        if (ordering.getOrdering() == Order.Ordering.ASC)
+            return inclusive ? SqlConstants.OP_GREATER_THAN_EQUAL_TO : SqlConstants.OP_GREATER_THAN;
+        return inclusive ? SqlConstants.OP_LESS_THAN_EQUAL_TO : SqlConstants.OP_LESS_THAN;
+    }
+
+    private StringBuilder createManyToManyJoinQueryPrefix(ManyToManyRelationship rel, Class<?> direction)
+            throws InfinitumRuntimeException {
+        if (!rel.contains(direction))
+            throw new InfinitumRuntimeException(String.format("'%s' is not a valid direction for relationship " +
+                    "'%s'<=>'%s'.",
+                    direction.getName(), rel.getFirstType().getName(), rel.getSecondType().getName()));
+        StringBuilder query = new StringBuilder(String.format(SqlConstants.ALIASED_SELECT_ALL_FROM, 'x')).append(
+                mPersistencePolicy.getModelTableName(rel.getFirstType())).append(' ');
+        if (direction == rel.getFirstType())
+            query.append("x, ");
+        else
+            query.append("y, ");
+        query.append(mPersistencePolicy.getModelTableName(rel.getSecondType())).append(' ');
+        if (direction == rel.getSecondType() && rel.getFirstType() != rel.getSecondType())
+            query.append("x, ");
+        else
+            query.append("y, ");
+        query.append(rel.getTableName()).append(" z ").append(SqlConstants.WHERE).append(' ').append("z.");
+        if (direction == rel.getFirstType()) {
+            query.append(mPersistencePolicy.getModelTableName(rel.getFirstType())).append('_')
+                    .append(mPersistencePolicy.getFieldColumnName(rel.getFirstField())).append("_1").append(" = ")
+                    .append("x.")
+                    .append(mPersistencePolicy.getFieldColumnName(rel.getFirstField())).append(' ').append
+                    (SqlConstants.AND).append(" z.")
+                    .append(mPersistencePolicy.getModelTableName(rel.getSecondType())).append('_')
+                    .append(mPersistencePolicy.getFieldColumnName(rel.getSecondField())).append("_2").append(" = ")
+                    .append("y.")
+                    .append(mPersistencePolicy.getFieldColumnName(rel.getSecondField())).append(' ').append
+                    (SqlConstants.AND).append(" y.")
+                    .append(mPersistencePolicy.getFieldColumnName(rel.getSecondField())).append(" = ");
+        } else {
+            query.append(mPersistencePolicy.getModelTableName(rel.getSecondType())).append('_')
+                    .append(mPersistencePolicy.getFieldColumnName(rel.getSecondField())).append("_2").append(" = ")
+                    .append("x.")
+                    .append(mPersistencePolicy.getFieldColumnName(rel.getSecondField())).append(' ').append
+                    (SqlConstants.AND).append(" z.")
+                    .append(mPersistencePolicy.getModelTableName(rel.getFirstType())).append('_')
+                    .append(mPersistencePolicy.getFieldColumnName(rel.getFirstField())).append("_1").append(" = ")
+                    .append("y.")
+                    .append(mPersistencePolicy.getFieldColumnName(rel.getFirstField())).append(' ').append
+                    (SqlConstants.AND).append(" y.")
+                    .append(mPersistencePolicy.getFieldColumnName(rel.getFirstField())).append(" = ");
+        }
+        return query;
+    }
+
+    private String createQuery(Criteria<?> criteria, String selectStatement, List<Object> args) {
         Class<?> c = criteria.getEntityClass();
         StringBuilder query = new StringBuilder(selectStatement).append(mPersistencePolicy
                 .getModelTableName(c));
@@ -443,35 +810,25 @@ public class SqliteBuilder implements SqlBuilder {
         for (Criterion criterion : criteria.getCriterion()) {
             query.append(prefix);
             prefix = ' ' + SqlConstants.AND + ' ';
-            query.append(criterion.toSql(criteria));
+            query.append(args == null ? criterion.toSql(criteria) : criterion.toSql(criteria, args));
         }
 
         // Append association Criteria expressions
         for (AssociationCriteria<?> associationCriteria : criteria.getAssociationCriteria()) {
             query.append(prefix);
             prefix = ' ' + SqlConstants.AND + ' ';
-            query.append(getAssociationCriteriaDiscriminator(c, associationCriteria));
+            query.append(getAssociationCriteriaDiscriminator(c, associationCriteria, args));
         }
 
-        // Append order by expressions
-        if (criteria.getOrderings().size() > 0) {
-            query.append(' ').append(SqlConstants.ORDER_BY).append(' ');
-            String separator = "";
-            for (Order ordering : criteria.getOrderings()) {
-                query.append(separator);
-                separator = ", ";
-                Field field = mPersistencePolicy.findPersistentField(c, ordering.getProperty());
-                if (field == null)
-                    throw new InvalidCriteriaException(String.format("Invalid Criteria for type '%s'.", c.getName()));
-                String column = mPersistencePolicy.getFieldColumnName(field);
-                query.append(column).append(' ');
-                if (ordering.isIgnoreCase()) {
-                    query.append(SqlConstants.COLLATE_NOCASE).append(' ');
-                }
-                query.append(ordering.getOrdering().name());
-            }
+        // Append keyset expression
+        if (criteria.isKeysetPaged() && !criteria.getSeekKeys().isEmpty()) {
+            query.append(prefix);
+            query.append(createSeekPredicate(criteria, c, args));
         }
 
+        // Append order by expressions
+        appendOrderings(query, criteria, c, "");
+
         // Append limit and offset expressions
         int limit = criteria.getLimit();
         if (limit > 0)
@@ -588,4 +945,35 @@ public class SqliteBuilder implements SqlBuilder {
         }
     }
 
+    private void appendBindParameters(StringBuilder sb, int count) {
+        for (int i = 0; i < count; i++) {
+            if (i > 0)
+                sb.append(", ");
+            sb.append("?");
+        }
+    }
+
+    private String getManyToManyColumn(ManyToManyRelationship rel, boolean first) {
+        if (first)
+            return mPersistencePolicy.getModelTableName(rel.getFirstType()) + '_' + mPersistencePolicy
+                    .getFieldColumnName(rel.getFirstField()) + "_1";
+        return mPersistencePolicy.getModelTableName(rel.getSecondType()) + '_' + mPersistencePolicy
+                .getFieldColumnName(rel.getSecondField()) + "_2";
+    }
+
+    private String createInsertStatement(String verb, String tableName, List<String> columns) {
+        StringBuilder insert = new StringBuilder(verb).append(tableName);
+        if (columns.size() == 0)
+            return insert.append(" ").append(SqlConstants.DEFAULT_VALUES).toString();
+        String prefix = "";
+        insert.append(" (");
+        for (String column : columns) {
+            insert.append(prefix).append(column);
+            prefix = ", ";
+        }
+        insert.append(") ").append(SqlConstants.VALUES).append(" (");
+        appendBindParameters(insert, columns.size());
+        return insert.append(")").toString();
+    }
+
 }
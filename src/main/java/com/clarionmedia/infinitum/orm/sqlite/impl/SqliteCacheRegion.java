@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.sqlite.impl;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p> Bounded, least-recently-used region of the {@link SqliteSecondLevelCache} holding the cached entries of a single
+ * persistent class, keyed by primary key. Integer primary keys match regardless of their boxed type, and {@code
+ * byte[]} keys by their contents. Entries expire once they have been cached for longer than the region's time to
+ * live. {@code SqliteCacheRegion} is threadsafe, since regions are shared by every session in the process. </p>
+ *
+ * @author Tyler Treat
+ * @version 1.1.0 09/05/13
+ * @since 1.1.0
+ */
+public class SqliteCacheRegion {
+
+    private Map<Object, Entry> mEntries;
+    private int mCapacity;
+    private long mTimeToLive;
+    private boolean mIsReadOnly;
+
+    /**
+     * Constructs a new {@code SqliteCacheRegion}.
+     *
+     * @param capacity   the maximum number of entries to retain
+     * @param timeToLive the number of milliseconds entries are retained for, or 0 to retain them until evicted
+     * @param readOnly   {@code true} if the region holds entities shared between sessions, {@code false} if it holds
+     *                   their rows
+     */
+    public SqliteCacheRegion(int capacity, long timeToLive, boolean readOnly) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Cache region capacity must be greater than 0.");
+        if (timeToLive < 0)
+            throw new IllegalArgumentException("Cache region time to live must not be negative.");
+        mCapacity = capacity;
+        mTimeToLive = timeToLive;
+        mIsReadOnly = readOnly;
+        mEntries = new LinkedHashMap<Object, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Entry> eldest) {
+                return size() > mCapacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the value cached for the given primary key.
+     *
+     * @param id the primary key to retrieve the value for
+     * @return cached value or {@code null} if there is none or it has expired
+     */
+    public synchronized Object get(Serializable id) {
+        Entry entry = getEntry(toKey(id));
+        return entry == null ? null : entry.mValue;
+    }
+
+    /**
+     * Indicates if a value which has not expired is cached for the given primary key.
+     *
+     * @param id the primary key to check
+     * @return {@code true} if a value is cached, {@code false} if not
+     */
+    public synchronized boolean contains(Serializable id) {
+        return getEntry(toKey(id)) != null;
+    }
+
+    /**
+     * Caches the given value for the given primary key, evicting the least recently used entry if the region is full.
+     *
+     * @param id    the primary key to cache the value for
+     * @param value the value to cache
+     */
+    public synchronized void put(Serializable id, Object value) {
+        long expiry = mTimeToLive == 0 ? 0 : System.currentTimeMillis() + mTimeToLive;
+        mEntries.put(toKey(id), new Entry(value, expiry));
+    }
+
+    /**
+     * Evicts the value cached for the given primary key, if any.
+     *
+     * @param id the primary key to evict
+     */
+    public synchronized void evict(Serializable id) {
+        mEntries.remove(toKey(id));
+    }
+
+    /**
+     * Evicts every cached value.
+     */
+    public synchronized void clear() {
+        mEntries.clear();
+    }
+
+    /**
+     * Returns the number of entries in the region, including any which have expired but not yet been evicted.
+     *
+     * @return number of entries
+     */
+    public synchronized int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * Returns the maximum number of entries retained by the region.
+     *
+     * @return region capacity
+     */
+    public int getCapacity() {
+        return mCapacity;
+    }
+
+    /**
+     * Returns the number of milliseconds entries are retained for, or 0 if they are retained until evicted.
+     *
+     * @return time to live in milliseconds
+     */
+    public long getTimeToLive() {
+        return mTimeToLive;
+    }
+
+    /**
+     * Indicates if the region holds entities shared between sessions rather than their rows.
+     *
+     * @return {@code true} if the region is read-only, {@code false} if it is read-write
+     */
+    public boolean isReadOnly() {
+        return mIsReadOnly;
+    }
+
+    private Entry getEntry(Object key) {
+        Entry entry = mEntries.get(key);
+        if (entry == null)
+            return null;
+        if (entry.mExpiry != 0 && entry.mExpiry <= System.currentTimeMillis()) {
+            mEntries.remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+    private Object toKey(Serializable id) {
+        if (id instanceof Integer || id instanceof Short || id instanceof Byte)
+            return ((Number) id).longValue();
+        if (id instanceof byte[])
+            return ByteBuffer.wrap(((byte[]) id).clone());
+        return id;
+    }
+
+    private static class Entry {
+
+        private Object mValue;
+        private long mExpiry;
+
+        public Entry(Object value, long expiry) {
+            mValue = value;
+            mExpiry = expiry;
+        }
+
+    }
+
+}
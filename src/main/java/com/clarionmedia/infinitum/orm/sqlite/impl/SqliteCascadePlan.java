@@ -0,0 +1,437 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.sqlite.impl;
+
+import com.clarionmedia.infinitum.di.AbstractProxy;
+import com.clarionmedia.infinitum.internal.Pair;
+import com.clarionmedia.infinitum.orm.persistence.PersistencePolicy;
+import com.clarionmedia.infinitum.orm.persistence.PersistencePolicy.Cascade;
+import com.clarionmedia.infinitum.orm.relationship.ManyToManyRelationship;
+import com.clarionmedia.infinitum.orm.relationship.ManyToOneRelationship;
+import com.clarionmedia.infinitum.orm.relationship.OneToManyRelationship;
+import com.clarionmedia.infinitum.orm.relationship.OneToOneRelationship;
+import com.clarionmedia.infinitum.orm.sqlite.impl.SqliteUnitOfWork.Operation;
+import com.clarionmedia.infinitum.reflection.ClassReflector;
+
+import java.util.*;
+
+/**
+ * <p> Plans the writes needed to cascade a save or update through an object graph. The graph is walked up front from
+ * each entity's {@link SqliteModelMap}, collecting the entities to write and the foreign keys linking them, and the
+ * entities are then ordered so that every entity is written after the entities it references. This allows foreign
+ * keys to be written as part of the entity's own row, leaving only foreign keys in dependency cycles, or those stored
+ * in rows which are not written, to be updated afterwards. </p>
+ *
+ * <p> Entities reached through a {@link Cascade#ALL} relationship are planned to be saved or updated, while entities
+ * reached through a {@link Cascade#KEYS} relationship are only linked if they have already been persisted. Entities
+ * which are not written by the plan, including those already in the given object map, are assumed to exist. </p>
+ *
+ * @author Tyler Treat
+ * @version 1.1.0 09/05/13
+ * @since 1.1.0
+ */
+public class SqliteCascadePlan {
+
+    private PersistencePolicy mPersistencePolicy;
+    private SqliteMapper mMapper;
+    private ClassReflector mClassReflector;
+    private Map<Integer, Object> mObjectMap;
+    private List<Node> mNodes;
+    private Map<Object, Node> mNodeIndex;
+    private Map<Object, Map<String, ForeignKey>> mForeignKeys;
+    private List<Node> mPending;
+
+    /**
+     * Constructs a new {@code SqliteCascadePlan}.
+     *
+     * @param persistencePolicy the {@link PersistencePolicy} used to resolve relationships and primary keys
+     * @param mapper            the {@link SqliteMapper} used to map entities
+     * @param classReflector    the {@link ClassReflector} used to check related entities
+     * @param objectMap         the entities already written by the current operation, keyed by model hash
+     */
+    public SqliteCascadePlan(PersistencePolicy persistencePolicy, SqliteMapper mapper, ClassReflector classReflector,
+                             Map<Integer, Object> objectMap) {
+        mPersistencePolicy = persistencePolicy;
+        mMapper = mapper;
+        mClassReflector = classReflector;
+        mObjectMap = objectMap;
+        mNodes = new ArrayList<Node>();
+        mNodeIndex = new IdentityHashMap<Object, Node>();
+        mForeignKeys = new IdentityHashMap<Object, Map<String, ForeignKey>>();
+        mPending = new ArrayList<Node>();
+    }
+
+    /**
+     * Adds the given entity to the plan along with the entities its relationships cascade to.
+     *
+     * @param model     the entity to write
+     * @param map       the {@link SqliteModelMap} for {@code model}
+     * @param operation the {@link Operation} to write {@code model} with
+     * @return the {@link Node} for {@code model}
+     */
+    public Node addRoot(Object model, SqliteModelMap map, Operation operation) {
+        Node node = addNode(AbstractProxy.getTarget(model), map, operation);
+        node.mIsRoot = true;
+        walk();
+        return node;
+    }
+
+    /**
+     * Adds the given entity, which has already been written, to the plan along with the entities its relationships
+     * cascade to. Foreign keys stored in its row are updated once the entities they reference have been written.
+     *
+     * @param model the entity which was written
+     * @param map   the {@link SqliteModelMap} for {@code model}
+     * @return the {@link Node} for {@code model}
+     */
+    public Node addWrittenRoot(Object model, SqliteModelMap map) {
+        Node node = addNode(AbstractProxy.getTarget(model), map, null);
+        node.mIsRoot = true;
+        node.mIsWritten = true;
+        walk();
+        return node;
+    }
+
+    /**
+     * Returns the planned entities ordered so that every entity comes after the entities it references through a
+     * foreign key, except where they reference each other.
+     *
+     * @return ordered {@link List} of {@link Node} instances
+     */
+    public List<Node> getOrderedNodes() {
+        Map<Node, List<Node>> dependencies = new HashMap<Node, List<Node>>();
+        for (Node node : mNodes) {
+            List<Node> parents = new ArrayList<Node>();
+            for (ForeignKey foreignKey : getForeignKeys(node.mModel)) {
+                Node parent = mNodeIndex.get(foreignKey.mParent);
+                if (parent != null && parent != node)
+                    parents.add(parent);
+            }
+            dependencies.put(node, parents);
+        }
+        List<Node> sorted = new ArrayList<Node>(mNodes.size());
+        Set<Node> visited = new HashSet<Node>();
+        for (Node node : mNodes)
+            visit(node, dependencies, visited, sorted);
+        return sorted;
+    }
+
+    /**
+     * Returns the foreign keys stored in the given entity's row.
+     *
+     * @param child the entity storing the foreign keys
+     * @return {@link Collection} of {@link ForeignKey} instances
+     */
+    public Collection<ForeignKey> getForeignKeys(Object child) {
+        Map<String, ForeignKey> foreignKeys = mForeignKeys.get(child);
+        if (foreignKeys == null)
+            return Collections.emptyList();
+        return foreignKeys.values();
+    }
+
+    /**
+     * Returns the foreign keys which have not been applied yet but can be, meaning both the entity storing the key and
+     * the entity it references exist.
+     *
+     * @return {@link List} of unapplied {@link ForeignKey} instances
+     */
+    public List<ForeignKey> getUnappliedForeignKeys() {
+        List<ForeignKey> ret = new ArrayList<ForeignKey>();
+        for (Map<String, ForeignKey> foreignKeys : mForeignKeys.values()) {
+            for (ForeignKey foreignKey : foreignKeys.values()) {
+                if (!foreignKey.mIsApplied && isWritten(foreignKey.mChild) && isWritten(foreignKey.mParent))
+                    ret.add(foreignKey);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Indicates if the given entity exists, meaning it was either written by the plan or not planned to be written.
+     *
+     * @param model the entity to check
+     * @return {@code true} if the entity exists, {@code false} if it is waiting to be written or failed to be
+     */
+    public boolean isWritten(Object model) {
+        Node node = mNodeIndex.get(model);
+        return node == null || node.mIsWritten;
+    }
+
+    /**
+     * Indicates if the plan involves more than writing a single entity.
+     *
+     * @return {@code true} if the plan cascades, {@code false} if not
+     */
+    public boolean isCascading() {
+        if (mNodes.size() > 1 || !mForeignKeys.isEmpty())
+            return true;
+        for (Node node : mNodes) {
+            if (!node.mManyToManyRelationships.isEmpty())
+                return true;
+        }
+        return false;
+    }
+
+    private Node addNode(Object model, SqliteModelMap map, Operation operation) {
+        Node node = new Node(model, map, operation);
+        mNodes.add(node);
+        mNodeIndex.put(model, node);
+        mPending.add(node);
+        return node;
+    }
+
+    private void walk() {
+        // Walk iteratively rather than recursively so large graphs can't overflow the stack
+        while (!mPending.isEmpty()) {
+            Node node = mPending.remove(mPending.size() - 1);
+            node.mCascade = mPersistencePolicy.getCascadeMode(node.mModel.getClass());
+            if (node.mCascade == Cascade.NONE)
+                continue;
+            Object model = node.mModel;
+            for (Pair<ManyToManyRelationship, Iterable<Object>> pair : node.mMap.getManyToManyRelationships()) {
+                List<Object> related = new ArrayList<Object>();
+                for (Object relatedEntity : pair.getSecond()) {
+                    if (relatedEntity == null)
+                        continue;
+                    relatedEntity = resolve(relatedEntity, node.mCascade);
+                    if (relatedEntity != null)
+                        related.add(relatedEntity);
+                }
+                node.mManyToManyRelationships.add(new Pair<ManyToManyRelationship, List<Object>>(pair.getFirst(),
+                        related));
+            }
+            for (Pair<ManyToOneRelationship, Object> pair : node.mMap.getManyToOneRelationships()) {
+                if (mClassReflector.isNull(pair.getSecond()))
+                    continue;
+                Object related = resolve(pair.getSecond(), node.mCascade);
+                if (related != null)
+                    addForeignKey(model, related, pair.getFirst().getColumn());
+            }
+            for (Pair<OneToManyRelationship, Iterable<Object>> pair : node.mMap.getOneToManyRelationships()) {
+                for (Object relatedEntity : pair.getSecond()) {
+                    if (relatedEntity == null)
+                        continue;
+                    Object related = resolve(relatedEntity, node.mCascade);
+                    if (related != null)
+                        addForeignKey(related, model, pair.getFirst().getColumn());
+                }
+            }
+            for (Pair<OneToOneRelationship, Object> pair : node.mMap.getOneToOneRelationships()) {
+                if (mClassReflector.isNull(pair.getSecond()))
+                    continue;
+                OneToOneRelationship relationship = pair.getFirst();
+                Object related = resolve(pair.getSecond(), node.mCascade);
+                if (related == null)
+                    continue;
+                // The foreign key is stored in the relationship owner's row
+                if (relationship.getOwner() == model.getClass())
+                    addForeignKey(model, related, relationship.getColumn());
+                else if (relationship.getOwner() == related.getClass())
+                    addForeignKey(related, model, relationship.getColumn());
+            }
+        }
+    }
+
+    private Object resolve(Object related, Cascade cascade) {
+        related = AbstractProxy.getTarget(related);
+        if (mNodeIndex.containsKey(related))
+            return related;
+        if (cascade == Cascade.KEYS)
+            return mPersistencePolicy.isPKNullOrZero(related) ? null : related;
+        // Cascade.ALL means we save or update related entities which haven't been written yet
+        if (mObjectMap.containsKey(mPersistencePolicy.computeModelHash(related)) &&
+                !mPersistencePolicy.isPKNullOrZero(related))
+            return related;
+        SqliteModelMap map = mMapper.mapModel(related);
+        if (map == null)
+            return null;
+        addNode(related, map, Operation.SAVE_OR_UPDATE);
+        return related;
+    }
+
+    private void addForeignKey(Object child, Object parent, String column) {
+        Map<String, ForeignKey> foreignKeys = mForeignKeys.get(child);
+        if (foreignKeys == null) {
+            foreignKeys = new LinkedHashMap<String, ForeignKey>();
+            mForeignKeys.put(child, foreignKeys);
+        }
+        // Bidirectional relationships describe the same key from both sides
+        foreignKeys.put(column, new ForeignKey(child, parent, column));
+    }
+
+    private void visit(Node start, Map<Node, List<Node>> dependencies, Set<Node> visited, List<Node> sorted) {
+        // Iterative depth-first search, marking nodes before descending breaks dependency cycles
+        if (!visited.add(start))
+            return;
+        List<Node> path = new ArrayList<Node>();
+        List<Iterator<Node>> iterators = new ArrayList<Iterator<Node>>();
+        path.add(start);
+        iterators.add(dependencies.get(start).iterator());
+        while (!path.isEmpty()) {
+            int last = path.size() - 1;
+            Iterator<Node> iter = iterators.get(last);
+            if (iter.hasNext()) {
+                Node dependency = iter.next();
+                if (visited.add(dependency)) {
+                    path.add(dependency);
+                    iterators.add(dependencies.get(dependency).iterator());
+                }
+            } else {
+                sorted.add(path.remove(last));
+                iterators.remove(last);
+            }
+        }
+    }
+
+    /**
+     * An entity to be written as part of a {@link SqliteCascadePlan}.
+     */
+    public static class Node {
+
+        private Object mModel;
+        private SqliteModelMap mMap;
+        private Operation mOperation;
+        private Cascade mCascade;
+        private boolean mIsRoot;
+        private boolean mIsWritten;
+        private long mResult;
+        private List<Pair<ManyToManyRelationship, List<Object>>> mManyToManyRelationships;
+
+        private Node(Object model, SqliteModelMap map, Operation operation) {
+            mModel = model;
+            mMap = map;
+            mOperation = operation;
+            mManyToManyRelationships = new ArrayList<Pair<ManyToManyRelationship, List<Object>>>();
+        }
+
+        public Object getModel() {
+            return mModel;
+        }
+
+        public SqliteModelMap getMap() {
+            return mMap;
+        }
+
+        /**
+         * Returns the {@link Operation} to write the entity with, or {@code null} if it has already been written.
+         *
+         * @return {@code Operation}
+         */
+        public Operation getOperation() {
+            return mOperation;
+        }
+
+        public Cascade getCascade() {
+            return mCascade;
+        }
+
+        /**
+         * Indicates if the entity was added to the plan directly rather than reached through a cascade. The plan
+         * can't be completed without its roots.
+         *
+         * @return {@code true} if the entity is a root, {@code false} if not
+         */
+        public boolean isRoot() {
+            return mIsRoot;
+        }
+
+        public boolean isWritten() {
+            return mIsWritten;
+        }
+
+        /**
+         * Returns the result of writing the entity, following the conventions of the {@link Operation} it was
+         * written with.
+         *
+         * @return write result
+         */
+        public long getResult() {
+            return mResult;
+        }
+
+        /**
+         * Records the result of writing the entity.
+         *
+         * @param result    the write result
+         * @param isWritten {@code true} if the entity was written, {@code false} if not
+         */
+        public void setResult(long result, boolean isWritten) {
+            mResult = result;
+            mIsWritten = isWritten;
+        }
+
+        /**
+         * Returns the entity's many-to-many relationships along with the related entities which the cascade links
+         * to it.
+         *
+         * @return {@link List} of many-to-many relationships and related entities
+         */
+        public List<Pair<ManyToManyRelationship, List<Object>>> getManyToManyRelationships() {
+            return mManyToManyRelationships;
+        }
+
+    }
+
+    /**
+     * A foreign key column in one entity's row referencing another entity.
+     */
+    public static class ForeignKey {
+
+        private Object mChild;
+        private Object mParent;
+        private String mColumn;
+        private boolean mIsApplied;
+
+        private ForeignKey(Object child, Object parent, String column) {
+            mChild = child;
+            mParent = parent;
+            mColumn = column;
+        }
+
+        /**
+         * Returns the entity whose row stores the foreign key.
+         *
+         * @return child entity
+         */
+        public Object getChild() {
+            return mChild;
+        }
+
+        /**
+         * Returns the entity referenced by the foreign key.
+         *
+         * @return parent entity
+         */
+        public Object getParent() {
+            return mParent;
+        }
+
+        public String getColumn() {
+            return mColumn;
+        }
+
+        public boolean isApplied() {
+            return mIsApplied;
+        }
+
+        public void setApplied(boolean applied) {
+            mIsApplied = applied;
+        }
+
+    }
+
+}
@@ -16,31 +16,50 @@
 
 package com.clarionmedia.infinitum.orm.sqlite.impl;
 
+import android.content.ContentValues;
 import android.database.Cursor;
 import com.clarionmedia.infinitum.exception.InfinitumRuntimeException;
+import com.clarionmedia.infinitum.internal.Primitives;
+import com.clarionmedia.infinitum.orm.ResultSet;
 import com.clarionmedia.infinitum.orm.Session;
 import com.clarionmedia.infinitum.orm.context.InfinitumOrmContext;
 import com.clarionmedia.infinitum.orm.context.InfinitumOrmContext.SessionType;
 import com.clarionmedia.infinitum.orm.criteria.AssociationCriteria;
 import com.clarionmedia.infinitum.orm.criteria.Criteria;
+import com.clarionmedia.infinitum.orm.criteria.CriteriaIterator;
+import com.clarionmedia.infinitum.orm.criteria.CriteriaPage;
 import com.clarionmedia.infinitum.orm.criteria.Order;
 import com.clarionmedia.infinitum.orm.criteria.criterion.Criterion;
+import com.clarionmedia.infinitum.orm.exception.InvalidCriteriaException;
 import com.clarionmedia.infinitum.orm.internal.OrmPreconditions;
+import com.clarionmedia.infinitum.orm.internal.bind.FieldAccessors;
+import com.clarionmedia.infinitum.orm.persistence.FieldAccessor;
 import com.clarionmedia.infinitum.orm.persistence.PersistencePolicy;
+import com.clarionmedia.infinitum.orm.relationship.ManyToManyRelationship;
 import com.clarionmedia.infinitum.orm.relationship.ModelRelationship;
 import com.clarionmedia.infinitum.orm.sql.SqlBuilder;
+import com.clarionmedia.infinitum.orm.sql.SqlStatement;
+import com.clarionmedia.infinitum.orm.sqlite.SqliteTypeAdapter;
 import com.clarionmedia.infinitum.reflection.ClassReflector;
 import com.clarionmedia.infinitum.reflection.impl.JavaClassReflector;
 
+import java.io.Serializable;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * <p> Implementation of {@link Criteria} for SQLite queries. </p>
  *
  * @author Tyler Treat
- * @version 1.1.0 06/17/13
+ * @version 1.1.0 09/05/13
  * @since 1.0
  */
 public class SqliteCriteria<T> implements Criteria<T> {
@@ -56,6 +75,12 @@ public class SqliteCriteria<T> implements Criteria<T> {
     protected PersistencePolicy mPersistencePolicy;
     private List<Order> mOrderings;
     private List<AssociationCriteria<?>> mAssociationCriteria;
+    private List<String> mFetches;
+    private List<String> mProjections;
+    private boolean mIsKeysetPaged;
+    private List<Object> mSeekKeys;
+    private boolean mIsCacheable;
+    protected SqliteQueryCache mQueryCache;
     protected SqliteCriteria<?> mParent;
 
     /**
@@ -80,6 +105,10 @@ public class SqliteCriteria<T> implements Criteria<T> {
         mPersistencePolicy = context.getPersistencePolicy();
         mOrderings = new ArrayList<Order>(5);
         mAssociationCriteria = new ArrayList<AssociationCriteria<?>>(3);
+        mFetches = new ArrayList<String>(3);
+        mProjections = new ArrayList<String>(3);
+        mSeekKeys = new ArrayList<Object>(3);
+        mQueryCache = SqliteQueryCache.getInstance();
         mParent = parent;
     }
 
@@ -128,28 +157,53 @@ public class SqliteCriteria<T> implements Criteria<T> {
 
     @Override
     public List<T> list() {
-        Cursor result = mSession.executeForResult(getRepresentation());
-        List<T> ret = new ArrayList<T>(result.getCount());
-        if (result.getCount() == 0) {
-            result.close();
+        checkEntityQuery();
+        if (!mIsCacheable)
+            return createResults(executeQuery());
+        SqlStatement query = mSqlBuilder.createPreparedQuery(this);
+        String key = mQueryCache.createKey(mEntityClass, query);
+        List<T> ret = resolveCachedResults(mQueryCache.get(key));
+        if (ret != null)
             return ret;
-        }
-        try {
-            while (result.moveToNext()) {
-                T entity = mModelFactory.createFromCursor(result, mEntityClass);
-                ret.add(entity);
-                // Cache results
-                mSession.cache(mPersistencePolicy.computeModelHash(entity), entity);
-            }
-            return ret;
-        } finally {
-            result.close();
-        }
+        // Versions are read before the query is executed so that writes made while it runs invalidate its results
+        String[] tables = getQueryTables();
+        long[] versions = mQueryCache.getVersions(tables);
+        ret = createResults(mSession.executeForResult(query.getSql(), query.getStringArgs()));
+        List<Serializable> keys = new ArrayList<Serializable>(ret.size());
+        for (T result : ret)
+            keys.add(mPersistencePolicy.getPrimaryKey(result));
+        mQueryCache.put(key, tables, versions, keys);
+        return ret;
+    }
+
+    @Override
+    public CriteriaIterator<T> iterate() throws InfinitumRuntimeException {
+        return iterate(true);
+    }
+
+    @Override
+    public CriteriaIterator<T> iterate(boolean cacheResults) throws InfinitumRuntimeException {
+        checkEntityQuery();
+        // Fetched associations repeat each result over several rows, so results can't be constructed one row at a time
+        if (!mFetches.isEmpty())
+            throw new InvalidCriteriaException("Criteria query for '" + mEntityClass.getName() + "' cannot fetch " +
+                    "associations when iterating.");
+        return new SqliteCriteriaIterator<T>(executeQuery(), mModelFactory, mEntityClass, cacheResults);
     }
 
     @Override
     public T unique() throws InfinitumRuntimeException {
-        Cursor result = mSession.executeForResult(getRepresentation());
+        checkEntityQuery();
+        // Fetched and cached results are constructed from the whole result set
+        if (!mFetches.isEmpty() || mIsCacheable) {
+            List<T> results = list();
+            if (results.size() > 1)
+                throw new InfinitumRuntimeException(String.format("Criteria query for '%s' specified unique result " +
+                        "but there were %d results.",
+                        mEntityClass.getName(), results.size()));
+            return results.isEmpty() ? null : results.get(0);
+        }
+        Cursor result = executeQuery();
         if (result.getCount() > 1) {
             throw new InfinitumRuntimeException(String.format("Criteria query for '%s' specified unique result but " +
                     "there were %d results.",
@@ -160,10 +214,7 @@ public class SqliteCriteria<T> implements Criteria<T> {
         }
         result.moveToFirst();
         try {
-            T ret = mModelFactory.createFromCursor(result, mEntityClass);
-            // Cache result
-            mSession.cache(mPersistencePolicy.computeModelHash(ret), ret);
-            return ret;
+            return mModelFactory.createFromCursor(result, mEntityClass);
         } finally {
             result.close();
         }
@@ -176,7 +227,7 @@ public class SqliteCriteria<T> implements Criteria<T> {
 
     @Override
     public long count() {
-        Cursor result = mSession.executeForResult(mSqlBuilder.createCountQuery(this));
+        Cursor result = executeCountQuery();
         result.moveToFirst();
         long ret = result.getLong(0);
         result.close();
@@ -185,7 +236,7 @@ public class SqliteCriteria<T> implements Criteria<T> {
 
     @Override
     public Cursor cursor() {
-        return mSession.executeForResult(getRepresentation());
+        return executeQuery();
     }
 
     @Override
@@ -216,6 +267,428 @@ public class SqliteCriteria<T> implements Criteria<T> {
         return mAssociationCriteria;
     }
 
+    @Override
+    public Criteria<T> fetch(String association) throws InfinitumRuntimeException {
+        Field field = mPersistencePolicy.findPersistentField(mEntityClass, association);
+        if (field == null || !mPersistencePolicy.isRelationship(field))
+            throw new InvalidCriteriaException("No relationship field '" + association + "' in type " +
+                    mEntityClass.getName());
+        mFetches.add(association);
+        return this;
+    }
+
+    @Override
+    public List<String> getFetches() {
+        return mFetches;
+    }
+
+    @Override
+    public Criteria<T> select(String... properties) throws InfinitumRuntimeException {
+        for (String property : properties) {
+            Field field = mPersistencePolicy.findPersistentField(mEntityClass, property);
+            if (field == null || mPersistencePolicy.isRelationship(field))
+                throw new InvalidCriteriaException("No non-relationship field '" + property + "' in type " +
+                        mEntityClass.getName());
+        }
+        mProjections.clear();
+        for (String property : properties)
+            mProjections.add(property);
+        return this;
+    }
+
+    @Override
+    public List<String> getProjections() {
+        return mProjections;
+    }
+
+    @Override
+    public List<Object[]> listTuples() throws InfinitumRuntimeException {
+        List<Field> fields = getProjectionFields();
+        // Values are read through the type adapters straight into the tuple. Only adapters which can't map through a
+        // FieldAccessor need an entity to write to, which is never cached or returned.
+        Object scratch = null;
+        SqliteTypeAdapter<?>[] adapters = new SqliteTypeAdapter<?>[fields.size()];
+        FieldAccessor[] accessors = new FieldAccessor[fields.size()];
+        for (int i = 0; i < adapters.length; i++) {
+            adapters[i] = getObjectMapper().resolveType(fields.get(i).getType());
+            if (mapsThroughAccessor(adapters[i])) {
+                accessors[i] = new ColumnValue(fields.get(i));
+            } else {
+                if (scratch == null)
+                    scratch = new JavaClassReflector().getClassInstance(mEntityClass);
+                accessors[i] = FieldAccessors.forField(fields.get(i));
+            }
+        }
+        Cursor cursor = executeQuery();
+        SqliteResult result = new SqliteResult(cursor);
+        try {
+            List<Object[]> ret = new ArrayList<Object[]>(cursor.getCount());
+            while (cursor.moveToNext()) {
+                Object[] tuple = new Object[adapters.length];
+                for (int i = 0; i < adapters.length; i++) {
+                    if (cursor.isNull(i))
+                        continue;
+                    adapters[i].mapToObject(result, i, accessors[i], scratch);
+                    tuple[i] = accessors[i].get(scratch);
+                }
+                ret.add(tuple);
+            }
+            return ret;
+        } catch (IllegalAccessException e) {
+            throw new InfinitumRuntimeException("Unable to read projection for type " + mEntityClass.getName());
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <E> List<E> listAs(Class<E> type) throws InfinitumRuntimeException {
+        List<Field> fields = getProjectionFields();
+        List<Object[]> tuples = listTuples();
+        List<E> ret = new ArrayList<E>(tuples.size());
+        if (fields.size() == 1 && isAssignable(type, fields.get(0).getType())) {
+            for (Object[] tuple : tuples)
+                ret.add((E) tuple[0]);
+            return ret;
+        }
+        try {
+            Constructor<E> constructor = getProjectionConstructor(type, fields);
+            if (constructor != null) {
+                Class<?>[] params = constructor.getParameterTypes();
+                for (Object[] tuple : tuples) {
+                    for (int i = 0; i < params.length; i++) {
+                        if (tuple[i] == null && params[i].isPrimitive())
+                            throw new InfinitumRuntimeException("Column '" + mPersistencePolicy.getFieldColumnName(
+                                    fields.get(i)) + "' is null but maps to a primitive parameter of " +
+                                    type.getName());
+                    }
+                    ret.add(constructor.newInstance(tuple));
+                }
+                return ret;
+            }
+            // Otherwise populate the fields named after the projected properties
+            ClassReflector classReflector = new JavaClassReflector();
+            FieldAccessor[] accessors = new FieldAccessor[fields.size()];
+            for (int i = 0; i < accessors.length; i++) {
+                Field field = classReflector.getField(type, mProjections.get(i));
+                if (field == null)
+                    throw new InvalidCriteriaException("Cannot map projection '" + mProjections.get(i) + "' to " +
+                            "type " + type.getName());
+                accessors[i] = FieldAccessors.forField(field);
+            }
+            for (Object[] tuple : tuples) {
+                E result = (E) classReflector.getClassInstance(type);
+                for (int i = 0; i < accessors.length; i++) {
+                    if (tuple[i] != null)
+                        accessors[i].set(result, tuple[i]);
+                }
+                ret.add(result);
+            }
+            return ret;
+        } catch (InstantiationException e) {
+            throw new InfinitumRuntimeException("Unable to construct projection type " + type.getName());
+        } catch (IllegalAccessException e) {
+            throw new InfinitumRuntimeException("Unable to construct projection type " + type.getName());
+        } catch (InvocationTargetException e) {
+            throw new InfinitumRuntimeException("Unable to construct projection type " + type.getName());
+        } catch (IllegalArgumentException e) {
+            throw new InfinitumRuntimeException("Unable to construct projection type " + type.getName());
+        }
+    }
+
+    @Override
+    public long[] listLongs() throws InfinitumRuntimeException {
+        if (mProjections.size() != 1)
+            throw new InvalidCriteriaException("Criteria query for '" + mEntityClass.getName() + "' must select " +
+                    "exactly one property to list longs.");
+        Cursor result = executeQuery();
+        try {
+            long[] ret = new long[result.getCount()];
+            for (int i = 0; result.moveToNext(); i++)
+                ret[i] = result.getLong(0);
+            return ret;
+        } finally {
+            result.close();
+        }
+    }
+
+    /**
+     * Executes the parameterized query for this {@code SqliteCriteria}.
+     *
+     * @return {@link Cursor} containing the query results
+     */
+    protected Cursor executeQuery() {
+        SqlStatement query = mSqlBuilder.createPreparedQuery(this);
+        return mSession.executeForResult(query.getSql(), query.getStringArgs());
+    }
+
+    /**
+     * Executes the parameterized count query for this {@code SqliteCriteria}.
+     *
+     * @return {@link Cursor} containing the count
+     */
+    protected Cursor executeCountQuery() {
+        SqlStatement query = mSqlBuilder.createPreparedCountQuery(this);
+        return mSession.executeForResult(query.getSql(), query.getStringArgs());
+    }
+
+    @Override
+    public Criteria<T> seek(Object... keys) {
+        mIsKeysetPaged = true;
+        mSeekKeys.clear();
+        for (Object key : keys)
+            mSeekKeys.add(key);
+        return this;
+    }
+
+    @Override
+    public Criteria<T> after(T entity) throws InfinitumRuntimeException {
+        return seek(getSeekKeys(entity).toArray());
+    }
+
+    @Override
+    public Criteria<T> resume(String continuationToken) throws InfinitumRuntimeException {
+        return seek(decodeContinuationToken(continuationToken).toArray());
+    }
+
+    @Override
+    public CriteriaPage<T> listPage(int pageSize) {
+        if (pageSize < 1)
+            throw new IllegalArgumentException("Page size must be at least 1.");
+        boolean isKeysetPaged = mIsKeysetPaged;
+        int limit = mLimit;
+        int offset = mOffset;
+        mIsKeysetPaged = true;
+        // Pages continue from their seek keys, so an offset would skip results at the start of every page
+        mOffset = 0;
+        // Retrieving one extra result indicates whether there is another page
+        mLimit = pageSize + 1;
+        List<T> results;
+        try {
+            results = list();
+        } finally {
+            mIsKeysetPaged = isKeysetPaged;
+            mLimit = limit;
+            mOffset = offset;
+        }
+        if (results.size() <= pageSize)
+            return new CriteriaPage<T>(results, null);
+        results = new ArrayList<T>(results.subList(0, pageSize));
+        String token = encodeContinuationToken(getSeekKeys(results.get(pageSize - 1)));
+        return new CriteriaPage<T>(results, token);
+    }
+
+    @Override
+    public boolean isKeysetPaged() {
+        return mIsKeysetPaged;
+    }
+
+    @Override
+    public List<Object> getSeekKeys() {
+        return mSeekKeys;
+    }
+
+    @Override
+    public Criteria<T> cacheable(boolean cacheable) {
+        mIsCacheable = cacheable;
+        return this;
+    }
+
+    @Override
+    public boolean isCacheable() {
+        return mIsCacheable;
+    }
+
+    /**
+     * Ensures this {@code SqliteCriteria} queries entire entities rather than projections.
+     *
+     * @throws InvalidCriteriaException if the {@code SqliteCriteria} selects any properties
+     */
+    protected void checkEntityQuery() throws InvalidCriteriaException {
+        if (!mProjections.isEmpty())
+            throw new InvalidCriteriaException("Criteria query for '" + mEntityClass.getName() + "' selects " +
+                    "properties, so its results must be listed as projections.");
+    }
+
+    private List<T> createResults(Cursor result) {
+        List<T> ret = new ArrayList<T>(result.getCount());
+        if (result.getCount() == 0) {
+            result.close();
+            return ret;
+        }
+        // Collections configured with a batch size are fetched for all results at once
+        mModelFactory.beginBatch();
+        boolean isCreated = false;
+        try {
+            if (!mFetches.isEmpty()) {
+                // Rows repeat each result for every entity in its fetched collections
+                ret.addAll(mModelFactory.createFromFetchCursor(result, mEntityClass, getFetchFields()));
+            } else {
+                // Results are cached by the model factory
+                while (result.moveToNext())
+                    ret.add(mModelFactory.createFromCursor(result, mEntityClass));
+            }
+            isCreated = true;
+        } finally {
+            result.close();
+            if (!isCreated)
+                mModelFactory.cancelBatch();
+        }
+        mModelFactory.endBatch();
+        return ret;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<T> resolveCachedResults(List<Serializable> keys) {
+        if (keys == null)
+            return null;
+        List<T> ret = new ArrayList<T>(keys.size());
+        for (Serializable key : keys) {
+            T result = (T) mSession.searchCache(mEntityClass, key);
+            if (result == null)
+                result = mModelFactory.createFromSecondLevelCache(mEntityClass, key);
+            // Executing the query again is cheaper than loading evicted results one at a time
+            if (result == null)
+                return null;
+            ret.add(result);
+        }
+        return ret;
+    }
+
+    private String[] getQueryTables() {
+        Set<String> tables = new LinkedHashSet<String>();
+        addQueryTables(this, tables);
+        return tables.toArray(new String[tables.size()]);
+    }
+
+    private void addQueryTables(Criteria<?> criteria, Set<String> tables) {
+        tables.add(mPersistencePolicy.getModelTableName(criteria.getEntityClass()));
+        for (AssociationCriteria<?> association : criteria.getAssociationCriteria()) {
+            // Many-to-many associations are queried through their join table
+            if (association.getRelationship() instanceof ManyToManyRelationship)
+                tables.add(((ManyToManyRelationship) association.getRelationship()).getTableName());
+            addQueryTables(association, tables);
+        }
+    }
+
+    private List<Field> getProjectionFields() {
+        if (mProjections.isEmpty())
+            throw new InvalidCriteriaException("Criteria query for '" + mEntityClass.getName() + "' does not " +
+                    "select any properties.");
+        List<Field> fields = new ArrayList<Field>(mProjections.size());
+        for (String projection : mProjections)
+            fields.add(mPersistencePolicy.findPersistentField(mEntityClass, projection));
+        return fields;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <E> Constructor<E> getProjectionConstructor(Class<E> type, List<Field> fields) {
+        for (Constructor<?> constructor : type.getDeclaredConstructors()) {
+            Class<?>[] params = constructor.getParameterTypes();
+            if (params.length != fields.size())
+                continue;
+            boolean matches = true;
+            for (int i = 0; i < params.length && matches; i++)
+                matches = isAssignable(params[i], fields.get(i).getType());
+            if (matches) {
+                constructor.setAccessible(true);
+                return (Constructor<E>) constructor;
+            }
+        }
+        return null;
+    }
+
+    private boolean mapsThroughAccessor(SqliteTypeAdapter<?> adapter) {
+        // Adapters which don't override the FieldAccessor mapping fall back to setting the Field on a model
+        try {
+            return adapter.getClass().getMethod("mapToObject", ResultSet.class, int.class, FieldAccessor.class,
+                    Object.class).getDeclaringClass() != SqliteTypeAdapter.class;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private boolean isAssignable(Class<?> type, Class<?> valueType) {
+        return type.isAssignableFrom(valueType) || Primitives.unwrap(type) == Primitives.unwrap(valueType);
+    }
+
+    private List<Object> getSeekKeys(Object entity) throws InfinitumRuntimeException {
+        // The keys must match the orderings SqliteBuilder pages by, which end with the primary key
+        Field pkField = mPersistencePolicy.getPrimaryKeyField(mEntityClass);
+        List<Object> keys = new ArrayList<Object>(mOrderings.size() + 1);
+        try {
+            for (Order ordering : mOrderings) {
+                Field field = mPersistencePolicy.findPersistentField(mEntityClass, ordering.getProperty());
+                if (field == null)
+                    throw new InvalidCriteriaException("No field '" + ordering.getProperty() + "' in type " +
+                            mEntityClass.getName());
+                keys.add(toColumnValue(field, FieldAccessors.forField(field).get(entity)));
+                if (field.equals(pkField))
+                    return keys;
+            }
+        } catch (IllegalAccessException e) {
+            throw new InfinitumRuntimeException("Unable to read seek keys for type " + mEntityClass.getName());
+        }
+        keys.add(mPersistencePolicy.getPrimaryKey(entity));
+        return keys;
+    }
+
+    private Object toColumnValue(Field field, Object value) {
+        // Keys are compared against columns, so they're bound the way their type adapter stores them
+        if (value == null)
+            return null;
+        ContentValues values = new ContentValues();
+        getObjectMapper().resolveType(field.getType()).mapObjectToColumn(value, field.getName(), values);
+        return values.get(field.getName());
+    }
+
+    private String encodeContinuationToken(List<Object> keys) {
+        StringBuilder token = new StringBuilder();
+        try {
+            for (Object key : keys) {
+                if (token.length() > 0)
+                    token.append(',');
+                if (key == null)
+                    token.append('n');
+                else if (key instanceof Boolean)
+                    token.append('v').append((Boolean) key ? '1' : '0');
+                else
+                    token.append('v').append(URLEncoder.encode(key.toString(), "UTF-8"));
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new InfinitumRuntimeException("Unable to encode continuation token");
+        }
+        return token.toString();
+    }
+
+    private List<Object> decodeContinuationToken(String token) throws InvalidCriteriaException {
+        // Keys are bound as strings, so column affinity converts them back when compared
+        List<Object> keys = new ArrayList<Object>();
+        try {
+            for (String key : token.split(",", -1)) {
+                if (key.equals("n"))
+                    keys.add(null);
+                else if (key.startsWith("v"))
+                    keys.add(URLDecoder.decode(key.substring(1), "UTF-8"));
+                else
+                    throw new InvalidCriteriaException("Malformed continuation token '" + token + "'");
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new InfinitumRuntimeException("Unable to decode continuation token");
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCriteriaException("Malformed continuation token '" + token + "'");
+        }
+        return keys;
+    }
+
+    private List<Field> getFetchFields() {
+        List<Field> fields = new ArrayList<Field>(mFetches.size());
+        for (String fetch : mFetches)
+            fields.add(mPersistencePolicy.findPersistentField(mEntityClass, fetch));
+        return fields;
+    }
+
     private AssociationCriteria<?> getAssociationCriteria(String association) {
         ClassReflector classReflector = new JavaClassReflector();
         Field associationField = classReflector.getField(mEntityClass, association);
@@ -236,4 +709,27 @@ public class SqliteCriteria<T> implements Criteria<T> {
                 associationType, mModelFactory, mSqlBuilder, relationship, associationField, this);
     }
 
+    /**
+     * {@link FieldAccessor} which holds the value a type adapter maps to it rather than writing it to a model.
+     */
+    private static class ColumnValue extends FieldAccessor {
+
+        private Object mValue;
+
+        public ColumnValue(Field field) {
+            super(field);
+        }
+
+        @Override
+        public Object get(Object model) {
+            return mValue;
+        }
+
+        @Override
+        public void set(Object model, Object value) {
+            mValue = value;
+        }
+
+    }
+
 }
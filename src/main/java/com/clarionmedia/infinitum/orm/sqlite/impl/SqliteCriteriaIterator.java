@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.sqlite.impl;
+
+import android.database.Cursor;
+import com.clarionmedia.infinitum.orm.criteria.CriteriaIterator;
+
+import java.util.NoSuchElementException;
+
+/**
+ * <p> Implementation of {@link CriteriaIterator} which constructs entities from a {@link Cursor} one row at a time.
+ * The {@code Cursor} is closed as soon as its last row has been read. </p>
+ *
+ * @author Tyler Treat
+ * @version 1.1.0 08/26/13
+ * @since 1.1.0
+ */
+public class SqliteCriteriaIterator<T> implements CriteriaIterator<T> {
+
+    private Cursor mCursor;
+    private SqliteModelFactory mModelFactory;
+    private Class<T> mEntityClass;
+    private boolean mCacheResults;
+    private boolean mIsAdvanced;
+    private boolean mHasNext;
+    private boolean mIsClosed;
+
+    /**
+     * Constructs a new {@code SqliteCriteriaIterator}.
+     *
+     * @param cursor       the {@link Cursor} containing the query results
+     * @param modelFactory the {@link SqliteModelFactory} used to construct entities
+     * @param entityClass  the {@code Class} of the entities being constructed
+     * @param cacheResults {@code true} if entities should be cached in the session, {@code false} if not
+     */
+    public SqliteCriteriaIterator(Cursor cursor, SqliteModelFactory modelFactory, Class<T> entityClass,
+                                  boolean cacheResults) {
+        mCursor = cursor;
+        mModelFactory = modelFactory;
+        mEntityClass = entityClass;
+        mCacheResults = cacheResults;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (mIsClosed)
+            return false;
+        if (!mIsAdvanced) {
+            mHasNext = mCursor.moveToNext();
+            mIsAdvanced = true;
+            if (!mHasNext)
+                close();
+        }
+        return mHasNext;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        mIsAdvanced = false;
+        return mModelFactory.createFromCursor(mCursor, mEntityClass, mCacheResults);
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() {
+        if (mIsClosed)
+            return;
+        mIsClosed = true;
+        mHasNext = false;
+        mCursor.close();
+    }
+
+}
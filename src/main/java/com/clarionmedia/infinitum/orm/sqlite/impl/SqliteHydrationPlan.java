@@ -0,0 +1,337 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.sqlite.impl;
+
+import android.database.Cursor;
+import com.clarionmedia.infinitum.exception.InfinitumRuntimeException;
+import com.clarionmedia.infinitum.internal.Primitives;
+import com.clarionmedia.infinitum.orm.internal.bind.FieldAccessors;
+import com.clarionmedia.infinitum.orm.persistence.FieldAccessor;
+import com.clarionmedia.infinitum.orm.persistence.PersistencePolicy;
+import com.clarionmedia.infinitum.orm.persistence.TypeResolutionPolicy.SqliteDataType;
+import com.clarionmedia.infinitum.orm.relationship.ManyToOneRelationship;
+import com.clarionmedia.infinitum.orm.relationship.ModelRelationship;
+import com.clarionmedia.infinitum.orm.relationship.OneToOneRelationship;
+import com.clarionmedia.infinitum.orm.sqlite.SqliteTypeAdapter;
+
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p> Precompiled plan for hydrating instances of a domain model from {@link Cursor} rows. The model's persistent
+ * fields, their {@link FieldAccessor} and {@link SqliteTypeAdapter} instances and column names are resolved once when
+ * the plan is created, and the column indexes are resolved once each time the plan is bound to a {@code Cursor}. Rows
+ * are then hydrated through the {@link Binding} by iterating over arrays rather than looking up fields and columns by
+ * name. Rows can also be read into arrays of column values, which are kept in the {@link SqliteSecondLevelCache}.
+ * </p> <p> Plans are immutable once created, so they can be shared by threads reading different {@code Cursor}
+ * instances. </p>
+ *
+ * @author Tyler Treat
+ * @version 1.1.0 09/05/13
+ * @since 1.1.0
+ */
+public class SqliteHydrationPlan {
+
+    private Field[] mFields;
+    private FieldAccessor[] mAccessors;
+    private SqliteTypeAdapter<?>[] mTypeAdapters;
+    private String[] mColumns;
+    private Field[] mRelationshipFields;
+    private ModelRelationship[] mRelationships;
+    private String[] mForeignKeyColumns;
+    private String[] mRowColumns;
+    private int mPrimaryKey;
+    private Class<?> mPrimaryKeyType;
+    private boolean mIsLazy;
+
+    /**
+     * Constructs a new {@code SqliteHydrationPlan} for the given domain model {@link Class}.
+     *
+     * @param modelClass        the domain model {@code Class} to hydrate
+     * @param persistencePolicy the {@link PersistencePolicy} used to resolve fields and relationships
+     * @param mapper            the {@link SqliteMapper} used to resolve type adapters
+     */
+    public SqliteHydrationPlan(Class<?> modelClass, PersistencePolicy persistencePolicy, SqliteMapper mapper) {
+        this(modelClass, persistencePolicy, mapper, "");
+    }
+
+    /**
+     * Constructs a new {@code SqliteHydrationPlan} for the given domain model {@link Class} whose columns are prefixed
+     * with the given {@code String} in the {@link Cursor}, e.g. because they were selected by a join.
+     *
+     * @param modelClass        the domain model {@code Class} to hydrate
+     * @param persistencePolicy the {@link PersistencePolicy} used to resolve fields and relationships
+     * @param mapper            the {@link SqliteMapper} used to resolve type adapters
+     * @param columnPrefix      the prefix of the model's column names in the {@code Cursor}
+     */
+    public SqliteHydrationPlan(Class<?> modelClass, PersistencePolicy persistencePolicy, SqliteMapper mapper,
+                               String columnPrefix) {
+        List<Field> fields = new ArrayList<Field>();
+        List<Field> relationshipFields = new ArrayList<Field>();
+        for (Field field : persistencePolicy.getPersistentFields(modelClass)) {
+            field.setAccessible(true);
+            if (persistencePolicy.isRelationship(field))
+                relationshipFields.add(field);
+            else
+                fields.add(field);
+        }
+        mFields = fields.toArray(new Field[fields.size()]);
+        mAccessors = new FieldAccessor[mFields.length];
+        mTypeAdapters = new SqliteTypeAdapter<?>[mFields.length];
+        mColumns = new String[mFields.length];
+        for (int i = 0; i < mFields.length; i++) {
+            mAccessors[i] = FieldAccessors.forField(mFields[i]);
+            mTypeAdapters[i] = mapper.resolveType(mFields[i].getType());
+            mColumns[i] = columnPrefix + persistencePolicy.getFieldColumnName(mFields[i]);
+        }
+        mRelationshipFields = relationshipFields.toArray(new Field[relationshipFields.size()]);
+        mRelationships = new ModelRelationship[mRelationshipFields.length];
+        mForeignKeyColumns = new String[mRelationshipFields.length];
+        for (int i = 0; i < mRelationshipFields.length; i++) {
+            ModelRelationship relationship = persistencePolicy.getRelationship(mRelationshipFields[i]);
+            mRelationships[i] = relationship;
+            if (relationship instanceof ManyToOneRelationship)
+                mForeignKeyColumns[i] = columnPrefix + ((ManyToOneRelationship) relationship).getColumn();
+            else if (relationship instanceof OneToOneRelationship)
+                mForeignKeyColumns[i] = columnPrefix + ((OneToOneRelationship) relationship).getColumn();
+        }
+        // Rows are read without the column prefix so that they can be hydrated by the unprefixed plan
+        List<String> rowColumns = new ArrayList<String>();
+        for (Field field : mFields)
+            rowColumns.add(persistencePolicy.getFieldColumnName(field));
+        for (String column : mForeignKeyColumns) {
+            if (column != null)
+                rowColumns.add(column.substring(columnPrefix.length()));
+        }
+        mRowColumns = rowColumns.toArray(new String[rowColumns.size()]);
+        Field pkField = persistencePolicy.getPrimaryKeyField(modelClass);
+        mPrimaryKey = pkField == null ? -1 : fields.indexOf(pkField);
+        mPrimaryKeyType = pkField == null ? null : Primitives.unwrap(pkField.getType());
+        mIsLazy = persistencePolicy.isLazy(modelClass);
+    }
+
+    /**
+     * Binds this plan to the given {@link Cursor}, resolving the column indexes of the model's columns in it. The
+     * returned {@link Binding} should be reused for every row read from {@code cursor}.
+     *
+     * @param cursor the {@code Cursor} to hydrate rows from
+     * @return {@code Binding} of this plan to {@code cursor}
+     */
+    public Binding bind(Cursor cursor) {
+        return new Binding(cursor);
+    }
+
+    /**
+     * Returns the names of the columns read by {@link Binding#readRow()}, which are the unprefixed columns of the
+     * model's non-relationship fields followed by its foreign key columns.
+     *
+     * @return column names
+     */
+    public String[] getRowColumns() {
+        return mRowColumns;
+    }
+
+    /**
+     * Returns the number of relationship fields in the model.
+     *
+     * @return relationship count
+     */
+    public int getRelationshipCount() {
+        return mRelationshipFields.length;
+    }
+
+    public Field getRelationshipField(int index) {
+        return mRelationshipFields[index];
+    }
+
+    public ModelRelationship getRelationship(int index) {
+        return mRelationships[index];
+    }
+
+    /**
+     * Indicates if the model's relationships are lazily loaded.
+     *
+     * @return {@code true} if relationships are lazily loaded, {@code false} if not
+     */
+    public boolean isLazy() {
+        return mIsLazy;
+    }
+
+    /**
+     * A {@link SqliteHydrationPlan} bound to a {@link Cursor}, holding the column indexes resolved for it. Plans are
+     * immutable and shared, while a {@code Binding} belongs to whoever reads the {@code Cursor}.
+     */
+    public class Binding {
+
+        private Cursor mCursor;
+        private SqliteResult mResult;
+        private int[] mColumnIndexes;
+        private int[] mForeignKeyIndexes;
+
+        private Binding(Cursor cursor) {
+            mCursor = cursor;
+            mResult = new SqliteResult(cursor);
+            mColumnIndexes = new int[mColumns.length];
+            for (int i = 0; i < mColumns.length; i++)
+                mColumnIndexes[i] = cursor.getColumnIndex(mColumns[i]);
+            mForeignKeyIndexes = new int[mForeignKeyColumns.length];
+            for (int i = 0; i < mForeignKeyColumns.length; i++)
+                mForeignKeyIndexes[i] = mForeignKeyColumns[i] == null ? -1 : cursor.getColumnIndex
+                        (mForeignKeyColumns[i]);
+        }
+
+        /**
+         * Returns the {@link SqliteHydrationPlan} which is bound.
+         *
+         * @return {@code SqliteHydrationPlan}
+         */
+        public SqliteHydrationPlan getPlan() {
+            return SqliteHydrationPlan.this;
+        }
+
+        public Cursor getCursor() {
+            return mCursor;
+        }
+
+        /**
+         * Returns the {@link SqliteResult} wrapping the bound {@link Cursor}.
+         *
+         * @return {@code SqliteResult}
+         */
+        public SqliteResult getResult() {
+            return mResult;
+        }
+
+        /**
+         * Populates the non-relationship fields of the given model from the current row of the bound {@link Cursor}.
+         *
+         * @param model the model to populate
+         * @throws InfinitumRuntimeException if a field could not be mapped
+         */
+        public void hydrate(Object model) throws InfinitumRuntimeException {
+            for (int i = 0; i < mFields.length; i++) {
+                try {
+                    mTypeAdapters[i].mapToObject(mResult, mColumnIndexes[i], mAccessors[i], model);
+                } catch (IllegalArgumentException e) {
+                    throw new InfinitumRuntimeException("Could not map '" + mFields[i].getType().getName() + "'");
+                } catch (IllegalAccessException e) {
+                    throw new InfinitumRuntimeException("Could not map '" + mFields[i].getType().getName() + "'");
+                }
+            }
+        }
+
+        /**
+         * Returns the primary key stored in the current row of the bound {@link Cursor}, typed like the model's
+         * primary key {@link Field} so that it can be used to probe the session cache before the model is hydrated.
+         *
+         * @return primary key or {@code null} if it is {@code null}, missing from the {@code Cursor} or not of a type
+         *         which can be read without a model
+         */
+        public Serializable getPrimaryKey() {
+            if (mPrimaryKey < 0)
+                return null;
+            int column = mColumnIndexes[mPrimaryKey];
+            if (column < 0 || mCursor.isNull(column))
+                return null;
+            if (mPrimaryKeyType == long.class)
+                return mCursor.getLong(column);
+            if (mPrimaryKeyType == int.class)
+                return mCursor.getInt(column);
+            if (mPrimaryKeyType == String.class)
+                return mCursor.getString(column);
+            return null;
+        }
+
+        /**
+         * Indicates if the current row of the bound {@link Cursor} has an integer primary key, which can be read
+         * without boxing by {@link #getLongPrimaryKey()}.
+         *
+         * @return {@code true} if the primary key is a non-{@code null} integer, {@code false} if not
+         */
+        public boolean hasLongPrimaryKey() {
+            if (mPrimaryKey < 0 || (mPrimaryKeyType != long.class && mPrimaryKeyType != int.class))
+                return false;
+            int column = mColumnIndexes[mPrimaryKey];
+            return column >= 0 && !mCursor.isNull(column);
+        }
+
+        /**
+         * Returns the integer primary key stored in the current row of the bound {@link Cursor}. This should only be
+         * called if {@link #hasLongPrimaryKey()} is {@code true}.
+         *
+         * @return primary key
+         */
+        public long getLongPrimaryKey() {
+            return mCursor.getLong(mColumnIndexes[mPrimaryKey]);
+        }
+
+        /**
+         * Reads the current row of the bound {@link Cursor} into an array of column values ordered like {@link
+         * #getRowColumns()}. Values are read as {@link Long}, {@link Double}, {@code byte[]} or {@link String}
+         * according to the column type, so that the row can be hydrated again from a {@link
+         * android.database.MatrixCursor}.
+         *
+         * @return column values or {@code null} if one of the model's field columns is missing from the {@code
+         *         Cursor}
+         */
+        public Object[] readRow() {
+            Object[] row = new Object[mRowColumns.length];
+            int n = 0;
+            for (int i = 0; i < mFields.length; i++) {
+                int column = mColumnIndexes[i];
+                if (column < 0)
+                    return null;
+                row[n++] = readColumn(column, mTypeAdapters[i].getSqliteType());
+            }
+            for (int i = 0; i < mForeignKeyColumns.length; i++) {
+                if (mForeignKeyColumns[i] == null)
+                    continue;
+                // Foreign keys are only in the row of the entity owning the relationship
+                int column = mForeignKeyIndexes[i];
+                row[n++] = column < 0 ? null : mCursor.getString(column);
+            }
+            return row;
+        }
+
+        /**
+         * Returns the foreign key stored in the current row of the bound {@link Cursor} for the given relationship.
+         *
+         * @param index the index of the relationship
+         * @return foreign key or {@code null} if the relationship has no foreign key column in the {@code Cursor}
+         */
+        public String getForeignKey(int index) {
+            int column = mForeignKeyIndexes[index];
+            return column < 0 ? null : mCursor.getString(column);
+        }
+
+        private Object readColumn(int column, SqliteDataType type) {
+            if (mCursor.isNull(column))
+                return null;
+            if (type == SqliteDataType.INTEGER)
+                return mCursor.getLong(column);
+            if (type == SqliteDataType.REAL)
+                return mCursor.getDouble(column);
+            if (type == SqliteDataType.BLOB)
+                return mCursor.getBlob(column);
+            return mCursor.getString(column);
+        }
+
+    }
+
+}
@@ -28,7 +28,9 @@ import com.clarionmedia.infinitum.internal.Primitives;
 import com.clarionmedia.infinitum.orm.ObjectMapper;
 import com.clarionmedia.infinitum.orm.exception.InvalidMappingException;
 import com.clarionmedia.infinitum.orm.exception.ModelConfigurationException;
+import com.clarionmedia.infinitum.orm.internal.bind.FieldAccessors;
 import com.clarionmedia.infinitum.orm.internal.bind.SqliteTypeAdapters;
+import com.clarionmedia.infinitum.orm.persistence.FieldAccessor;
 import com.clarionmedia.infinitum.orm.persistence.TypeAdapter;
 import com.clarionmedia.infinitum.orm.persistence.TypeResolutionPolicy.SqliteDataType;
 import com.clarionmedia.infinitum.orm.sqlite.SqliteTypeAdapter;
@@ -88,6 +90,30 @@ public class SqliteMapper extends ObjectMapper {
 		return ret;
 	}
 
+	/**
+	 * Maps the persistent, non-relationship {@link Field} values of the given
+	 * model to their respective columns. Unlike {@link #mapModel(Object)},
+	 * relationships are not traversed, which makes this suitable for
+	 * capturing the column state of a partially hydrated entity.
+	 * 
+	 * @param model
+	 *            the model to map
+	 * @return {@link ContentValues} containing the model's column values
+	 * @throws InvalidMappingException
+	 *             if a type cannot be mapped
+	 */
+	public ContentValues mapColumns(Object model) throws InvalidMappingException {
+		ContentValues values = new ContentValues();
+		for (Field field : mPersistencePolicy.getPersistentFields(model.getClass())) {
+			if (mPersistencePolicy.isFieldPrimaryKey(field) && mPersistencePolicy.isPrimaryKeyAutoIncrement(field))
+				continue;
+			if (mPersistencePolicy.isRelationship(field))
+				continue;
+			mapField(values, model, field);
+		}
+		return values;
+	}
+
 	/**
 	 * Retrieves a {@link SqliteTypeAdapter} for the given {@link Class}.
 	 * 
@@ -162,9 +188,38 @@ public class SqliteMapper extends ObjectMapper {
 		if (AbstractProxy.isAopProxy(model)) {
 			model = AbstractProxy.getProxy(model).getTarget();
 		}
-		Object val = mClassReflector.getFieldValue(model, field);
+		FieldAccessor accessor = FieldAccessors.forField(field);
 		String colName = mPersistencePolicy.getFieldColumnName(field);
-		resolveType(field.getType()).mapObjectToColumn(val, colName, values);
+		SqliteTypeAdapter<?> adapter = resolveType(field.getType());
+		try {
+			// Primitives stored as they are by the built-in adapters are read with the typed accessors
+			if (!field.getType().isPrimitive() || !mapPrimitive(values, model, accessor, adapter, colName))
+				adapter.mapObjectToColumn(accessor.get(model), colName, values);
+		} catch (IllegalAccessException e) {
+			throw new InvalidMappingException(String.format("Cannot read '%s' to map it to a database column.",
+					field.getName()));
+		}
+	}
+
+	private boolean mapPrimitive(ContentValues values, Object model, FieldAccessor accessor,
+			SqliteTypeAdapter<?> adapter, String colName) throws IllegalAccessException {
+		if (adapter == SqliteTypeAdapters.LONG)
+			values.put(colName, accessor.getLong(model));
+		else if (adapter == SqliteTypeAdapters.INTEGER)
+			values.put(colName, accessor.getInt(model));
+		else if (adapter == SqliteTypeAdapters.SHORT)
+			values.put(colName, accessor.getShort(model));
+		else if (adapter == SqliteTypeAdapters.BYTE)
+			values.put(colName, accessor.getByte(model));
+		else if (adapter == SqliteTypeAdapters.DOUBLE)
+			values.put(colName, accessor.getDouble(model));
+		else if (adapter == SqliteTypeAdapters.FLOAT)
+			values.put(colName, accessor.getFloat(model));
+		else if (adapter == SqliteTypeAdapters.BOOLEAN)
+			values.put(colName, accessor.getBoolean(model));
+		else
+			return false;
+		return true;
 	}
 
 }
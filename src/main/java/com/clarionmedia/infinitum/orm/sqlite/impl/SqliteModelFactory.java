@@ -17,26 +17,39 @@
 package com.clarionmedia.infinitum.orm.sqlite.impl;
 
 import android.database.Cursor;
+import android.database.MatrixCursor;
 import com.clarionmedia.infinitum.di.annotation.Autowired;
 import com.clarionmedia.infinitum.exception.InfinitumRuntimeException;
 import com.clarionmedia.infinitum.orm.LazyLoadDexMakerProxy;
 import com.clarionmedia.infinitum.orm.ModelFactory;
 import com.clarionmedia.infinitum.orm.ResultSet;
+import com.clarionmedia.infinitum.orm.internal.IdentityMap;
+import com.clarionmedia.infinitum.orm.internal.bind.FieldAccessors;
+import com.clarionmedia.infinitum.orm.persistence.FieldAccessor;
 import com.clarionmedia.infinitum.orm.persistence.PersistencePolicy;
 import com.clarionmedia.infinitum.orm.relationship.*;
-import com.clarionmedia.infinitum.orm.sqlite.SqliteTypeAdapter;
+import com.clarionmedia.infinitum.orm.sql.SqlConstants;
+import com.clarionmedia.infinitum.orm.sql.SqlStatement;
+import com.clarionmedia.infinitum.orm.sqlite.impl.SqliteHydrationPlan.Binding;
 import com.clarionmedia.infinitum.reflection.ClassReflector;
 
 import java.io.Serializable;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * <p> This is an implementation of {@link ModelFactory} for processing {@link SqliteResult} queries. </p>
  *
  * @author Tyler Treat
- * @version 1.1.0 07/20/13
+ * @version 1.1.0 09/05/13
  * @since 1.0
  */
 public class SqliteModelFactory implements ModelFactory {
@@ -47,6 +60,9 @@ public class SqliteModelFactory implements ModelFactory {
     @Autowired
     private SqliteSession mSession;
 
+    @Autowired
+    private SqliteTemplate mSqliteTemplate;
+
     @Autowired
     private SqliteMapper mMapper;
 
@@ -56,6 +72,18 @@ public class SqliteModelFactory implements ModelFactory {
     @Autowired
     private ClassReflector mClassReflector;
 
+    private SqliteSecondLevelCache mSecondLevelCache = SqliteSecondLevelCache.getInstance();
+    private Map<Class<?>, SqliteHydrationPlan> mHydrationPlans = new ConcurrentHashMap<Class<?>,
+            SqliteHydrationPlan>();
+    private Map<String, SqliteHydrationPlan> mFetchPlans = new ConcurrentHashMap<String, SqliteHydrationPlan>();
+    private volatile int mAccessorGeneration = FieldAccessors.getGeneration();
+    private ThreadLocal<LoadState> mLoadState = new ThreadLocal<LoadState>() {
+        @Override
+        protected LoadState initialValue() {
+            return new LoadState();
+        }
+    };
+
     @Override
     public <T> T createFromResult(ResultSet result, Class<T> modelClass) {
         if (!(result instanceof SqliteResult))
@@ -63,6 +91,26 @@ public class SqliteModelFactory implements ModelFactory {
         return createFromCursorRec(((SqliteResult) result).getCursor(), modelClass);
     }
 
+    /**
+     * Constructs a domain model instance and populates its {@link Field}'s from the current row of the given
+     * {@link ResultSet}, optionally without searching the session cache for it first. The search should only be
+     * skipped when the caller has already searched the cache for the entity, so that the lookup is counted once in
+     * the session's {@link com.clarionmedia.infinitum.orm.CacheStatistics}.
+     *
+     * @param result      the {@code ResultSet} containing the row to convert to an {@code Object}
+     * @param modelClass  the {@code Class} of the {@code Object} being instantiated
+     * @param searchCache {@code true} if the session cache should be searched for the entity, {@code false} if not
+     * @return a populated instance of the specified {@code Class}
+     * @throws InfinitumRuntimeException if the model could not be instantiated
+     */
+    public <T> T createFromResult(ResultSet result, Class<T> modelClass, boolean searchCache)
+            throws InfinitumRuntimeException {
+        if (!(result instanceof SqliteResult))
+            throw new IllegalArgumentException("SqliteModelFactory can only process SqliteResults.");
+        return createFromCursorRec(((SqliteResult) result).getCursor(), getHydrationPlan(modelClass), modelClass,
+                null, true, searchCache);
+    }
+
     /**
      * Constructs a domain model instance and populates its {@link Field}'s from the given {@link Cursor}. The
      * precondition for this method is that the {@code Cursor} is currently at the row to convert to an {@link Object}
@@ -77,85 +125,393 @@ public class SqliteModelFactory implements ModelFactory {
         return createFromCursorRec(cursor, modelClass);
     }
 
+    /**
+     * Constructs a domain model instance and populates its {@link Field}'s from the given {@link Cursor}, optionally
+     * without caching it in the session. An instance which is already cached is returned regardless, but an instance
+     * which isn't cached is neither cached nor tracked for dirty checking, so it can be garbage collected once it is
+     * no longer referenced. Related entities are cached as usual, and eagerly loaded references back to the instance
+     * resolve to it. Lazily loaded references are resolved after it has been constructed, so they load a separate,
+     * cached instance.
+     *
+     * @param cursor     the {@code Cursor} containing the row to convert to an {@code Object}
+     * @param modelClass the {@code Class} of the {@code Object} being instantiated
+     * @param cache      {@code true} if the instance should be cached in the session, {@code false} if not
+     * @return a populated instance of the specified {@code Class}
+     * @throws InfinitumRuntimeException if the model could not be instantiated
+     */
+    public <T> T createFromCursor(Cursor cursor, Class<T> modelClass, boolean cache)
+            throws InfinitumRuntimeException {
+        return createFromCursorRec(cursor, getHydrationPlan(modelClass), modelClass, null, cache, true);
+    }
+
+    /**
+     * Constructs a domain model instance from the {@link SqliteSecondLevelCache} rather than the database. Entities
+     * cached in a read-only region are returned as they are, while entities cached in a read-write region are
+     * constructed from their cached row and have their relationships loaded as usual. The instance is cached in the
+     * session either way. The session cache itself isn't searched, since callers search it before falling back on
+     * the second-level cache.
+     *
+     * @param modelClass the {@code Class} of the {@code Object} being retrieved
+     * @param id         the primary key of the {@code Object} being retrieved
+     * @return cached instance or {@code null} if {@code modelClass} is not cached or the entity is not in the cache
+     * @throws InfinitumRuntimeException if the model could not be instantiated
+     */
     @SuppressWarnings("unchecked")
+    public <T> T createFromSecondLevelCache(Class<T> modelClass, Serializable id) throws InfinitumRuntimeException {
+        SqliteCacheRegion region = mSecondLevelCache.getRegion(modelClass);
+        if (region == null)
+            return null;
+        Object cached = region.get(id);
+        if (cached == null)
+            return null;
+        if (region.isReadOnly()) {
+            mSession.cache(modelClass, id, cached);
+            return (T) cached;
+        }
+        SqliteHydrationPlan plan = getHydrationPlan(modelClass);
+        MatrixCursor cursor = new MatrixCursor(plan.getRowColumns(), 1);
+        cursor.addRow((Object[]) cached);
+        try {
+            cursor.moveToFirst();
+            return createFromCursorRec(cursor, plan, modelClass, null, true, false);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Discards the cached {@link SqliteHydrationPlan} instances so that they are recompiled, e.g. after a type adapter
+     * has been registered. Plans are discarded automatically when a {@link FieldAccessor} is registered with {@link
+     * FieldAccessors}.
+     */
+    public void clearHydrationPlans() {
+        mHydrationPlans.clear();
+        mFetchPlans.clear();
+        mLoadState.get().mBindings.clear();
+    }
+
+    /**
+     * Constructs domain model instances from the rows of the given {@link Cursor}, which was produced by a query
+     * fetching the given associations along with the entities. Each row holds an entity followed by the aliased
+     * columns of one associated entity for each fetched association, so an entity is repeated on consecutive rows for
+     * each entity in its fetched collections. Entities are de-duplicated by primary key, and the fetched associations
+     * are populated from the joined columns instead of being loaded separately. Entities already in the session cache
+     * are returned as they are.
+     *
+     * @param cursor     the {@code Cursor} containing the rows to convert
+     * @param modelClass the {@code Class} of the entities being instantiated
+     * @param fetches    the association {@link Field}'s fetched by the query, in the order they were joined
+     * @return {@code List} of distinct entities in the order they first appear in {@code cursor}
+     * @throws InfinitumRuntimeException if a model could not be instantiated
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> createFromFetchCursor(Cursor cursor, Class<T> modelClass, List<Field> fetches)
+            throws InfinitumRuntimeException {
+        SqliteHydrationPlan plan = getHydrationPlan(modelClass);
+        int pkIndex = cursor.getColumnIndex(mPersistencePolicy.getFieldColumnName(mPersistencePolicy
+                .getPrimaryKeyField(modelClass)));
+        int fetchCount = fetches.size();
+        Class<?>[] associatedTypes = new Class<?>[fetchCount];
+        SqliteHydrationPlan[] associatedPlans = new SqliteHydrationPlan[fetchCount];
+        int[] associatedPkIndexes = new int[fetchCount];
+        boolean[] isCollection = new boolean[fetchCount];
+        for (int i = 0; i < fetchCount; i++) {
+            ModelRelationship rel = mPersistencePolicy.getRelationship(fetches.get(i));
+            associatedTypes[i] = rel.getFirstType() == modelClass ? rel.getSecondType() : rel.getFirstType();
+            String prefix = String.format(SqlConstants.FETCH_ALIAS, i) + '_';
+            associatedPlans[i] = getFetchPlan(associatedTypes[i], prefix);
+            associatedPkIndexes[i] = cursor.getColumnIndex(prefix + mPersistencePolicy.getFieldColumnName
+                    (mPersistencePolicy.getPrimaryKeyField(associatedTypes[i])));
+            isCollection[i] = rel.getRelationType() == ModelRelationship.RelationType.OneToMany ||
+                    rel.getRelationType() == ModelRelationship.RelationType.ManyToMany;
+        }
+        Map<String, T> entities = new LinkedHashMap<String, T>();
+        Set<String> hydrated = new HashSet<String>();
+        Set<String> fetched = new HashSet<String>();
+        while (cursor.moveToNext()) {
+            String key = cursor.getString(pkIndex);
+            T entity = entities.get(key);
+            if (entity == null) {
+                entity = (T) mSession.searchCache(modelClass, toPrimaryKey(modelClass, key));
+                if (entity == null) {
+                    entity = createFromCursorRec(cursor, plan, modelClass, fetches, true, false);
+                    hydrated.add(key);
+                }
+                entities.put(key, entity);
+            }
+            // Cached entities already have their associations
+            if (!hydrated.contains(key))
+                continue;
+            for (int i = 0; i < fetchCount; i++) {
+                // Left joins produce nulls for entities without any associated entity
+                if (cursor.isNull(associatedPkIndexes[i]))
+                    continue;
+                if (!isCollection[i]) {
+                    Object related = createFromCursorRec(cursor, associatedPlans[i], associatedTypes[i], null,
+                            true, true);
+                    mClassReflector.setFieldValue(entity, fetches.get(i), related);
+                } else if (fetched.add(i + ":" + key + ":" + cursor.getString(associatedPkIndexes[i]))) {
+                    Object related = createFromCursorRec(cursor, associatedPlans[i], associatedTypes[i], null,
+                            true, true);
+                    ((Collection<Object>) mClassReflector.getFieldValue(entity, fetches.get(i))).add(related);
+                }
+            }
+        }
+        return new ArrayList<T>(entities.values());
+    }
+
+    /**
+     * Begins a batch in which the related entities of relationships configured with a batch size are fetched together
+     * for every entity created, rather than separately for each entity. Entities referenced through many-to-one and
+     * one-to-one foreign keys are also collected and fetched together, one query per referenced class. Batches may be
+     * nested, in which case the related entities are fetched when the outermost batch ends. Batches belong to the
+     * thread which began them. Every batch must be ended by either {@link #endBatch()} or {@link #cancelBatch()}.
+     */
+    public void beginBatch() {
+        mLoadState.get().mBatchDepth++;
+    }
+
+    /**
+     * Ends the current batch. If it is the outermost batch, the related entities of the entities created during it
+     * are fetched, one query per relationship and batch of entities, and distributed to the entities. Lazily loaded
+     * relationships are instead fetched for the whole batch when the first of them is accessed.
+     *
+     * @throws InfinitumRuntimeException if a related entity could not be instantiated
+     */
+    public void endBatch() throws InfinitumRuntimeException {
+        LoadState state = mLoadState.get();
+        if (state.mBatchDepth > 1) {
+            state.mBatchDepth--;
+            return;
+        }
+        try {
+            // Entities fetched by a batch may start further batches, so keep going until there are none left
+            List<ReferenceBatch> pendingReferences = new ArrayList<ReferenceBatch>();
+            List<CollectionBatch> pending = new ArrayList<CollectionBatch>();
+            do {
+                pendingReferences.clear();
+                pendingReferences.addAll(state.mReferenceBatches.values());
+                state.mReferenceBatches.clear();
+                for (ReferenceBatch batch : pendingReferences)
+                    loadReferenceBatch(batch);
+                pending.clear();
+                for (CollectionBatch batch : state.mCollectionBatches.values()) {
+                    if (!batch.mIsLazy && !batch.mIsLoaded)
+                        pending.add(batch);
+                }
+                for (CollectionBatch batch : pending)
+                    loadCollectionBatch(batch);
+            } while (!pendingReferences.isEmpty() || !pending.isEmpty());
+        } finally {
+            state.clearBatches();
+        }
+    }
+
+    /**
+     * Ends the current batch without fetching anything, e.g. because creating its entities failed. If it is the
+     * outermost batch, the related entities collected during it are discarded rather than fetched, leaving their
+     * relationships unloaded.
+     */
+    public void cancelBatch() {
+        LoadState state = mLoadState.get();
+        if (state.mBatchDepth > 1)
+            state.mBatchDepth--;
+        else
+            state.clearBatches();
+    }
+
     private <T> T createFromCursorRec(Cursor cursor, Class<T> modelClass) throws InfinitumRuntimeException {
-        T ret;
-        SqliteResult result = new SqliteResult(cursor);
-        ret = (T) mClassReflector.getClassInstance(modelClass);
-        List<Field> fields = mPersistencePolicy.getPersistentFields(modelClass);
-        for (Field field : fields) {
-            field.setAccessible(true);
-            if (!mPersistencePolicy.isRelationship(field)) {
-                SqliteTypeAdapter<?> resolver = mMapper.resolveType(field.getType());
-                int index = result.getColumnIndex(mPersistencePolicy.getFieldColumnName(field));
-                try {
-                    resolver.mapToObject(result, index, field, ret);
-                } catch (IllegalArgumentException e) {
-                    throw new InfinitumRuntimeException("Could not map '" + field.getType().getName() + "'");
-                } catch (IllegalAccessException e) {
-                    throw new InfinitumRuntimeException("Could not map '" + field.getType().getName() + "'");
+        return createFromCursorRec(cursor, getHydrationPlan(modelClass), modelClass, null, true, true);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T createFromCursorRec(Cursor cursor, SqliteHydrationPlan plan, Class<T> modelClass,
+                                      List<Field> fetches, boolean cache, boolean searchCache)
+            throws InfinitumRuntimeException {
+        Binding binding = getBinding(plan, cursor);
+        // Probe the identity map by primary key so cached entities aren't constructed and hydrated again. Integer
+        // primary keys are read and probed without boxing them. Callers which have already probed it skip the probe so
+        // that the lookup isn't counted twice.
+        boolean isLongKey = binding.hasLongPrimaryKey();
+        long id = isLongKey ? binding.getLongPrimaryKey() : 0;
+        Serializable pk = isLongKey ? null : binding.getPrimaryKey();
+        Object cached = null;
+        if (searchCache && isLongKey)
+            cached = mSession.searchCache(modelClass, id);
+        else if (searchCache && pk != null)
+            cached = mSession.searchCache(modelClass, pk);
+        if (cached == null)
+            cached = searchUncached(modelClass, isLongKey, id, pk);
+        if (cached != null)
+            return (T) cached;
+        boolean hasKey = isLongKey || pk != null;
+        SqliteCacheRegion region = hasKey ? mSecondLevelCache.getRegion(modelClass) : null;
+        Serializable regionKey = null;
+        if (region != null) {
+            regionKey = isLongKey ? Long.valueOf(id) : pk;
+            if (region.isReadOnly()) {
+                // Entities in read-only regions are shared rather than hydrated for each session
+                Object shared = region.get(regionKey);
+                if (shared != null) {
+                    if (cache)
+                        cacheEntity(modelClass, isLongKey, id, pk, shared);
+                    return (T) shared;
                 }
             }
         }
-        int objHash = mPersistencePolicy.computeModelHash(ret);
-        if (mSession.checkCache(objHash))
-            return (T) mSession.searchCache(objHash);
-        mSession.cache(objHash, ret);
-        loadRelationships(ret, cursor);
+        T ret = (T) mClassReflector.getClassInstance(modelClass);
+        binding.hydrate(ret);
+        if (!hasKey) {
+            pk = mPersistencePolicy.getPrimaryKey(ret);
+            cached = searchCache ? mSession.searchCache(modelClass, pk) : null;
+            if (cached != null)
+                return (T) cached;
+        }
+        if (cache || (!isLongKey && pk == null)) {
+            if (cache) {
+                cacheEntity(modelClass, isLongKey, id, pk, ret);
+                // Capture the hydrated column state so unchanged entities aren't written back
+                mSqliteTemplate.snapshot(ret);
+                if (region != null)
+                    putSecondLevelCache(region, binding, regionKey, ret);
+            }
+            loadRelationships(ret, binding, fetches);
+            return ret;
+        }
+        // The instance isn't in the session, so references back to it from its relationships are resolved to it here
+        IdentityMap uncached = mLoadState.get().mUncached;
+        if (isLongKey)
+            uncached.put(modelClass, id, ret);
+        else
+            uncached.put(modelClass, pk, ret);
+        try {
+            loadRelationships(ret, binding, fetches);
+        } finally {
+            if (isLongKey)
+                uncached.remove(modelClass, id);
+            else
+                uncached.remove(modelClass, pk);
+        }
         return ret;
     }
 
-    private <T> void loadRelationships(T model, Cursor cursor) throws InfinitumRuntimeException {
-        for (Field f : mPersistencePolicy.getPersistentFields(model.getClass())) {
-            f.setAccessible(true);
-            if (!mPersistencePolicy.isRelationship(f))
+    private Object searchUncached(Class<?> modelClass, boolean isLongKey, long id, Serializable pk) {
+        IdentityMap uncached = mLoadState.get().mUncached;
+        if (uncached.size() == 0)
+            return null;
+        if (isLongKey)
+            return uncached.get(modelClass, id);
+        return pk == null ? null : uncached.get(modelClass, pk);
+    }
+
+    private void cacheEntity(Class<?> modelClass, boolean isLongKey, long id, Serializable pk, Object model) {
+        if (isLongKey)
+            mSession.cache(modelClass, id, model);
+        else
+            mSession.cache(modelClass, pk, model);
+    }
+
+    private void putSecondLevelCache(SqliteCacheRegion region, Binding binding, Serializable id, Object model) {
+        // Cached entries are current until their row is written, so they aren't replaced by rows read from the cache
+        if (region.contains(id))
+            return;
+        Object value = region.isReadOnly() ? model : binding.readRow();
+        if (value != null)
+            region.put(id, value);
+    }
+
+    private SqliteHydrationPlan getHydrationPlan(Class<?> modelClass) {
+        checkAccessorGeneration();
+        SqliteHydrationPlan plan = mHydrationPlans.get(modelClass);
+        if (plan == null) {
+            plan = new SqliteHydrationPlan(modelClass, mPersistencePolicy, mMapper);
+            mHydrationPlans.put(modelClass, plan);
+        }
+        return plan;
+    }
+
+    private Binding getBinding(SqliteHydrationPlan plan, Cursor cursor) {
+        // Plans are shared, but each thread binds them to the cursors it reads and reuses the binding for every row
+        Map<SqliteHydrationPlan, Binding> bindings = mLoadState.get().mBindings;
+        Binding binding = bindings.get(plan);
+        if (binding == null || binding.getCursor() != cursor) {
+            binding = plan.bind(cursor);
+            bindings.put(plan, binding);
+        }
+        return binding;
+    }
+
+    private SqliteHydrationPlan getFetchPlan(Class<?> modelClass, String columnPrefix) {
+        checkAccessorGeneration();
+        String key = columnPrefix + modelClass.getName();
+        SqliteHydrationPlan plan = mFetchPlans.get(key);
+        if (plan == null) {
+            plan = new SqliteHydrationPlan(modelClass, mPersistencePolicy, mMapper, columnPrefix);
+            mFetchPlans.put(key, plan);
+        }
+        return plan;
+    }
+
+    private void checkAccessorGeneration() {
+        // Plans hold the accessors resolved when they were compiled, which a registered accessor replaces
+        int generation = FieldAccessors.getGeneration();
+        if (generation != mAccessorGeneration) {
+            mAccessorGeneration = generation;
+            clearHydrationPlans();
+        }
+    }
+
+    private <T> void loadRelationships(T model, Binding binding, List<Field> fetches) throws InfinitumRuntimeException {
+        SqliteHydrationPlan plan = binding.getPlan();
+        for (int i = 0; i < plan.getRelationshipCount(); i++) {
+            Field f = plan.getRelationshipField(i);
+            // Fetched associations are populated from the same row
+            if (fetches != null && fetches.contains(f))
                 continue;
-            ModelRelationship rel = mPersistencePolicy.getRelationship(f);
-            Serializable fk = null;
+            ModelRelationship rel = plan.getRelationship(i);
             switch (rel.getRelationType()) {
                 case ManyToMany:
-                    if (mPersistencePolicy.isLazy(model.getClass()))
+                    if (plan.isLazy())
                         lazilyLoadManyToMany((ManyToManyRelationship) rel, f, model);
+                    else if (isBatching(rel))
+                        getCollectionBatch(rel, getManyToManyDirection((ManyToManyRelationship) rel, model), f,
+                                false).add(model, f);
                     else
                         loadManyToMany((ManyToManyRelationship) rel, f, model);
                     break;
                 case ManyToOne:
-                    ManyToOneRelationship mto = (ManyToOneRelationship) rel;
-                    fk = cursor.getString(cursor.getColumnIndex(mto.getColumn()));
-                    if (mPersistencePolicy.isLazy(model.getClass()))
-                        lazilyLoadManyToOne(mto, f, model, fk);
+                    if (plan.isLazy())
+                        lazilyLoadManyToOne((ManyToOneRelationship) rel, f, model, binding.getForeignKey(i));
                     else
-                        loadManyToOne(mto, f, model, fk);
+                        loadManyToOne((ManyToOneRelationship) rel, f, model, binding.getForeignKey(i));
                     break;
                 case OneToMany:
-                    if (mPersistencePolicy.isLazy(model.getClass()))
+                    if (plan.isLazy())
                         lazilyLoadOneToMany((OneToManyRelationship) rel, f, model);
+                    else if (isBatching(rel))
+                        getCollectionBatch(rel, ((OneToManyRelationship) rel).getManyType(), f, false).add(model, f);
                     else
                         loadOneToMany((OneToManyRelationship) rel, f, model);
                     break;
                 case OneToOne:
-                    OneToOneRelationship oto = (OneToOneRelationship) rel;
-                    int col = cursor.getColumnIndex(oto.getColumn());
-                    if (col > -1)
-                        fk = cursor.getString(col);
-                    if (mPersistencePolicy.isLazy(model.getClass()))
-                        lazilyLoadOneToOne(oto, f, model, fk);
+                    if (plan.isLazy())
+                        lazilyLoadOneToOne((OneToOneRelationship) rel, f, model, binding.getForeignKey(i));
                     else
-                        loadOneToOne(oto, f, model, fk);
+                        loadOneToOne((OneToOneRelationship) rel, f, model, binding.getForeignKey(i));
                     break;
             }
         }
     }
 
     private <T> void lazilyLoadOneToOne(final OneToOneRelationship rel, Field field, T model, Serializable foreignKey) {
-        final String sql = getOneToOneEntityQuery(model, rel.getSecondType(), field, rel, foreignKey);
+        final SqlStatement sql = getOneToOneEntityQuery(model, rel.getSecondType(), rel, foreignKey);
         Object related;
         related = new LazyLoadDexMakerProxy(mSession.getContext(), rel.getSecondType()) {
             @Override
             protected Object loadObject() {
                 mSession.open();
                 Object ret = null;
-                Cursor result = mSession.executeForResult(sql);
+                Cursor result = mSession.executeForResult(sql.getSql(), sql.getStringArgs());
                 try {
                     while (result.moveToNext())
                         ret = createFromCursor(result, rel.getSecondType());
@@ -170,8 +526,14 @@ public class SqliteModelFactory implements ModelFactory {
     }
 
     private <T> void loadOneToOne(OneToOneRelationship rel, Field field, T model, Serializable foreignKey) {
-        String sql = getOneToOneEntityQuery(model, rel.getSecondType(), field, rel, foreignKey);
-        Cursor result = mSession.executeForResult(sql);
+        // The foreign key is only in this entity's row if it owns the relationship
+        if (rel.getOwner() == model.getClass()) {
+            Class<?> direction = model.getClass() == rel.getFirstType() ? rel.getSecondType() : rel.getFirstType();
+            if (resolveReference(direction, field, model, foreignKey))
+                return;
+        }
+        SqlStatement sql = getOneToOneEntityQuery(model, rel.getSecondType(), rel, foreignKey);
+        Cursor result = mSession.executeForResult(sql.getSql(), sql.getStringArgs());
         try {
             while (result.moveToNext())
                 mClassReflector.setFieldValue(model, field, createFromCursor(result, rel.getSecondType()));
@@ -181,31 +543,34 @@ public class SqliteModelFactory implements ModelFactory {
     }
 
     private <T> void lazilyLoadOneToMany(final OneToManyRelationship rel, Field field, T model) {
-        final StringBuilder sql = new StringBuilder("SELECT * FROM ").append(mPersistencePolicy.getModelTableName(rel
-                .getManyType()))
-                .append(" WHERE ").append(rel.getColumn()).append(" = ");
-        Serializable pk = mPersistencePolicy.getPrimaryKey(model);
-        switch (mMapper.getSqliteDataType(mPersistencePolicy.getPrimaryKeyField(model.getClass()))) {
-            case TEXT:
-                sql.append("'").append(pk).append("'");
-                break;
-            default:
-                sql.append(pk);
-        }
+        final SqlStatement sql = getOneToManyEntityQuery(rel, model);
         @SuppressWarnings("unchecked")
         final Collection<Object> collection = (Collection<Object>) mClassReflector.getFieldValue(model, field);
+        // Collections created in the same batch are all loaded when the first one is accessed
+        final CollectionBatch batch = isBatching(rel) ? getCollectionBatch(rel, rel.getManyType(), field, true) :
+                null;
+        if (batch != null)
+            batch.add(model, field);
         @SuppressWarnings("unchecked")
         Collection<Object> related = (Collection<Object>) new LazyLoadDexMakerProxy(mSession.getContext(),
                 collection.getClass()) {
             @Override
             protected Object loadObject() {
                 mSession.open();
-                Cursor result = mSession.executeForResult(sql.toString());
                 try {
-                    while (result.moveToNext())
-                        collection.add(createFromCursor(result, rel.getManyType()));
+                    if (batch != null) {
+                        if (!batch.mIsLoaded)
+                            loadCollectionBatch(batch);
+                        return collection;
+                    }
+                    Cursor result = mSession.executeForResult(sql.getSql(), sql.getStringArgs());
+                    try {
+                        while (result.moveToNext())
+                            collection.add(createFromCursor(result, rel.getManyType()));
+                    } finally {
+                        result.close();
+                    }
                 } finally {
-                    result.close();
                     mSession.close();
                 }
                 return collection;
@@ -215,39 +580,168 @@ public class SqliteModelFactory implements ModelFactory {
     }
 
     private <T> void loadOneToMany(OneToManyRelationship rel, Field field, T model) {
-        StringBuilder sql = new StringBuilder("SELECT * FROM ").append(mPersistencePolicy.getModelTableName(rel
-                .getManyType()))
-                .append(" WHERE ").append(rel.getColumn()).append(" = ");
-        Serializable pk = mPersistencePolicy.getPrimaryKey(model);
-        switch (mMapper.getSqliteDataType(mPersistencePolicy.getPrimaryKeyField(model.getClass()))) {
-            case TEXT:
-                sql.append("'").append(pk).append("'");
-                break;
-            default:
-                sql.append(pk);
-        }
+        SqlStatement sql = getOneToManyEntityQuery(rel, model);
         @SuppressWarnings("unchecked")
         Collection<Object> related = (Collection<Object>) mClassReflector.getFieldValue(model, field);
-        Cursor result = mSession.executeForResult(sql.toString());
+        Cursor result = mSession.executeForResult(sql.getSql(), sql.getStringArgs());
+        beginBatch();
+        boolean isLoaded = false;
         try {
             while (result.moveToNext())
                 related.add(createFromCursor(result, rel.getManyType()));
+            isLoaded = true;
         } finally {
             result.close();
+            if (!isLoaded)
+                cancelBatch();
         }
+        endBatch();
         mClassReflector.setFieldValue(model, field, related);
     }
 
+    private boolean resolveReference(Class<?> direction, Field field, Object model, Serializable foreignKey) {
+        if (foreignKey == null)
+            return true;
+        // Entities already in the session or the second-level cache don't need to be fetched again
+        Serializable pk = toPrimaryKey(direction, foreignKey);
+        Object cached = mSession.searchCache(direction, pk);
+        if (cached == null)
+            cached = searchUncached(direction, false, 0, pk);
+        if (cached == null)
+            cached = createFromSecondLevelCache(direction, pk);
+        if (cached != null) {
+            mClassReflector.setFieldValue(model, field, cached);
+            return true;
+        }
+        LoadState state = mLoadState.get();
+        if (state.mBatchDepth == 0)
+            return false;
+        ReferenceBatch batch = state.mReferenceBatches.get(direction);
+        if (batch == null) {
+            batch = new ReferenceBatch(direction);
+            state.mReferenceBatches.put(direction, batch);
+        }
+        batch.add(foreignKey, model, field);
+        return true;
+    }
+
+    private Serializable toPrimaryKey(Class<?> c, Serializable key) {
+        // Foreign keys are read from the cursor as strings, but entities are cached by their typed primary key
+        if (!(key instanceof String))
+            return key;
+        Class<?> type = mPersistencePolicy.getPrimaryKeyField(c).getType();
+        try {
+            if (type == int.class || type == Integer.class)
+                return Integer.valueOf((String) key);
+            if (type == long.class || type == Long.class)
+                return Long.valueOf((String) key);
+        } catch (NumberFormatException e) {
+            return key;
+        }
+        return key;
+    }
+
+    private void loadReferenceBatch(ReferenceBatch batch) {
+        Class<?> direction = batch.mDirection;
+        String pkColumn = mPersistencePolicy.getFieldColumnName(mPersistencePolicy.getPrimaryKeyField(direction));
+        List<Serializable> keys = new ArrayList<Serializable>(batch.mReferences.keySet());
+        beginBatch();
+        boolean isLoaded = false;
+        try {
+            for (int start = 0; start < keys.size(); start += SqlConstants.MAX_BIND_PARAMETERS) {
+                int end = Math.min(start + SqlConstants.MAX_BIND_PARAMETERS, keys.size());
+                SqlStatement sql = getBatchQuery(direction, pkColumn, keys.subList(start, end));
+                Cursor result = mSession.executeForResult(sql.getSql(), sql.getStringArgs());
+                try {
+                    int column = result.getColumnIndex(pkColumn);
+                    while (result.moveToNext()) {
+                        List<Object[]> references = batch.mReferences.get(result.getString(column));
+                        Object related = createFromCursor(result, direction);
+                        if (references == null)
+                            continue;
+                        for (Object[] reference : references)
+                            mClassReflector.setFieldValue(reference[0], (Field) reference[1], related);
+                    }
+                } finally {
+                    result.close();
+                }
+            }
+            isLoaded = true;
+        } finally {
+            if (!isLoaded)
+                cancelBatch();
+        }
+        endBatch();
+    }
+
+    private boolean isBatching(ModelRelationship rel) {
+        return mLoadState.get().mBatchDepth > 0 && rel.getBatchSize() > 0;
+    }
+
+    private CollectionBatch getCollectionBatch(ModelRelationship rel, Class<?> direction, Field field,
+                                               boolean isLazy) {
+        Map<Field, CollectionBatch> batches = mLoadState.get().mCollectionBatches;
+        CollectionBatch batch = batches.get(field);
+        // Entities created while a batch is being loaded go into a new batch
+        if (batch == null || batch.mIsLoaded) {
+            batch = new CollectionBatch(rel, direction, isLazy);
+            batches.put(field, batch);
+        }
+        return batch;
+    }
+
+    private void loadCollectionBatch(CollectionBatch batch) {
+        batch.mIsLoaded = true;
+        ModelRelationship rel = batch.mRelationship;
+        int chunkSize = Math.min(rel.getBatchSize(), SqlConstants.MAX_BIND_PARAMETERS);
+        List<Serializable> keys = new ArrayList<Serializable>(batch.mKeys);
+        beginBatch();
+        boolean isLoaded = false;
+        try {
+            for (int start = 0; start < keys.size(); start += chunkSize) {
+                int end = Math.min(start + chunkSize, keys.size());
+                SqlStatement sql;
+                String keyColumn;
+                if (rel.getRelationType() == ModelRelationship.RelationType.ManyToMany) {
+                    // Related rows are returned once for each owner they belong to, along with the owner's key
+                    sql = mSqlBuilder.createPreparedManyToManyBatchJoinQuery((ManyToManyRelationship) rel,
+                            keys.subList(start, end), batch.mDirection);
+                    keyColumn = SqlConstants.MANY_TO_MANY_OWNER_KEY;
+                } else {
+                    keyColumn = ((OneToManyRelationship) rel).getColumn();
+                    sql = getBatchQuery(batch.mDirection, keyColumn, keys.subList(start, end));
+                }
+                Cursor result = mSession.executeForResult(sql.getSql(), sql.getStringArgs());
+                try {
+                    int column = result.getColumnIndex(keyColumn);
+                    while (result.moveToNext()) {
+                        Collection<Object> collection = batch.mCollections.get(result.getString(column));
+                        Object related = createFromCursor(result, batch.mDirection);
+                        if (collection != null)
+                            collection.add(related);
+                    }
+                } finally {
+                    result.close();
+                }
+            }
+            isLoaded = true;
+        } finally {
+            if (!isLoaded)
+                cancelBatch();
+        }
+        endBatch();
+    }
+
     private <T> void lazilyLoadManyToOne(ManyToOneRelationship rel, Field field, T model, Serializable foreignKey) {
         final Class<?> direction = model.getClass() == rel.getFirstType() ? rel.getSecondType() : rel.getFirstType();
-        final String sql = getEntityQuery(direction, field, foreignKey);
+        final SqlStatement sql = getEntityQuery(direction, foreignKey);
         Object related;
         related = new LazyLoadDexMakerProxy(mSession.getContext(), rel.getSecondType()) {
             @Override
             protected Object loadObject() {
                 mSession.open();
                 Object ret = null;
-                Cursor result = mSession.executeForResult(sql);
+                Cursor result = mSession.executeForResult(sql.getSql(), sql.getStringArgs());
                 try {
                     while (result.moveToNext())
                         ret = createFromCursor(result, direction);
@@ -263,8 +757,10 @@ public class SqliteModelFactory implements ModelFactory {
 
     private <T> void loadManyToOne(ManyToOneRelationship rel, Field field, T model, Serializable foreignKey) {
         Class<?> direction = model.getClass() == rel.getFirstType() ? rel.getSecondType() : rel.getFirstType();
-        String sql = getEntityQuery(direction, field, foreignKey);
-        Cursor result = mSession.executeForResult(sql);
+        if (resolveReference(direction, field, model, foreignKey))
+            return;
+        SqlStatement sql = getEntityQuery(direction, foreignKey);
+        Cursor result = mSession.executeForResult(sql.getSql(), sql.getStringArgs());
         try {
             while (result.moveToNext())
                 mClassReflector.setFieldValue(model, field, createFromCursor(result, direction));
@@ -274,24 +770,35 @@ public class SqliteModelFactory implements ModelFactory {
     }
 
     private <T> void lazilyLoadManyToMany(final ManyToManyRelationship rel, Field field, T model) {
-        // TODO Add reflexive M:M support
-        final Class<?> direction = model.getClass() == rel.getFirstType() ? rel.getSecondType() : rel.getFirstType();
+        final Class<?> direction = getManyToManyDirection(rel, model);
         Serializable pk = mPersistencePolicy.getPrimaryKey(model);
-        final String sql = mSqlBuilder.createManyToManyJoinQuery(rel, pk, direction);
+        final SqlStatement sql = mSqlBuilder.createPreparedManyToManyJoinQuery(rel, pk, direction);
         @SuppressWarnings("unchecked")
         final Collection<Object> collection = (Collection<Object>) mClassReflector.getFieldValue(model, field);
+        // Collections created in the same batch are all loaded when the first one is accessed
+        final CollectionBatch batch = isBatching(rel) ? getCollectionBatch(rel, direction, field, true) : null;
+        if (batch != null)
+            batch.add(model, field);
         @SuppressWarnings("unchecked")
         Collection<Object> related = (Collection<Object>) new LazyLoadDexMakerProxy(mSession.getContext(),
                 collection.getClass()) {
             @Override
             protected Object loadObject() {
                 mSession.open();
-                Cursor result = mSession.executeForResult(sql);
                 try {
-                    while (result.moveToNext())
-                        collection.add(createFromCursor(result, direction));
+                    if (batch != null) {
+                        if (!batch.mIsLoaded)
+                            loadCollectionBatch(batch);
+                        return collection;
+                    }
+                    Cursor result = mSession.executeForResult(sql.getSql(), sql.getStringArgs());
+                    try {
+                        while (result.moveToNext())
+                            collection.add(createFromCursor(result, direction));
+                    } finally {
+                        result.close();
+                    }
                 } finally {
-                    result.close();
                     mSession.close();
                 }
                 return collection;
@@ -301,39 +808,43 @@ public class SqliteModelFactory implements ModelFactory {
     }
 
     private <T> void loadManyToMany(ManyToManyRelationship rel, Field f, T model) throws InfinitumRuntimeException {
-        // TODO Add reflexive M:M support
-        Class<?> direction = model.getClass() == rel.getFirstType() ? rel.getSecondType() : rel.getFirstType();
+        Class<?> direction = getManyToManyDirection(rel, model);
         Serializable pk = mPersistencePolicy.getPrimaryKey(model);
-        String sql = mSqlBuilder.createManyToManyJoinQuery(rel, pk, direction);
-        Cursor result = mSession.executeForResult(sql);
+        SqlStatement sql = mSqlBuilder.createPreparedManyToManyJoinQuery(rel, pk, direction);
+        Cursor result = mSession.executeForResult(sql.getSql(), sql.getStringArgs());
         @SuppressWarnings("unchecked")
         Collection<Object> related = (Collection<Object>) mClassReflector.getFieldValue(model, f);
+        beginBatch();
+        boolean isLoaded = false;
         try {
             while (result.moveToNext())
                 related.add(createFromCursor(result, direction));
+            isLoaded = true;
         } finally {
             result.close();
+            if (!isLoaded)
+                cancelBatch();
         }
+        endBatch();
         mClassReflector.setFieldValue(model, f, related);
     }
 
-    private String getEntityQuery(Class<?> clazz, Field field, Serializable foreignKey) {
+    private Class<?> getManyToManyDirection(ManyToManyRelationship rel, Object model) {
+        // TODO Add reflexive M:M support
+        return model.getClass() == rel.getFirstType() ? rel.getSecondType() : rel.getFirstType();
+    }
+
+    private SqlStatement getEntityQuery(Class<?> clazz, Serializable foreignKey) {
         StringBuilder sql = new StringBuilder("SELECT * FROM ").append(mPersistencePolicy.getModelTableName(clazz))
                 .append(" WHERE ")
-                .append(mPersistencePolicy.getFieldColumnName(mPersistencePolicy.getPrimaryKeyField(clazz)))
-                .append(" = ");
-        switch (mMapper.getSqliteDataType(field)) {
-            case TEXT:
-                sql.append("'").append(foreignKey).append("'");
-                break;
-            default:
-                sql.append(foreignKey);
-        }
-        return sql.append(" LIMIT 1").toString();
+                .append(mPersistencePolicy.getFieldColumnName(mPersistencePolicy.getPrimaryKeyField(clazz)));
+        List<Object> args = new ArrayList<Object>();
+        appendKeyCondition(sql, args, foreignKey);
+        return new SqlStatement(sql.append(" LIMIT 1").toString(), args);
     }
 
-    private String getOneToOneEntityQuery(Object model, Class<?> relatedClass, Field field, OneToOneRelationship rel,
-                                          Serializable foreignKey) {
+    private SqlStatement getOneToOneEntityQuery(Object model, Class<?> relatedClass, OneToOneRelationship rel,
+                                                Serializable foreignKey) {
         boolean isOwner = rel.getOwner() == model.getClass();
         StringBuilder sql = new StringBuilder("SELECT * FROM ")
                 .append(mPersistencePolicy.getModelTableName(relatedClass))
@@ -343,16 +854,119 @@ public class SqliteModelFactory implements ModelFactory {
         } else {
             sql.append(rel.getColumn());
         }
-        sql.append(" = ");
-        Serializable relKey = isOwner ? foreignKey : mPersistencePolicy.getPrimaryKey(model);
-        switch (mMapper.getSqliteDataType(field)) {
-            case TEXT:
-                sql.append("'").append(relKey).append("'");
-                break;
-            default:
-                sql.append(relKey);
+        List<Object> args = new ArrayList<Object>();
+        appendKeyCondition(sql, args, isOwner ? foreignKey : mPersistencePolicy.getPrimaryKey(model));
+        return new SqlStatement(sql.append(" LIMIT 1").toString(), args);
+    }
+
+    private SqlStatement getOneToManyEntityQuery(OneToManyRelationship rel, Object model) {
+        StringBuilder sql = new StringBuilder("SELECT * FROM ").append(mPersistencePolicy.getModelTableName(rel
+                .getManyType()))
+                .append(" WHERE ").append(rel.getColumn()).append(" = ?");
+        List<Object> args = new ArrayList<Object>();
+        args.add(mPersistencePolicy.getPrimaryKey(model));
+        return new SqlStatement(sql.toString(), args);
+    }
+
+    private SqlStatement getBatchQuery(Class<?> clazz, String column, List<Serializable> keys) {
+        StringBuilder sql = new StringBuilder("SELECT * FROM ").append(mPersistencePolicy.getModelTableName(clazz))
+                .append(" WHERE ").append(column).append(" IN (");
+        List<Object> args = new ArrayList<Object>(keys.size());
+        for (Serializable key : keys) {
+            if (!args.isEmpty())
+                sql.append(", ");
+            sql.append('?');
+            args.add(key);
+        }
+        return new SqlStatement(sql.append(')').toString(), args);
+    }
+
+    private void appendKeyCondition(StringBuilder sql, List<Object> args, Serializable key) {
+        // A null key can't be bound to a raw query, and comparing it with = would never match
+        if (key == null) {
+            sql.append(' ').append(SqlConstants.IS_NULL);
+        } else {
+            sql.append(" = ?");
+            args.add(key);
+        }
+    }
+
+    /**
+     * The state of the entities being loaded by a thread, which isn't shared with other threads loading through the
+     * same {@code SqliteModelFactory}.
+     */
+    private static class LoadState {
+
+        private Map<SqliteHydrationPlan, Binding> mBindings = new HashMap<SqliteHydrationPlan, Binding>();
+        private Map<Field, CollectionBatch> mCollectionBatches = new LinkedHashMap<Field, CollectionBatch>();
+        private Map<Class<?>, ReferenceBatch> mReferenceBatches = new LinkedHashMap<Class<?>, ReferenceBatch>();
+        private IdentityMap mUncached = new IdentityMap(Integer.MAX_VALUE);
+        private int mBatchDepth;
+
+        public void clearBatches() {
+            mCollectionBatches.clear();
+            mReferenceBatches.clear();
+            mBatchDepth = 0;
+        }
+
+    }
+
+    /**
+     * The collections of a one-to-many or many-to-many relationship which are fetched together, keyed by their owner's
+     * primary key.
+     */
+    private class CollectionBatch {
+
+        private ModelRelationship mRelationship;
+        private Class<?> mDirection;
+        private boolean mIsLazy;
+        private boolean mIsLoaded;
+        private List<Serializable> mKeys;
+        private Map<String, Collection<Object>> mCollections;
+
+        public CollectionBatch(ModelRelationship relationship, Class<?> direction, boolean isLazy) {
+            mRelationship = relationship;
+            mDirection = direction;
+            mIsLazy = isLazy;
+            mKeys = new ArrayList<Serializable>();
+            mCollections = new HashMap<String, Collection<Object>>();
+        }
+
+        @SuppressWarnings("unchecked")
+        public void add(Object model, Field field) {
+            Serializable key = mPersistencePolicy.getPrimaryKey(model);
+            // Keys are matched against the owner keys read back as strings
+            if (mCollections.put(String.valueOf(key), (Collection<Object>) mClassReflector.getFieldValue(model,
+                    field)) == null)
+                mKeys.add(key);
         }
-        return sql.append(" LIMIT 1").toString();
+
+    }
+
+    /**
+     * The entities referencing instances of a class through a foreign key, keyed by the referenced primary key.
+     */
+    private static class ReferenceBatch {
+
+        private Class<?> mDirection;
+        private Map<Serializable, List<Object[]>> mReferences;
+
+        public ReferenceBatch(Class<?> direction) {
+            mDirection = direction;
+            mReferences = new LinkedHashMap<Serializable, List<Object[]>>();
+        }
+
+        public void add(Serializable foreignKey, Object model, Field field) {
+            // Keys are matched against the primary keys read back as strings
+            String key = String.valueOf(foreignKey);
+            List<Object[]> references = mReferences.get(key);
+            if (references == null) {
+                references = new ArrayList<Object[]>();
+                mReferences.put(key, references);
+            }
+            references.add(new Object[]{model, field});
+        }
+
     }
 
 }
@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.sqlite.impl;
+
+import com.clarionmedia.infinitum.orm.sql.SqlStatement;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p> Process-wide, least-recently-used cache of {@link com.clarionmedia.infinitum.orm.criteria.Criteria} query
+ * results, keyed by the query's SQL and bind values. Only the primary keys of the results are cached, so that the
+ * entities themselves are resolved through the session or second-level cache. Every table carries a write version
+ * which {@link SqliteTemplate} bumps whenever it writes to the table, and cached results are discarded once the
+ * version of any table their query reads has changed. </p>
+ *
+ * @author Tyler Treat
+ * @version 1.1.0 09/05/13
+ * @since 1.1.0
+ */
+public class SqliteQueryCache {
+
+    private static final int DEFAULT_MAX_SIZE = 100;
+
+    private static SqliteQueryCache sInstance;
+
+    private Map<String, Entry> mEntries;
+    private Map<String, Long> mTableVersions;
+    private long mGeneration;
+    private int mMaxSize;
+    private long mHitCount;
+    private long mMissCount;
+
+    /**
+     * Returns the process-wide instance of {@code SqliteQueryCache}.
+     *
+     * @return {@code SqliteQueryCache}
+     */
+    public static synchronized SqliteQueryCache getInstance() {
+        if (sInstance == null)
+            sInstance = new SqliteQueryCache(DEFAULT_MAX_SIZE);
+        return sInstance;
+    }
+
+    SqliteQueryCache(int maxSize) {
+        setMaxSize(maxSize);
+        mTableVersions = new HashMap<String, Long>();
+        mEntries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > mMaxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the cache key for the given query.
+     *
+     * @param entityClass the {@link Class} of the entities the query retrieves
+     * @param query       the parameterized query
+     * @return cache key
+     */
+    public String createKey(Class<?> entityClass, SqlStatement query) {
+        StringBuilder key = new StringBuilder(entityClass.getName()).append('\n').append(query.getSql());
+        // Arguments are length-prefixed so that no two argument lists produce the same key
+        for (String arg : query.getStringArgs()) {
+            key.append('\n');
+            if (arg == null)
+                key.append('-');
+            else
+                key.append(arg.length()).append(':').append(arg);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Returns the current write versions of the given tables. Versions should be read before the query is executed,
+     * so that writes made while it runs invalidate its results.
+     *
+     * @param tables the names of the tables the query reads
+     * @return write versions, in the order of {@code tables}
+     */
+    public synchronized long[] getVersions(String[] tables) {
+        long[] versions = new long[tables.length];
+        for (int i = 0; i < tables.length; i++)
+            versions[i] = getVersion(tables[i]);
+        return versions;
+    }
+
+    /**
+     * Returns the current write version of the given table, which changes whenever the table is written.
+     *
+     * @param table the name of the table
+     * @return write version
+     */
+    public synchronized long getVersion(String table) {
+        Long version = mTableVersions.get(table);
+        return mGeneration + (version == null ? 0 : version);
+    }
+
+    /**
+     * Bumps the write version of the given table, invalidating the cached results of every query reading it.
+     *
+     * @param table the name of the table which was written
+     */
+    public synchronized void bumpVersion(String table) {
+        Long version = mTableVersions.get(table);
+        mTableVersions.put(table, version == null ? 1 : version + 1);
+    }
+
+    /**
+     * Invalidates the cached results of every query, e.g. after arbitrary SQL has been executed.
+     */
+    public synchronized void invalidateAll() {
+        // Advancing the generation changes the version of every table, including those not written yet
+        mGeneration++;
+        mEntries.clear();
+    }
+
+    /**
+     * Returns the primary keys of the cached results for the given query.
+     *
+     * @param key the query's cache key
+     * @return {@link List} of primary keys or {@code null} if the results are not cached or a table has been written
+     */
+    public synchronized List<Serializable> get(String key) {
+        Entry entry = mEntries.get(key);
+        if (entry != null) {
+            for (int i = 0; i < entry.mTables.length; i++) {
+                if (getVersion(entry.mTables[i]) != entry.mVersions[i]) {
+                    mEntries.remove(key);
+                    entry = null;
+                    break;
+                }
+            }
+        }
+        if (entry == null) {
+            mMissCount++;
+            return null;
+        }
+        mHitCount++;
+        return entry.mKeys;
+    }
+
+    /**
+     * Caches the primary keys of the results for the given query.
+     *
+     * @param key      the query's cache key
+     * @param tables   the names of the tables the query reads
+     * @param versions the write versions of {@code tables} read before the query was executed
+     * @param keys     the primary keys of the results, in result order
+     */
+    public synchronized void put(String key, String[] tables, long[] versions, List<Serializable> keys) {
+        mEntries.put(key, new Entry(tables, versions, keys));
+    }
+
+    /**
+     * Sets the maximum number of queries whose results are cached, evicting the least recently used results if
+     * needed.
+     *
+     * @param maxSize the maximum number of queries
+     */
+    public synchronized void setMaxSize(int maxSize) {
+        if (maxSize <= 0)
+            throw new IllegalArgumentException("Query cache size must be greater than 0.");
+        mMaxSize = maxSize;
+        if (mEntries == null)
+            return;
+        while (mEntries.size() > mMaxSize)
+            mEntries.remove(mEntries.keySet().iterator().next());
+    }
+
+    /**
+     * Returns the maximum number of queries whose results are cached.
+     *
+     * @return maximum number of queries
+     */
+    public synchronized int getMaxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * Returns the number of queries whose results are cached, including any which have been invalidated but not yet
+     * evicted.
+     *
+     * @return number of queries
+     */
+    public synchronized int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * Returns the number of times cached results were found for a query.
+     *
+     * @return hit count
+     */
+    public synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * Returns the number of times no current results were cached for a query.
+     *
+     * @return miss count
+     */
+    public synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    private static class Entry {
+
+        private String[] mTables;
+        private long[] mVersions;
+        private List<Serializable> mKeys;
+
+        public Entry(String[] tables, long[] versions, List<Serializable> keys) {
+            mTables = tables;
+            mVersions = versions;
+            mKeys = keys;
+        }
+
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.sqlite.impl;
+
+import com.clarionmedia.infinitum.orm.annotation.Cacheable;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p> Process-wide second-level cache of entities, shared by every session and retained when they are closed. Each
+ * persistent class annotated with {@link Cacheable}, or configured with {@link #setRegion(Class, int, long, boolean)},
+ * has its own {@link SqliteCacheRegion}, while other classes are not cached. Entries are evicted whenever their rows
+ * are written, and every region is cleared when arbitrary SQL is executed or a transaction is rolled back. </p>
+ *
+ * @author Tyler Treat
+ * @version 1.1.0 09/05/13
+ * @since 1.1.0
+ */
+public class SqliteSecondLevelCache {
+
+    private static SqliteSecondLevelCache sInstance;
+
+    private Map<Class<?>, SqliteCacheRegion> mRegions;
+
+    /**
+     * Returns the process-wide instance of {@code SqliteSecondLevelCache}.
+     *
+     * @return {@code SqliteSecondLevelCache}
+     */
+    public static synchronized SqliteSecondLevelCache getInstance() {
+        if (sInstance == null)
+            sInstance = new SqliteSecondLevelCache();
+        return sInstance;
+    }
+
+    SqliteSecondLevelCache() {
+        mRegions = new HashMap<Class<?>, SqliteCacheRegion>();
+    }
+
+    /**
+     * Returns the {@link SqliteCacheRegion} for the given persistent class, creating it from the class's {@link
+     * Cacheable} annotation if it has not been created yet.
+     *
+     * @param c the persistent class to retrieve the region for
+     * @return {@code SqliteCacheRegion} or {@code null} if the class is not cached
+     */
+    public synchronized SqliteCacheRegion getRegion(Class<?> c) {
+        if (mRegions.containsKey(c))
+            return mRegions.get(c);
+        // Classes which aren't cached are remembered as well so they're only inspected once
+        Cacheable cacheable = c.getAnnotation(Cacheable.class);
+        SqliteCacheRegion region = cacheable == null ? null : new SqliteCacheRegion(cacheable.capacity(),
+                cacheable.timeToLive(), cacheable.readOnly());
+        mRegions.put(c, region);
+        return region;
+    }
+
+    /**
+     * Configures the {@link SqliteCacheRegion} for the given persistent class, replacing any existing region and its
+     * entries. This takes precedence over the class's {@link Cacheable} annotation.
+     *
+     * @param c          the persistent class to configure the region for
+     * @param capacity   the maximum number of entities to retain
+     * @param timeToLive the number of milliseconds entities are retained for, or 0 to retain them until evicted
+     * @param readOnly   {@code true} if cached entities are shared between sessions, {@code false} if each session
+     *                   constructs its own
+     * @return the new {@code SqliteCacheRegion}
+     */
+    public synchronized SqliteCacheRegion setRegion(Class<?> c, int capacity, long timeToLive, boolean readOnly) {
+        SqliteCacheRegion region = new SqliteCacheRegion(capacity, timeToLive, readOnly);
+        mRegions.put(c, region);
+        return region;
+    }
+
+    /**
+     * Stops caching the given persistent class, regardless of its {@link Cacheable} annotation.
+     *
+     * @param c the persistent class to stop caching
+     */
+    public synchronized void removeRegion(Class<?> c) {
+        mRegions.put(c, null);
+    }
+
+    /**
+     * Evicts the entity of the given persistent class with the given primary key, if it is cached.
+     *
+     * @param c  the persistent class of the entity
+     * @param id the primary key of the entity
+     */
+    public void evict(Class<?> c, Serializable id) {
+        SqliteCacheRegion region = getRegion(c);
+        if (region != null)
+            region.evict(id);
+    }
+
+    /**
+     * Evicts every cached entity while retaining the configured regions.
+     */
+    public synchronized void clear() {
+        for (SqliteCacheRegion region : mRegions.values()) {
+            if (region != null)
+                region.clear();
+        }
+    }
+
+}
@@ -20,23 +20,34 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.SQLException;
 import com.clarionmedia.infinitum.context.InfinitumContext;
+import com.clarionmedia.infinitum.di.AbstractProxy;
 import com.clarionmedia.infinitum.di.annotation.Autowired;
 import com.clarionmedia.infinitum.event.annotation.Event;
 import com.clarionmedia.infinitum.exception.InfinitumRuntimeException;
-import com.clarionmedia.infinitum.internal.caching.LruCache;
 import com.clarionmedia.infinitum.logging.Logger;
 import com.clarionmedia.infinitum.logging.impl.SmartLogger;
+import com.clarionmedia.infinitum.orm.CacheStatistics;
+import com.clarionmedia.infinitum.orm.OrmConstants.CacheOverflow;
 import com.clarionmedia.infinitum.orm.Session;
 import com.clarionmedia.infinitum.orm.criteria.Criteria;
 import com.clarionmedia.infinitum.orm.exception.SQLGrammarException;
+import com.clarionmedia.infinitum.orm.internal.IdentityMap;
+import com.clarionmedia.infinitum.orm.internal.NegativeCache;
+import com.clarionmedia.infinitum.orm.internal.bind.FieldAccessors;
+import com.clarionmedia.infinitum.orm.persistence.FieldAccessor;
 import com.clarionmedia.infinitum.orm.persistence.PersistencePolicy;
 import com.clarionmedia.infinitum.orm.persistence.TypeAdapter;
 import com.clarionmedia.infinitum.orm.rest.Deserializer;
 import com.clarionmedia.infinitum.orm.sqlite.SqliteTypeAdapter;
+import com.clarionmedia.infinitum.orm.sqlite.impl.SqliteUnitOfWork.Operation;
 
 import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * <p> Implementation of {@link Session} for interacting with SQLite. </p> <p> {@code SqliteSession} is threadsafe in
@@ -47,11 +58,27 @@ import java.util.Map;
  * when the count reaches zero. </p>
  *
  * @author Tyler Treat
- * @version 1.1.0 04/25/13
+ * @version 1.1.0 09/05/13
  * @since 1.0
  */
 public class SqliteSession implements Session {
 
+    /**
+     * The default maximum estimated weight of the entities in the session cache, in bytes.
+     */
+    public static final long DEFAULT_CACHE_WEIGHT = 1024 * 1024;
+
+    /**
+     * The default maximum number of missing primary keys remembered by the session.
+     */
+    public static final int DEFAULT_NEGATIVE_CACHE_SIZE = 500;
+
+    private static final int OBJECT_OVERHEAD = 16;
+    private static final int REFERENCE_SIZE = 4;
+    private static final int STRING_OVERHEAD = 40;
+    private static final int ARRAY_OVERHEAD = 16;
+    private static final int BOXED_VALUE_SIZE = 16;
+
     @Autowired
     private SqliteTemplate mSqlite;
 
@@ -61,7 +88,11 @@ public class SqliteSession implements Session {
     @Autowired
     private PersistencePolicy mPolicy;
 
-    private Map<Integer, Object> mSessionCache;
+    private SqliteQueryCache mQueryCache = SqliteQueryCache.getInstance();
+    private IdentityMap mSessionCache;
+    private NegativeCache mNegativeCache;
+    private CacheStatistics mCacheStatistics;
+    private SqliteUnitOfWork mUnitOfWork;
     private Logger mLogger;
     private int mCacheSize;
     private int mSessionCount;
@@ -82,7 +113,10 @@ public class SqliteSession implements Session {
         mSessionCount = 0;
         mCacheSize = cacheSize;
         mLogger = new SmartLogger(getClass().getSimpleName());
-        mSessionCache = new LruCache<Integer, Object>(mCacheSize);
+        mCacheStatistics = new CacheStatistics();
+        mSessionCache = new IdentityMap(mCacheSize, DEFAULT_CACHE_WEIGHT, new EntityWeigher());
+        mSessionCache.setStatistics(mCacheStatistics);
+        mNegativeCache = new NegativeCache(DEFAULT_NEGATIVE_CACHE_SIZE);
     }
 
     @Override
@@ -105,6 +139,8 @@ public class SqliteSession implements Session {
             // No more open references to this Session, so actually close it
             mSqlite.close();
             recycleCache();
+            if (mUnitOfWork != null)
+                mUnitOfWork.clear();
         }
         mLogger.debug("Session closed");
         return this;
@@ -118,12 +154,14 @@ public class SqliteSession implements Session {
     @Override
     public Session recycleCache() {
         mSessionCache.clear();
+        mNegativeCache.clear();
         return this;
     }
 
     @Override
     public Session setCacheSize(int cacheSize) {
         mCacheSize = cacheSize;
+        mSessionCache.setMaxSize(cacheSize);
         return this;
     }
 
@@ -140,11 +178,14 @@ public class SqliteSession implements Session {
     @Override
     @Event("entitySaved")
     public long save(Object model) throws InfinitumRuntimeException {
+        if (mUnitOfWork != null) {
+            mUnitOfWork.registerSave(model);
+            return 0;
+        }
         long id = mSqlite.save(model);
         if (id != -1) {
             // Add to session cache
-            int hash = mPolicy.computeModelHash(model);
-            mSessionCache.put(hash, model);
+            cacheModel(model);
         }
         return id;
     }
@@ -152,11 +193,14 @@ public class SqliteSession implements Session {
     @Override
     @Event("entityUpdated")
     public boolean update(Object model) throws InfinitumRuntimeException {
+        if (mUnitOfWork != null) {
+            mUnitOfWork.registerUpdate(model);
+            return true;
+        }
         boolean success = mSqlite.update(model);
         if (success) {
             // Update session cache
-            int hash = mPolicy.computeModelHash(model);
-            mSessionCache.put(hash, model);
+            cacheModel(model);
         }
         return success;
     }
@@ -164,11 +208,14 @@ public class SqliteSession implements Session {
     @Override
     @Event("entityDeleted")
     public boolean delete(Object model) throws InfinitumRuntimeException {
+        if (mUnitOfWork != null) {
+            mUnitOfWork.registerDelete(model);
+            return true;
+        }
         boolean success = mSqlite.delete(model);
         if (success) {
             // Remove from session cache
-            int hash = mPolicy.computeModelHash(model);
-            mSessionCache.remove(hash);
+            evictModel(model);
         }
         return success;
     }
@@ -176,11 +223,14 @@ public class SqliteSession implements Session {
     @Override
     @Event("entitySavedOrUpdated")
     public long saveOrUpdate(Object model) throws InfinitumRuntimeException {
+        if (mUnitOfWork != null) {
+            mUnitOfWork.registerSaveOrUpdate(model);
+            return 0;
+        }
         long id = mSqlite.saveOrUpdate(model);
         if (id >= 0) {
             // Update session cache
-            int hash = mPolicy.computeModelHash(model);
-            mSessionCache.put(hash, model);
+            cacheModel(model);
         }
         return id;
     }
@@ -197,35 +247,45 @@ public class SqliteSession implements Session {
 
     @Override
     public int saveAll(Collection<?> models) throws InfinitumRuntimeException {
-        int count = 0;
-        for (Object model : models) {
-            if (save(model) != -1)
-                count++;
+        if (mUnitOfWork != null) {
+            for (Object model : models)
+                mUnitOfWork.registerSave(model);
+            return models.size();
         }
-        return count;
+        return insertAll(models);
     }
 
     @Override
     public int deleteAll(Collection<?> models) throws InfinitumRuntimeException {
-        int count = 0;
-        for (Object model : models) {
-            if (delete(model))
-                count++;
+        if (mUnitOfWork != null) {
+            for (Object model : models)
+                mUnitOfWork.registerDelete(model);
+            return models.size();
         }
-        return count;
+        return removeAll(models);
     }
 
     @SuppressWarnings("unchecked")
     @Override
     public <T> T load(Class<T> c, Serializable id) throws InfinitumRuntimeException, IllegalArgumentException {
-        int hash = mPolicy.computeModelHash(c, id);
-        if (checkCache(hash))
-            return (T) mSessionCache.get(hash);
-        return mSqlite.load(c, id);
+        Object cached = mSessionCache.get(c, id);
+        mCacheStatistics.recordLookup(c, cached != null);
+        if (cached != null)
+            return (T) cached;
+        // The table version is read before loading so that rows inserted meanwhile invalidate the recorded miss
+        long version = mQueryCache.getVersion(mPolicy.getModelTableName(c));
+        if (mNegativeCache.contains(c, id, version))
+            return null;
+        T loaded = mSqlite.load(c, id);
+        if (loaded == null)
+            mNegativeCache.add(c, id, version);
+        return loaded;
     }
 
     @Override
     public Session execute(String sql) throws SQLGrammarException {
+        // Arbitrary SQL may insert any row, so no missing primary key can be trusted afterwards
+        mNegativeCache.clear();
         mSqlite.execute(sql);
         return this;
     }
@@ -250,12 +310,17 @@ public class SqliteSession implements Session {
 
     @Override
     public Session commit() {
+        flush();
         mSqlite.commit();
         return this;
     }
 
     @Override
     public Session rollback() {
+        if (mUnitOfWork != null)
+            mUnitOfWork.clear();
+        // Rows read as missing during the transaction may be restored by rolling it back
+        mNegativeCache.clear();
         mSqlite.rollback();
         return this;
     }
@@ -283,21 +348,249 @@ public class SqliteSession implements Session {
     }
 
     @Override
-    public boolean cache(int hash, Object model) {
-        if (mSessionCache.size() >= mCacheSize)
+    public boolean cache(Class<?> c, Serializable id, Object model) {
+        // A full cache evicts its least recently used entities, so puts are only rejected if caching is disabled
+        if (mCacheSize <= 0) {
+            mCacheStatistics.recordRejectedPut(c);
+            return false;
+        }
+        mSessionCache.put(c, id, model);
+        return true;
+    }
+
+    @Override
+    public boolean cache(Class<?> c, long id, Object model) {
+        if (mCacheSize <= 0) {
+            mCacheStatistics.recordRejectedPut(c);
             return false;
-        mSessionCache.put(hash, model);
+        }
+        mSessionCache.put(c, id, model);
         return true;
     }
 
     @Override
-    public boolean checkCache(int hash) {
-        return mSessionCache.containsKey(hash);
+    public boolean checkCache(Class<?> c, Serializable id) {
+        boolean cached = mSessionCache.contains(c, id);
+        mCacheStatistics.recordLookup(c, cached);
+        return cached;
+    }
+
+    @Override
+    public boolean checkCache(Class<?> c, long id) {
+        boolean cached = mSessionCache.contains(c, id);
+        mCacheStatistics.recordLookup(c, cached);
+        return cached;
+    }
+
+    @Override
+    public Object searchCache(Class<?> c, Serializable id) {
+        Object cached = mSessionCache.get(c, id);
+        mCacheStatistics.recordLookup(c, cached != null);
+        return cached;
+    }
+
+    @Override
+    public Object searchCache(Class<?> c, long id) {
+        Object cached = mSessionCache.get(c, id);
+        mCacheStatistics.recordLookup(c, cached != null);
+        return cached;
     }
 
     @Override
-    public Object searchCache(int hash) {
-        return mSessionCache.get(hash);
+    public CacheStatistics getCacheStatistics() {
+        return mCacheStatistics;
+    }
+
+    /**
+     * Sets the maximum estimated weight of the entities in this {@code SqliteSession}'s cache, in bytes. Each entity
+     * is weighed from the sizes of its column values when it is cached, and the least recently used entities are
+     * evicted as soon as either the cache size or its weight is exceeded. Defaults to {@link #DEFAULT_CACHE_WEIGHT}.
+     *
+     * @param cacheWeight the maximum weight of the cached entities, in bytes
+     * @return {@code Session} to allow chaining
+     */
+    public Session setCacheWeight(long cacheWeight) {
+        mSessionCache.setMaxWeight(cacheWeight);
+        return this;
+    }
+
+    /**
+     * Returns the maximum estimated weight of the entities in this {@code SqliteSession}'s cache, in bytes.
+     *
+     * @return the maximum weight of the cached entities
+     */
+    public long getCacheWeight() {
+        return mSessionCache.getMaxWeight();
+    }
+
+    /**
+     * Sets what becomes of the entities evicted from this {@code SqliteSession}'s cache. With {@link
+     * CacheOverflow#Soft} or {@link CacheOverflow#Weak}, evicted entities are retained through soft or weak references
+     * and can still be found in the cache until the garbage collector reclaims them, rather than being discarded as
+     * with {@link CacheOverflow#Discard}, the default.
+     *
+     * @param overflow the {@link CacheOverflow} to apply to evicted entities
+     * @return {@code Session} to allow chaining
+     */
+    public Session setCacheOverflow(CacheOverflow overflow) {
+        mSessionCache.setOverflow(overflow);
+        return this;
+    }
+
+    /**
+     * Returns what becomes of the entities evicted from this {@code SqliteSession}'s cache.
+     *
+     * @return {@link CacheOverflow} applied to evicted entities
+     */
+    public CacheOverflow getCacheOverflow() {
+        return mSessionCache.getOverflow();
+    }
+
+    /**
+     * Sets the maximum number of missing primary keys this {@code SqliteSession} remembers. A primary key which {@link
+     * #load(Class, Serializable)} doesn't find is remembered, so loading it again returns {@code null} without
+     * querying the database until its table is written by any session, including writes cascaded from other entities,
+     * {@link #execute(String)} is called or the cache is recycled. A size of {@code 0} disables this.
+     *
+     * @param negativeCacheSize the maximum number of missing primary keys to remember
+     * @return {@code Session} to allow chaining
+     */
+    public Session setNegativeCacheSize(int negativeCacheSize) {
+        mNegativeCache.setMaxSize(negativeCacheSize);
+        return this;
+    }
+
+    /**
+     * Returns the maximum number of missing primary keys this {@code SqliteSession} remembers.
+     *
+     * @return maximum number of missing primary keys
+     */
+    public int getNegativeCacheSize() {
+        return mNegativeCache.getMaxSize();
+    }
+
+    /**
+     * Enables or disables upsert mode for this {@code SqliteSession}. When enabled, {@link #saveOrUpdate(Object)} and
+     * {@link #saveOrUpdateAll(Collection)} try to insert each entity first and only update its row if one with the same
+     * primary key already exists, instead of an update followed by an insert.
+     *
+     * @param upsert {@code true} to enable upsert mode, {@code false} to disable it
+     * @return {@code Session} to allow chaining
+     */
+    public Session setUpsert(boolean upsert) {
+        mSqlite.setUpsert(upsert);
+        return this;
+    }
+
+    /**
+     * Indicates if upsert mode is enabled for this {@code SqliteSession}.
+     *
+     * @return {@code true} if upsert mode is enabled, {@code false} if not
+     */
+    public boolean isUpsert() {
+        return mSqlite.isUpsert();
+    }
+
+    /**
+     * Enables or disables dirty checking for this {@code SqliteSession}. When enabled, entities loaded or written
+     * through the {@code Session} are snapshotted and {@link #update(Object)} only writes the columns which have
+     * changed since, skipping the update and its cascade altogether if none have.
+     *
+     * @param dirtyChecking {@code true} to enable dirty checking, {@code false} to disable it
+     * @return {@code Session} to allow chaining
+     */
+    public Session setDirtyChecking(boolean dirtyChecking) {
+        mSqlite.setDirtyChecking(dirtyChecking);
+        return this;
+    }
+
+    /**
+     * Indicates if dirty checking is enabled for this {@code SqliteSession}.
+     *
+     * @return {@code true} if dirty checking is enabled, {@code false} if not
+     */
+    public boolean isDirtyChecking() {
+        return mSqlite.isDirtyChecking();
+    }
+
+    /**
+     * Returns the {@link SqliteStatementCache} holding the statements compiled for this {@code SqliteSession}'s
+     * writes. Its hit and miss counts can be used to size it with {@link SqliteStatementCache#setMaxSize(int)}.
+     *
+     * @return {@code SqliteStatementCache}
+     */
+    public SqliteStatementCache getStatementCache() {
+        return mSqlite.getStatementCache();
+    }
+
+    /**
+     * Enables or disables unit-of-work mode for this {@code SqliteSession}. When enabled, saves, updates and deletes
+     * are only recorded, repeated writes to the same entity collapse into one, and nothing is written to the database
+     * until {@link #flush()} or {@link #commit()} is called. Deferred writes report success immediately, with
+     * {@link #save(Object)} and {@link #saveOrUpdate(Object)} returning 0. Disabling unit-of-work mode flushes any
+     * pending writes, while {@link #rollback()} discards them.
+     *
+     * @param unitOfWork {@code true} to enable unit-of-work mode, {@code false} to disable it
+     * @return {@code Session} to allow chaining
+     */
+    public Session setUnitOfWork(boolean unitOfWork) {
+        if (unitOfWork && mUnitOfWork == null) {
+            mUnitOfWork = new SqliteUnitOfWork(mPolicy);
+        } else if (!unitOfWork && mUnitOfWork != null) {
+            flush();
+            mUnitOfWork = null;
+        }
+        return this;
+    }
+
+    /**
+     * Indicates if unit-of-work mode is enabled for this {@code SqliteSession}.
+     *
+     * @return {@code true} if unit-of-work mode is enabled, {@code false} if not
+     */
+    public boolean isUnitOfWork() {
+        return mUnitOfWork != null;
+    }
+
+    /**
+     * Writes all pending unit-of-work changes to the database. Saves are batched by table and written in foreign key
+     * dependency order, followed by saves-or-updates and updates, and finally deletes, which are batched by table in
+     * reverse dependency order. The writes are made in a single transaction, and the pending changes are only
+     * discarded once it succeeds. If a write throws, everything the flush wrote is rolled back and the changes remain
+     * pending. This has no effect if unit-of-work mode is disabled or nothing is pending.
+     *
+     * @return {@code Session} to allow chaining
+     * @throws InfinitumRuntimeException if one or more of the pending entities is marked transient
+     */
+    public Session flush() throws InfinitumRuntimeException {
+        if (mUnitOfWork == null || mUnitOfWork.isEmpty())
+            return this;
+        List<Object> saves = mUnitOfWork.getPending(Operation.SAVE);
+        List<Object> saveOrUpdates = mUnitOfWork.getPending(Operation.SAVE_OR_UPDATE);
+        List<Object> updates = mUnitOfWork.getPending(Operation.UPDATE);
+        List<Object> deletes = mUnitOfWork.getPending(Operation.DELETE);
+        boolean isFlushed = false;
+        mSqlite.beginNestedTransaction();
+        try {
+            if (!saves.isEmpty())
+                insertAll(saves);
+            for (Object model : saveOrUpdates) {
+                if (mSqlite.saveOrUpdate(model) >= 0)
+                    cacheModel(model);
+            }
+            for (Object model : updates) {
+                if (mSqlite.update(model))
+                    cacheModel(model);
+            }
+            if (!deletes.isEmpty())
+                removeAll(deletes);
+            isFlushed = true;
+        } finally {
+            mSqlite.endNestedTransaction(isFlushed);
+        }
+        mUnitOfWork.clear();
+        mLogger.debug("Session flushed");
+        return this;
     }
 
     /**
@@ -311,6 +604,18 @@ public class SqliteSession implements Session {
         return mSqlite.executeForResult(sql);
     }
 
+    /**
+     * Executes the given parameterized SQL query on the database for a result.
+     *
+     * @param sql  the parameterized SQL query to execute
+     * @param args the arguments to bind to the query's placeholders, in order
+     * @return {@link Cursor} containing the results of the query
+     * @throws SQLGrammarException if the SQL was formatted incorrectly
+     */
+    public Cursor executeForResult(String sql, String[] args) throws SQLGrammarException {
+        return mSqlite.executeForResult(sql, args);
+    }
+
     /**
      * Executes the given count query and returns the number of rows resulting from it.
      *
@@ -350,4 +655,116 @@ public class SqliteSession implements Session {
         return mSqlite.getSqliteMapper();
     }
 
+    private int insertAll(Collection<?> models) {
+        long[] results = mSqlite.saveAll(models);
+        int count = 0;
+        int i = 0;
+        for (Object model : models) {
+            if (results[i++] != -1) {
+                // Add to session cache
+                cacheModel(model);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private int removeAll(Collection<?> models) {
+        int count = mSqlite.deleteAll(models);
+        // A batched delete doesn't report individual rows, so evict every model from the session cache
+        for (Object model : models)
+            evictModel(model);
+        return count;
+    }
+
+    private void cacheModel(Object model) {
+        Serializable id = mPolicy.getPrimaryKey(model);
+        mSessionCache.put(model.getClass(), id, model);
+        mNegativeCache.remove(model.getClass(), id);
+    }
+
+    private void evictModel(Object model) {
+        mSessionCache.remove(model.getClass(), mPolicy.getPrimaryKey(model));
+    }
+
+    /**
+     * Estimates the weight of entities in bytes from the sizes of their column values. Relationships are only weighed
+     * as references, since related entities are cached and weighed separately.
+     */
+    private class EntityWeigher implements IdentityMap.Weigher {
+
+        private Map<Class<?>, EntityLayout> mLayouts = new ConcurrentHashMap<Class<?>, EntityLayout>();
+
+        @Override
+        public int weigh(Object entity) {
+            if (AbstractProxy.isAopProxy(entity))
+                entity = AbstractProxy.getProxy(entity).getTarget();
+            EntityLayout layout = getLayout(entity.getClass());
+            long weight = layout.mFixedWeight;
+            for (FieldAccessor accessor : layout.mColumns) {
+                try {
+                    weight += weighValue(accessor.get(entity));
+                } catch (IllegalAccessException e) {
+                    // The column's reference has already been weighed
+                }
+            }
+            return (int) Math.min(weight, Integer.MAX_VALUE);
+        }
+
+        private EntityLayout getLayout(Class<?> c) {
+            EntityLayout layout = mLayouts.get(c);
+            if (layout != null)
+                return layout;
+            // Primitive columns weigh the same for every entity, so only columns holding objects are read
+            int fixedWeight = OBJECT_OVERHEAD;
+            List<FieldAccessor> columns = new ArrayList<FieldAccessor>();
+            for (Field field : mPolicy.getPersistentFields(c)) {
+                Class<?> type = field.getType();
+                if (type.isPrimitive()) {
+                    fixedWeight += getPrimitiveSize(type);
+                } else {
+                    fixedWeight += REFERENCE_SIZE;
+                    if (!mPolicy.isRelationship(field))
+                        columns.add(FieldAccessors.forField(field));
+                }
+            }
+            layout = new EntityLayout(fixedWeight, columns.toArray(new FieldAccessor[columns.size()]));
+            mLayouts.put(c, layout);
+            return layout;
+        }
+
+        private int getPrimitiveSize(Class<?> type) {
+            if (type == long.class || type == double.class)
+                return 8;
+            if (type == int.class || type == float.class)
+                return 4;
+            if (type == short.class || type == char.class)
+                return 2;
+            return 1;
+        }
+
+        private long weighValue(Object value) {
+            if (value == null)
+                return 0;
+            if (value instanceof String)
+                return STRING_OVERHEAD + 2L * ((String) value).length();
+            if (value instanceof byte[])
+                return ARRAY_OVERHEAD + ((byte[]) value).length;
+            return BOXED_VALUE_SIZE;
+        }
+
+    }
+
+    private static class EntityLayout {
+
+        private int mFixedWeight;
+        private FieldAccessor[] mColumns;
+
+        public EntityLayout(int fixedWeight, FieldAccessor[] columns) {
+            mFixedWeight = fixedWeight;
+            mColumns = columns;
+        }
+
+    }
+
 }
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.sqlite.impl;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p> Bounded, least-recently-used cache of compiled {@link SQLiteStatement} instances keyed by their SQL. Statements
+ * are compiled against the {@link SQLiteDatabase} the cache is attached to and are closed when they are evicted or the
+ * cache is cleared, so a statement retrieved from the cache should be bound and executed before another statement is
+ * retrieved. Hit and miss counts are retained across databases so that the cache can be sized for a workload. </p> <p>
+ * The cache is thread-safe, but the statements it holds are not: a cached statement carries the values bound to it
+ * until it is executed. Callers sharing a cache between threads must therefore hold the cache's lock, by
+ * synchronizing on it, from retrieving a statement until they are done executing it. </p>
+ *
+ * @author Tyler Treat
+ * @version 1.1.0 09/05/13
+ * @since 1.1.0
+ */
+public class SqliteStatementCache {
+
+    private Map<String, SQLiteStatement> mStatements;
+    private SQLiteDatabase mDatabase;
+    private int mMaxSize;
+    private long mHitCount;
+    private long mMissCount;
+
+    /**
+     * Constructs a new {@code SqliteStatementCache}.
+     *
+     * @param maxSize the maximum number of statements to retain
+     */
+    public SqliteStatementCache(int maxSize) {
+        if (maxSize <= 0)
+            throw new IllegalArgumentException("Statement cache size must be greater than 0.");
+        mMaxSize = maxSize;
+        mStatements = new LinkedHashMap<String, SQLiteStatement>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SQLiteStatement> eldest) {
+                if (size() <= mMaxSize)
+                    return false;
+                eldest.getValue().close();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Attaches this cache to the given {@link SQLiteDatabase}, closing any statements compiled against the previous
+     * one.
+     *
+     * @param database the {@code SQLiteDatabase} to compile statements against
+     */
+    public synchronized void setDatabase(SQLiteDatabase database) {
+        clear();
+        mDatabase = database;
+    }
+
+    /**
+     * Returns the compiled {@link SQLiteStatement} for the given SQL, compiling and caching it if necessary.
+     *
+     * @param sql the SQL to retrieve a statement for
+     * @return {@code SQLiteStatement} for {@code sql}
+     * @throws IllegalStateException if the cache is not attached to a database
+     */
+    public synchronized SQLiteStatement getStatement(String sql) {
+        if (mDatabase == null)
+            throw new IllegalStateException("Statement cache is not attached to a database.");
+        SQLiteStatement statement = mStatements.get(sql);
+        if (statement != null) {
+            mHitCount++;
+            return statement;
+        }
+        mMissCount++;
+        statement = mDatabase.compileStatement(sql);
+        mStatements.put(sql, statement);
+        return statement;
+    }
+
+    /**
+     * Closes every cached statement and detaches this cache from its database.
+     */
+    public synchronized void clear() {
+        for (SQLiteStatement statement : mStatements.values())
+            statement.close();
+        mStatements.clear();
+        mDatabase = null;
+    }
+
+    /**
+     * Sets the maximum number of statements to retain, evicting the least recently used ones if the cache is over the
+     * new size.
+     *
+     * @param maxSize the maximum number of statements to retain
+     */
+    public synchronized void setMaxSize(int maxSize) {
+        if (maxSize <= 0)
+            throw new IllegalArgumentException("Statement cache size must be greater than 0.");
+        mMaxSize = maxSize;
+        Iterator<SQLiteStatement> iter = mStatements.values().iterator();
+        while (mStatements.size() > mMaxSize && iter.hasNext()) {
+            iter.next().close();
+            iter.remove();
+        }
+    }
+
+    /**
+     * Returns the maximum number of statements retained.
+     *
+     * @return maximum cache size
+     */
+    public synchronized int getMaxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * Returns the number of statements currently cached.
+     *
+     * @return number of cached statements
+     */
+    public synchronized int size() {
+        return mStatements.size();
+    }
+
+    /**
+     * Returns the number of statement retrievals which were served from the cache.
+     *
+     * @return hit count
+     */
+    public synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * Returns the number of statement retrievals which required compiling a new statement.
+     *
+     * @return miss count
+     */
+    public synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    /**
+     * Resets the hit and miss counts.
+     */
+    public synchronized void resetStatistics() {
+        mHitCount = 0;
+        mMissCount = 0;
+    }
+
+}
@@ -21,6 +21,7 @@ import android.database.Cursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteStatement;
 import com.clarionmedia.infinitum.di.AbstractProxy;
 import com.clarionmedia.infinitum.di.annotation.Autowired;
 import com.clarionmedia.infinitum.di.annotation.PostConstruct;
@@ -31,20 +32,27 @@ import com.clarionmedia.infinitum.logging.Logger;
 import com.clarionmedia.infinitum.logging.impl.SmartLogger;
 import com.clarionmedia.infinitum.orm.context.InfinitumOrmContext;
 import com.clarionmedia.infinitum.orm.criteria.Criteria;
+import com.clarionmedia.infinitum.orm.exception.InvalidMappingException;
 import com.clarionmedia.infinitum.orm.exception.ModelConfigurationException;
 import com.clarionmedia.infinitum.orm.exception.SQLGrammarException;
+import com.clarionmedia.infinitum.orm.internal.IdentityMap;
 import com.clarionmedia.infinitum.orm.internal.OrmPreconditions;
+import com.clarionmedia.infinitum.orm.internal.bind.FieldAccessors;
+import com.clarionmedia.infinitum.orm.internal.bind.SqliteTypeAdapters;
+import com.clarionmedia.infinitum.orm.persistence.FieldAccessor;
 import com.clarionmedia.infinitum.orm.persistence.PersistencePolicy;
 import com.clarionmedia.infinitum.orm.persistence.PersistencePolicy.Cascade;
 import com.clarionmedia.infinitum.orm.persistence.TypeResolutionPolicy;
 import com.clarionmedia.infinitum.orm.relationship.ManyToManyRelationship;
-import com.clarionmedia.infinitum.orm.relationship.ManyToOneRelationship;
-import com.clarionmedia.infinitum.orm.relationship.OneToManyRelationship;
-import com.clarionmedia.infinitum.orm.relationship.OneToOneRelationship;
 import com.clarionmedia.infinitum.orm.sql.SqlBuilder;
+import com.clarionmedia.infinitum.orm.sql.SqlConstants;
+import com.clarionmedia.infinitum.orm.sql.SqlStatement;
 import com.clarionmedia.infinitum.orm.sqlite.SqliteOperations;
 import com.clarionmedia.infinitum.orm.sqlite.SqliteTypeAdapter;
 import com.clarionmedia.infinitum.orm.sqlite.SqliteUtils;
+import com.clarionmedia.infinitum.orm.sqlite.impl.SqliteCascadePlan.ForeignKey;
+import com.clarionmedia.infinitum.orm.sqlite.impl.SqliteCascadePlan.Node;
+import com.clarionmedia.infinitum.orm.sqlite.impl.SqliteUnitOfWork.Operation;
 import com.clarionmedia.infinitum.reflection.ClassReflector;
 
 import java.io.Serializable;
@@ -57,11 +65,20 @@ import java.util.*;
  * Criteria} queries. </p>
  *
  * @author Tyler Treat
- * @version 1.1.0 06/15/13
+ * @version 1.1.0 09/05/13
  * @since 1.0
  */
 public class SqliteTemplate implements SqliteOperations {
 
+    // Number of rows inserted per transaction by saveAll
+    private static final int BULK_INSERT_CHUNK_SIZE = 500;
+
+    // Maximum number of entity snapshots retained for dirty checking
+    private static final int SNAPSHOT_CACHE_SIZE = 500;
+
+    // Maximum number of compiled statements retained per open database
+    private static final int STATEMENT_CACHE_SIZE = 50;
+
     @Autowired
     protected InfinitumOrmContext mInfinitumContext;
 
@@ -88,15 +105,22 @@ public class SqliteTemplate implements SqliteOperations {
 
     protected SqliteDbHelper mDbHelper;
     protected boolean mIsAutocommit;
+    protected boolean mIsUpsert;
+    protected boolean mIsDirtyChecking;
+    protected IdentityMap mSnapshots;
     protected boolean mIsOpen;
     protected Stack<Boolean> mTransactionStack;
     protected SQLiteDatabase mSqliteDb;
+    protected SqliteStatementCache mStatementCache = new SqliteStatementCache(STATEMENT_CACHE_SIZE);
+    protected SqliteSecondLevelCache mSecondLevelCache = SqliteSecondLevelCache.getInstance();
+    protected SqliteQueryCache mQueryCache = SqliteQueryCache.getInstance();
     protected Logger mLogger;
 
     @PostConstruct
     private void init() {
         mLogger = new SmartLogger(getClass().getSimpleName());
         mTransactionStack = new Stack<Boolean>();
+        mSnapshots = new IdentityMap(SNAPSHOT_CACHE_SIZE);
         mDbHelper = SqliteDbHelper.getInstance(mInfinitumContext, mSqlBuilder);
     }
 
@@ -110,6 +134,7 @@ public class SqliteTemplate implements SqliteOperations {
         if (mIsOpen)
             return;
         mSqliteDb = mDbHelper.getWritableDatabase();
+        mStatementCache.setDatabase(mSqliteDb);
         mIsOpen = true;
     }
 
@@ -117,7 +142,9 @@ public class SqliteTemplate implements SqliteOperations {
     public synchronized void close() {
         if (!mIsOpen)
             return;
+        mStatementCache.clear();
         mDbHelper.close();
+        mSnapshots.clear();
         mIsOpen = false;
     }
 
@@ -151,9 +178,39 @@ public class SqliteTemplate implements SqliteOperations {
             return;
         mSqliteDb.endTransaction();
         mTransactionStack.pop();
+        // Entities, snapshots and query results cached during the transaction may no longer match the database
+        mSecondLevelCache.clear();
+        mQueryCache.invalidateAll();
+        mSnapshots.clear();
         mLogger.debug("Transaction rolled back");
     }
 
+    /**
+     * Begins a database transaction regardless of whether autocommit is enabled, nested within the current transaction
+     * if one is open. It must be ended with {@link #endNestedTransaction(boolean)}.
+     */
+    public void beginNestedTransaction() {
+        mSqliteDb.beginTransaction();
+    }
+
+    /**
+     * Ends the transaction begun by {@link #beginNestedTransaction()}. An unsuccessful transaction is rolled back,
+     * which also marks the enclosing transaction, if any, for rollback.
+     *
+     * @param successful {@code true} to commit the transaction, {@code false} to roll it back
+     */
+    public void endNestedTransaction(boolean successful) {
+        if (successful)
+            mSqliteDb.setTransactionSuccessful();
+        mSqliteDb.endTransaction();
+        if (!successful) {
+            // Entities, snapshots and query results cached during the transaction may no longer match the database
+            mSecondLevelCache.clear();
+            mQueryCache.invalidateAll();
+            mSnapshots.clear();
+        }
+    }
+
     @Override
     public boolean isTransactionOpen() {
         return mTransactionStack.size() > 0;
@@ -201,9 +258,12 @@ public class SqliteTemplate implements SqliteOperations {
         OrmPreconditions.checkForTransaction(mIsAutocommit, isTransactionOpen());
         OrmPreconditions.checkPersistenceForModify(model, mPersistencePolicy);
         String tableName = mPersistencePolicy.getModelTableName(model.getClass());
-        String whereClause = mSqliteUtil.getWhereClause(model, mMapper);
-        int result = mSqliteDb.delete(tableName, whereClause, null);
+        String whereClause = mSqliteUtil.getPreparedWhereClause(model.getClass());
+        int result = mSqliteDb.delete(tableName, whereClause, mSqliteUtil.getWhereArgs(model));
         if (result == 1) {
+            removeSnapshot(model);
+            mSecondLevelCache.evict(model.getClass(), mPersistencePolicy.getPrimaryKey(model));
+            mQueryCache.bumpVersion(tableName);
             deleteRelationships(model);
             mLogger.debug(model.getClass().getSimpleName() + " model deleted");
         } else {
@@ -212,6 +272,30 @@ public class SqliteTemplate implements SqliteOperations {
         return result == 1;
     }
 
+    @Override
+    public int deleteAll(Collection<?> models) throws InfinitumRuntimeException {
+        OrmPreconditions.checkForTransaction(mIsAutocommit, isTransactionOpen());
+        Map<Class<?>, List<Object>> groups = new LinkedHashMap<Class<?>, List<Object>>();
+        for (Object model : models) {
+            model = AbstractProxy.getTarget(model);
+            OrmPreconditions.checkPersistenceForModify(model, mPersistencePolicy);
+            List<Object> group = groups.get(model.getClass());
+            if (group == null) {
+                group = new ArrayList<Object>();
+                groups.put(model.getClass(), group);
+            }
+            group.add(model);
+            removeSnapshot(model);
+            mSecondLevelCache.evict(model.getClass(), mPersistencePolicy.getPrimaryKey(model));
+        }
+        int count = 0;
+        for (Map.Entry<Class<?>, List<Object>> group : groups.entrySet()) {
+            count += bulkDelete(group.getKey(), group.getValue());
+        }
+        mLogger.debug(count + " models deleted by bulk delete");
+        return count;
+    }
+
     @Override
     public long saveOrUpdate(Object model) throws InfinitumRuntimeException {
         OrmPreconditions.checkForTransaction(mIsAutocommit, isTransactionOpen());
@@ -227,6 +311,32 @@ public class SqliteTemplate implements SqliteOperations {
         return result;
     }
 
+    @Override
+    public long[] saveAll(Collection<?> models) throws InfinitumRuntimeException {
+        OrmPreconditions.checkForTransaction(mIsAutocommit, isTransactionOpen());
+        long[] results = new long[models.size()];
+        List<Object> targets = new ArrayList<Object>(models.size());
+        // Group the models by type so each table only needs a single compiled statement
+        Map<Class<?>, List<Integer>> groups = new LinkedHashMap<Class<?>, List<Integer>>();
+        for (Object model : models) {
+            model = AbstractProxy.getTarget(model);
+            OrmPreconditions.checkPersistenceForModify(model, mPersistencePolicy);
+            List<Integer> group = groups.get(model.getClass());
+            if (group == null) {
+                group = new ArrayList<Integer>();
+                groups.put(model.getClass(), group);
+            }
+            group.add(targets.size());
+            targets.add(model);
+        }
+        Map<Integer, Object> objectMap = new HashMap<Integer, Object>();
+        for (Map.Entry<Class<?>, List<Integer>> group : groups.entrySet()) {
+            bulkInsert(group.getKey(), group.getValue(), targets, results, objectMap);
+        }
+        mLogger.debug(models.size() + " models processed by bulk insert");
+        return results;
+    }
+
     @Override
     public <T> T load(Class<T> clazz, Serializable id) throws InfinitumRuntimeException, IllegalArgumentException {
         OrmPreconditions.checkPersistenceForLoading(clazz, mPersistencePolicy);
@@ -234,9 +344,14 @@ public class SqliteTemplate implements SqliteOperations {
             throw new IllegalArgumentException(String.format("Invalid primary key value of type '%s' for '%s'.",
                     id.getClass()
                             .getSimpleName(), clazz.getName()));
+        T cached = mModelFactory.createFromSecondLevelCache(clazz, id);
+        if (cached != null) {
+            mLogger.debug(clazz.getSimpleName() + " model loaded from second-level cache");
+            return cached;
+        }
         Cursor cursor = mSqliteDb.query(mPersistencePolicy.getModelTableName(clazz), null,
-                mSqliteUtil.getWhereClause(clazz, id, mMapper),
-                null, null, null, null, "1");
+                mSqliteUtil.getPreparedWhereClause(clazz), new String[] { String.valueOf(id) }, null, null, null,
+                "1");
         if (cursor.getCount() == 0) {
             cursor.close();
             return null;
@@ -245,7 +360,8 @@ public class SqliteTemplate implements SqliteOperations {
         SqliteResult result = new SqliteResult(cursor);
         T ret = null;
         try {
-            ret = mModelFactory.createFromResult(result, clazz);
+            // The session has already searched its cache for the entity and counted the lookup
+            ret = mModelFactory.createFromResult(result, clazz, false);
         } catch (InfinitumRuntimeException e) {
             throw e;
         } finally {
@@ -259,6 +375,10 @@ public class SqliteTemplate implements SqliteOperations {
     public void execute(String sql) throws SQLGrammarException {
         OrmPreconditions.checkForTransaction(mIsAutocommit, isTransactionOpen());
         mLogger.debug("Executing SQL: " + sql);
+        // Arbitrary SQL may write any row, so no cached entity, snapshot or query result can be trusted afterwards
+        mSecondLevelCache.clear();
+        mQueryCache.invalidateAll();
+        mSnapshots.clear();
         try {
             mSqliteDb.execSQL(sql);
         } catch (SQLiteException e) {
@@ -269,9 +389,14 @@ public class SqliteTemplate implements SqliteOperations {
 
     @Override
     public Cursor executeForResult(String sql) throws SQLGrammarException {
+        return executeForResult(sql, null);
+    }
+
+    @Override
+    public Cursor executeForResult(String sql, String[] args) throws SQLGrammarException {
         mLogger.debug("Executing SQL: " + sql);
         try {
-            return mSqliteDb.rawQuery(sql, null);
+            return mSqliteDb.rawQuery(sql, args);
         } catch (SQLiteException e) {
             throw new SQLGrammarException(String.format("There was a problem with the SQL formatting. Could not " +
                     "execute query: %s", sql));
@@ -281,6 +406,8 @@ public class SqliteTemplate implements SqliteOperations {
     @Override
     public <T> void registerTypeAdapter(Class<T> type, SqliteTypeAdapter<T> adapter) {
         mMapper.registerTypeAdapter(type, adapter);
+        // Hydration plans hold on to the type adapters they resolved
+        mModelFactory.clearHydrationPlans();
     }
 
     @Override
@@ -288,6 +415,74 @@ public class SqliteTemplate implements SqliteOperations {
         return mMapper.getRegisteredTypeAdapters();
     }
 
+    /**
+     * Enables or disables upsert mode for every entity saved or updated through this {@code SqliteTemplate}. In
+     * upsert mode, {@link #saveOrUpdate(Object)} writes an entity whose primary key is already assigned with an {@code
+     * INSERT OR IGNORE} statement, which is followed by an update of the existing row only if one conflicted. The
+     * existing row is never deleted. Entities without an assigned key are inserted directly. Upserting can also be
+     * enabled for individual entities through their {@link PersistencePolicy}.
+     *
+     * @param upsert {@code true} to enable upsert mode, {@code false} to disable it
+     */
+    public void setUpsert(boolean upsert) {
+        mIsUpsert = upsert;
+    }
+
+    /**
+     * Indicates if upsert mode is enabled for every entity saved or updated through this {@code SqliteTemplate}.
+     *
+     * @return {@code true} if upsert mode is enabled, {@code false} if not
+     */
+    public boolean isUpsert() {
+        return mIsUpsert;
+    }
+
+    /**
+     * Enables or disables dirty checking. When enabled, a snapshot of each entity's columns is taken when it is loaded
+     * or written, and {@link #update(Object)} only writes the columns which changed since then. If no column changed,
+     * the update statement and the relationship cascade are skipped entirely, so changes made solely to an entity's
+     * relationships are not persisted in that case.
+     *
+     * @param dirtyChecking {@code true} to enable dirty checking, {@code false} to disable it
+     */
+    public void setDirtyChecking(boolean dirtyChecking) {
+        mIsDirtyChecking = dirtyChecking;
+        if (!dirtyChecking)
+            mSnapshots.clear();
+    }
+
+    /**
+     * Indicates if dirty checking is enabled.
+     *
+     * @return {@code true} if dirty checking is enabled, {@code false} if not
+     */
+    public boolean isDirtyChecking() {
+        return mIsDirtyChecking;
+    }
+
+    /**
+     * Records the current column values of the given entity as its last known persistent state. This has no effect if
+     * dirty checking is disabled.
+     *
+     * @param model the entity to take a snapshot of
+     */
+    public void snapshot(Object model) {
+        if (!mIsDirtyChecking)
+            return;
+        model = AbstractProxy.getTarget(model);
+        putSnapshot(model, mMapper.mapColumns(model));
+    }
+
+    /**
+     * Returns the {@link SqliteStatementCache} holding the statements compiled by this {@code SqliteTemplate} for
+     * inserts and relationship updates. The cache is cleared when the database is closed.
+     *
+     * @return {@code SqliteStatementCache}
+     */
+    public SqliteStatementCache getStatementCache() {
+        return mStatementCache;
+    }
+
     /**
      * Returns the {@link SqliteMapper} associated with this {@code SqliteTemplate}.
      *
@@ -297,241 +492,514 @@ public class SqliteTemplate implements SqliteOperations {
         return mMapper;
     }
 
-    private long saveOrUpdateRec(Object model, Map<Integer, Object> objectMap) {
-        // First try to update the entity, then try to save it if needed
-        return updateRec(model, objectMap) ? 0 : saveRec(model, objectMap);
+    private long saveRec(Object model, Map<Integer, Object> objectMap) {
+        model = AbstractProxy.getTarget(model);
+        SqliteCascadePlan plan = createPlan(objectMap);
+        Node root = plan.addRoot(model, mMapper.mapModel(model), Operation.SAVE);
+        executePlan(plan, objectMap);
+        return root.getResult();
     }
 
-    private long saveRec(Object model, Map<Integer, Object> objectMap) {
+    private boolean updateRec(Object model, Map<Integer, Object> objectMap) {
+        model = AbstractProxy.getTarget(model);
+        SqliteModelMap map = mMapper.mapModel(model);
+        int objHash = mPersistencePolicy.computeModelHash(model);
+        if (isUnchanged(model, map.getContentValues())) {
+            // Nothing changed since the entity was loaded or last written, so neither it nor its cascade is written
+            objectMap.put(objHash, model);
+            return true;
+        }
+        SqliteCascadePlan plan = createPlan(objectMap);
+        Node root = plan.addRoot(model, map, Operation.UPDATE);
+        executePlan(plan, objectMap);
+        return root.isWritten();
+    }
+
+    private long saveOrUpdateRec(Object model, Map<Integer, Object> objectMap) {
         model = AbstractProxy.getTarget(model);
+        SqliteCascadePlan plan = createPlan(objectMap);
+        Node root = plan.addRoot(model, mMapper.mapModel(model), Operation.SAVE_OR_UPDATE);
+        executePlan(plan, objectMap);
+        return root.getResult();
+    }
+
+    private SqliteCascadePlan createPlan(Map<Integer, Object> objectMap) {
+        return new SqliteCascadePlan(mPersistencePolicy, mMapper, mClassReflector, objectMap);
+    }
+
+    private void executePlan(SqliteCascadePlan plan, Map<Integer, Object> objectMap) {
+        List<Node> nodes = plan.getOrderedNodes();
+        // An autocommitted cascade is written in a single transaction rather than committing each statement. If a root
+        // can't be written, the transaction is ended without being marked successful so the cascade is rolled back.
+        // Within an open transaction no nested one is begun, since rolling it back would silently roll back the whole
+        // enclosing transaction when it is committed, including writes which were already reported as successful.
+        boolean isCascading = plan.isCascading() && !isTransactionOpen();
+        if (isCascading)
+            mSqliteDb.beginTransaction();
+        try {
+            for (Node node : nodes) {
+                if (node.isWritten())
+                    continue;
+                ContentValues values = node.getMap().getContentValues();
+                // Entities are ordered so that referenced entities are usually written by now
+                List<ForeignKey> applied = new ArrayList<ForeignKey>();
+                for (ForeignKey foreignKey : plan.getForeignKeys(node.getModel())) {
+                    if (!plan.isWritten(foreignKey.getParent()))
+                        continue;
+                    Object parent = foreignKey.getParent();
+                    putRelationalKey(values, foreignKey.getColumn(), mPersistencePolicy.getPrimaryKeyField(parent
+                            .getClass()), mPersistencePolicy.getPrimaryKey(parent));
+                    applied.add(foreignKey);
+                }
+                writeNode(node, values, objectMap);
+                if (node.isWritten()) {
+                    for (ForeignKey foreignKey : applied)
+                        foreignKey.setApplied(true);
+                } else if (node.isRoot()) {
+                    discardSnapshots(nodes);
+                    return;
+                }
+            }
+            updateForeignKeys(plan.getUnappliedForeignKeys());
+            for (Node node : nodes) {
+                if (node.isWritten())
+                    processManyToManyRelationships(plan, node);
+            }
+            if (isCascading)
+                mSqliteDb.setTransactionSuccessful();
+        } finally {
+            if (isCascading)
+                mSqliteDb.endTransaction();
+        }
+    }
+
+    private void writeNode(Node node, ContentValues values, Map<Integer, Object> objectMap) {
+        Object model = node.getModel();
+        long result;
+        switch (node.getOperation()) {
+            case SAVE:
+                result = insertRow(model, values, objectMap);
+                break;
+            case UPDATE:
+                result = updateRow(model, values, objectMap) ? 0 : -1;
+                break;
+            default:
+                if (mIsUpsert || mPersistencePolicy.isUpsert(model.getClass()))
+                    result = upsertRow(model, values, objectMap);
+                else
+                    // First try to update the entity, then try to save it if needed
+                    result = updateRow(model, values, objectMap) ? 0 : insertRow(model, values, objectMap);
+        }
+        node.setResult(result, result >= 0);
+    }
+
+    private long insertRow(Object model, ContentValues values, Map<Integer, Object> objectMap) {
         // Check if the entity has already been persisted
         int objHash = mPersistencePolicy.computeModelHash(model);
         if (objectMap.containsKey(objHash) && !mPersistencePolicy.isPKNullOrZero(model))
             return 0;
         // Persist it
-        SqliteModelMap map = mMapper.mapModel(model);
-        ContentValues values = map.getContentValues();
         String tableName = mPersistencePolicy.getModelTableName(model.getClass());
-        long rowId = mSqliteDb.insert(tableName, null, values);
+        List<String> columns = getColumns(values);
+        String sql = mSqlBuilder.createInsertStatement(tableName, columns);
+        long rowId;
+        // Cached statements hold their bindings, so one is bound and executed before another thread can retrieve it
+        synchronized (mStatementCache) {
+            SQLiteStatement statement = mStatementCache.getStatement(sql);
+            try {
+                bindValues(statement, columns, values);
+                rowId = statement.executeInsert();
+            } catch (SQLException e) {
+                mLogger.error(model.getClass().getSimpleName() + " model was not saved", e);
+                rowId = -1;
+            }
+        }
         if (rowId <= 0) {
             // Persist failed
             return rowId;
         }
         // Persist succeeded
+        mQueryCache.bumpVersion(tableName);
         setPrimaryKey(model, rowId);
         objHash = mPersistencePolicy.computeModelHash(model);
         objectMap.put(objHash, model);
-        processRelationships(map, objectMap, model, mPersistencePolicy.getCascadeMode(model.getClass()));
+        if (mIsDirtyChecking)
+            putSnapshot(model, values);
         return rowId;
     }
 
-    private boolean updateRec(Object model, Map<Integer, Object> objectMap) {
-        model = AbstractProxy.getTarget(model);
+    private boolean updateRow(Object model, ContentValues values, Map<Integer, Object> objectMap) {
         int objHash = mPersistencePolicy.computeModelHash(model);
         if (objectMap.containsKey(objHash) && !mPersistencePolicy.isPKNullOrZero(model))
             return true;
-        SqliteModelMap map = mMapper.mapModel(model);
-        ContentValues values = map.getContentValues();
         String tableName = mPersistencePolicy.getModelTableName(model.getClass());
-        String whereClause = mSqliteUtil.getWhereClause(model, mMapper);
+        String whereClause = mSqliteUtil.getPreparedWhereClause(model.getClass());
         if (values.size() == 0)
             return false;
-        long ret = mSqliteDb.update(tableName, values, whereClause, null);
+        ContentValues changed = values;
+        ContentValues snapshot = mIsDirtyChecking ? getSnapshot(model) : null;
+        if (snapshot != null) {
+            changed = getChangedValues(snapshot, values);
+            if (changed.size() == 0) {
+                // Nothing changed since the entity was loaded or last written
+                objectMap.put(objHash, model);
+                return true;
+            }
+        }
+        long ret = mSqliteDb.update(tableName, changed, whereClause, mSqliteUtil.getWhereArgs(model));
         if (ret <= 0) {
             return false;
         }
+        mSecondLevelCache.evict(model.getClass(), mPersistencePolicy.getPrimaryKey(model));
+        mQueryCache.bumpVersion(tableName);
         objectMap.put(objHash, model);
-        processRelationships(map, objectMap, model, mPersistencePolicy.getCascadeMode(model.getClass()));
+        if (mIsDirtyChecking)
+            putSnapshot(model, values);
         return true;
     }
 
-    private void processRelationships(SqliteModelMap map, Map<Integer, Object> objectMap, Object model,
-                                      Cascade cascade) {
-        if (cascade == Cascade.NONE)
-            return;
-        processManyToManyRelationships(model, map, objectMap, cascade);
-        processManyToOneRelationships(model, map, objectMap, cascade);
-        processOneToManyRelationships(model, map, objectMap, cascade);
-        processOneToOneRelationships(model, map, objectMap, cascade);
+    private long upsertRow(Object model, ContentValues values, Map<Integer, Object> objectMap) {
+        // An entity without a primary key can't have a row yet, so a plain insert is enough
+        if (mPersistencePolicy.isPKNullOrZero(model))
+            return insertRow(model, values, objectMap);
+        int objHash = mPersistencePolicy.computeModelHash(model);
+        if (objectMap.containsKey(objHash))
+            return 0;
+        Field pkField = mPersistencePolicy.getPrimaryKeyField(model.getClass());
+        String pkColumn = mPersistencePolicy.getFieldColumnName(pkField);
+        // Autoincrementing keys aren't mapped, but the key is needed to detect the existing row
+        if (!values.containsKey(pkColumn))
+            putRelationalKey(values, pkColumn, pkField, mPersistencePolicy.getPrimaryKey(model));
+        String tableName = mPersistencePolicy.getModelTableName(model.getClass());
+        List<String> columns = getColumns(values);
+        String sql = mSqlBuilder.createUpsertStatement(tableName, columns);
+        long rowId = 0;
+        // The change count and row ID are read under the same lock so that no other statement is executed in between
+        synchronized (mStatementCache) {
+            SQLiteStatement statement = mStatementCache.getStatement(sql);
+            try {
+                bindValues(statement, columns, values);
+                statement.execute();
+            } catch (SQLException e) {
+                mLogger.error(model.getClass().getSimpleName() + " model was not saved or updated", e);
+                return -1;
+            }
+            if (mStatementCache.getStatement(SqlConstants.SELECT_CHANGES).simpleQueryForLong() > 0)
+                rowId = mStatementCache.getStatement(SqlConstants.SELECT_LAST_INSERT_ROWID).simpleQueryForLong();
+        }
+        // The insert is ignored if a row with the key already exists, which is then updated in place
+        if (rowId == 0)
+            return updateRow(model, values, objectMap) ? 0 : -1;
+        mQueryCache.bumpVersion(tableName);
+        objectMap.put(objHash, model);
+        if (mIsDirtyChecking)
+            putSnapshot(model, mMapper.mapColumns(model));
+        return rowId;
     }
 
-    private void processManyToManyRelationships(Object model, SqliteModelMap map, Map<Integer, Object> objectMap,
-                                                Cascade cascade) {
-        for (Pair<ManyToManyRelationship, Iterable<Object>> relationshipPair : map.getManyToManyRelationships()) {
-            ManyToManyRelationship relationship = relationshipPair.getFirst();
-            List<Serializable> nonStaleKeys = new ArrayList<Serializable>();
-            for (Object relatedEntity : relationshipPair.getSecond()) {
-                if (relatedEntity == null) {
-                    // Related entity is null, nothing to do here...
-                    continue;
-                }
-                int relatedHash = mPersistencePolicy.computeModelHash(relatedEntity);
-                if (objectMap.containsKey(relatedHash) && !mPersistencePolicy.isPKNullOrZero(relatedEntity)) {
-                    nonStaleKeys.add(mPersistencePolicy.getPrimaryKey(relatedEntity));
-                    continue;
-                }
-                // Cascade.All means we persist/update related entities
-                if (cascade == Cascade.ALL) {
-                    // Save or update the related entity
-                    if (saveOrUpdateRec(relatedEntity, objectMap) >= 0) {
-                        // Persist relationship to many-to-many table
-                        insertManyToManyRelationship(model, relatedEntity, relationship);
-                        nonStaleKeys.add(mPersistencePolicy.getPrimaryKey(relatedEntity));
+    private void bulkInsert(Class<?> type, List<Integer> indices, List<Object> models, long[] results,
+                            Map<Integer, Object> objectMap) {
+        String tableName = mPersistencePolicy.getModelTableName(type);
+        Cascade cascade = mPersistencePolicy.getCascadeMode(type);
+        // Entities without relationships are bound straight from their fields instead of being mapped first
+        FieldBinding binding = createFieldBinding(type);
+        String sql = null;
+        List<String> columns = null;
+        if (binding != null) {
+            columns = binding.getColumns();
+            sql = mSqlBuilder.createInsertStatement(tableName, columns);
+        }
+        for (int start = 0; start < indices.size(); start += BULK_INSERT_CHUNK_SIZE) {
+            int end = Math.min(start + BULK_INSERT_CHUNK_SIZE, indices.size());
+            List<SqliteModelMap> inserted = new ArrayList<SqliteModelMap>(end - start);
+            boolean isWritten = false;
+            mSqliteDb.beginTransaction();
+            try {
+                for (int i = start; i < end; i++) {
+                    int index = indices.get(i);
+                    Object model = models.get(index);
+                    // Check if the entity has already been persisted, e.g. by a cascade
+                    if (objectMap.containsKey(mPersistencePolicy.computeModelHash(model)) &&
+                            !mPersistencePolicy.isPKNullOrZero(model))
+                        continue;
+                    SqliteModelMap map = null;
+                    ContentValues values = null;
+                    if (binding == null) {
+                        map = mMapper.mapModel(model);
+                        values = map.getContentValues();
+                        if (sql == null) {
+                            // Every model of the same type maps to the same set of columns
+                            columns = getColumns(values);
+                            sql = mSqlBuilder.createInsertStatement(tableName, columns);
+                        }
+                    }
+                    long rowId;
+                    // Cascades may evict the statement, so it's retrieved from the cache for every row
+                    synchronized (mStatementCache) {
+                        SQLiteStatement statement = mStatementCache.getStatement(sql);
+                        if (binding == null)
+                            bindValues(statement, columns, values);
+                        else
+                            binding.bind(statement, model);
+                        try {
+                            rowId = statement.executeInsert();
+                        } catch (SQLException e) {
+                            mLogger.error(type.getSimpleName() + " model was not saved", e);
+                            rowId = -1;
+                        }
                     }
-                    // Cascade.Keys means we persist/update foreign keys
-                } else if (cascade == Cascade.KEYS && !mPersistencePolicy.isPKNullOrZero(relatedEntity)) {
-                    // Persist relationship to many-to-many table
-                    insertManyToManyRelationship(model, relatedEntity, relationship);
-                    nonStaleKeys.add(mPersistencePolicy.getPrimaryKey(relatedEntity));
+                    results[index] = rowId;
+                    if (rowId <= 0)
+                        continue;
+                    setPrimaryKey(model, rowId);
+                    int objHash = mPersistencePolicy.computeModelHash(model);
+                    objectMap.put(objHash, model);
+                    if (mIsDirtyChecking)
+                        putSnapshot(model, values == null ? mMapper.mapColumns(model) : values);
+                    if (map != null)
+                        inserted.add(map);
+                    isWritten = true;
                 }
+                if (isWritten)
+                    mQueryCache.bumpVersion(tableName);
+                // Cascade within the same transaction as the chunk
+                if (cascade != Cascade.NONE && !inserted.isEmpty()) {
+                    SqliteCascadePlan plan = createPlan(objectMap);
+                    for (SqliteModelMap map : inserted)
+                        plan.addWrittenRoot(map.getModel(), map);
+                    executePlan(plan, objectMap);
+                }
+                mSqliteDb.setTransactionSuccessful();
+            } finally {
+                mSqliteDb.endTransaction();
             }
-            // Delete stale relationships
-            String staleRelQuery = mSqlBuilder.createDeleteStaleRelationshipQuery(relationship, model, nonStaleKeys);
-            // Execute only if there are stale relationships
-            if (!staleRelQuery.contains("NOT IN ()"))
-                mSqliteDb.execSQL(staleRelQuery);
         }
     }
 
-    private void processOneToOneRelationships(Object model, SqliteModelMap map, Map<Integer, Object> objectMap,
-                                              Cascade cascade) {
-        for (Pair<OneToOneRelationship, Object> relationshipPair : map.getOneToOneRelationships()) {
-            OneToOneRelationship relationship = relationshipPair.getFirst();
-            Object relatedEntity = relationshipPair.getSecond();
-            if (mClassReflector.isNull(relatedEntity)) {
-                // Related entity is null, nothing to do here...
-                continue;
-            }
-            // Cascade.All means we persist/update related entities
-            if (cascade == Cascade.ALL) {
-                // Save or update the related entity
-                if (saveOrUpdateRec(relatedEntity, objectMap) >= 0 && relationship.getOwner() == model.getClass()) {
-                    // Update the relationship owner's foreign key
-                    String sql = mSqlBuilder.createUpdateOneToOneForeignKeyQuery(relationship, model, relatedEntity);
-                    mSqliteDb.execSQL(sql);
+    private int bulkDelete(Class<?> type, List<Object> models) {
+        String tableName = mPersistencePolicy.getModelTableName(type);
+        Set<ManyToManyRelationship> relationships = mPersistencePolicy.getManyToManyRelationships(type);
+        int count = 0;
+        for (int start = 0; start < models.size(); start += SqlConstants.MAX_BIND_PARAMETERS) {
+            int end = Math.min(start + SqlConstants.MAX_BIND_PARAMETERS, models.size());
+            // Keys are bound by type rather than as strings so that blob keys match their rows
+            List<Object> keys = new ArrayList<Object>(end - start);
+            for (int i = start; i < end; i++)
+                keys.add(mPersistencePolicy.getPrimaryKey(models.get(i)));
+            mSqliteDb.beginTransaction();
+            try {
+                count += executeDelete(new SqlStatement(String.format(SqlConstants.DELETE_FROM_WHERE, tableName) +
+                        mSqlBuilder.createPrimaryKeyInClause(type, keys.size()), keys));
+                for (ManyToManyRelationship relationship : relationships) {
+                    executeStatement(new SqlStatement(String.format(SqlConstants.DELETE_FROM_WHERE,
+                            relationship.getTableName()) + mSqlBuilder.createManyToManyInClause(type, relationship,
+                            keys.size()), keys));
                 }
-                // Cascade.Keys means we persist/update foreign keys
-            } else if (cascade == Cascade.KEYS && !mPersistencePolicy.isPKNullOrZero(relatedEntity)) {
-                // Update the relationship owner's foreign key
-                String sql = mSqlBuilder.createUpdateOneToOneForeignKeyQuery(relationship, model, relatedEntity);
-                mSqliteDb.execSQL(sql);
+                mSqliteDb.setTransactionSuccessful();
+            } finally {
+                mSqliteDb.endTransaction();
             }
         }
+        mQueryCache.bumpVersion(tableName);
+        for (ManyToManyRelationship relationship : relationships)
+            mQueryCache.bumpVersion(relationship.getTableName());
+        return count;
     }
 
-    private void processOneToManyRelationships(Object model, SqliteModelMap map, Map<Integer, Object> objectMap,
-                                               Cascade cascade) {
-        for (Pair<OneToManyRelationship, Iterable<Object>> relationshipPair : map.getOneToManyRelationships()) {
-            List<Serializable> relatedKeys = new ArrayList<Serializable>();
-            for (Object relatedEntity : relationshipPair.getSecond()) {
-                if (relatedEntity == null) {
-                    // Related entity is null, nothing to do here...
-                    continue;
-                }
-                int relatedHash = mPersistencePolicy.computeModelHash(relatedEntity);
-                if (objectMap.containsKey(relatedHash) && !mPersistencePolicy.isPKNullOrZero(relatedEntity))
-                    continue;
-                // Cascade.All means we persist/update related entities
-                if (cascade == Cascade.ALL) {
-                    // Save or update the related entity
-                    if (saveOrUpdateRec(relatedEntity, objectMap) >= 0) {
-                        // Include its foreign key to be updated
-                        relatedKeys.add(mPersistencePolicy.getPrimaryKey(relatedEntity));
-                    }
-                    // Cascade.Keys means we persist/update foreign keys
-                } else if (cascade == Cascade.KEYS && !mPersistencePolicy.isPKNullOrZero(relatedEntity)) {
-                    // Include its foreign key to be updated
-                    relatedKeys.add(mPersistencePolicy.getPrimaryKey(relatedEntity));
-                }
+    private void discardSnapshots(List<Node> nodes) {
+        // The rows written by an aborted plan are rolled back, so their snapshots no longer match the datastore
+        for (Node node : nodes) {
+            if (node.getOperation() != null && node.isWritten())
+                removeSnapshot(node.getModel());
+        }
+    }
+
+    private boolean isUnchanged(Object model, ContentValues values) {
+        if (!mIsDirtyChecking || values.size() == 0)
+            return false;
+        ContentValues snapshot = getSnapshot(model);
+        return snapshot != null && getChangedValues(snapshot, values).size() == 0;
+    }
+
+    private ContentValues getSnapshot(Object model) {
+        if (mPersistencePolicy.isPKNullOrZero(model))
+            return null;
+        return (ContentValues) mSnapshots.get(model.getClass(), mPersistencePolicy.getPrimaryKey(model));
+    }
+
+    private void putSnapshot(Object model, ContentValues values) {
+        // Entities without a primary key have no row to compare against
+        if (!mPersistencePolicy.isPKNullOrZero(model))
+            mSnapshots.put(model.getClass(), mPersistencePolicy.getPrimaryKey(model), values);
+    }
+
+    private void removeSnapshot(Object model) {
+        if (!mPersistencePolicy.isPKNullOrZero(model))
+            mSnapshots.remove(model.getClass(), mPersistencePolicy.getPrimaryKey(model));
+    }
+
+    private void updateForeignKeys(List<ForeignKey> foreignKeys) {
+        // Group the foreign keys by table, column and value so that each group is set by a single statement
+        Map<String, List<ForeignKey>> groups = new LinkedHashMap<String, List<ForeignKey>>();
+        for (ForeignKey foreignKey : foreignKeys) {
+            Object parent = foreignKey.getParent();
+            String key = foreignKey.getChild().getClass().getName() + ' ' + foreignKey.getColumn() + ' ' + parent
+                    .getClass().getName() + ' ' + mPersistencePolicy.getPrimaryKey(parent);
+            List<ForeignKey> group = groups.get(key);
+            if (group == null) {
+                group = new ArrayList<ForeignKey>();
+                groups.put(key, group);
+            }
+            group.add(foreignKey);
+        }
+        // One bind parameter is taken by the foreign key value itself
+        int chunkSize = SqlConstants.MAX_BIND_PARAMETERS - 1;
+        for (List<ForeignKey> group : groups.values()) {
+            ForeignKey first = group.get(0);
+            Class<?> type = first.getChild().getClass();
+            Serializable value = mPersistencePolicy.getPrimaryKey(first.getParent());
+            for (int start = 0; start < group.size(); start += chunkSize) {
+                int end = Math.min(start + chunkSize, group.size());
+                List<Object> args = new ArrayList<Object>(end - start + 1);
+                args.add(value);
+                for (int i = start; i < end; i++)
+                    args.add(mPersistencePolicy.getPrimaryKey(group.get(i).getChild()));
+                executeStatement(new SqlStatement(mSqlBuilder.createUpdateForeignKeyStatement(type,
+                        first.getColumn(), end - start), args));
+            }
+            mQueryCache.bumpVersion(mPersistencePolicy.getModelTableName(type));
+            for (ForeignKey foreignKey : group) {
+                foreignKey.setApplied(true);
+                mSecondLevelCache.evict(type, mPersistencePolicy.getPrimaryKey(foreignKey.getChild()));
             }
-            // Update the foreign keys
-            String updateQuery = mSqlBuilder.createUpdateForeignKeyQuery(relationshipPair.getFirst(), model,
-                    relatedKeys);
-            mSqliteDb.execSQL(updateQuery);
         }
     }
 
-    private void processManyToOneRelationships(Object model, SqliteModelMap map, Map<Integer, Object> objectMap,
-                                               Cascade cascade) {
-        for (Pair<ManyToOneRelationship, Object> relationshipPair : map.getManyToOneRelationships()) {
-            Object relatedEntity = relationshipPair.getSecond();
-            if (mClassReflector.isNull(relatedEntity)) {
-                // Related entity is null, nothing to do here...
-                continue;
+    private void processManyToManyRelationships(SqliteCascadePlan plan, Node node) {
+        Object model = node.getModel();
+        for (Pair<ManyToManyRelationship, List<Object>> relationshipPair : node.getManyToManyRelationships()) {
+            ManyToManyRelationship relationship = relationshipPair.getFirst();
+            // TODO Doesn't support reflexive relationships
+            boolean isFirst;
+            if (model.getClass() == relationship.getFirstType())
+                isFirst = true;
+            else if (model.getClass() == relationship.getSecondType())
+                isFirst = false;
+            else
+                throw new InfinitumRuntimeException("Invalid many-to-many relationship");
+            Field relatedField = isFirst ? relationship.getSecondField() : relationship.getFirstField();
+            Serializable key = getManyToManyKey(model, isFirst ? relationship.getFirstField() : relationship
+                    .getSecondField());
+            // Keys are compared in their string form so they can be matched against the rows read back
+            Map<String, Serializable> relatedKeys = new LinkedHashMap<String, Serializable>();
+            for (Object relatedEntity : relationshipPair.getSecond()) {
+                // Skip related entities which failed to be saved or updated
+                if (!plan.isWritten(relatedEntity))
+                    continue;
+                Serializable relatedKey = getManyToManyKey(relatedEntity, relatedField);
+                relatedKeys.put(String.valueOf(relatedKey), relatedKey);
             }
-            // Cascade.All means we persist/update related entities
-            if (cascade == Cascade.ALL) {
-                // Save or update the related entity
-                if (saveOrUpdateRec(relatedEntity, objectMap) >= 0) {
-                    // Update the foreign key
-                    String update = mSqlBuilder.createUpdateQuery(model, relatedEntity,
-                            relationshipPair.getFirst().getColumn());
-                    mSqliteDb.execSQL(update);
+            // Diff the collection against the existing rows so only additions and removals are written
+            List<String> staleKeys = new ArrayList<String>();
+            Cursor cursor = mSqliteDb.rawQuery(mSqlBuilder.createManyToManyKeysQuery(model.getClass(),
+                    relationship), new String[]{ String.valueOf(key) });
+            try {
+                while (cursor.moveToNext()) {
+                    String existing = cursor.getString(0);
+                    if (relatedKeys.remove(existing) == null)
+                        staleKeys.add(existing);
                 }
-                // Cascade.Keys means we persist/update foreign keys
-            } else if (cascade == Cascade.KEYS && !mPersistencePolicy.isPKNullOrZero(relatedEntity)) {
-                // Update the foreign key
-                String update = mSqlBuilder.createUpdateQuery(model, relatedEntity,
-                        relationshipPair.getFirst().getColumn());
-                mSqliteDb.execSQL(update);
+            } finally {
+                cursor.close();
             }
+            insertManyToManyRelationships(relationship, isFirst, key, relatedKeys.values());
+            deleteManyToManyRelationships(model.getClass(), relationship, key, staleKeys);
         }
     }
 
-    private void insertManyToManyRelationship(Object model, Object related, ManyToManyRelationship mtm) {
-        ContentValues relationshipData = new ContentValues();
-        Class<?> firstType = mtm.getFirstType();
-        Class<?> secondType = mtm.getSecondType();
-        // TODO Doesn't support reflexive relationships
+    private Serializable getManyToManyKey(Object model, Field field) {
         try {
-            Field firstField;
-            Field secondField;
-            Serializable firstPk;
-            Serializable secondPk;
-            if (model.getClass() == firstType) {
-                firstField = mPersistencePolicy.findPersistentField(firstType, mtm.getFirstFieldName());
-                secondField = mPersistencePolicy.findPersistentField(secondType, mtm.getSecondFieldName());
-                firstPk = (Serializable) mClassReflector.getFieldValue(model, firstField);
-                secondPk = (Serializable) mClassReflector.getFieldValue(related, secondField);
-            } else if (model.getClass() == secondType) {
-                secondField = mPersistencePolicy.findPersistentField(firstType, mtm.getFirstFieldName());
-                firstField = mPersistencePolicy.findPersistentField(secondType, mtm.getSecondFieldName());
-                firstPk = (Serializable) mClassReflector.getFieldValue(related, firstField);
-                secondPk = (Serializable) mClassReflector.getFieldValue(model, secondField);
-            } else {
-                throw new InfinitumRuntimeException("Invalid many-to-many relationship");
+            return (Serializable) mClassReflector.getFieldValue(model, field);
+        } catch (ClassCastException e) {
+            throw new ModelConfigurationException("Invalid primary key.", e);
+        }
+    }
+
+    private void insertManyToManyRelationships(ManyToManyRelationship relationship, boolean isFirst,
+                                               Serializable key, Collection<Serializable> relatedKeys) {
+        if (relatedKeys.isEmpty())
+            return;
+        // Each row binds two parameters and is a separate term of a compound select
+        int chunkSize = Math.min(SqlConstants.MAX_BIND_PARAMETERS / 2, SqlConstants.MAX_COMPOUND_SELECT_TERMS);
+        List<Serializable> keys = new ArrayList<Serializable>(relatedKeys);
+        for (int start = 0; start < keys.size(); start += chunkSize) {
+            int end = Math.min(start + chunkSize, keys.size());
+            List<Object> args = new ArrayList<Object>((end - start) * 2);
+            for (int i = start; i < end; i++) {
+                args.add(isFirst ? key : keys.get(i));
+                args.add(isFirst ? keys.get(i) : key);
             }
-            String firstCol = mPersistencePolicy.getModelTableName(firstType) + '_' + mPersistencePolicy
-                    .getFieldColumnName(firstField) + "_1";
-            String secondCol = mPersistencePolicy.getModelTableName(secondType) + '_' + mPersistencePolicy
-                    .getFieldColumnName(secondField) + "_2";
-            putRelationalKey(relationshipData, firstCol, firstField, firstPk);
-            putRelationalKey(relationshipData, secondCol, secondField, secondPk);
-            boolean result;
             try {
-                result = mSqliteDb.insertOrThrow(mtm.getTableName(), null, relationshipData) > 0;
+                executeStatement(new SqlStatement(mSqlBuilder.createManyToManyInsertStatement(relationship,
+                        end - start), args));
             } catch (SQLException e) {
+                mLogger.error(relationship.getFirstType().getSimpleName() + "-" + relationship.getSecondType()
+                        .getSimpleName() + " relationships were not saved", e);
+                // Earlier chunks may have been written
+                mQueryCache.bumpVersion(relationship.getTableName());
                 return;
             }
-            if (result)
-                mLogger.debug(firstType.getSimpleName() + "-" + secondType.getSimpleName() + " relationship saved");
-            else
-                mLogger.error(firstType.getSimpleName() + "-" + secondType.getSimpleName() + " relationship was not " +
-                        "saved");
-        } catch (ClassCastException e) {
-            throw new ModelConfigurationException("Invalid primary key.", e);
         }
+        mQueryCache.bumpVersion(relationship.getTableName());
+        mLogger.debug(relatedKeys.size() + " " + relationship.getFirstType().getSimpleName() + "-" +
+                relationship.getSecondType().getSimpleName() + " relationships saved");
+    }
+
+    private void deleteManyToManyRelationships(Class<?> type, ManyToManyRelationship relationship, Serializable key,
+                                               List<String> staleKeys) {
+        // One bind parameter is taken by the owning entity's key
+        int chunkSize = SqlConstants.MAX_BIND_PARAMETERS - 1;
+        for (int start = 0; start < staleKeys.size(); start += chunkSize) {
+            int end = Math.min(start + chunkSize, staleKeys.size());
+            List<Object> args = new ArrayList<Object>(end - start + 1);
+            args.add(key);
+            args.addAll(staleKeys.subList(start, end));
+            executeStatement(new SqlStatement(mSqlBuilder.createManyToManyDeleteStatement(type, relationship,
+                    end - start), args));
+        }
+        if (!staleKeys.isEmpty())
+            mQueryCache.bumpVersion(relationship.getTableName());
     }
 
     private void deleteRelationships(Object model) {
         SqliteModelMap map = mMapper.mapModel(model);
         for (Pair<ManyToManyRelationship, Iterable<Object>> relationshipPair : map.getManyToManyRelationships()) {
             ManyToManyRelationship relationship = relationshipPair.getFirst();
-            mSqliteDb.execSQL(mSqlBuilder.createManyToManyDeleteQuery(model, relationship), null);
+            executeStatement(mSqlBuilder.createPreparedManyToManyDeleteQuery(model, relationship));
+            mQueryCache.bumpVersion(relationship.getTableName());
         }
         // TODO Update non M:M relationships?
     }
 
+    private void executeStatement(SqlStatement sql) {
+        Object[] args = sql.getArgs();
+        synchronized (mStatementCache) {
+            SQLiteStatement statement = mStatementCache.getStatement(sql.getSql());
+            statement.clearBindings();
+            for (int i = 0; i < args.length; i++)
+                bindValue(statement, i + 1, args[i]);
+            statement.execute();
+        }
+    }
+
+    private int executeDelete(SqlStatement sql) {
+        // SQLiteStatement can't report the rows it deleted on older Android releases, so they're counted separately
+        synchronized (mStatementCache) {
+            executeStatement(sql);
+            return (int) mStatementCache.getStatement(SqlConstants.SELECT_CHANGES).simpleQueryForLong();
+        }
+    }
+
     private void setPrimaryKey(Object model, long rowId) {
         Field pkField = mPersistencePolicy.getPrimaryKeyField(model.getClass());
         Class<?> pkType = Primitives.unwrap(pkField.getType());
@@ -541,6 +1009,75 @@ public class SqliteTemplate implements SqliteOperations {
         mClassReflector.setFieldValue(model, pkField, rowId);
     }
 
+    private ContentValues getChangedValues(ContentValues snapshot, ContentValues values) {
+        ContentValues changed = new ContentValues(values);
+        boolean isChanged = false;
+        for (Map.Entry<String, Object> value : values.valueSet()) {
+            String column = value.getKey();
+            Object current = value.getValue();
+            Object previous = snapshot.get(column);
+            // Snapshots taken on load don't hold relational keys, so those are written along with changed columns
+            // but don't count as changes themselves
+            if (!snapshot.containsKey(column))
+                continue;
+            boolean isEqual;
+            if (current instanceof byte[] && previous instanceof byte[])
+                isEqual = Arrays.equals((byte[]) current, (byte[]) previous);
+            else
+                isEqual = current == null ? previous == null : current.equals(previous);
+            if (isEqual)
+                changed.remove(column);
+            else
+                isChanged = true;
+        }
+        if (!isChanged)
+            changed.clear();
+        return changed;
+    }
+
+    private List<String> getColumns(ContentValues values) {
+        List<String> columns = new ArrayList<String>(values.size());
+        for (Map.Entry<String, Object> value : values.valueSet())
+            columns.add(value.getKey());
+        return columns;
+    }
+
+    private void bindValues(SQLiteStatement statement, List<String> columns, ContentValues values) {
+        statement.clearBindings();
+        for (int i = 0; i < columns.size(); i++)
+            bindValue(statement, i + 1, values.get(columns.get(i)));
+    }
+
+    private void bindValue(SQLiteStatement statement, int index, Object value) {
+        // Mirrors how SQLiteDatabase binds ContentValues
+        if (value == null)
+            statement.bindNull(index);
+        else if (value instanceof byte[])
+            statement.bindBlob(index, (byte[]) value);
+        else if (value instanceof Double || value instanceof Float)
+            statement.bindDouble(index, ((Number) value).doubleValue());
+        else if (value instanceof Number)
+            statement.bindLong(index, ((Number) value).longValue());
+        else if (value instanceof Boolean)
+            statement.bindLong(index, (Boolean) value ? 1 : 0);
+        else
+            statement.bindString(index, value.toString());
+    }
+
+    private FieldBinding createFieldBinding(Class<?> type) {
+        List<String> columns = new ArrayList<String>();
+        List<Field> fields = new ArrayList<Field>();
+        for (Field field : mPersistencePolicy.getPersistentFields(type)) {
+            if (mPersistencePolicy.isRelationship(field))
+                return null;
+            if (mPersistencePolicy.isFieldPrimaryKey(field) && mPersistencePolicy.isPrimaryKeyAutoIncrement(field))
+                continue;
+            columns.add(mPersistencePolicy.getFieldColumnName(field));
+            fields.add(field);
+        }
+        return fields.isEmpty() ? null : new FieldBinding(columns, fields);
+    }
+
     private void putRelationalKey(ContentValues relationshipData, String column, Field field, Serializable value) {
         switch (mMapper.getSqliteDataType(field)) {
             case INTEGER:
@@ -574,4 +1111,81 @@ public class SqliteTemplate implements SqliteOperations {
         }
     }
 
+    /**
+     * Binds the column values of an entity without relationships directly from its fields, using the typed {@link
+     * FieldAccessor} methods for primitives so that they aren't boxed into {@link ContentValues}.
+     */
+    private class FieldBinding {
+
+        private List<String> mColumns;
+        private FieldAccessor[] mAccessors;
+        private SqliteTypeAdapter<?>[] mAdapters;
+        private boolean[] mIsDirect;
+        private ContentValues mValues;
+
+        public FieldBinding(List<String> columns, List<Field> fields) {
+            mColumns = columns;
+            mAccessors = new FieldAccessor[fields.size()];
+            mAdapters = new SqliteTypeAdapter<?>[fields.size()];
+            mIsDirect = new boolean[fields.size()];
+            mValues = new ContentValues();
+            for (int i = 0; i < mAccessors.length; i++) {
+                mAccessors[i] = FieldAccessors.forField(fields.get(i));
+                mAdapters[i] = mMapper.resolveType(fields.get(i).getType());
+                mIsDirect[i] = isStoredUnchanged(mAdapters[i]);
+            }
+        }
+
+        public List<String> getColumns() {
+            return mColumns;
+        }
+
+        public void bind(SQLiteStatement statement, Object model) {
+            statement.clearBindings();
+            FieldAccessor accessor = null;
+            try {
+                for (int i = 0; i < mAccessors.length; i++) {
+                    accessor = mAccessors[i];
+                    Class<?> type = accessor.getField().getType();
+                    int index = i + 1;
+                    if (!mIsDirect[i]) {
+                        mAdapters[i].mapObjectToColumn(accessor.get(model), mColumns.get(i), mValues);
+                        bindValue(statement, index, mValues.get(mColumns.get(i)));
+                    } else if (!type.isPrimitive()) {
+                        bindValue(statement, index, accessor.get(model));
+                    } else if (type == long.class) {
+                        statement.bindLong(index, accessor.getLong(model));
+                    } else if (type == int.class) {
+                        statement.bindLong(index, accessor.getInt(model));
+                    } else if (type == short.class) {
+                        statement.bindLong(index, accessor.getShort(model));
+                    } else if (type == byte.class) {
+                        statement.bindLong(index, accessor.getByte(model));
+                    } else if (type == double.class) {
+                        statement.bindDouble(index, accessor.getDouble(model));
+                    } else if (type == float.class) {
+                        statement.bindDouble(index, accessor.getFloat(model));
+                    } else if (type == boolean.class) {
+                        statement.bindLong(index, accessor.getBoolean(model) ? 1 : 0);
+                    } else {
+                        bindValue(statement, index, accessor.get(model));
+                    }
+                }
+            } catch (IllegalAccessException e) {
+                throw new InvalidMappingException(String.format("Cannot read '%s' to bind it to a database column.",
+                        accessor.getField().getName()));
+            }
+        }
+
+        private boolean isStoredUnchanged(SqliteTypeAdapter<?> adapter) {
+            // Other adapters, including registered ones, must convert the value before it's bound
+            return adapter == SqliteTypeAdapters.STRING || adapter == SqliteTypeAdapters.INTEGER ||
+                    adapter == SqliteTypeAdapters.LONG || adapter == SqliteTypeAdapters.SHORT ||
+                    adapter == SqliteTypeAdapters.BYTE || adapter == SqliteTypeAdapters.FLOAT ||
+                    adapter == SqliteTypeAdapters.DOUBLE || adapter == SqliteTypeAdapters.BOOLEAN ||
+                    adapter == SqliteTypeAdapters.BYTE_ARRAY;
+        }
+
+    }
+
 }
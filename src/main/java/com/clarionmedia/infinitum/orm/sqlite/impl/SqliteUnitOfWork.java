@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.sqlite.impl;
+
+import com.clarionmedia.infinitum.di.AbstractProxy;
+import com.clarionmedia.infinitum.orm.persistence.PersistencePolicy;
+import com.clarionmedia.infinitum.orm.relationship.ForeignKeyRelationship;
+import com.clarionmedia.infinitum.orm.relationship.ModelRelationship;
+
+import java.lang.reflect.Field;
+import java.util.*;
+
+/**
+ * <p> Records the writes made through a {@link SqliteSession} in unit-of-work mode so that they can be executed
+ * together when the {@code Session} is flushed. Each entity has at most one pending operation, meaning repeated writes
+ * to the same instance collapse into a single statement. Pending entities are returned grouped by type and ordered by
+ * their foreign key dependencies, so referenced entities are written before the entities referencing them and deleted
+ * after them. </p>
+ *
+ * @author Tyler Treat
+ * @version 1.1.0 09/05/13
+ * @since 1.1.0
+ */
+public class SqliteUnitOfWork {
+
+    /**
+     * The kind of write pending for an entity.
+     */
+    public static enum Operation {
+        SAVE, UPDATE, SAVE_OR_UPDATE, DELETE
+    }
+
+    private PersistencePolicy mPersistencePolicy;
+    private Map<Object, Operation> mOperations;
+    private List<Object> mOrder;
+
+    /**
+     * Constructs a new {@code SqliteUnitOfWork}.
+     *
+     * @param persistencePolicy the {@link PersistencePolicy} used to resolve entity dependencies
+     */
+    public SqliteUnitOfWork(PersistencePolicy persistencePolicy) {
+        mPersistencePolicy = persistencePolicy;
+        mOperations = new IdentityHashMap<Object, Operation>();
+        mOrder = new ArrayList<Object>();
+    }
+
+    /**
+     * Registers the given entity to be saved. An entity which is already pending an update or a save-or-update keeps
+     * its pending operation, and an entity pending deletion may still have its row, so it's saved or updated instead.
+     *
+     * @param model the entity to save
+     */
+    public void registerSave(Object model) {
+        Operation pending = mOperations.get(AbstractProxy.getTarget(model));
+        if (pending == null)
+            put(model, Operation.SAVE);
+        else if (pending == Operation.DELETE)
+            put(model, Operation.SAVE_OR_UPDATE);
+    }
+
+    /**
+     * Registers the given entity to be updated. An entity which is already pending a save is simply written with its
+     * latest state, and an entity pending deletion stays deleted.
+     *
+     * @param model the entity to update
+     */
+    public void registerUpdate(Object model) {
+        Operation pending = mOperations.get(AbstractProxy.getTarget(model));
+        if (pending == null)
+            put(model, Operation.UPDATE);
+    }
+
+    /**
+     * Registers the given entity to be saved or updated.
+     *
+     * @param model the entity to save or update
+     */
+    public void registerSaveOrUpdate(Object model) {
+        Operation pending = mOperations.get(AbstractProxy.getTarget(model));
+        if (pending != Operation.SAVE)
+            put(model, Operation.SAVE_OR_UPDATE);
+    }
+
+    /**
+     * Registers the given entity to be deleted. An entity which is pending a save was never written, so its pending
+     * work is discarded instead.
+     *
+     * @param model the entity to delete
+     */
+    public void registerDelete(Object model) {
+        model = AbstractProxy.getTarget(model);
+        if (mOperations.get(model) == Operation.SAVE)
+            mOperations.remove(model);
+        else
+            put(model, Operation.DELETE);
+    }
+
+    /**
+     * Indicates if there is no pending work.
+     *
+     * @return {@code true} if nothing is pending, {@code false} if not
+     */
+    public boolean isEmpty() {
+        return mOperations.isEmpty();
+    }
+
+    /**
+     * Discards all pending work.
+     */
+    public void clear() {
+        mOperations.clear();
+        mOrder.clear();
+    }
+
+    /**
+     * Returns the entities pending the given {@link Operation}, grouped by type. Deletes are ordered so that
+     * referencing entities come first, every other operation so that referenced entities come first.
+     *
+     * @param operation the {@code Operation} to retrieve pending entities for
+     * @return {@link List} of pending entities
+     */
+    public List<Object> getPending(Operation operation) {
+        Map<Class<?>, List<Object>> groups = new LinkedHashMap<Class<?>, List<Object>>();
+        Map<Object, Boolean> seen = new IdentityHashMap<Object, Boolean>();
+        for (Object model : mOrder) {
+            if (mOperations.get(model) != operation || seen.put(model, Boolean.TRUE) != null)
+                continue;
+            List<Object> group = groups.get(model.getClass());
+            if (group == null) {
+                group = new ArrayList<Object>();
+                groups.put(model.getClass(), group);
+            }
+            group.add(model);
+        }
+        List<Class<?>> types = sortByDependencies(groups.keySet());
+        if (operation == Operation.DELETE)
+            Collections.reverse(types);
+        List<Object> ret = new ArrayList<Object>();
+        for (Class<?> type : types)
+            ret.addAll(groups.get(type));
+        return ret;
+    }
+
+    private void put(Object model, Operation operation) {
+        model = AbstractProxy.getTarget(model);
+        if (mOperations.put(model, operation) == null)
+            mOrder.add(model);
+    }
+
+    private List<Class<?>> sortByDependencies(Set<Class<?>> types) {
+        // Map each type to the types whose rows it references through a foreign key
+        Map<Class<?>, Set<Class<?>>> dependencies = new HashMap<Class<?>, Set<Class<?>>>();
+        for (Class<?> type : types)
+            dependencies.put(type, new HashSet<Class<?>>());
+        for (Class<?> type : types) {
+            for (Field field : mPersistencePolicy.getPersistentFields(type)) {
+                if (!mPersistencePolicy.isRelationship(field))
+                    continue;
+                ModelRelationship rel = mPersistencePolicy.getRelationship(field);
+                if (!(rel instanceof ForeignKeyRelationship))
+                    continue;
+                Class<?> other = rel.getFirstType() == type ? rel.getSecondType() : rel.getFirstType();
+                if (other == type || !types.contains(other))
+                    continue;
+                if (((ForeignKeyRelationship) rel).getOwner() == type)
+                    dependencies.get(type).add(other);
+                else
+                    dependencies.get(other).add(type);
+            }
+        }
+        List<Class<?>> sorted = new ArrayList<Class<?>>();
+        Set<Class<?>> visited = new HashSet<Class<?>>();
+        for (Class<?> type : types)
+            visit(type, dependencies, visited, sorted);
+        return sorted;
+    }
+
+    private void visit(Class<?> type, Map<Class<?>, Set<Class<?>>> dependencies, Set<Class<?>> visited,
+                       List<Class<?>> sorted) {
+        // Marking before recursing breaks dependency cycles
+        if (!visited.add(type))
+            return;
+        for (Class<?> dependency : dependencies.get(type))
+            visit(dependency, dependencies, visited, sorted);
+        sorted.add(type);
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CacheStatisticsTest {
+
+    @Test
+    public void testRecordLookup() {
+        // Setup
+        CacheStatistics statistics = new CacheStatistics();
+
+        // Run
+        statistics.recordLookup(Foo.class, true);
+        statistics.recordLookup(Foo.class, false);
+        statistics.recordLookup(Bar.class, true);
+
+        // Verify
+        assertEquals("Hits should be counted in total", 2, statistics.getHitCount());
+        assertEquals("Misses should be counted in total", 1, statistics.getMissCount());
+        assertEquals("Hits should be counted by class", 1, statistics.getHitCount(Foo.class));
+        assertEquals("Misses should be counted by class", 0, statistics.getMissCount(Bar.class));
+        assertEquals("Hit ratio should be computed by class", 0.5, statistics.getHitRatio(Foo.class), 0);
+        assertTrue("Looked up classes should be reported", statistics.getEntityClasses().contains(Bar.class));
+    }
+
+    @Test
+    public void testRecordSizeChange() {
+        // Setup
+        CacheStatistics statistics = new CacheStatistics();
+        statistics.recordSizeChange(Foo.class, 3);
+        statistics.recordSizeChange(Bar.class, 2);
+
+        // Run
+        statistics.recordSizeChange(Foo.class, -1);
+
+        // Verify
+        assertEquals("Size should be tracked in total", 4, statistics.getSize());
+        assertEquals("Size should be tracked by class", 2, statistics.getSize(Foo.class));
+    }
+
+    @Test
+    public void testRecordClear() {
+        // Setup
+        CacheStatistics statistics = new CacheStatistics();
+        statistics.recordSizeChange(Foo.class, 3);
+        statistics.recordEviction(Foo.class);
+
+        // Run
+        statistics.recordClear();
+
+        // Verify
+        assertEquals("Size should be cleared", 0, statistics.getSize(Foo.class));
+        assertEquals("Counters should not be cleared", 1, statistics.getEvictionCount(Foo.class));
+    }
+
+    @Test
+    public void testReset() {
+        // Setup
+        CacheStatistics statistics = new CacheStatistics();
+        statistics.recordLookup(Foo.class, true);
+        statistics.recordRejectedPut(Foo.class);
+        statistics.recordEviction(Foo.class);
+        statistics.recordSizeChange(Foo.class, 1);
+
+        // Run
+        statistics.reset();
+
+        // Verify
+        assertEquals("Hits should be reset", 0, statistics.getHitCount(Foo.class));
+        assertEquals("Rejected puts should be reset", 0, statistics.getRejectedPutCount());
+        assertEquals("Evictions should be reset", 0, statistics.getEvictionCount(Foo.class));
+        assertEquals("Size should not be reset", 1, statistics.getSize());
+    }
+
+    private static class Foo {
+    }
+
+    private static class Bar {
+    }
+
+}
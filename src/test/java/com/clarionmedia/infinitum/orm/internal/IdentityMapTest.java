@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.internal;
+
+import com.clarionmedia.infinitum.orm.CacheStatistics;
+import com.clarionmedia.infinitum.orm.OrmConstants.CacheOverflow;
+import org.junit.Test;
+
+import java.io.Serializable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class IdentityMapTest {
+
+    @Test
+    public void testGet_segmentedByClass() {
+        // Setup
+        IdentityMap identityMap = new IdentityMap(10);
+        Object foo = new Object();
+        Object bar = new Object();
+
+        // Run
+        identityMap.put(Foo.class, 1L, foo);
+        identityMap.put(Bar.class, 1L, bar);
+
+        // Verify
+        assertSame("Entity should be cached by its class", foo, identityMap.get(Foo.class, 1L));
+        assertSame("Entities of different classes should not collide", bar, identityMap.get(Bar.class, 1L));
+        assertNull("Uncached key should not be found", identityMap.get(Foo.class, 2L));
+        assertEquals("Map should contain both entities", 2, identityMap.size());
+    }
+
+    @Test
+    public void testGet_boxedKeys() {
+        // Setup
+        IdentityMap identityMap = new IdentityMap(10);
+        Object foo = new Object();
+        Object bar = new Object();
+
+        // Run
+        identityMap.put(Foo.class, (Serializable) 5, foo);
+        identityMap.put(Foo.class, "5", bar);
+
+        // Verify
+        assertSame("Integer keys should be cached by their long value", foo, identityMap.get(Foo.class, 5L));
+        assertSame("Long keys should match integer keys", foo, identityMap.get(Foo.class, (Serializable) 5L));
+        assertSame("String keys should be cached separately", bar, identityMap.get(Foo.class, "5"));
+    }
+
+    @Test
+    public void testPut_resize() {
+        // Setup
+        IdentityMap identityMap = new IdentityMap(1000);
+
+        // Run
+        for (long i = 0; i < 500; i++)
+            identityMap.put(Foo.class, i * 1024, Long.valueOf(i));
+
+        // Verify
+        assertEquals("Map should contain every entity", 500, identityMap.size());
+        for (long i = 0; i < 500; i++)
+            assertEquals("Entity should be found after resizing", Long.valueOf(i), identityMap.get(Foo.class,
+                    i * 1024));
+    }
+
+    @Test
+    public void testPut_evictsLeastRecentlyUsed() {
+        // Setup
+        IdentityMap identityMap = new IdentityMap(2);
+        identityMap.put(Foo.class, 1L, "first");
+        identityMap.put(Foo.class, 2L, "second");
+        identityMap.get(Foo.class, 1L);
+
+        // Run
+        identityMap.put(Bar.class, "3", "third");
+
+        // Verify
+        assertEquals("Map should not exceed its maximum size", 2, identityMap.size());
+        assertTrue("Recently used entity should be kept", identityMap.contains(Foo.class, 1L));
+        assertFalse("Least recently used entity should be evicted", identityMap.contains(Foo.class, 2L));
+        assertTrue("New entity should be cached", identityMap.contains(Bar.class, "3"));
+    }
+
+    @Test
+    public void testPut_evictsByWeight() {
+        // Setup
+        IdentityMap identityMap = new IdentityMap(100, 10, new LengthWeigher());
+        identityMap.put(Foo.class, 1L, "aaaa");
+        identityMap.put(Foo.class, 2L, "bbbb");
+
+        // Run
+        identityMap.put(Foo.class, 3L, "cccc");
+
+        // Verify
+        assertEquals("Map should not exceed its maximum weight", 8, identityMap.getWeight());
+        assertFalse("Least recently used entity should be evicted", identityMap.contains(Foo.class, 1L));
+        assertTrue("Other entities should be kept", identityMap.contains(Foo.class, 2L));
+        assertTrue("New entity should be cached", identityMap.contains(Foo.class, 3L));
+    }
+
+    @Test
+    public void testPut_heavierThanMaxWeight() {
+        // Setup
+        IdentityMap identityMap = new IdentityMap(100, 10, new LengthWeigher());
+        identityMap.put(Foo.class, 1L, "aaaa");
+
+        // Run
+        identityMap.put(Foo.class, 2L, "bbbbbbbbbbbb");
+
+        // Verify
+        assertEquals("Only the heavy entity should be kept", 1, identityMap.size());
+        assertTrue("Heavy entity should be cached", identityMap.contains(Foo.class, 2L));
+    }
+
+    @Test
+    public void testSetMaxSize() {
+        // Setup
+        IdentityMap identityMap = new IdentityMap(10);
+        for (long i = 0; i < 10; i++)
+            identityMap.put(Foo.class, i, Long.valueOf(i));
+
+        // Run
+        identityMap.setMaxSize(4);
+
+        // Verify
+        assertEquals("Map should be resized", 4, identityMap.size());
+        assertFalse("Least recently used entities should be evicted", identityMap.contains(Foo.class, 5L));
+        assertTrue("Most recently used entities should be kept", identityMap.contains(Foo.class, 6L));
+    }
+
+    @Test
+    public void testSetOverflow_soft() {
+        // Setup
+        IdentityMap identityMap = new IdentityMap(1);
+        identityMap.setOverflow(CacheOverflow.Soft);
+        Object foo = new Object();
+        Object bar = new Object();
+        identityMap.put(Foo.class, 1L, foo);
+        identityMap.put(Foo.class, 2L, bar);
+
+        // Run
+        Object actual = identityMap.get(Foo.class, 1L);
+
+        // Verify
+        assertSame("Overflowed entity should still be found", foo, actual);
+        assertEquals("Found entity should be strongly held again", 1, identityMap.size());
+        assertEquals("Other entity should overflow in its place", 1, identityMap.getOverflowSize());
+        assertTrue("Other entity should still be found", identityMap.contains(Foo.class, 2L));
+    }
+
+    @Test
+    public void testSetOverflow_discard() {
+        // Setup
+        IdentityMap identityMap = new IdentityMap(1);
+        identityMap.put(Foo.class, 1L, new Object());
+
+        // Run
+        identityMap.put(Foo.class, 2L, new Object());
+
+        // Verify
+        assertFalse("Evicted entity should be discarded", identityMap.contains(Foo.class, 1L));
+        assertEquals("No entities should overflow", 0, identityMap.getOverflowSize());
+    }
+
+    @Test
+    public void testSetStatistics() {
+        // Setup
+        IdentityMap identityMap = new IdentityMap(2);
+        CacheStatistics statistics = new CacheStatistics();
+        identityMap.setStatistics(statistics);
+        identityMap.put(Foo.class, 1L, new Object());
+        identityMap.put(Foo.class, 1L, new Object());
+        identityMap.put(Bar.class, 1L, new Object());
+
+        // Run
+        identityMap.put(Bar.class, 2L, new Object());
+        identityMap.remove(Bar.class, 1L);
+
+        // Verify
+        assertEquals("Evictions should be recorded", 1, statistics.getEvictionCount());
+        assertEquals("Evictions should be recorded by class", 1, statistics.getEvictionCount(Foo.class));
+        assertEquals("Size should match the map", identityMap.size(), statistics.getSize());
+        assertEquals("Size should be recorded by class", 0, statistics.getSize(Foo.class));
+        assertEquals("Size should be recorded by class", 1, statistics.getSize(Bar.class));
+    }
+
+    @Test
+    public void testRemove() {
+        // Setup
+        IdentityMap identityMap = new IdentityMap(100);
+        for (long i = 0; i < 40; i++)
+            identityMap.put(Foo.class, i, Long.valueOf(i));
+
+        // Run
+        for (long i = 0; i < 40; i += 2)
+            identityMap.remove(Foo.class, i);
+
+        // Verify
+        assertEquals("Removed entities should not be counted", 20, identityMap.size());
+        for (long i = 0; i < 40; i++)
+            assertEquals("Only removed entities should be missing", i % 2 == 1, identityMap.contains(Foo.class, i));
+    }
+
+    @Test
+    public void testClear() {
+        // Setup
+        IdentityMap identityMap = new IdentityMap(10);
+        identityMap.put(Foo.class, 1L, new Object());
+        identityMap.put(Foo.class, "foo", new Object());
+
+        // Run
+        identityMap.clear();
+
+        // Verify
+        assertEquals("Map should be empty", 0, identityMap.size());
+        assertNull("Entity should be removed", identityMap.get(Foo.class, 1L));
+        assertNull("Entity should be removed", identityMap.get(Foo.class, "foo"));
+    }
+
+    private static class LengthWeigher implements IdentityMap.Weigher {
+        @Override
+        public int weigh(Object entity) {
+            return ((String) entity).length();
+        }
+    }
+
+    private static class Foo {
+    }
+
+    private static class Bar {
+    }
+
+}
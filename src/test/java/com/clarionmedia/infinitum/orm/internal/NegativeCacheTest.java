@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.internal;
+
+import org.junit.Test;
+
+import java.io.Serializable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NegativeCacheTest {
+
+    @Test
+    public void testContains() {
+        // Setup
+        NegativeCache negativeCache = new NegativeCache(10);
+
+        // Run
+        negativeCache.add(Foo.class, (Serializable) 5, 0);
+
+        // Verify
+        assertTrue("Missing key should be found regardless of its boxed type", negativeCache.contains(Foo.class, 5L,
+                0));
+        assertFalse("Keys of other classes should not be found", negativeCache.contains(Bar.class, 5L, 0));
+        assertFalse("Other keys should not be found", negativeCache.contains(Foo.class, 6L, 0));
+    }
+
+    @Test
+    public void testContains_versionChanged() {
+        // Setup
+        NegativeCache negativeCache = new NegativeCache(10);
+        negativeCache.add(Foo.class, 5L, 3);
+
+        // Run
+        boolean actual = negativeCache.contains(Foo.class, 5L, 4);
+
+        // Verify
+        assertFalse("Key recorded under another table version should not be found", actual);
+        assertEquals("Stale key should be discarded", 0, negativeCache.size());
+    }
+
+    @Test
+    public void testAdd_bounded() {
+        // Setup
+        NegativeCache negativeCache = new NegativeCache(2);
+        negativeCache.add(Foo.class, 1L, 0);
+        negativeCache.add(Foo.class, 2L, 0);
+
+        // Run
+        negativeCache.add(Foo.class, 3L, 0);
+
+        // Verify
+        assertEquals("Cache should not exceed its maximum size", 2, negativeCache.size());
+        assertFalse("Least recently used key should be discarded", negativeCache.contains(Foo.class, 1L, 0));
+    }
+
+    @Test
+    public void testAdd_disabled() {
+        // Setup
+        NegativeCache negativeCache = new NegativeCache(0);
+
+        // Run
+        negativeCache.add(Foo.class, 1L, 0);
+
+        // Verify
+        assertFalse("Disabled cache should not hold keys", negativeCache.contains(Foo.class, 1L, 0));
+    }
+
+    @Test
+    public void testRemove() {
+        // Setup
+        NegativeCache negativeCache = new NegativeCache(10);
+        negativeCache.add(Foo.class, "foo", 0);
+
+        // Run
+        negativeCache.remove(Foo.class, "foo");
+
+        // Verify
+        assertFalse("Removed key should not be found", negativeCache.contains(Foo.class, "foo", 0));
+        assertEquals("Cache should be empty", 0, negativeCache.size());
+    }
+
+    private static class Foo {
+    }
+
+    private static class Bar {
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.internal.bind;
+
+import com.clarionmedia.infinitum.orm.persistence.FieldAccessor;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class FieldAccessorsTest {
+
+    @Test
+    public void testForField_cached() throws NoSuchFieldException {
+        // Setup
+        Field field = Foo.class.getDeclaredField("id");
+
+        // Run
+        FieldAccessor first = FieldAccessors.forField(field);
+        FieldAccessor second = FieldAccessors.forField(field);
+
+        // Verify
+        assertSame("Accessor should be resolved once per field", first, second);
+        assertSame("Accessor should access the given field", field, first.getField());
+    }
+
+    @Test
+    public void testForField_primitive() throws NoSuchFieldException, IllegalAccessException {
+        // Setup
+        Foo foo = new Foo();
+        FieldAccessor accessor = FieldAccessors.forField(Foo.class.getDeclaredField("id"));
+
+        // Run
+        accessor.setLong(foo, 42L);
+
+        // Verify
+        assertEquals("Field should be set", 42L, foo.id);
+        assertEquals("Field should be read without boxing", 42L, accessor.getLong(foo));
+        assertEquals("Field should be read boxed", 42L, accessor.get(foo));
+    }
+
+    @Test
+    public void testForField_wrapper() throws NoSuchFieldException, IllegalAccessException {
+        // Setup
+        Foo foo = new Foo();
+        FieldAccessor accessor = FieldAccessors.forField(Foo.class.getDeclaredField("count"));
+
+        // Run
+        accessor.setInt(foo, 7);
+
+        // Verify
+        assertEquals("Wrapper field should be set through the typed method", Integer.valueOf(7), foo.count);
+        assertEquals("Wrapper field should be read through the typed method", 7, accessor.getInt(foo));
+    }
+
+    @Test
+    public void testRegister() throws NoSuchFieldException, IllegalAccessException {
+        // Setup
+        Foo foo = new Foo();
+        FieldAccessor accessor = new FieldAccessor(Foo.class.getDeclaredField("name")) {
+            @Override
+            public Object get(Object model) {
+                return ((Foo) model).name;
+            }
+
+            @Override
+            public void set(Object model, Object value) {
+                ((Foo) model).name = (String) value;
+            }
+        };
+
+        int generation = FieldAccessors.getGeneration();
+
+        // Run
+        FieldAccessors.register(accessor);
+        FieldAccessors.forField(Foo.class.getDeclaredField("name")).set(foo, "foo");
+
+        // Verify
+        assertSame("Registered accessor should be used", accessor, FieldAccessors.forField(Foo.class
+                .getDeclaredField("name")));
+        assertEquals("Field should be set by the registered accessor", "foo", foo.name);
+        assertEquals("Registering should advance the generation", generation + 1, FieldAccessors.getGeneration());
+    }
+
+    private static class Foo {
+        private long id;
+        private Integer count;
+        private String name;
+    }
+
+}
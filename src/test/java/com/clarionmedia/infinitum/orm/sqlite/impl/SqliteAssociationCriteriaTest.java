@@ -23,11 +23,14 @@ import com.clarionmedia.infinitum.orm.context.InfinitumOrmContext.SessionType;
 import com.clarionmedia.infinitum.orm.persistence.PersistencePolicy;
 import com.clarionmedia.infinitum.orm.relationship.ModelRelationship;
 import com.clarionmedia.infinitum.orm.sql.SqlBuilder;
+import com.clarionmedia.infinitum.orm.sql.SqlStatement;
 import com.xtremelabs.robolectric.RobolectricTestRunner;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.Assert.*;
@@ -86,15 +89,15 @@ public class SqliteAssociationCriteriaTest {
     public void testList_noResults() {
         // Setup
         String query = "SQL criteria query";
-        when(mockSqlBuilder.createQuery(parentCriteria)).thenReturn(query);
-        when(mockSqliteSession.executeForResult(query)).thenReturn(mockCursor);
+        when(mockSqlBuilder.createPreparedQuery(parentCriteria)).thenReturn(new SqlStatement(query, new ArrayList<Object>()));
+        when(mockSqliteSession.executeForResult(query, new String[0])).thenReturn(mockCursor);
         when(mockCursor.getCount()).thenReturn(0);
 
         // Run
         List<Object> actual = sqliteAssociationCriteria.list();
 
         // Verify
-        verify(mockSqliteSession).executeForResult(query);
+        verify(mockSqliteSession).executeForResult(query, new String[0]);
         verify(mockCursor, times(2)).getCount();
         verify(mockCursor).close();
         assertEquals("Returned list should be empty", 0, actual.size());
@@ -104,8 +107,8 @@ public class SqliteAssociationCriteriaTest {
     public void testList_results() {
         // Setup
         String query = "SQL criteria query";
-        when(mockSqlBuilder.createQuery(parentCriteria)).thenReturn(query);
-        when(mockSqliteSession.executeForResult(query)).thenReturn(mockCursor);
+        when(mockSqlBuilder.createPreparedQuery(parentCriteria)).thenReturn(new SqlStatement(query, new ArrayList<Object>()));
+        when(mockSqliteSession.executeForResult(query, new String[0])).thenReturn(mockCursor);
         final int RESULT_COUNT = 3;
         when(mockCursor.getCount()).thenReturn(RESULT_COUNT);
         when(mockCursor.moveToNext()).thenReturn(true).thenReturn(true).thenReturn(true).thenReturn(false);
@@ -115,12 +118,12 @@ public class SqliteAssociationCriteriaTest {
         List<Object> actual = sqliteAssociationCriteria.list();
 
         // Verify
-        verify(mockSqliteSession).executeForResult(query);
+        verify(mockSqliteSession).executeForResult(query, new String[0]);
         verify(mockCursor, times(2)).getCount();
         verify(mockCursor).close();
         verify(mockCursor, times(4)).moveToNext();
         verify(mockSqliteModelFactory, times(3)).createFromCursor(mockCursor, entityClass);
-        verify(mockSqliteSession, times(3)).cache(any(Integer.class), any(Object.class));
+        verify(mockSqliteSession, times(0)).cache(any(Class.class), any(Serializable.class), any(Object.class));
         assertEquals("Returned list should be empty", RESULT_COUNT, actual.size());
     }
 
@@ -128,15 +131,15 @@ public class SqliteAssociationCriteriaTest {
     public void testUnique_noResult() {
         // Setup
         String query = "SQL criteria query";
-        when(mockSqlBuilder.createQuery(parentCriteria)).thenReturn(query);
-        when(mockSqliteSession.executeForResult(query)).thenReturn(mockCursor);
+        when(mockSqlBuilder.createPreparedQuery(parentCriteria)).thenReturn(new SqlStatement(query, new ArrayList<Object>()));
+        when(mockSqliteSession.executeForResult(query, new String[0])).thenReturn(mockCursor);
         when(mockCursor.getCount()).thenReturn(0);
 
         // Run
         Object actual = sqliteAssociationCriteria.unique();
 
         // Verify
-        verify(mockSqliteSession).executeForResult(query);
+        verify(mockSqliteSession).executeForResult(query, new String[0]);
         verify(mockCursor, times(2)).getCount();
         verify(mockCursor).close();
         assertNull("Returned result should be null", actual);
@@ -146,8 +149,8 @@ public class SqliteAssociationCriteriaTest {
     public void testUnique_result() {
         // Setup
         String query = "SQL criteria query";
-        when(mockSqlBuilder.createQuery(parentCriteria)).thenReturn(query);
-        when(mockSqliteSession.executeForResult(query)).thenReturn(mockCursor);
+        when(mockSqlBuilder.createPreparedQuery(parentCriteria)).thenReturn(new SqlStatement(query, new ArrayList<Object>()));
+        when(mockSqliteSession.executeForResult(query, new String[0])).thenReturn(mockCursor);
         when(mockCursor.getCount()).thenReturn(1);
         when(mockSqliteModelFactory.createFromCursor(mockCursor, entityClass)).thenReturn(new Object());
 
@@ -155,7 +158,7 @@ public class SqliteAssociationCriteriaTest {
         Object actual = sqliteAssociationCriteria.unique();
 
         // Verify
-        verify(mockSqliteSession).executeForResult(query);
+        verify(mockSqliteSession).executeForResult(query, new String[0]);
         verify(mockCursor, times(2)).getCount();
         verify(mockCursor).close();
         assertNotNull("Returned result should not be null", actual);
@@ -165,8 +168,8 @@ public class SqliteAssociationCriteriaTest {
     public void testUnique_noUnique() {
         // Setup
         String query = "SQL criteria query";
-        when(mockSqlBuilder.createQuery(parentCriteria)).thenReturn(query);
-        when(mockSqliteSession.executeForResult(query)).thenReturn(mockCursor);
+        when(mockSqlBuilder.createPreparedQuery(parentCriteria)).thenReturn(new SqlStatement(query, new ArrayList<Object>()));
+        when(mockSqliteSession.executeForResult(query, new String[0])).thenReturn(mockCursor);
         when(mockCursor.getCount()).thenReturn(3);
         when(mockSqliteModelFactory.createFromCursor(mockCursor, entityClass)).thenReturn(new Object());
 
@@ -194,8 +197,8 @@ public class SqliteAssociationCriteriaTest {
     public void testCount() {
         // Setup
         String query = "SQL criteria query";
-        when(mockSqlBuilder.createCountQuery(parentCriteria)).thenReturn(query);
-        when(mockSqliteSession.executeForResult(query)).thenReturn(mockCursor);
+        when(mockSqlBuilder.createPreparedCountQuery(parentCriteria)).thenReturn(new SqlStatement(query, new ArrayList<Object>()));
+        when(mockSqliteSession.executeForResult(query, new String[0])).thenReturn(mockCursor);
         when(mockCursor.moveToFirst()).thenReturn(true);
         final long EXPECTED = 5;
         when(mockCursor.getLong(0)).thenReturn(EXPECTED);
@@ -204,8 +207,8 @@ public class SqliteAssociationCriteriaTest {
         long actual = sqliteAssociationCriteria.count();
 
         // Verify
-        verify(mockSqliteSession).executeForResult(query);
-        verify(mockSqlBuilder).createCountQuery(parentCriteria);
+        verify(mockSqliteSession).executeForResult(query, new String[0]);
+        verify(mockSqlBuilder).createPreparedCountQuery(parentCriteria);
         verify(mockCursor).moveToFirst();
         verify(mockCursor).getLong(0);
         verify(mockCursor).close();
@@ -23,9 +23,12 @@ import com.clarionmedia.infinitum.orm.context.InfinitumOrmContext;
 import com.clarionmedia.infinitum.orm.criteria.Criteria;
 import com.clarionmedia.infinitum.orm.criteria.Order;
 import com.clarionmedia.infinitum.orm.criteria.criterion.Criterion;
+import com.clarionmedia.infinitum.orm.exception.InvalidCriteriaException;
 import com.clarionmedia.infinitum.orm.persistence.PersistencePolicy;
 import com.clarionmedia.infinitum.orm.persistence.TypeResolutionPolicy.SqliteDataType;
 import com.clarionmedia.infinitum.orm.relationship.*;
+import com.clarionmedia.infinitum.orm.relationship.ModelRelationship.RelationType;
+import com.clarionmedia.infinitum.orm.sql.SqlStatement;
 import com.clarionmedia.infinitum.reflection.ClassReflector;
 import com.xtremelabs.robolectric.RobolectricTestRunner;
 import org.junit.Before;
@@ -39,6 +42,7 @@ import java.io.Serializable;
 import java.lang.reflect.Field;
 import java.util.*;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
@@ -1175,6 +1179,371 @@ public class SqliteBuilderTest {
         assertEquals("Returned SQL query should match expected value", expected, actual);
     }
 
+    @Test
+    public void testCreatePreparedUpdateQuery() {
+        // Setup
+        Object entity = new Object();
+        Object related = new Object();
+        Serializable pk = 42;
+        Serializable fk = 103;
+        final String PK_NAME = "pk";
+        final String COL_NAME = "col";
+        when(mockPersistencePolicy.getPrimaryKey(related)).thenReturn(fk);
+        when(mockPersistencePolicy.getPrimaryKey(entity)).thenReturn(pk);
+        when(mockPersistencePolicy.getModelTableName(entity.getClass())).thenReturn(MODEL_TABLE_1);
+        Field field = ArrayList.class.getDeclaredFields()[0];
+        when(mockPersistencePolicy.getPrimaryKeyField(entity.getClass())).thenReturn(field);
+        when(mockPersistencePolicy.getFieldColumnName(field)).thenReturn(PK_NAME);
+
+        // Run
+        String expected = "UPDATE " + MODEL_TABLE_1 + " SET " + COL_NAME + " = ? WHERE " + PK_NAME + " = ?";
+        SqlStatement actual = sqliteBuilder.createPreparedUpdateQuery(entity, related, COL_NAME);
+
+        // Verify
+        verify(mockPersistencePolicy).getPrimaryKey(related);
+        verify(mockPersistencePolicy).getPrimaryKey(entity);
+        verify(mockSqliteMapper, times(0)).getSqliteDataType(field);
+        assertEquals("Returned SQL query should match expected value", expected, actual.getSql());
+        assertArrayEquals("Returned bind arguments should match expected value", new Object[]{fk, pk},
+                actual.getArgs());
+    }
+
+    @Test
+    public void testCreatePreparedQuery_singleCriterion() {
+        // Setup
+        doReturn(Object.class).when(mockCriteria).getEntityClass();
+        List<Criterion> mockCriterionList = new ArrayList<Criterion>();
+        mockCriterionList.add(mockCriterionA);
+        when(mockCriteria.getCriterion()).thenReturn(mockCriterionList);
+        when(mockCriteria.getLimit()).thenReturn(0);
+        when(mockCriteria.getOffset()).thenReturn(0);
+        when(mockPersistencePolicy.getModelTableName(Object.class)).thenReturn(MODEL_TABLE_1);
+        when(mockCriterionA.toSql(eq(mockCriteria), anyListOf(Object.class))).thenReturn("foo = ?");
+
+        // Run
+        String expected = "SELECT * FROM " + MODEL_TABLE_1 + " WHERE foo = ?";
+        SqlStatement actual = sqliteBuilder.createPreparedQuery(mockCriteria);
+
+        // Verify
+        verify(mockCriterionA).toSql(eq(mockCriteria), anyListOf(Object.class));
+        verify(mockCriterionA, times(0)).toSql(mockCriteria);
+        assertEquals("Returned SQL query should match expected value", expected, actual.getSql());
+    }
+
+    @Test
+    public void testCreatePreparedQuery_fetchManyToOne() throws NoSuchFieldException {
+        // Setup
+        Field barField = Foo.class.getDeclaredField("bar");
+        setupFetch(barField, mockMtoRelationship);
+        when(mockMtoRelationship.getRelationType()).thenReturn(RelationType.ManyToOne);
+        when(mockMtoRelationship.getColumn()).thenReturn("bar_id");
+
+        // Run
+        String expected = "SELECT x.*, fetch0.id AS fetch0_id FROM (SELECT * FROM foo) x LEFT JOIN bar fetch0 ON " +
+                "fetch0.id = x.bar_id";
+        SqlStatement actual = sqliteBuilder.createPreparedQuery(mockCriteria);
+
+        // Verify
+        assertEquals("Returned SQL query should match expected value", expected, actual.getSql());
+    }
+
+    @Test
+    public void testCreatePreparedQuery_fetchOneToMany_orderBy_limit() throws NoSuchFieldException {
+        // Setup
+        Field barField = Foo.class.getDeclaredField("bar");
+        setupFetch(barField, mockOtmRelationship);
+        when(mockOtmRelationship.getRelationType()).thenReturn(RelationType.OneToMany);
+        when(mockOtmRelationship.getColumn()).thenReturn("foo_id");
+        when(mockCriteria.getLimit()).thenReturn(10);
+        List<Order> orderings = new ArrayList<Order>();
+        orderings.add(Order.asc("id"));
+        when(mockCriteria.getOrderings()).thenReturn(orderings);
+        doReturn(Foo.class.getDeclaredField("id")).when(mockPersistencePolicy).findPersistentField(Foo.class, "id");
+
+        // Run
+        String expected = "SELECT x.*, fetch0.id AS fetch0_id FROM (SELECT * FROM foo ORDER BY id ASC LIMIT 10) x " +
+                "LEFT JOIN bar fetch0 ON fetch0.foo_id = x.id ORDER BY x.id ASC";
+        SqlStatement actual = sqliteBuilder.createPreparedQuery(mockCriteria);
+
+        // Verify
+        assertEquals("Limit should apply to the entities rather than the joined rows", expected, actual.getSql());
+    }
+
+    @Test
+    public void testCreatePreparedQuery_projection() throws NoSuchFieldException {
+        // Setup
+        Field idField = Foo.class.getDeclaredField("id");
+        Field barField = Foo.class.getDeclaredField("bar");
+        doReturn(Foo.class).when(mockCriteria).getEntityClass();
+        when(mockCriteria.getProjections()).thenReturn(Arrays.asList("id", "bar"));
+        when(mockCriteria.getFetches()).thenReturn(Arrays.asList("bar"));
+        List<Criterion> mockCriterionList = new ArrayList<Criterion>();
+        mockCriterionList.add(mockCriterionA);
+        when(mockCriteria.getCriterion()).thenReturn(mockCriterionList);
+        when(mockCriterionA.toSql(eq(mockCriteria), anyListOf(Object.class))).thenReturn("foo = ?");
+        doReturn(idField).when(mockPersistencePolicy).findPersistentField(Foo.class, "id");
+        doReturn(barField).when(mockPersistencePolicy).findPersistentField(Foo.class, "bar");
+        when(mockPersistencePolicy.getFieldColumnName(idField)).thenReturn("id");
+        when(mockPersistencePolicy.getFieldColumnName(barField)).thenReturn("bar");
+        when(mockPersistencePolicy.getModelTableName(Foo.class)).thenReturn("foo");
+
+        // Run
+        String expected = "SELECT id, bar FROM foo WHERE foo = ?";
+        SqlStatement actual = sqliteBuilder.createPreparedQuery(mockCriteria);
+
+        // Verify
+        assertEquals("Only projected columns should be selected, without fetch joins", expected, actual.getSql());
+    }
+
+    @Test
+    public void testCreatePreparedQuery_keysetFirstPage() throws NoSuchFieldException {
+        // Setup
+        Field idField = Foo.class.getDeclaredField("id");
+        setupKeyset(idField);
+        when(mockCriteria.getLimit()).thenReturn(11);
+
+        // Run
+        String expected = "SELECT * FROM foo ORDER BY id ASC LIMIT 11";
+        SqlStatement actual = sqliteBuilder.createPreparedQuery(mockCriteria);
+
+        // Verify
+        assertEquals("Results should be ordered by primary key", expected, actual.getSql());
+        assertEquals("There should be no bind arguments", 0, actual.getArgs().length);
+    }
+
+    @Test
+    public void testCreatePreparedQuery_seek() throws NoSuchFieldException {
+        // Setup
+        Field idField = Foo.class.getDeclaredField("id");
+        Field barField = Foo.class.getDeclaredField("bar");
+        setupKeyset(idField);
+        doReturn(barField).when(mockPersistencePolicy).findPersistentField(Foo.class, "bar");
+        when(mockPersistencePolicy.getFieldColumnName(barField)).thenReturn("bar");
+        when(mockCriteria.getOrderings()).thenReturn(Arrays.asList(Order.desc("bar")));
+        when(mockCriteria.getSeekKeys()).thenReturn(Arrays.<Object>asList(5, 10L));
+
+        // Run
+        String expected = "SELECT * FROM foo WHERE bar <= ? AND (bar < ? OR (bar = ? AND id < ?)) ORDER BY bar " +
+                "DESC, id DESC";
+        SqlStatement actual = sqliteBuilder.createPreparedQuery(mockCriteria);
+
+        // Verify
+        assertEquals("Primary key should break ties in the ordering direction", expected, actual.getSql());
+        assertArrayEquals("Seek keys should be bound for each comparison", new Object[]{5, 5, 5, 10L},
+                actual.getArgs());
+    }
+
+    @Test
+    public void testCreatePreparedQuery_seekPrimaryKey() throws NoSuchFieldException {
+        // Setup
+        Field idField = Foo.class.getDeclaredField("id");
+        setupKeyset(idField);
+        when(mockCriteria.getOrderings()).thenReturn(Arrays.asList(Order.asc("id")));
+        when(mockCriteria.getSeekKeys()).thenReturn(Arrays.<Object>asList(10L));
+
+        // Run
+        String expected = "SELECT * FROM foo WHERE id > ? ORDER BY id ASC";
+        SqlStatement actual = sqliteBuilder.createPreparedQuery(mockCriteria);
+
+        // Verify
+        assertEquals("Primary key ordering should not be repeated", expected, actual.getSql());
+    }
+
+    @Test(expected = InvalidCriteriaException.class)
+    public void testCreatePreparedQuery_seekKeysMismatch() throws NoSuchFieldException {
+        // Setup
+        setupKeyset(Foo.class.getDeclaredField("id"));
+        when(mockCriteria.getSeekKeys()).thenReturn(Arrays.<Object>asList(5, 10L));
+
+        // Run
+        sqliteBuilder.createPreparedQuery(mockCriteria);
+    }
+
+    @Test(expected = InvalidCriteriaException.class)
+    public void testCreatePreparedQuery_projectionRelationship() throws NoSuchFieldException {
+        // Setup
+        Field barField = Foo.class.getDeclaredField("bar");
+        doReturn(Foo.class).when(mockCriteria).getEntityClass();
+        when(mockCriteria.getProjections()).thenReturn(Arrays.asList("bar"));
+        doReturn(barField).when(mockPersistencePolicy).findPersistentField(Foo.class, "bar");
+        when(mockPersistencePolicy.isRelationship(barField)).thenReturn(true);
+
+        // Run
+        sqliteBuilder.createPreparedQuery(mockCriteria);
+    }
+
+    @Test(expected = InvalidCriteriaException.class)
+    public void testCreatePreparedQuery_fetchNotRelationship() throws NoSuchFieldException {
+        // Setup
+        Field barField = Foo.class.getDeclaredField("bar");
+        setupFetch(barField, mockMtoRelationship);
+        when(mockPersistencePolicy.isRelationship(barField)).thenReturn(false);
+
+        // Run
+        sqliteBuilder.createPreparedQuery(mockCriteria);
+    }
+
+    @Test
+    public void testCreateInsertStatement() {
+        // Run
+        String expected = "INSERT INTO " + MODEL_TABLE_1 + " (foo, bar) VALUES (?, ?)";
+        String actual = sqliteBuilder.createInsertStatement(MODEL_TABLE_1, Arrays.asList("foo", "bar"));
+
+        // Verify
+        assertEquals("Returned SQL statement should match expected value", expected, actual);
+    }
+
+    @Test
+    public void testCreateUpsertStatement() {
+        // Run
+        String expected = "INSERT OR IGNORE INTO " + MODEL_TABLE_1 + " (id, foo) VALUES (?, ?)";
+        String actual = sqliteBuilder.createUpsertStatement(MODEL_TABLE_1, Arrays.asList("id", "foo"));
+
+        // Verify
+        assertEquals("Returned SQL statement should match expected value", expected, actual);
+    }
+
+    @Test
+    public void testCreatePrimaryKeyInClause() {
+        // Setup
+        Field field = ArrayList.class.getDeclaredFields()[0];
+        when(mockPersistencePolicy.getPrimaryKeyField(Object.class)).thenReturn(field);
+        when(mockPersistencePolicy.getFieldColumnName(field)).thenReturn("id");
+
+        // Run
+        String expected = "id IN (?, ?, ?)";
+        String actual = sqliteBuilder.createPrimaryKeyInClause(Object.class, 3);
+
+        // Verify
+        verify(mockPersistencePolicy).getPrimaryKeyField(Object.class);
+        verify(mockPersistencePolicy).getFieldColumnName(field);
+        assertEquals("Returned SQL clause should match expected value", expected, actual);
+    }
+
+    @Test
+    public void testCreateUpdateForeignKeyStatement() {
+        // Setup
+        Field field = ArrayList.class.getDeclaredFields()[0];
+        when(mockPersistencePolicy.getModelTableName(Object.class)).thenReturn(MODEL_TABLE_1);
+        when(mockPersistencePolicy.getPrimaryKeyField(Object.class)).thenReturn(field);
+        when(mockPersistencePolicy.getFieldColumnName(field)).thenReturn("id");
+
+        // Run
+        String expected = "UPDATE " + MODEL_TABLE_1 + " SET bar_id = ? WHERE id IN (?, ?)";
+        String actual = sqliteBuilder.createUpdateForeignKeyStatement(Object.class, "bar_id", 2);
+
+        // Verify
+        assertEquals("Returned SQL statement should match expected value", expected, actual);
+    }
+
+    @Test
+    public void testCreateManyToManyInClause_firstType() {
+        // Setup
+        Field field = ArrayList.class.getDeclaredFields()[0];
+        doReturn(Object.class).when(mockManyToManyRelationship).getFirstType();
+        when(mockPersistencePolicy.getModelTableName(Object.class)).thenReturn(MODEL_TABLE_1);
+        when(mockPersistencePolicy.getFieldColumnName(field)).thenReturn("col");
+
+        // Run
+        String expected = MODEL_TABLE_1 + "_col_1 IN (?, ?)";
+        String actual = sqliteBuilder.createManyToManyInClause(Object.class, mockManyToManyRelationship, 2);
+
+        // Verify
+        verify(mockManyToManyRelationship).getFirstField();
+        verify(mockPersistencePolicy).getModelTableName(Object.class);
+        assertEquals("Returned SQL clause should match expected value", expected, actual);
+    }
+
+    @Test
+    public void testCreateManyToManyKeysQuery_secondType() throws NoSuchFieldException {
+        // Setup
+        Field firstField = Foo.class.getDeclaredField("id");
+        Field secondField = Bar.class.getDeclaredField("id");
+        setupManyToManyColumns(firstField, secondField);
+
+        // Run
+        String expected = "SELECT foo_id_1 FROM foo_bar WHERE bar_id_2 = ?";
+        String actual = sqliteBuilder.createManyToManyKeysQuery(Bar.class, mockManyToManyRelationship);
+
+        // Verify
+        assertEquals("Returned SQL query should match expected value", expected, actual);
+    }
+
+    @Test
+    public void testCreatePreparedManyToManyBatchJoinQuery() throws NoSuchFieldException {
+        // Setup
+        Field firstField = Foo.class.getDeclaredField("id");
+        Field secondField = Bar.class.getDeclaredField("id");
+        setupManyToManyColumns(firstField, secondField);
+        when(mockManyToManyRelationship.contains(Bar.class)).thenReturn(true);
+        List<Serializable> ids = new ArrayList<Serializable>();
+        ids.add(1L);
+        ids.add(2L);
+
+        // Run
+        String expected = "SELECT x.*, z.foo_id_1 AS infinitum_owner_key FROM bar x, foo_bar z WHERE z.bar_id_2 = " +
+                "x.id AND z.foo_id_1 IN (?, ?)";
+        SqlStatement actual = sqliteBuilder.createPreparedManyToManyBatchJoinQuery(mockManyToManyRelationship, ids,
+                Bar.class);
+
+        // Verify
+        assertEquals("Returned SQL query should match expected value", expected, actual.getSql());
+        assertArrayEquals("Owner keys should be bound in order", new String[]{"1", "2"}, actual.getStringArgs());
+    }
+
+    @Test(expected = InfinitumRuntimeException.class)
+    public void testCreatePreparedManyToManyBatchJoinQuery_invalidDirection() throws NoSuchFieldException {
+        // Setup
+        Field firstField = Foo.class.getDeclaredField("id");
+        Field secondField = Bar.class.getDeclaredField("id");
+        setupManyToManyColumns(firstField, secondField);
+        when(mockManyToManyRelationship.contains(Object.class)).thenReturn(false);
+
+        // Run
+        sqliteBuilder.createPreparedManyToManyBatchJoinQuery(mockManyToManyRelationship,
+                new ArrayList<Serializable>(), Object.class);
+    }
+
+    @Test
+    public void testCreateManyToManyInsertStatement() throws NoSuchFieldException {
+        // Setup
+        Field firstField = Foo.class.getDeclaredField("id");
+        Field secondField = Bar.class.getDeclaredField("id");
+        setupManyToManyColumns(firstField, secondField);
+
+        // Run
+        String expected = "INSERT OR IGNORE INTO foo_bar (foo_id_1, bar_id_2) SELECT ?, ? UNION ALL SELECT ?, ?";
+        String actual = sqliteBuilder.createManyToManyInsertStatement(mockManyToManyRelationship, 2);
+
+        // Verify
+        assertEquals("Returned SQL statement should match expected value", expected, actual);
+    }
+
+    @Test
+    public void testCreateManyToManyDeleteStatement_firstType() throws NoSuchFieldException {
+        // Setup
+        Field firstField = Foo.class.getDeclaredField("id");
+        Field secondField = Bar.class.getDeclaredField("id");
+        setupManyToManyColumns(firstField, secondField);
+
+        // Run
+        String expected = "DELETE FROM foo_bar WHERE foo_id_1 = ? AND bar_id_2 IN (?, ?, ?)";
+        String actual = sqliteBuilder.createManyToManyDeleteStatement(Foo.class, mockManyToManyRelationship, 3);
+
+        // Verify
+        assertEquals("Returned SQL statement should match expected value", expected, actual);
+    }
+
+    @Test
+    public void testCreateInsertStatement_noColumns() {
+        // Run
+        String expected = "INSERT INTO " + MODEL_TABLE_1 + " DEFAULT VALUES";
+        String actual = sqliteBuilder.createInsertStatement(MODEL_TABLE_1, new ArrayList<String>());
+
+        // Verify
+        assertEquals("Returned SQL statement should match expected value", expected, actual);
+    }
+
     @Test
     public void testGetAssociationCriteriaDiscriminator_oneToOne_associatedOwner() throws NoSuchFieldException {
         // Setup
@@ -1410,6 +1779,46 @@ public class SqliteBuilderTest {
         assertEquals("Returned SQL fragment should match expected value", expected, actual);
     }
 
+    private void setupFetch(Field field, ModelRelationship relationship) throws NoSuchFieldException {
+        Field fooIdField = Foo.class.getDeclaredField("id");
+        Field barIdField = Bar.class.getDeclaredField("id");
+        doReturn(Foo.class).when(mockCriteria).getEntityClass();
+        when(mockCriteria.getFetches()).thenReturn(Arrays.asList("bar"));
+        doReturn(field).when(mockPersistencePolicy).findPersistentField(Foo.class, "bar");
+        when(mockPersistencePolicy.isRelationship(field)).thenReturn(true);
+        when(mockPersistencePolicy.getRelationship(field)).thenReturn(relationship);
+        doReturn(Foo.class).when(relationship).getFirstType();
+        doReturn(Bar.class).when(relationship).getSecondType();
+        when(mockPersistencePolicy.getModelTableName(Foo.class)).thenReturn("foo");
+        when(mockPersistencePolicy.getModelTableName(Bar.class)).thenReturn("bar");
+        doReturn(fooIdField).when(mockPersistencePolicy).getPrimaryKeyField(Foo.class);
+        doReturn(barIdField).when(mockPersistencePolicy).getPrimaryKeyField(Bar.class);
+        when(mockPersistencePolicy.getFieldColumnName(fooIdField)).thenReturn("id");
+        when(mockPersistencePolicy.getFieldColumnName(barIdField)).thenReturn("id");
+        when(mockPersistencePolicy.getPersistentFields(Bar.class)).thenReturn(Arrays.asList(barIdField));
+    }
+
+    private void setupKeyset(Field idField) {
+        doReturn(Foo.class).when(mockCriteria).getEntityClass();
+        when(mockCriteria.isKeysetPaged()).thenReturn(true);
+        doReturn(idField).when(mockPersistencePolicy).getPrimaryKeyField(Foo.class);
+        doReturn(idField).when(mockPersistencePolicy).findPersistentField(Foo.class, "id");
+        when(mockPersistencePolicy.getFieldColumnName(idField)).thenReturn("id");
+        when(mockPersistencePolicy.getModelTableName(Foo.class)).thenReturn("foo");
+    }
+
+    private void setupManyToManyColumns(Field firstField, Field secondField) {
+        doReturn(Foo.class).when(mockManyToManyRelationship).getFirstType();
+        doReturn(Bar.class).when(mockManyToManyRelationship).getSecondType();
+        when(mockManyToManyRelationship.getFirstField()).thenReturn(firstField);
+        when(mockManyToManyRelationship.getSecondField()).thenReturn(secondField);
+        when(mockManyToManyRelationship.getTableName()).thenReturn("foo_bar");
+        when(mockPersistencePolicy.getModelTableName(Foo.class)).thenReturn("foo");
+        when(mockPersistencePolicy.getModelTableName(Bar.class)).thenReturn("bar");
+        when(mockPersistencePolicy.getFieldColumnName(firstField)).thenReturn("id");
+        when(mockPersistencePolicy.getFieldColumnName(secondField)).thenReturn("id");
+    }
+
     private class Foo {
 
         private long id;
@@ -1417,4 +1826,10 @@ public class SqliteBuilderTest {
 
     }
 
+    private class Bar {
+
+        private long id;
+
+    }
+
 }
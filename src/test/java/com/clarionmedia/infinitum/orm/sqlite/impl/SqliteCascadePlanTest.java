@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.sqlite.impl;
+
+import com.clarionmedia.infinitum.internal.Pair;
+import com.clarionmedia.infinitum.orm.persistence.PersistencePolicy;
+import com.clarionmedia.infinitum.orm.persistence.PersistencePolicy.Cascade;
+import com.clarionmedia.infinitum.orm.relationship.ManyToOneRelationship;
+import com.clarionmedia.infinitum.orm.relationship.OneToManyRelationship;
+import com.clarionmedia.infinitum.orm.sqlite.impl.SqliteCascadePlan.ForeignKey;
+import com.clarionmedia.infinitum.orm.sqlite.impl.SqliteCascadePlan.Node;
+import com.clarionmedia.infinitum.orm.sqlite.impl.SqliteUnitOfWork.Operation;
+import com.clarionmedia.infinitum.reflection.ClassReflector;
+import com.xtremelabs.robolectric.RobolectricTestRunner;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class SqliteCascadePlanTest {
+
+    @Mock
+    private PersistencePolicy mockPersistencePolicy;
+
+    @Mock
+    private SqliteMapper mockSqliteMapper;
+
+    @Mock
+    private ClassReflector mockClassReflector;
+
+    @Mock
+    private SqliteModelMap mockFooModelMap;
+
+    @Mock
+    private SqliteModelMap mockBarModelMap;
+
+    @Mock
+    private ManyToOneRelationship mockFooToBar;
+
+    @Mock
+    private ManyToOneRelationship mockBarToFoo;
+
+    @Mock
+    private OneToManyRelationship mockFooToBars;
+
+    private FooModel foo;
+    private BarModel bar;
+    private SqliteCascadePlan cascadePlan;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        foo = new FooModel();
+        bar = new BarModel();
+        when(mockSqliteMapper.mapModel(foo)).thenReturn(mockFooModelMap);
+        when(mockSqliteMapper.mapModel(bar)).thenReturn(mockBarModelMap);
+        when(mockPersistencePolicy.getCascadeMode(FooModel.class)).thenReturn(Cascade.ALL);
+        when(mockPersistencePolicy.getCascadeMode(BarModel.class)).thenReturn(Cascade.ALL);
+        when(mockFooToBar.getColumn()).thenReturn("bar_id");
+        when(mockBarToFoo.getColumn()).thenReturn("foo_id");
+        when(mockFooToBars.getColumn()).thenReturn("foo_id");
+        cascadePlan = new SqliteCascadePlan(mockPersistencePolicy, mockSqliteMapper, mockClassReflector,
+                new HashMap<Integer, Object>());
+    }
+
+    @Test
+    public void testAddRoot_manyToOne() {
+        // Setup
+        when(mockFooModelMap.getManyToOneRelationships()).thenReturn(manyToOne(mockFooToBar, bar));
+
+        // Run
+        Node root = cascadePlan.addRoot(foo, mockFooModelMap, Operation.SAVE);
+        List<Node> nodes = cascadePlan.getOrderedNodes();
+
+        // Verify
+        verify(mockSqliteMapper).mapModel(bar);
+        assertEquals("Plan should contain the root and its related entity", 2, nodes.size());
+        assertSame("Referenced entity should be written first", bar, nodes.get(0).getModel());
+        assertSame("Root should be written last", root, nodes.get(1));
+        assertEquals("Related entity should be saved or updated", Operation.SAVE_OR_UPDATE,
+                nodes.get(0).getOperation());
+        Collection<ForeignKey> foreignKeys = cascadePlan.getForeignKeys(foo);
+        assertEquals("Root should store one foreign key", 1, foreignKeys.size());
+        ForeignKey foreignKey = foreignKeys.iterator().next();
+        assertSame("Foreign key should reference the related entity", bar, foreignKey.getParent());
+        assertEquals("Foreign key column should match the relationship", "bar_id", foreignKey.getColumn());
+        assertTrue("Plan should be cascading", cascadePlan.isCascading());
+    }
+
+    @Test
+    public void testAddRoot_oneToMany() {
+        // Setup
+        when(mockFooModelMap.getOneToManyRelationships()).thenReturn(oneToMany(mockFooToBars, bar));
+
+        // Run
+        cascadePlan.addRoot(foo, mockFooModelMap, Operation.SAVE);
+        List<Node> nodes = cascadePlan.getOrderedNodes();
+
+        // Verify
+        assertSame("Root should be written first", foo, nodes.get(0).getModel());
+        assertSame("Referencing entity should be written last", bar, nodes.get(1).getModel());
+        assertSame("Foreign key should be stored by the related entity", foo,
+                cascadePlan.getForeignKeys(bar).iterator().next().getParent());
+        assertTrue("Root should not store any foreign keys", cascadePlan.getForeignKeys(foo).isEmpty());
+    }
+
+    @Test
+    public void testAddRoot_keysCascade_unsavedRelated() {
+        // Setup
+        when(mockPersistencePolicy.getCascadeMode(FooModel.class)).thenReturn(Cascade.KEYS);
+        when(mockPersistencePolicy.isPKNullOrZero(bar)).thenReturn(true);
+        when(mockFooModelMap.getManyToOneRelationships()).thenReturn(manyToOne(mockFooToBar, bar));
+
+        // Run
+        cascadePlan.addRoot(foo, mockFooModelMap, Operation.UPDATE);
+
+        // Verify
+        verify(mockSqliteMapper, times(0)).mapModel(bar);
+        assertEquals("Only the root should be planned", 1, cascadePlan.getOrderedNodes().size());
+        assertTrue("Unsaved related entity should not be linked", cascadePlan.getForeignKeys(foo).isEmpty());
+        assertFalse("Plan should not be cascading", cascadePlan.isCascading());
+    }
+
+    @Test
+    public void testGetUnappliedForeignKeys_cycle() {
+        // Setup
+        when(mockFooModelMap.getManyToOneRelationships()).thenReturn(manyToOne(mockFooToBar, bar));
+        when(mockBarModelMap.getManyToOneRelationships()).thenReturn(manyToOne(mockBarToFoo, foo));
+        cascadePlan.addRoot(foo, mockFooModelMap, Operation.SAVE);
+        List<Node> nodes = cascadePlan.getOrderedNodes();
+
+        // Run
+        nodes.get(0).setResult(1, true);
+        for (ForeignKey foreignKey : cascadePlan.getForeignKeys(nodes.get(1).getModel()))
+            foreignKey.setApplied(true);
+        nodes.get(1).setResult(2, true);
+        List<ForeignKey> unapplied = cascadePlan.getUnappliedForeignKeys();
+
+        // Verify
+        assertEquals("Both entities should be planned", 2, nodes.size());
+        assertEquals("Foreign key written before its parent should be left to update", 1, unapplied.size());
+        assertSame("Unapplied foreign key should be stored by the entity written first", nodes.get(0).getModel(),
+                unapplied.get(0).getChild());
+    }
+
+    @Test
+    public void testGetUnappliedForeignKeys_parentNotWritten() {
+        // Setup
+        when(mockFooModelMap.getOneToManyRelationships()).thenReturn(oneToMany(mockFooToBars, bar));
+        Node root = cascadePlan.addWrittenRoot(foo, mockFooModelMap);
+        List<Node> nodes = cascadePlan.getOrderedNodes();
+
+        // Run
+        nodes.get(1).setResult(-1, false);
+        List<ForeignKey> unapplied = cascadePlan.getUnappliedForeignKeys();
+
+        // Verify
+        assertTrue("Written root should be marked as written", root.isWritten());
+        assertTrue("Foreign keys of entities which failed to be written should not be applied", unapplied.isEmpty());
+    }
+
+    private List<Pair<ManyToOneRelationship, Object>> manyToOne(ManyToOneRelationship rel, Object related) {
+        List<Pair<ManyToOneRelationship, Object>> ret = new ArrayList<Pair<ManyToOneRelationship, Object>>();
+        ret.add(new Pair<ManyToOneRelationship, Object>(rel, related));
+        return ret;
+    }
+
+    private List<Pair<OneToManyRelationship, Iterable<Object>>> oneToMany(OneToManyRelationship rel,
+                                                                          Object... related) {
+        List<Pair<OneToManyRelationship, Iterable<Object>>> ret = new ArrayList<Pair<OneToManyRelationship,
+                Iterable<Object>>>();
+        ret.add(new Pair<OneToManyRelationship, Iterable<Object>>(rel, Arrays.asList(related)));
+        return ret;
+    }
+
+    private static class FooModel {
+    }
+
+    private static class BarModel {
+    }
+
+}
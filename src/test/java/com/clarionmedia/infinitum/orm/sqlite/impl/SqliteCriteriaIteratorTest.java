@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.sqlite.impl;
+
+import android.database.Cursor;
+import com.xtremelabs.robolectric.RobolectricTestRunner;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.NoSuchElementException;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class SqliteCriteriaIteratorTest {
+
+    @Mock
+    private Cursor mockCursor;
+
+    @Mock
+    private SqliteModelFactory mockSqliteModelFactory;
+
+    private SqliteCriteriaIterator<Object> iterator;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        iterator = new SqliteCriteriaIterator<Object>(mockCursor, mockSqliteModelFactory, Object.class, false);
+    }
+
+    @Test
+    public void testIterate() {
+        // Setup
+        Object first = new Object();
+        Object second = new Object();
+        when(mockCursor.moveToNext()).thenReturn(true, true, false);
+        when(mockSqliteModelFactory.createFromCursor(mockCursor, Object.class, false)).thenReturn(first, second);
+
+        // Run
+        assertTrue("Iterator should have a first result", iterator.hasNext());
+        assertTrue("Checking for a result again shouldn't advance the cursor", iterator.hasNext());
+        Object actualFirst = iterator.next();
+        Object actualSecond = iterator.next();
+        boolean hasThird = iterator.hasNext();
+
+        // Verify
+        verify(mockCursor, times(3)).moveToNext();
+        verify(mockCursor, times(0)).getCount();
+        verify(mockCursor).close();
+        assertSame("First result should be returned first", first, actualFirst);
+        assertSame("Second result should be returned second", second, actualSecond);
+        assertFalse("Iterator should not have a third result", hasThird);
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testNext_exhausted() {
+        // Setup
+        when(mockCursor.moveToNext()).thenReturn(false);
+
+        // Run
+        iterator.next();
+    }
+
+    @Test
+    public void testClose() {
+        // Run
+        iterator.close();
+        iterator.close();
+
+        // Verify
+        verify(mockCursor).close();
+        assertFalse("Closed iterator should not have any results", iterator.hasNext());
+        verify(mockCursor, times(0)).moveToNext();
+    }
+
+}
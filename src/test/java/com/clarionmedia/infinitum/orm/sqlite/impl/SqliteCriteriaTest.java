@@ -20,13 +20,25 @@ import android.database.Cursor;
 import com.clarionmedia.infinitum.exception.InfinitumRuntimeException;
 import com.clarionmedia.infinitum.orm.context.InfinitumOrmContext;
 import com.clarionmedia.infinitum.orm.context.InfinitumOrmContext.SessionType;
+import com.clarionmedia.infinitum.orm.criteria.CriteriaPage;
+import com.clarionmedia.infinitum.orm.criteria.Order;
+import com.clarionmedia.infinitum.orm.exception.InvalidCriteriaException;
+import com.clarionmedia.infinitum.orm.internal.bind.SqliteTypeAdapters;
 import com.clarionmedia.infinitum.orm.persistence.PersistencePolicy;
 import com.clarionmedia.infinitum.orm.sql.SqlBuilder;
+import com.clarionmedia.infinitum.orm.sql.SqlStatement;
 import com.xtremelabs.robolectric.RobolectricTestRunner;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
-
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 
 import static org.junit.Assert.*;
@@ -81,15 +93,15 @@ public class SqliteCriteriaTest {
     public void testList_noResults() {
         // Setup
         String query = "SQL criteria query";
-        when(mockSqlBuilder.createQuery(sqliteCriteria)).thenReturn(query);
-        when(mockSqliteSession.executeForResult(query)).thenReturn(mockCursor);
+        when(mockSqlBuilder.createPreparedQuery(sqliteCriteria)).thenReturn(new SqlStatement(query, new ArrayList<Object>()));
+        when(mockSqliteSession.executeForResult(query, new String[0])).thenReturn(mockCursor);
         when(mockCursor.getCount()).thenReturn(0);
 
         // Run
         List<Object> actual = sqliteCriteria.list();
 
         // Verify
-        verify(mockSqliteSession).executeForResult(query);
+        verify(mockSqliteSession).executeForResult(query, new String[0]);
         verify(mockCursor, times(2)).getCount();
         verify(mockCursor).close();
         assertEquals("Returned list should be empty", 0, actual.size());
@@ -99,8 +111,8 @@ public class SqliteCriteriaTest {
     public void testList_results() {
         // Setup
         String query = "SQL criteria query";
-        when(mockSqlBuilder.createQuery(sqliteCriteria)).thenReturn(query);
-        when(mockSqliteSession.executeForResult(query)).thenReturn(mockCursor);
+        when(mockSqlBuilder.createPreparedQuery(sqliteCriteria)).thenReturn(new SqlStatement(query, new ArrayList<Object>()));
+        when(mockSqliteSession.executeForResult(query, new String[0])).thenReturn(mockCursor);
         final int RESULT_COUNT = 3;
         when(mockCursor.getCount()).thenReturn(RESULT_COUNT);
         when(mockCursor.moveToNext()).thenReturn(true).thenReturn(true).thenReturn(true).thenReturn(false);
@@ -110,28 +122,352 @@ public class SqliteCriteriaTest {
         List<Object> actual = sqliteCriteria.list();
 
         // Verify
-        verify(mockSqliteSession).executeForResult(query);
+        verify(mockSqliteSession).executeForResult(query, new String[0]);
         verify(mockCursor, times(2)).getCount();
         verify(mockCursor).close();
         verify(mockCursor, times(4)).moveToNext();
         verify(mockSqliteModelFactory, times(3)).createFromCursor(mockCursor, entityClass);
-        verify(mockSqliteSession, times(3)).cache(any(Integer.class), any(Object.class));
+        verify(mockSqliteSession, times(0)).cache(any(Class.class), any(Serializable.class), any(Object.class));
         assertEquals("Returned list should be empty", RESULT_COUNT, actual.size());
     }
 
+    @Test
+    public void testList_fetch() {
+        // Setup
+        String query = "SQL criteria query";
+        Field field = ArrayList.class.getDeclaredFields()[0];
+        doReturn(field).when(mockPersistencePolicy).findPersistentField(entityClass, "association");
+        when(mockPersistencePolicy.isRelationship(field)).thenReturn(true);
+        when(mockSqlBuilder.createPreparedQuery(sqliteCriteria)).thenReturn(new SqlStatement(query, new ArrayList<Object>()));
+        when(mockSqliteSession.executeForResult(query, new String[0])).thenReturn(mockCursor);
+        when(mockCursor.getCount()).thenReturn(3);
+        List<Object> expected = new ArrayList<Object>();
+        expected.add(new Object());
+        when(mockSqliteModelFactory.createFromFetchCursor(mockCursor, entityClass, Arrays.asList(field))).thenReturn(
+                expected);
+
+        // Run
+        List<Object> actual = sqliteCriteria.fetch("association").list();
+
+        // Verify
+        verify(mockSqliteModelFactory).createFromFetchCursor(mockCursor, entityClass, Arrays.asList(field));
+        verify(mockSqliteModelFactory, times(0)).createFromCursor(mockCursor, entityClass);
+        verify(mockCursor).close();
+        assertEquals("Returned list should match expected value", expected, actual);
+    }
+
+    @Test
+    public void testList_cacheableHit() {
+        // Setup
+        Object result = new Object();
+        setupCacheable(result);
+        sqliteCriteria.cacheable(true).list();
+        when(mockSqliteSession.searchCache(entityClass, (Serializable) 1L)).thenReturn(result);
+
+        // Run
+        List<Object> actual = sqliteCriteria.list();
+
+        // Verify
+        verify(mockSqliteSession).executeForResult("SQL criteria query", new String[0]);
+        assertEquals("Cached results should be returned", 1, actual.size());
+        assertSame("Cached result should be resolved from the session", result, actual.get(0));
+    }
+
+    @Test
+    public void testList_cacheableTableWritten() {
+        // Setup
+        Object result = new Object();
+        setupCacheable(result);
+        sqliteCriteria.cacheable(true).list();
+        when(mockSqliteSession.searchCache(entityClass, (Serializable) 1L)).thenReturn(result);
+        sqliteCriteria.mQueryCache.bumpVersion("foo");
+
+        // Run
+        sqliteCriteria.list();
+
+        // Verify
+        verify(mockSqliteSession, times(2)).executeForResult("SQL criteria query", new String[0]);
+    }
+
+    @Test
+    public void testList_cacheableResultEvicted() {
+        // Setup
+        Object result = new Object();
+        setupCacheable(result);
+        sqliteCriteria.cacheable(true).list();
+
+        // Run
+        sqliteCriteria.list();
+
+        // Verify
+        verify(mockSqliteModelFactory).createFromSecondLevelCache(entityClass, (Serializable) 1L);
+        verify(mockSqliteSession, times(2)).executeForResult("SQL criteria query", new String[0]);
+    }
+
+    @Test
+    public void testIterate() {
+        // Setup
+        String query = "SQL criteria query";
+        when(mockSqlBuilder.createPreparedQuery(sqliteCriteria)).thenReturn(new SqlStatement(query, new ArrayList<Object>()));
+        when(mockSqliteSession.executeForResult(query, new String[0])).thenReturn(mockCursor);
+        when(mockCursor.moveToNext()).thenReturn(true, false);
+        Object expected = new Object();
+        when(mockSqliteModelFactory.createFromCursor(mockCursor, entityClass, false)).thenReturn(expected);
+
+        // Run
+        Iterator<Object> actual = sqliteCriteria.iterate(false);
+
+        // Verify
+        assertSame("First result should match expected value", expected, actual.next());
+        assertFalse("Iterator should not have more results", actual.hasNext());
+        verify(mockCursor, times(0)).getCount();
+        verify(mockCursor).close();
+        verify(mockSqliteSession, times(0)).cache(any(Class.class), any(Serializable.class), any(Object.class));
+    }
+
+    @Test(expected = InvalidCriteriaException.class)
+    public void testIterate_fetch() {
+        // Setup
+        Field field = ArrayList.class.getDeclaredFields()[0];
+        doReturn(field).when(mockPersistencePolicy).findPersistentField(entityClass, "association");
+        when(mockPersistencePolicy.isRelationship(field)).thenReturn(true);
+
+        // Run
+        sqliteCriteria.fetch("association").iterate();
+    }
+
+    @Test(expected = InvalidCriteriaException.class)
+    public void testFetch_notRelationship() {
+        // Setup
+        Field field = ArrayList.class.getDeclaredFields()[0];
+        doReturn(field).when(mockPersistencePolicy).findPersistentField(entityClass, "association");
+
+        // Run
+        sqliteCriteria.fetch("association");
+    }
+
+    @Test
+    public void testListLongs() throws NoSuchFieldException {
+        // Setup
+        SqliteCriteria<Foo> criteria = createProjectionCriteria("id");
+        when(mockCursor.getCount()).thenReturn(2);
+        when(mockCursor.moveToNext()).thenReturn(true, true, false);
+        when(mockCursor.getLong(0)).thenReturn(4L, 7L);
+
+        // Run
+        long[] actual = criteria.listLongs();
+
+        // Verify
+        assertArrayEquals("Returned ids should match expected values", new long[]{4L, 7L}, actual);
+        verify(mockCursor).close();
+        verifyZeroInteractions(mockSqliteModelFactory);
+        verify(mockSqliteSession, times(0)).cache(any(Class.class), any(Serializable.class), any(Object.class));
+    }
+
+    @Test
+    public void testListTuples() throws NoSuchFieldException {
+        // Setup
+        SqliteCriteria<Foo> criteria = createProjectionCriteria("id", "name");
+        when(mockCursor.moveToNext()).thenReturn(true, true, false);
+        when(mockCursor.isNull(1)).thenReturn(false, true);
+        when(mockCursor.getLong(0)).thenReturn(1L, 2L);
+        when(mockCursor.getString(1)).thenReturn("foo");
+
+        // Run
+        List<Object[]> actual = criteria.listTuples();
+
+        // Verify
+        assertEquals("Returned list should contain a tuple for each row", 2, actual.size());
+        assertArrayEquals("First tuple should match expected values", new Object[]{1L, "foo"}, actual.get(0));
+        assertArrayEquals("Null columns should be null tuple elements", new Object[]{2L, null}, actual.get(1));
+        verify(mockCursor).close();
+        verifyZeroInteractions(mockSqliteModelFactory);
+    }
+
+    @Test
+    public void testListAs_constructor() throws NoSuchFieldException {
+        // Setup
+        SqliteCriteria<Foo> criteria = createProjectionCriteria("id", "name");
+        when(mockCursor.moveToNext()).thenReturn(true, false);
+        when(mockCursor.getLong(0)).thenReturn(1L);
+        when(mockCursor.getString(1)).thenReturn("foo");
+
+        // Run
+        List<FooSummary> actual = criteria.listAs(FooSummary.class);
+
+        // Verify
+        assertEquals("Returned list should contain a result for each row", 1, actual.size());
+        assertEquals("Result should be constructed with the projected id", 1L, actual.get(0).mId);
+        assertEquals("Result should be constructed with the projected name", "foo", actual.get(0).mName);
+    }
+
+    @Test
+    public void testListAs_constructorNullPrimitive() throws NoSuchFieldException {
+        // Setup
+        SqliteCriteria<Foo> criteria = createProjectionCriteria("id", "name");
+        when(mockPersistencePolicy.getFieldColumnName(Foo.class.getDeclaredField("id"))).thenReturn("foo_id");
+        when(mockCursor.moveToNext()).thenReturn(true, false);
+        when(mockCursor.isNull(0)).thenReturn(true);
+        when(mockCursor.getString(1)).thenReturn("foo");
+
+        // Run
+        try {
+            criteria.listAs(FooSummary.class);
+            fail("Null primitive parameter should be rejected");
+        } catch (InfinitumRuntimeException e) {
+            // Verify
+            assertTrue("Exception should name the null column", e.getMessage().contains("foo_id"));
+        }
+    }
+
+    @Test
+    public void testListAs_fields() throws NoSuchFieldException {
+        // Setup
+        SqliteCriteria<Foo> criteria = createProjectionCriteria("id", "name");
+        when(mockCursor.moveToNext()).thenReturn(true, false);
+        when(mockCursor.getLong(0)).thenReturn(1L);
+        when(mockCursor.getString(1)).thenReturn("foo");
+
+        // Run
+        List<FooView> actual = criteria.listAs(FooView.class);
+
+        // Verify
+        assertEquals("Returned list should contain a result for each row", 1, actual.size());
+        assertEquals("Result id field should be populated", 1L, actual.get(0).id);
+        assertEquals("Result name field should be populated", "foo", actual.get(0).name);
+    }
+
+    @Test(expected = InvalidCriteriaException.class)
+    public void testList_projection() throws NoSuchFieldException {
+        // Setup
+        SqliteCriteria<Foo> criteria = createProjectionCriteria("id");
+
+        // Run
+        criteria.list();
+    }
+
+    @Test(expected = InvalidCriteriaException.class)
+    public void testSelect_relationship() {
+        // Setup
+        Field field = ArrayList.class.getDeclaredFields()[0];
+        doReturn(field).when(mockPersistencePolicy).findPersistentField(entityClass, "association");
+        when(mockPersistencePolicy.isRelationship(field)).thenReturn(true);
+
+        // Run
+        sqliteCriteria.select("association");
+    }
+
+    @Test
+    public void testListPage() throws NoSuchFieldException {
+        // Setup
+        SqliteCriteria<Foo> criteria = createKeysetCriteria();
+        when(mockCursor.getCount()).thenReturn(3);
+        when(mockCursor.moveToNext()).thenReturn(true, true, true, false);
+        Foo first = new Foo(1L, "a");
+        Foo second = new Foo(2L, "b,c");
+        when(mockSqliteModelFactory.createFromCursor(mockCursor, Foo.class)).thenReturn(first, second, new Foo());
+        when(mockPersistencePolicy.getPrimaryKey(second)).thenReturn(2L);
+
+        // Run
+        CriteriaPage<Foo> actual = criteria.listPage(2);
+        criteria.resume(actual.getContinuationToken());
+
+        // Verify
+        assertEquals("Page should contain the requested number of results", Arrays.asList(first, second),
+                actual.getResults());
+        assertTrue("Page should have a following page", actual.hasNext());
+        assertEquals("Limit should be restored", 0, criteria.getLimit());
+        assertTrue("Criteria should be paged by keyset", criteria.isKeysetPaged());
+        assertEquals("Seek keys should resume after the last result", Arrays.<Object>asList("b,c", "2"),
+                criteria.getSeekKeys());
+    }
+
+    @Test
+    public void testListPage_lastPage() throws NoSuchFieldException {
+        // Setup
+        SqliteCriteria<Foo> criteria = createKeysetCriteria();
+        when(mockCursor.getCount()).thenReturn(1);
+        when(mockCursor.moveToNext()).thenReturn(true, false);
+        when(mockSqliteModelFactory.createFromCursor(mockCursor, Foo.class)).thenReturn(new Foo(1L, "a"));
+
+        // Run
+        CriteriaPage<Foo> actual = criteria.listPage(2);
+
+        // Verify
+        assertEquals("Page should contain the remaining results", 1, actual.getResults().size());
+        assertFalse("Page should not have a following page", actual.hasNext());
+        assertNull("Page should not have a continuation token", actual.getContinuationToken());
+        assertFalse("Keyset paging should be restored", criteria.isKeysetPaged());
+    }
+
+    @Test
+    public void testListPage_offsetIgnored() throws NoSuchFieldException {
+        // Setup
+        final SqliteCriteria<Foo> criteria = createKeysetCriteria();
+        final List<Integer> offsets = new ArrayList<Integer>();
+        criteria.offset(5);
+        when(mockSqlBuilder.createPreparedQuery(criteria)).thenAnswer(new Answer<SqlStatement>() {
+            @Override
+            public SqlStatement answer(InvocationOnMock invocation) {
+                offsets.add(criteria.getOffset());
+                return new SqlStatement("SQL keyset query", new ArrayList<Object>());
+            }
+        });
+        when(mockCursor.getCount()).thenReturn(1);
+        when(mockCursor.moveToNext()).thenReturn(true, false);
+        when(mockSqliteModelFactory.createFromCursor(mockCursor, Foo.class)).thenReturn(new Foo(1L, "a"));
+
+        // Run
+        criteria.listPage(2);
+
+        // Verify
+        assertEquals("Page should be queried without the offset", Arrays.asList(0), offsets);
+        assertEquals("Offset should be restored", 5, criteria.getOffset());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testListPage_invalidPageSize() throws NoSuchFieldException {
+        // Setup
+        SqliteCriteria<Foo> criteria = createKeysetCriteria();
+
+        // Run
+        criteria.listPage(0);
+    }
+
+    @Test
+    public void testAfter() throws NoSuchFieldException {
+        // Setup
+        SqliteCriteria<Foo> criteria = createKeysetCriteria();
+        Foo foo = new Foo(7L, "foo");
+        when(mockPersistencePolicy.getPrimaryKey(foo)).thenReturn(7L);
+
+        // Run
+        criteria.after(foo);
+
+        // Verify
+        assertEquals("Seek keys should be the entity's ordering values and primary key", Arrays.<Object>asList("foo",
+                7L), criteria.getSeekKeys());
+    }
+
+    @Test(expected = InvalidCriteriaException.class)
+    public void testResume_malformed() {
+        // Run
+        sqliteCriteria.resume("x");
+    }
+
     @Test
     public void testUnique_noResult() {
         // Setup
         String query = "SQL criteria query";
-        when(mockSqlBuilder.createQuery(sqliteCriteria)).thenReturn(query);
-        when(mockSqliteSession.executeForResult(query)).thenReturn(mockCursor);
+        when(mockSqlBuilder.createPreparedQuery(sqliteCriteria)).thenReturn(new SqlStatement(query, new ArrayList<Object>()));
+        when(mockSqliteSession.executeForResult(query, new String[0])).thenReturn(mockCursor);
         when(mockCursor.getCount()).thenReturn(0);
 
         // Run
         Object actual = sqliteCriteria.unique();
 
         // Verify
-        verify(mockSqliteSession).executeForResult(query);
+        verify(mockSqliteSession).executeForResult(query, new String[0]);
         verify(mockCursor, times(2)).getCount();
         verify(mockCursor).close();
         assertNull("Returned result should be null", actual);
@@ -141,8 +477,8 @@ public class SqliteCriteriaTest {
     public void testUnique_result() {
         // Setup
         String query = "SQL criteria query";
-        when(mockSqlBuilder.createQuery(sqliteCriteria)).thenReturn(query);
-        when(mockSqliteSession.executeForResult(query)).thenReturn(mockCursor);
+        when(mockSqlBuilder.createPreparedQuery(sqliteCriteria)).thenReturn(new SqlStatement(query, new ArrayList<Object>()));
+        when(mockSqliteSession.executeForResult(query, new String[0])).thenReturn(mockCursor);
         when(mockCursor.getCount()).thenReturn(1);
         when(mockSqliteModelFactory.createFromCursor(mockCursor, entityClass)).thenReturn(new Object());
 
@@ -150,7 +486,7 @@ public class SqliteCriteriaTest {
         Object actual = sqliteCriteria.unique();
 
         // Verify
-        verify(mockSqliteSession).executeForResult(query);
+        verify(mockSqliteSession).executeForResult(query, new String[0]);
         verify(mockCursor, times(2)).getCount();
         verify(mockCursor).close();
         assertNotNull("Returned result should not be null", actual);
@@ -160,8 +496,8 @@ public class SqliteCriteriaTest {
     public void testUnique_noUnique() {
         // Setup
         String query = "SQL criteria query";
-        when(mockSqlBuilder.createQuery(sqliteCriteria)).thenReturn(query);
-        when(mockSqliteSession.executeForResult(query)).thenReturn(mockCursor);
+        when(mockSqlBuilder.createPreparedQuery(sqliteCriteria)).thenReturn(new SqlStatement(query, new ArrayList<Object>()));
+        when(mockSqliteSession.executeForResult(query, new String[0])).thenReturn(mockCursor);
         when(mockCursor.getCount()).thenReturn(3);
         when(mockSqliteModelFactory.createFromCursor(mockCursor, entityClass)).thenReturn(new Object());
 
@@ -189,8 +525,8 @@ public class SqliteCriteriaTest {
     public void testCount() {
         // Setup
         String query = "SQL criteria query";
-        when(mockSqlBuilder.createCountQuery(sqliteCriteria)).thenReturn(query);
-        when(mockSqliteSession.executeForResult(query)).thenReturn(mockCursor);
+        when(mockSqlBuilder.createPreparedCountQuery(sqliteCriteria)).thenReturn(new SqlStatement(query, new ArrayList<Object>()));
+        when(mockSqliteSession.executeForResult(query, new String[0])).thenReturn(mockCursor);
         when(mockCursor.moveToFirst()).thenReturn(true);
         final long EXPECTED = 5;
         when(mockCursor.getLong(0)).thenReturn(EXPECTED);
@@ -199,12 +535,90 @@ public class SqliteCriteriaTest {
         long actual = sqliteCriteria.count();
 
         // Verify
-        verify(mockSqliteSession).executeForResult(query);
-        verify(mockSqlBuilder).createCountQuery(sqliteCriteria);
+        verify(mockSqliteSession).executeForResult(query, new String[0]);
+        verify(mockSqlBuilder).createPreparedCountQuery(sqliteCriteria);
         verify(mockCursor).moveToFirst();
         verify(mockCursor).getLong(0);
         verify(mockCursor).close();
         assertEquals("Returned result should match expected value", EXPECTED, actual);
     }
 
+    private void setupCacheable(Object result) {
+        String query = "SQL criteria query";
+        sqliteCriteria.mQueryCache = new SqliteQueryCache(10);
+        when(mockSqlBuilder.createPreparedQuery(sqliteCriteria)).thenReturn(new SqlStatement(query,
+                new ArrayList<Object>()));
+        when(mockSqliteSession.executeForResult(query, new String[0])).thenReturn(mockCursor);
+        when(mockCursor.getCount()).thenReturn(1);
+        when(mockCursor.moveToNext()).thenReturn(true, false, true, false);
+        when(mockSqliteModelFactory.createFromCursor(mockCursor, entityClass)).thenReturn(result);
+        when(mockPersistencePolicy.getModelTableName(entityClass)).thenReturn("foo");
+        when(mockPersistencePolicy.getPrimaryKey(result)).thenReturn(1L);
+    }
+
+    private SqliteCriteria<Foo> createProjectionCriteria(String... properties) throws NoSuchFieldException {
+        when(mockPersistencePolicy.isPersistent(Foo.class)).thenReturn(true);
+        doReturn(Foo.class.getDeclaredField("id")).when(mockPersistencePolicy).findPersistentField(Foo.class, "id");
+        doReturn(Foo.class.getDeclaredField("name")).when(mockPersistencePolicy).findPersistentField(Foo.class,
+                "name");
+        when(mockSqliteSession.getSqliteMapper()).thenReturn(mockSqliteMapper);
+        doReturn(SqliteTypeAdapters.LONG).when(mockSqliteMapper).resolveType(long.class);
+        doReturn(SqliteTypeAdapters.STRING).when(mockSqliteMapper).resolveType(String.class);
+        SqliteCriteria<Foo> criteria = new SqliteCriteria<Foo>(mockInfinitumContext, Foo.class,
+                mockSqliteModelFactory, mockSqlBuilder, null);
+        criteria.select(properties);
+        String query = "SQL projection query";
+        when(mockSqlBuilder.createPreparedQuery(criteria)).thenReturn(new SqlStatement(query, new ArrayList<Object>()));
+        when(mockSqliteSession.executeForResult(query, new String[0])).thenReturn(mockCursor);
+        return criteria;
+    }
+
+    private SqliteCriteria<Foo> createKeysetCriteria() throws NoSuchFieldException {
+        when(mockPersistencePolicy.isPersistent(Foo.class)).thenReturn(true);
+        doReturn(Foo.class.getDeclaredField("id")).when(mockPersistencePolicy).getPrimaryKeyField(Foo.class);
+        doReturn(Foo.class.getDeclaredField("name")).when(mockPersistencePolicy).findPersistentField(Foo.class,
+                "name");
+        when(mockSqliteSession.getSqliteMapper()).thenReturn(mockSqliteMapper);
+        doReturn(SqliteTypeAdapters.STRING).when(mockSqliteMapper).resolveType(String.class);
+        SqliteCriteria<Foo> criteria = new SqliteCriteria<Foo>(mockInfinitumContext, Foo.class,
+                mockSqliteModelFactory, mockSqlBuilder, null);
+        criteria.orderBy(Order.asc("name"));
+        String query = "SQL keyset query";
+        when(mockSqlBuilder.createPreparedQuery(criteria)).thenReturn(new SqlStatement(query, new ArrayList<Object>()));
+        when(mockSqliteSession.executeForResult(query, new String[0])).thenReturn(mockCursor);
+        return criteria;
+    }
+
+    public static class Foo {
+
+        private long id;
+        private String name;
+
+        public Foo() {
+        }
+
+        public Foo(long id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+    }
+
+    public static class FooView {
+        private long id;
+        private String name;
+    }
+
+    private static class FooSummary {
+
+        private final long mId;
+        private final String mName;
+
+        private FooSummary(long id, String name) {
+            mId = id;
+            mName = name;
+        }
+
+    }
+
 }
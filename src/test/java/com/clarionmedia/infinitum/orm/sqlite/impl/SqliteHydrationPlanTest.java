@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.sqlite.impl;
+
+import android.database.Cursor;
+import com.clarionmedia.infinitum.exception.InfinitumRuntimeException;
+import com.clarionmedia.infinitum.orm.internal.bind.FieldAccessors;
+import com.clarionmedia.infinitum.orm.persistence.PersistencePolicy;
+import com.clarionmedia.infinitum.orm.relationship.ManyToOneRelationship;
+import com.clarionmedia.infinitum.orm.sqlite.impl.SqliteHydrationPlan.Binding;
+import com.clarionmedia.infinitum.orm.sqlite.SqliteTypeAdapter;
+import com.xtremelabs.robolectric.RobolectricTestRunner;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class SqliteHydrationPlanTest {
+
+    @Mock
+    private PersistencePolicy mockPersistencePolicy;
+
+    @Mock
+    private SqliteMapper mockSqliteMapper;
+
+    @Mock
+    private SqliteTypeAdapter<Long> mockLongAdapter;
+
+    @Mock
+    private SqliteTypeAdapter<String> mockStringAdapter;
+
+    @Mock
+    private ManyToOneRelationship mockRelationship;
+
+    @Mock
+    private Cursor mockCursor;
+
+    private Field idField;
+    private Field nameField;
+    private Field barField;
+    private SqliteHydrationPlan hydrationPlan;
+
+    @Before
+    public void setup() throws NoSuchFieldException {
+        MockitoAnnotations.initMocks(this);
+        idField = Foo.class.getDeclaredField("id");
+        nameField = Foo.class.getDeclaredField("name");
+        barField = Foo.class.getDeclaredField("bar");
+        when(mockPersistencePolicy.getPersistentFields(Foo.class)).thenReturn(Arrays.asList(idField, nameField,
+                barField));
+        when(mockPersistencePolicy.isRelationship(barField)).thenReturn(true);
+        when(mockPersistencePolicy.getRelationship(barField)).thenReturn(mockRelationship);
+        when(mockPersistencePolicy.getFieldColumnName(idField)).thenReturn("id");
+        when(mockPersistencePolicy.getFieldColumnName(nameField)).thenReturn("name");
+        when(mockRelationship.getColumn()).thenReturn("bar_id");
+        doReturn(mockLongAdapter).when(mockSqliteMapper).resolveType(long.class);
+        doReturn(mockStringAdapter).when(mockSqliteMapper).resolveType(String.class);
+        when(mockCursor.getColumnIndex("id")).thenReturn(0);
+        when(mockCursor.getColumnIndex("name")).thenReturn(1);
+        when(mockCursor.getColumnIndex("bar_id")).thenReturn(2);
+        hydrationPlan = new SqliteHydrationPlan(Foo.class, mockPersistencePolicy, mockSqliteMapper);
+    }
+
+    @Test
+    public void testBind_resolvesColumnIndexes() {
+        // Run
+        Binding binding = hydrationPlan.bind(mockCursor);
+
+        // Verify
+        verify(mockCursor).getColumnIndex("id");
+        verify(mockCursor).getColumnIndex("name");
+        verify(mockCursor).getColumnIndex("bar_id");
+        assertSame("Binding should be of the plan", hydrationPlan, binding.getPlan());
+        assertSame("Result should wrap the bound cursor", mockCursor, binding.getResult().getCursor());
+    }
+
+    @Test
+    public void testBind_independentCursors() {
+        // Setup
+        Cursor otherCursor = mock(Cursor.class);
+        when(otherCursor.getColumnIndex("bar_id")).thenReturn(5);
+        when(mockCursor.getString(2)).thenReturn("7");
+        when(otherCursor.getString(5)).thenReturn("8");
+        Binding first = hydrationPlan.bind(mockCursor);
+
+        // Run
+        Binding second = hydrationPlan.bind(otherCursor);
+
+        // Verify
+        assertEquals("First binding should still read its own cursor", "7", first.getForeignKey(0));
+        assertEquals("Second binding should read its own cursor", "8", second.getForeignKey(0));
+    }
+
+    @Test
+    public void testHydrate() throws IllegalAccessException {
+        // Setup
+        Foo foo = new Foo();
+        Binding binding = hydrationPlan.bind(mockCursor);
+
+        // Run
+        binding.hydrate(foo);
+
+        // Verify
+        SqliteResult result = binding.getResult();
+        verify(mockLongAdapter).mapToObject(result, 0, FieldAccessors.forField(idField), foo);
+        verify(mockStringAdapter).mapToObject(result, 1, FieldAccessors.forField(nameField), foo);
+        verify(mockSqliteMapper, times(0)).resolveType(Bar.class);
+        assertEquals("Plan should contain one relationship", 1, hydrationPlan.getRelationshipCount());
+        assertSame("Relationship field should be returned", barField, hydrationPlan.getRelationshipField(0));
+    }
+
+    @Test(expected = InfinitumRuntimeException.class)
+    public void testHydrate_mappingFails() throws IllegalAccessException {
+        // Setup
+        Foo foo = new Foo();
+        Binding binding = hydrationPlan.bind(mockCursor);
+        doThrow(new IllegalAccessException()).when(mockLongAdapter).mapToObject(binding.getResult(), 0,
+                FieldAccessors.forField(idField), foo);
+
+        // Run
+        binding.hydrate(foo);
+    }
+
+    @Test
+    public void testGetForeignKey() {
+        // Setup
+        when(mockCursor.getString(2)).thenReturn("7");
+        Binding binding = hydrationPlan.bind(mockCursor);
+
+        // Run
+        String foreignKey = binding.getForeignKey(0);
+
+        // Verify
+        assertEquals("Foreign key should be read from the cursor", "7", foreignKey);
+    }
+
+    @Test
+    public void testGetForeignKey_missingColumn() {
+        // Setup
+        when(mockCursor.getColumnIndex("bar_id")).thenReturn(-1);
+        Binding binding = hydrationPlan.bind(mockCursor);
+
+        // Run
+        String foreignKey = binding.getForeignKey(0);
+
+        // Verify
+        verify(mockCursor, times(0)).getString(anyInt());
+        assertNull("Foreign key should be null if its column isn't in the cursor", foreignKey);
+    }
+
+    private static class Foo {
+        private long id;
+        private String name;
+        private Bar bar;
+    }
+
+    private static class Bar {
+    }
+
+}
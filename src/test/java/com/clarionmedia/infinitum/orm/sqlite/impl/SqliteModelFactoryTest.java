@@ -0,0 +1,510 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.sqlite.impl;
+
+import android.database.Cursor;
+import com.clarionmedia.infinitum.orm.internal.bind.SqliteTypeAdapters;
+import com.clarionmedia.infinitum.orm.persistence.PersistencePolicy;
+import com.clarionmedia.infinitum.orm.relationship.ManyToManyRelationship;
+import com.clarionmedia.infinitum.orm.relationship.ManyToOneRelationship;
+import com.clarionmedia.infinitum.orm.relationship.ModelRelationship.RelationType;
+import com.clarionmedia.infinitum.orm.relationship.OneToManyRelationship;
+import com.clarionmedia.infinitum.orm.sql.SqlConstants;
+import com.clarionmedia.infinitum.orm.sql.SqlStatement;
+import com.clarionmedia.infinitum.reflection.ClassReflector;
+import com.xtremelabs.robolectric.RobolectricTestRunner;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class SqliteModelFactoryTest {
+
+    private static final String CHILD_QUERY = "SELECT * FROM child WHERE parent_id IN (?, ?)";
+
+    @Mock
+    private SqliteBuilder mockSqliteBuilder;
+
+    @Mock
+    private SqliteSession mockSqliteSession;
+
+    @Mock
+    private SqliteTemplate mockSqliteTemplate;
+
+    @Mock
+    private SqliteMapper mockSqliteMapper;
+
+    @Mock
+    private PersistencePolicy mockPersistencePolicy;
+
+    @Mock
+    private ClassReflector mockClassReflector;
+
+    @Mock
+    private SqliteSecondLevelCache mockSecondLevelCache;
+
+    @Mock
+    private SqliteCacheRegion mockCacheRegion;
+
+    @Mock
+    private OneToManyRelationship mockRelationship;
+
+    @Mock
+    private ManyToOneRelationship mockManyToOneRelationship;
+
+    @Mock
+    private ManyToManyRelationship mockManyToManyRelationship;
+
+    @Mock
+    private Cursor mockParentCursor;
+
+    @Mock
+    private Cursor mockPostCursor;
+
+    @Mock
+    private Cursor mockFetchCursor;
+
+    @Mock
+    private Cursor mockTagCursor;
+
+    @Mock
+    private Cursor mockItemCursor;
+
+    @Mock
+    private Cursor mockOwnerCursor;
+
+    @Mock
+    private Cursor mockChildCursor;
+
+    @InjectMocks
+    private SqliteModelFactory sqliteModelFactory = new SqliteModelFactory();
+
+    private Parent parent1;
+    private Parent parent2;
+    private Child child1;
+    private Child child2;
+
+    @Before
+    public void setup() throws NoSuchFieldException {
+        MockitoAnnotations.initMocks(this);
+        Field childrenField = Parent.class.getDeclaredField("children");
+        parent1 = new Parent();
+        parent2 = new Parent();
+        child1 = new Child();
+        child2 = new Child();
+        when(mockPersistencePolicy.getPersistentFields(Parent.class)).thenReturn(Arrays.asList(childrenField));
+        when(mockPersistencePolicy.isRelationship(childrenField)).thenReturn(true);
+        when(mockPersistencePolicy.getRelationship(childrenField)).thenReturn(mockRelationship);
+        when(mockPersistencePolicy.getModelTableName(Child.class)).thenReturn("child");
+        when(mockPersistencePolicy.getPrimaryKey(parent1)).thenReturn(1L);
+        when(mockPersistencePolicy.getPrimaryKey(parent2)).thenReturn(2L);
+        when(mockPersistencePolicy.getPrimaryKey(child1)).thenReturn(3L);
+        when(mockPersistencePolicy.getPrimaryKey(child2)).thenReturn(4L);
+        when(mockRelationship.getRelationType()).thenReturn(RelationType.OneToMany);
+        when(mockRelationship.getBatchSize()).thenReturn(10);
+        when(mockRelationship.getColumn()).thenReturn("parent_id");
+        doReturn(Child.class).when(mockRelationship).getManyType();
+        doReturn(parent1).doReturn(parent2).when(mockClassReflector).getClassInstance(Parent.class);
+        doReturn(child1).doReturn(child2).when(mockClassReflector).getClassInstance(Child.class);
+        when(mockClassReflector.getFieldValue(parent1, childrenField)).thenReturn(parent1.children);
+        when(mockClassReflector.getFieldValue(parent2, childrenField)).thenReturn(parent2.children);
+        when(mockChildCursor.getColumnIndex("parent_id")).thenReturn(0);
+        when(mockChildCursor.moveToNext()).thenReturn(true, true, false);
+        when(mockChildCursor.getString(0)).thenReturn("2", "1");
+        when(mockSqliteSession.executeForResult(eq(CHILD_QUERY), eq(new String[]{"1", "2"}))).thenReturn(
+                mockChildCursor);
+    }
+
+    @Test
+    public void testEndBatch_oneToManyLoadedWithSingleQuery() {
+        // Setup
+        sqliteModelFactory.beginBatch();
+        sqliteModelFactory.createFromCursor(mockParentCursor, Parent.class);
+        sqliteModelFactory.createFromCursor(mockParentCursor, Parent.class);
+        verify(mockSqliteSession, times(0)).executeForResult(anyString(), any(String[].class));
+
+        // Run
+        sqliteModelFactory.endBatch();
+
+        // Verify
+        verify(mockSqliteSession).executeForResult(anyString(), any(String[].class));
+        verify(mockChildCursor).close();
+        assertEquals("First parent should contain one child", 1, parent1.children.size());
+        assertSame("First parent should contain its child", child2, parent1.children.get(0));
+        assertEquals("Second parent should contain one child", 1, parent2.children.size());
+        assertSame("Second parent should contain its child", child1, parent2.children.get(0));
+    }
+
+    @Test
+    public void testEndBatch_nested() {
+        // Setup
+        sqliteModelFactory.beginBatch();
+        sqliteModelFactory.beginBatch();
+        sqliteModelFactory.createFromCursor(mockParentCursor, Parent.class);
+        sqliteModelFactory.createFromCursor(mockParentCursor, Parent.class);
+
+        // Run
+        sqliteModelFactory.endBatch();
+
+        // Verify
+        verify(mockSqliteSession, times(0)).executeForResult(anyString(), any(String[].class));
+        sqliteModelFactory.endBatch();
+        verify(mockSqliteSession).executeForResult(CHILD_QUERY, new String[]{"1", "2"});
+    }
+
+    @Test
+    public void testCancelBatch_discardsPending() {
+        // Setup
+        final String SECOND_CHILD_QUERY = "SELECT * FROM child WHERE parent_id IN (?)";
+        when(mockSqliteSession.executeForResult(eq(SECOND_CHILD_QUERY), eq(new String[]{"2"}))).thenReturn(
+                mockChildCursor);
+        sqliteModelFactory.beginBatch();
+        sqliteModelFactory.createFromCursor(mockParentCursor, Parent.class);
+
+        // Run
+        sqliteModelFactory.cancelBatch();
+
+        // Verify
+        sqliteModelFactory.beginBatch();
+        sqliteModelFactory.createFromCursor(mockParentCursor, Parent.class);
+        sqliteModelFactory.endBatch();
+        verify(mockSqliteSession).executeForResult(SECOND_CHILD_QUERY, new String[]{"2"});
+        verify(mockSqliteSession, times(0)).executeForResult(CHILD_QUERY, new String[]{"1", "2"});
+        assertEquals("Cancelled batch should not be loaded", 0, parent1.children.size());
+        assertEquals("Later batch should be loaded", 1, parent2.children.size());
+    }
+
+    @Test
+    public void testEndBatch_manyToOneResolvedByForeignKeys() throws NoSuchFieldException {
+        // Setup
+        Field ownerField = Item.class.getDeclaredField("owner");
+        Field ownerIdField = Owner.class.getDeclaredField("id");
+        Item item1 = new Item();
+        Item item2 = new Item();
+        Item item3 = new Item();
+        Owner owner = new Owner();
+        Owner cachedOwner = new Owner();
+        when(mockPersistencePolicy.getPersistentFields(Item.class)).thenReturn(Arrays.asList(ownerField));
+        when(mockPersistencePolicy.isRelationship(ownerField)).thenReturn(true);
+        when(mockPersistencePolicy.getRelationship(ownerField)).thenReturn(mockManyToOneRelationship);
+        when(mockPersistencePolicy.getModelTableName(Owner.class)).thenReturn("owner");
+        when(mockPersistencePolicy.getPrimaryKeyField(Owner.class)).thenReturn(ownerIdField);
+        when(mockPersistencePolicy.getFieldColumnName(ownerIdField)).thenReturn("id");
+        when(mockManyToOneRelationship.getRelationType()).thenReturn(RelationType.ManyToOne);
+        when(mockManyToOneRelationship.getColumn()).thenReturn("owner_id");
+        doReturn(Item.class).when(mockManyToOneRelationship).getFirstType();
+        doReturn(Owner.class).when(mockManyToOneRelationship).getSecondType();
+        doReturn(item1).doReturn(item2).doReturn(item3).when(mockClassReflector).getClassInstance(Item.class);
+        doReturn(owner).when(mockClassReflector).getClassInstance(Owner.class);
+        when(mockSqliteSession.searchCache(Owner.class, (Serializable) 6L)).thenReturn(cachedOwner);
+        when(mockItemCursor.getColumnIndex("owner_id")).thenReturn(0);
+        when(mockItemCursor.getString(0)).thenReturn("5", "5", "6");
+        when(mockOwnerCursor.getColumnIndex("id")).thenReturn(0);
+        when(mockOwnerCursor.moveToNext()).thenReturn(true, false);
+        when(mockOwnerCursor.getString(0)).thenReturn("5");
+        when(mockSqliteSession.executeForResult(eq("SELECT * FROM owner WHERE id IN (?)"), eq(new String[]{"5"})))
+                .thenReturn(mockOwnerCursor);
+        sqliteModelFactory.beginBatch();
+        sqliteModelFactory.createFromCursor(mockItemCursor, Item.class);
+        sqliteModelFactory.createFromCursor(mockItemCursor, Item.class);
+        sqliteModelFactory.createFromCursor(mockItemCursor, Item.class);
+
+        // Run
+        sqliteModelFactory.endBatch();
+
+        // Verify
+        verify(mockSqliteSession).executeForResult(anyString(), any(String[].class));
+        verify(mockClassReflector).getClassInstance(Owner.class);
+        verify(mockClassReflector).setFieldValue(item1, ownerField, owner);
+        verify(mockClassReflector).setFieldValue(item2, ownerField, owner);
+        verify(mockClassReflector).setFieldValue(item3, ownerField, cachedOwner);
+    }
+
+    @Test
+    public void testEndBatch_manyToManyLoadedWithSingleQuery() throws NoSuchFieldException {
+        // Setup
+        Field tagsField = Post.class.getDeclaredField("tags");
+        Post post1 = new Post();
+        Post post2 = new Post();
+        Tag tag1 = new Tag();
+        Tag tag1Duplicate = new Tag();
+        Tag tag2 = new Tag();
+        List<Serializable> keys = new ArrayList<Serializable>();
+        keys.add(1L);
+        keys.add(2L);
+        when(mockPersistencePolicy.getPersistentFields(Post.class)).thenReturn(Arrays.asList(tagsField));
+        when(mockPersistencePolicy.isRelationship(tagsField)).thenReturn(true);
+        when(mockPersistencePolicy.getRelationship(tagsField)).thenReturn(mockManyToManyRelationship);
+        when(mockPersistencePolicy.getPrimaryKey(post1)).thenReturn(1L);
+        when(mockPersistencePolicy.getPrimaryKey(post2)).thenReturn(2L);
+        when(mockPersistencePolicy.getPrimaryKey(tag1)).thenReturn(10L);
+        when(mockPersistencePolicy.getPrimaryKey(tag1Duplicate)).thenReturn(10L);
+        when(mockPersistencePolicy.getPrimaryKey(tag2)).thenReturn(11L);
+        when(mockManyToManyRelationship.getRelationType()).thenReturn(RelationType.ManyToMany);
+        when(mockManyToManyRelationship.getBatchSize()).thenReturn(10);
+        doReturn(Post.class).when(mockManyToManyRelationship).getFirstType();
+        doReturn(Tag.class).when(mockManyToManyRelationship).getSecondType();
+        doReturn(post1).doReturn(post2).when(mockClassReflector).getClassInstance(Post.class);
+        doReturn(tag1).doReturn(tag1Duplicate).doReturn(tag2).when(mockClassReflector).getClassInstance(Tag.class);
+        when(mockClassReflector.getFieldValue(post1, tagsField)).thenReturn(post1.tags);
+        when(mockClassReflector.getFieldValue(post2, tagsField)).thenReturn(post2.tags);
+        when(mockSqliteSession.searchCache(Tag.class, (Serializable) 10L)).thenReturn(null, tag1);
+        when(mockSqliteBuilder.createPreparedManyToManyBatchJoinQuery(mockManyToManyRelationship, keys, Tag.class))
+                .thenReturn(new SqlStatement("tags", new ArrayList<Object>(keys)));
+        when(mockSqliteSession.executeForResult(eq("tags"), eq(new String[]{"1", "2"}))).thenReturn(mockTagCursor);
+        when(mockTagCursor.getColumnIndex(SqlConstants.MANY_TO_MANY_OWNER_KEY)).thenReturn(0);
+        when(mockTagCursor.moveToNext()).thenReturn(true, true, true, false);
+        when(mockTagCursor.getString(0)).thenReturn("1", "2", "2");
+        sqliteModelFactory.beginBatch();
+        sqliteModelFactory.createFromCursor(mockPostCursor, Post.class);
+        sqliteModelFactory.createFromCursor(mockPostCursor, Post.class);
+
+        // Run
+        sqliteModelFactory.endBatch();
+
+        // Verify
+        verify(mockSqliteSession).executeForResult(anyString(), any(String[].class));
+        verify(mockTagCursor).close();
+        assertEquals("First post should contain one tag", 1, post1.tags.size());
+        assertSame("First post should contain its tag", tag1, post1.tags.get(0));
+        assertEquals("Second post should contain two tags", 2, post2.tags.size());
+        assertSame("Shared tag should be the same instance", tag1, post2.tags.get(0));
+        assertSame("Second post should contain its tag", tag2, post2.tags.get(1));
+    }
+
+    @Test
+    public void testCreateFromCursor_cacheHit() throws NoSuchFieldException {
+        // Setup
+        Owner cachedOwner = new Owner();
+        setupOwnerPrimaryKey();
+        when(mockSqliteSession.searchCache(Owner.class, 5L)).thenReturn(cachedOwner);
+
+        // Run
+        Owner actual = sqliteModelFactory.createFromCursor(mockOwnerCursor, Owner.class);
+
+        // Verify
+        assertSame("Cached entity should be returned", cachedOwner, actual);
+        verify(mockClassReflector, times(0)).getClassInstance(Owner.class);
+        verify(mockPersistencePolicy, times(0)).computeModelHash(any());
+        verify(mockPersistencePolicy, times(0)).getPrimaryKey(any());
+        verify(mockSqliteSession, times(0)).cache(any(Class.class), anyLong(), any());
+    }
+
+    @Test
+    public void testCreateFromCursor_cacheMiss() throws NoSuchFieldException {
+        // Setup
+        Owner owner = new Owner();
+        setupOwnerPrimaryKey();
+        doReturn(owner).when(mockClassReflector).getClassInstance(Owner.class);
+
+        // Run
+        Owner actual = sqliteModelFactory.createFromCursor(mockOwnerCursor, Owner.class);
+
+        // Verify
+        assertSame("New entity should be returned", owner, actual);
+        assertEquals("Entity should be hydrated", 5L, actual.id);
+        verify(mockSqliteSession).searchCache(Owner.class, 5L);
+        verify(mockSqliteSession).cache(Owner.class, 5L, owner);
+        verify(mockPersistencePolicy, times(0)).getPrimaryKey(any());
+        verify(mockPersistencePolicy, times(0)).computeModelHash(any());
+    }
+
+    @Test
+    public void testCreateFromResult_cacheNotSearched() throws NoSuchFieldException {
+        // Setup
+        Owner owner = new Owner();
+        setupOwnerPrimaryKey();
+        doReturn(owner).when(mockClassReflector).getClassInstance(Owner.class);
+
+        // Run
+        Owner actual = sqliteModelFactory.createFromResult(new SqliteResult(mockOwnerCursor), Owner.class, false);
+
+        // Verify
+        assertSame("New entity should be returned", owner, actual);
+        verify(mockSqliteSession, times(0)).searchCache(any(Class.class), anyLong());
+        verify(mockSqliteSession, times(0)).searchCache(any(Class.class), any(Serializable.class));
+        verify(mockSqliteSession).cache(Owner.class, 5L, owner);
+    }
+
+    @Test
+    public void testCreateFromCursor_uncachedBackReference() throws NoSuchFieldException {
+        // Setup
+        Field ownerIdField = Owner.class.getDeclaredField("id");
+        Field itemsField = Owner.class.getDeclaredField("items");
+        Field ownerField = Item.class.getDeclaredField("owner");
+        Owner owner = new Owner();
+        Item item = new Item();
+        OneToManyRelationship itemsRelationship = mock(OneToManyRelationship.class);
+        setupOwnerPrimaryKey();
+        when(mockPersistencePolicy.getPersistentFields(Owner.class)).thenReturn(Arrays.asList(ownerIdField,
+                itemsField));
+        when(mockPersistencePolicy.isRelationship(itemsField)).thenReturn(true);
+        when(mockPersistencePolicy.getRelationship(itemsField)).thenReturn(itemsRelationship);
+        when(mockPersistencePolicy.getPrimaryKey(owner)).thenReturn(5L);
+        when(mockPersistencePolicy.getModelTableName(Item.class)).thenReturn("item");
+        when(itemsRelationship.getRelationType()).thenReturn(RelationType.OneToMany);
+        when(itemsRelationship.getColumn()).thenReturn("owner_id");
+        doReturn(Item.class).when(itemsRelationship).getManyType();
+        when(mockPersistencePolicy.getPersistentFields(Item.class)).thenReturn(Arrays.asList(ownerField));
+        when(mockPersistencePolicy.isRelationship(ownerField)).thenReturn(true);
+        when(mockPersistencePolicy.getRelationship(ownerField)).thenReturn(mockManyToOneRelationship);
+        when(mockManyToOneRelationship.getRelationType()).thenReturn(RelationType.ManyToOne);
+        when(mockManyToOneRelationship.getColumn()).thenReturn("owner_id");
+        doReturn(Item.class).when(mockManyToOneRelationship).getFirstType();
+        doReturn(Owner.class).when(mockManyToOneRelationship).getSecondType();
+        doReturn(owner).when(mockClassReflector).getClassInstance(Owner.class);
+        doReturn(item).when(mockClassReflector).getClassInstance(Item.class);
+        when(mockClassReflector.getFieldValue(owner, itemsField)).thenReturn(owner.items);
+        when(mockItemCursor.getColumnIndex("owner_id")).thenReturn(0);
+        when(mockItemCursor.moveToNext()).thenReturn(true, false);
+        when(mockItemCursor.getString(0)).thenReturn("5");
+        when(mockSqliteSession.executeForResult(eq("SELECT * FROM item WHERE owner_id = ?"),
+                eq(new String[]{"5"}))).thenReturn(mockItemCursor);
+
+        // Run
+        Owner actual = sqliteModelFactory.createFromCursor(mockOwnerCursor, Owner.class, false);
+
+        // Verify
+        assertSame("New entity should be returned", owner, actual);
+        assertEquals("Related entity should be loaded", Arrays.asList(item), owner.items);
+        verify(mockClassReflector).setFieldValue(item, ownerField, owner);
+        verify(mockClassReflector).getClassInstance(Owner.class);
+        verify(mockSqliteSession, times(0)).cache(Owner.class, 5L, owner);
+    }
+
+    @Test
+    public void testCreateFromCursor_readOnlyRegionHit() throws NoSuchFieldException {
+        // Setup
+        Owner sharedOwner = new Owner();
+        setupOwnerPrimaryKey();
+        when(mockSecondLevelCache.getRegion(Owner.class)).thenReturn(mockCacheRegion);
+        when(mockCacheRegion.isReadOnly()).thenReturn(true);
+        when(mockCacheRegion.get(5L)).thenReturn(sharedOwner);
+
+        // Run
+        Owner actual = sqliteModelFactory.createFromCursor(mockOwnerCursor, Owner.class);
+
+        // Verify
+        assertSame("Shared entity should be returned", sharedOwner, actual);
+        verify(mockClassReflector, times(0)).getClassInstance(Owner.class);
+        verify(mockSqliteSession).cache(Owner.class, 5L, sharedOwner);
+        verify(mockCacheRegion, times(0)).put(any(Serializable.class), any());
+    }
+
+    @Test
+    public void testCreateFromCursor_readWriteRegionMiss() throws NoSuchFieldException {
+        // Setup
+        Owner owner = new Owner();
+        setupOwnerPrimaryKey();
+        doReturn(owner).when(mockClassReflector).getClassInstance(Owner.class);
+        when(mockSecondLevelCache.getRegion(Owner.class)).thenReturn(mockCacheRegion);
+
+        // Run
+        Owner actual = sqliteModelFactory.createFromCursor(mockOwnerCursor, Owner.class);
+
+        // Verify
+        ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+        assertSame("New entity should be returned", owner, actual);
+        verify(mockCacheRegion).put(eq(5L), captor.capture());
+        assertArrayEquals("Entity row should be cached", new Object[]{ 5L }, (Object[]) captor.getValue());
+    }
+
+    @Test
+    public void testCreateFromFetchCursor_oneToMany() throws NoSuchFieldException {
+        // Setup
+        Field childrenField = Parent.class.getDeclaredField("children");
+        Field parentIdField = Parent.class.getDeclaredField("id");
+        Field childIdField = Child.class.getDeclaredField("id");
+        doReturn(Parent.class).when(mockRelationship).getFirstType();
+        doReturn(Child.class).when(mockRelationship).getSecondType();
+        when(mockPersistencePolicy.getPrimaryKeyField(Parent.class)).thenReturn(parentIdField);
+        when(mockPersistencePolicy.getPrimaryKeyField(Child.class)).thenReturn(childIdField);
+        when(mockPersistencePolicy.getFieldColumnName(parentIdField)).thenReturn("id");
+        when(mockPersistencePolicy.getFieldColumnName(childIdField)).thenReturn("id");
+        when(mockFetchCursor.getColumnIndex("id")).thenReturn(0);
+        when(mockFetchCursor.getColumnIndex("fetch0_id")).thenReturn(1);
+        when(mockFetchCursor.moveToNext()).thenReturn(true, true, true, false);
+        when(mockFetchCursor.getString(0)).thenReturn("1", "1", "2");
+        when(mockFetchCursor.getString(1)).thenReturn("10", "11");
+        when(mockFetchCursor.isNull(1)).thenReturn(false, false, true);
+
+        // Run
+        List<Parent> actual = sqliteModelFactory.createFromFetchCursor(mockFetchCursor, Parent.class,
+                Arrays.asList(childrenField));
+
+        // Verify
+        verify(mockSqliteSession, times(0)).executeForResult(anyString(), any(String[].class));
+        assertEquals("Parents should be de-duplicated", 2, actual.size());
+        assertSame("First parent should be returned first", parent1, actual.get(0));
+        assertSame("Second parent should be returned second", parent2, actual.get(1));
+        assertEquals("First parent should contain both fetched children", 2, parent1.children.size());
+        assertSame("First parent should contain its first child", child1, parent1.children.get(0));
+        assertSame("First parent should contain its second child", child2, parent1.children.get(1));
+        assertEquals("Second parent should not contain any children", 0, parent2.children.size());
+    }
+
+    private void setupOwnerPrimaryKey() throws NoSuchFieldException {
+        Field ownerIdField = Owner.class.getDeclaredField("id");
+        when(mockPersistencePolicy.getPersistentFields(Owner.class)).thenReturn(Arrays.asList(ownerIdField));
+        when(mockPersistencePolicy.getPrimaryKeyField(Owner.class)).thenReturn(ownerIdField);
+        when(mockPersistencePolicy.getFieldColumnName(ownerIdField)).thenReturn("id");
+        doReturn(SqliteTypeAdapters.LONG).when(mockSqliteMapper).resolveType(long.class);
+        when(mockOwnerCursor.getColumnIndex("id")).thenReturn(0);
+        when(mockOwnerCursor.getLong(0)).thenReturn(5L);
+    }
+
+    private static class Parent {
+        private long id;
+        private List<Child> children = new ArrayList<Child>();
+    }
+
+    private static class Child {
+        private long id;
+    }
+
+    private static class Post {
+        private List<Tag> tags = new ArrayList<Tag>();
+    }
+
+    private static class Tag {
+    }
+
+    private static class Item {
+        private Owner owner;
+    }
+
+    private static class Owner {
+        private long id;
+        private List<Item> items = new ArrayList<Item>();
+    }
+
+}
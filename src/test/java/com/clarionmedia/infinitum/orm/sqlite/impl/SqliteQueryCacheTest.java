@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.sqlite.impl;
+
+import com.clarionmedia.infinitum.orm.sql.SqlStatement;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class SqliteQueryCacheTest {
+
+    private static final String KEY_A = "a";
+    private static final String KEY_B = "b";
+    private static final String KEY_C = "c";
+    private static final String[] TABLES = new String[]{ "foo", "bar" };
+
+    private SqliteQueryCache queryCache;
+    private List<Serializable> keys;
+
+    @Before
+    public void setup() {
+        queryCache = new SqliteQueryCache(2);
+        keys = new ArrayList<Serializable>(Arrays.asList(1L, 2L));
+    }
+
+    @Test
+    public void testGet_hit() {
+        // Setup
+        queryCache.put(KEY_A, TABLES, queryCache.getVersions(TABLES), keys);
+        queryCache.bumpVersion("baz");
+
+        // Run
+        List<Serializable> actual = queryCache.get(KEY_A);
+
+        // Verify
+        assertEquals("Cached keys should be returned", keys, actual);
+        assertEquals("Hit count should be 1", 1, queryCache.getHitCount());
+        assertEquals("Miss count should be 0", 0, queryCache.getMissCount());
+    }
+
+    @Test
+    public void testGet_tableWritten() {
+        // Setup
+        queryCache.put(KEY_A, TABLES, queryCache.getVersions(TABLES), keys);
+        queryCache.bumpVersion("bar");
+
+        // Run
+        List<Serializable> actual = queryCache.get(KEY_A);
+
+        // Verify
+        assertNull("Results should be invalidated by a write to a queried table", actual);
+        assertEquals("Invalidated results should be evicted", 0, queryCache.size());
+        assertEquals("Miss count should be 1", 1, queryCache.getMissCount());
+    }
+
+    @Test
+    public void testGet_writtenWhileExecuting() {
+        // Setup
+        long[] versions = queryCache.getVersions(TABLES);
+        queryCache.bumpVersion("foo");
+        queryCache.put(KEY_A, TABLES, versions, keys);
+
+        // Run
+        List<Serializable> actual = queryCache.get(KEY_A);
+
+        // Verify
+        assertNull("Results should be invalidated by a write made while the query executed", actual);
+    }
+
+    @Test
+    public void testInvalidateAll() {
+        // Setup
+        long[] versions = queryCache.getVersions(TABLES);
+        queryCache.put(KEY_A, TABLES, versions, keys);
+
+        // Run
+        queryCache.invalidateAll();
+        queryCache.put(KEY_B, TABLES, versions, keys);
+
+        // Verify
+        assertNull("Cached results should be invalidated", queryCache.get(KEY_A));
+        assertNull("Results read before invalidation should be invalidated", queryCache.get(KEY_B));
+    }
+
+    @Test
+    public void testPut_evictsLeastRecentlyUsed() {
+        // Setup
+        queryCache.put(KEY_A, TABLES, queryCache.getVersions(TABLES), keys);
+        queryCache.put(KEY_B, TABLES, queryCache.getVersions(TABLES), keys);
+        queryCache.get(KEY_A);
+
+        // Run
+        queryCache.put(KEY_C, TABLES, queryCache.getVersions(TABLES), keys);
+
+        // Verify
+        assertEquals("Cache should not exceed its maximum size", 2, queryCache.size());
+        assertEquals("Recently used results should be retained", keys, queryCache.get(KEY_A));
+        assertNull("Least recently used results should be evicted", queryCache.get(KEY_B));
+    }
+
+    @Test
+    public void testCreateKey() {
+        // Setup
+        SqlStatement first = new SqlStatement("SELECT * FROM foo WHERE a = ? AND b = ?", Arrays.<Object>asList("x",
+                "y,z"));
+        SqlStatement second = new SqlStatement("SELECT * FROM foo WHERE a = ? AND b = ?", Arrays.<Object>asList(
+                "x,y", "z"));
+
+        // Run
+        String firstKey = queryCache.createKey(Object.class, first);
+        String secondKey = queryCache.createKey(Object.class, second);
+
+        // Verify
+        assertFalse("Different bind values should produce different keys", firstKey.equals(secondKey));
+    }
+
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.sqlite.impl;
+
+import com.clarionmedia.infinitum.orm.annotation.Cacheable;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SqliteSecondLevelCacheTest {
+
+    private SqliteSecondLevelCache secondLevelCache;
+
+    @Before
+    public void setup() {
+        secondLevelCache = new SqliteSecondLevelCache();
+    }
+
+    @Test
+    public void testGetRegion_annotated() {
+        // Run
+        SqliteCacheRegion actual = secondLevelCache.getRegion(Foo.class);
+
+        // Verify
+        assertEquals("Region capacity should be read from the annotation", 2, actual.getCapacity());
+        assertEquals("Region time to live should be read from the annotation", 0, actual.getTimeToLive());
+        assertTrue("Region should be read-only", actual.isReadOnly());
+        assertSame("Region should be created once", actual, secondLevelCache.getRegion(Foo.class));
+    }
+
+    @Test
+    public void testGetRegion_notCacheable() {
+        // Run
+        SqliteCacheRegion actual = secondLevelCache.getRegion(Bar.class);
+
+        // Verify
+        assertNull("Classes which aren't cacheable should not have a region", actual);
+    }
+
+    @Test
+    public void testSetRegion() {
+        // Run
+        SqliteCacheRegion region = secondLevelCache.setRegion(Bar.class, 10, 1000, false);
+
+        // Verify
+        assertSame("Configured region should be used", region, secondLevelCache.getRegion(Bar.class));
+        assertFalse("Region should be read-write", region.isReadOnly());
+    }
+
+    @Test
+    public void testRegionPut_evictsLeastRecentlyUsed() {
+        // Setup
+        SqliteCacheRegion region = secondLevelCache.getRegion(Foo.class);
+        region.put(1, "a");
+        region.put(2, "b");
+        region.get(1);
+
+        // Run
+        region.put(3, "c");
+
+        // Verify
+        assertEquals("Region should not exceed its capacity", 2, region.size());
+        assertEquals("Recently used entry should be retained", "a", region.get(1));
+        assertNull("Least recently used entry should be evicted", region.get(2));
+    }
+
+    @Test
+    public void testRegionGet_expired() throws InterruptedException {
+        // Setup
+        SqliteCacheRegion region = secondLevelCache.setRegion(Bar.class, 10, 1, false);
+        region.put(1, "a");
+        Thread.sleep(10);
+
+        // Run
+        Object actual = region.get(1);
+
+        // Verify
+        assertNull("Expired entry should not be returned", actual);
+        assertEquals("Expired entry should be evicted", 0, region.size());
+    }
+
+    @Test
+    public void testEvict() {
+        // Setup
+        SqliteCacheRegion region = secondLevelCache.getRegion(Foo.class);
+        region.put(1, "a");
+        region.put(2, "b");
+
+        // Run
+        secondLevelCache.evict(Foo.class, 1);
+        secondLevelCache.evict(Bar.class, 2);
+
+        // Verify
+        assertFalse("Entry should be evicted", region.contains(1));
+        assertTrue("Entries of other classes should not be evicted", region.contains(2));
+    }
+
+    @Test
+    public void testRegion_keyedByPrimaryKey() {
+        // Setup
+        SqliteCacheRegion region = secondLevelCache.setRegion(Bar.class, 10, 0, false);
+        region.put(1L, "a");
+        region.put(new byte[]{ 1, 2 }, "b");
+        region.put("1", "c");
+
+        // Run
+        Object actualLong = region.get(1);
+        Object actualBytes = region.get(new byte[]{ 1, 2 });
+        Object actualString = region.get("1");
+
+        // Verify
+        assertEquals("Integer keys should match regardless of their boxed type", "a", actualLong);
+        assertEquals("Byte array keys should match by contents", "b", actualBytes);
+        assertEquals("Keys of other types should not collide with integer keys", "c", actualString);
+    }
+
+    @Test
+    public void testClear() {
+        // Setup
+        SqliteCacheRegion region = secondLevelCache.getRegion(Foo.class);
+        region.put(1, "a");
+
+        // Run
+        secondLevelCache.clear();
+
+        // Verify
+        assertEquals("Entries should be evicted", 0, region.size());
+        assertSame("Regions should be retained", region, secondLevelCache.getRegion(Foo.class));
+    }
+
+    @Cacheable(capacity = 2, readOnly = true)
+    private static class Foo {
+    }
+
+    private static class Bar {
+    }
+
+}
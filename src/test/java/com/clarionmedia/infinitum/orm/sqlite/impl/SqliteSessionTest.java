@@ -18,15 +18,20 @@ package com.clarionmedia.infinitum.orm.sqlite.impl;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.Serializable;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -46,11 +51,15 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 
+import com.clarionmedia.infinitum.exception.InfinitumRuntimeException;
 import com.clarionmedia.infinitum.logging.Logger;
+import com.clarionmedia.infinitum.orm.CacheStatistics;
+import com.clarionmedia.infinitum.orm.OrmConstants.CacheOverflow;
 import com.clarionmedia.infinitum.orm.ResultSet;
 import com.clarionmedia.infinitum.orm.Session;
 import com.clarionmedia.infinitum.orm.context.InfinitumOrmContext;
 import com.clarionmedia.infinitum.orm.criteria.Criteria;
+import com.clarionmedia.infinitum.orm.internal.IdentityMap;
 import com.clarionmedia.infinitum.orm.persistence.PersistencePolicy;
 import com.clarionmedia.infinitum.orm.persistence.TypeResolutionPolicy.SqliteDataType;
 import com.clarionmedia.infinitum.orm.rest.RestfulPairsTypeAdapter;
@@ -60,10 +69,8 @@ import com.xtremelabs.robolectric.RobolectricTestRunner;
 @RunWith(RobolectricTestRunner.class)
 public class SqliteSessionTest {
 
-	private static final int FOO_MODEL_HASH = 42;
-	private static final int BAR_MODEL_HASH = 38;
-	private static final int BAZ_MODEL_HASH = 176;
 	private static final long FOO_MODEL_ID = 120;
+	private static final long BAR_MODEL_ID = 97;
 	private static final long BAZ_MODEL_ID = 211;
 
 	@Mock
@@ -82,7 +89,7 @@ public class SqliteSessionTest {
 	private Context mockContext;
 
 	@Mock
-	private Map<Integer, Object> mockSessionCache;
+	private IdentityMap mockSessionCache;
 
 	@Mock
 	private Criteria<FooModel> mockFooCriteria;
@@ -96,6 +103,9 @@ public class SqliteSessionTest {
 	@Mock
 	private SQLiteDatabase mockSqliteDatabase;
 
+	@Mock
+	private SqliteQueryCache mockQueryCache;
+
 	@InjectMocks
 	private SqliteSession sqliteSession = new SqliteSession();
 
@@ -167,6 +177,37 @@ public class SqliteSessionTest {
 		assertEquals("Session returned from recycleCache should be the same Session instance", sqliteSession, session);
 	}
 
+	@Test
+	public void testSetCacheSize() {
+		// Run
+		Session session = sqliteSession.setCacheSize(50);
+
+		// Verify
+		verify(mockSessionCache).setMaxSize(50);
+		assertEquals("Cache size should be updated", 50, sqliteSession.getCacheSize());
+		assertEquals("Session returned from setCacheSize should be the same Session instance", sqliteSession, session);
+	}
+
+	@Test
+	public void testSetCacheWeight() {
+		// Run
+		Session session = sqliteSession.setCacheWeight(4096);
+
+		// Verify
+		verify(mockSessionCache).setMaxWeight(4096);
+		assertEquals("Session returned from setCacheWeight should be the same Session instance", sqliteSession, session);
+	}
+
+	@Test
+	public void testSetCacheOverflow() {
+		// Run
+		Session session = sqliteSession.setCacheOverflow(CacheOverflow.Soft);
+
+		// Verify
+		verify(mockSessionCache).setOverflow(CacheOverflow.Soft);
+		assertEquals("Session returned from setCacheOverflow should be the same Session instance", sqliteSession, session);
+	}
+
 	@Test
 	public void testCreateCriteria() {
 		// Setup
@@ -185,15 +226,15 @@ public class SqliteSessionTest {
 		// Setup
 		FooModel foo = new FooModel();
 		when(mockSqliteTemplate.save(foo)).thenReturn(FOO_MODEL_ID);
-		when(mockPersistencePolicy.computeModelHash(foo)).thenReturn(FOO_MODEL_HASH);
+		when(mockPersistencePolicy.getPrimaryKey(foo)).thenReturn(FOO_MODEL_ID);
 
 		// Run
 		long actualId = sqliteSession.save(foo);
 
 		// Verify
 		verify(mockSqliteTemplate).save(foo);
-		verify(mockPersistencePolicy).computeModelHash(foo);
-		verify(mockSessionCache).put(FOO_MODEL_HASH, foo);
+		verify(mockPersistencePolicy).getPrimaryKey(foo);
+		verify(mockSessionCache).put(FooModel.class, (Serializable) FOO_MODEL_ID, foo);
 		assertEquals("Returned ID should be equal to the model ID", FOO_MODEL_ID, actualId);
 	}
 
@@ -208,8 +249,8 @@ public class SqliteSessionTest {
 
 		// Verify
 		verify(mockSqliteTemplate).save(foo);
-		verify(mockPersistencePolicy, times(0)).computeModelHash(foo);
-		verify(mockSessionCache, times(0)).put(FOO_MODEL_HASH, foo);
+		verify(mockPersistencePolicy, times(0)).getPrimaryKey(foo);
+		verify(mockSessionCache, times(0)).put(FooModel.class, (Serializable) FOO_MODEL_ID, foo);
 		assertEquals("Returned ID should be -1", -1, actualId);
 	}
 
@@ -218,15 +259,15 @@ public class SqliteSessionTest {
 		// Setup
 		FooModel foo = new FooModel();
 		when(mockSqliteTemplate.update(foo)).thenReturn(true);
-		when(mockPersistencePolicy.computeModelHash(foo)).thenReturn(FOO_MODEL_HASH);
+		when(mockPersistencePolicy.getPrimaryKey(foo)).thenReturn(FOO_MODEL_ID);
 
 		// Run
 		boolean success = sqliteSession.update(foo);
 
 		// Verify
 		verify(mockSqliteTemplate).update(foo);
-		verify(mockPersistencePolicy).computeModelHash(foo);
-		verify(mockSessionCache).put(FOO_MODEL_HASH, foo);
+		verify(mockPersistencePolicy).getPrimaryKey(foo);
+		verify(mockSessionCache).put(FooModel.class, (Serializable) FOO_MODEL_ID, foo);
 		assertEquals("Save should have returned successfully", true, success);
 	}
 
@@ -241,8 +282,8 @@ public class SqliteSessionTest {
 
 		// Verify
 		verify(mockSqliteTemplate).update(foo);
-		verify(mockPersistencePolicy, times(0)).computeModelHash(foo);
-		verify(mockSessionCache, times(0)).put(FOO_MODEL_HASH, foo);
+		verify(mockPersistencePolicy, times(0)).getPrimaryKey(foo);
+		verify(mockSessionCache, times(0)).put(FooModel.class, (Serializable) FOO_MODEL_ID, foo);
 		assertEquals("Save should have returned unsuccessfully", false, success);
 	}
 
@@ -251,15 +292,15 @@ public class SqliteSessionTest {
 		// Setup
 		FooModel foo = new FooModel();
 		when(mockSqliteTemplate.delete(foo)).thenReturn(true);
-		when(mockPersistencePolicy.computeModelHash(foo)).thenReturn(FOO_MODEL_HASH);
+		when(mockPersistencePolicy.getPrimaryKey(foo)).thenReturn(FOO_MODEL_ID);
 
 		// Run
 		boolean success = sqliteSession.delete(foo);
 
 		// Verify
 		verify(mockSqliteTemplate).delete(foo);
-		verify(mockPersistencePolicy).computeModelHash(foo);
-		verify(mockSessionCache).remove(FOO_MODEL_HASH);
+		verify(mockPersistencePolicy).getPrimaryKey(foo);
+		verify(mockSessionCache).remove(FooModel.class, (Serializable) FOO_MODEL_ID);
 		assertEquals("Delete should have returned successfully", true, success);
 	}
 
@@ -274,8 +315,8 @@ public class SqliteSessionTest {
 
 		// Verify
 		verify(mockSqliteTemplate).delete(foo);
-		verify(mockPersistencePolicy, times(0)).computeModelHash(foo);
-		verify(mockSessionCache, times(0)).remove(FOO_MODEL_HASH);
+		verify(mockPersistencePolicy, times(0)).getPrimaryKey(foo);
+		verify(mockSessionCache, times(0)).remove(FooModel.class, (Serializable) FOO_MODEL_ID);
 		assertEquals("Delete should have returned unsuccessfully", false, success);
 	}
 
@@ -284,15 +325,15 @@ public class SqliteSessionTest {
 		// Setup
 		FooModel foo = new FooModel();
 		when(mockSqliteTemplate.saveOrUpdate(foo)).thenReturn(FOO_MODEL_ID);
-		when(mockPersistencePolicy.computeModelHash(foo)).thenReturn(FOO_MODEL_HASH);
+		when(mockPersistencePolicy.getPrimaryKey(foo)).thenReturn(FOO_MODEL_ID);
 
 		// Run
 		long actualId = sqliteSession.saveOrUpdate(foo);
 
 		// Verify
 		verify(mockSqliteTemplate).saveOrUpdate(foo);
-		verify(mockPersistencePolicy).computeModelHash(foo);
-		verify(mockSessionCache).put(FOO_MODEL_HASH, foo);
+		verify(mockPersistencePolicy).getPrimaryKey(foo);
+		verify(mockSessionCache).put(FooModel.class, (Serializable) FOO_MODEL_ID, foo);
 		assertEquals("Returned ID should be equal to the model ID", FOO_MODEL_ID, actualId);
 	}
 
@@ -307,8 +348,8 @@ public class SqliteSessionTest {
 
 		// Verify
 		verify(mockSqliteTemplate).saveOrUpdate(foo);
-		verify(mockPersistencePolicy, times(0)).computeModelHash(foo);
-		verify(mockSessionCache, times(0)).put(FOO_MODEL_HASH, foo);
+		verify(mockPersistencePolicy, times(0)).getPrimaryKey(foo);
+		verify(mockSessionCache, times(0)).put(FooModel.class, (Serializable) FOO_MODEL_ID, foo);
 		assertEquals("Returned ID should be -1", -1, actualId);
 	}
 
@@ -325,8 +366,8 @@ public class SqliteSessionTest {
 		when(mockSqliteTemplate.saveOrUpdate(foo)).thenReturn(FOO_MODEL_ID);
 		when(mockSqliteTemplate.saveOrUpdate(bar)).thenReturn((long) -1);
 		when(mockSqliteTemplate.saveOrUpdate(baz)).thenReturn((long) 0);
-		when(mockPersistencePolicy.computeModelHash(foo)).thenReturn(FOO_MODEL_HASH);
-		when(mockPersistencePolicy.computeModelHash(baz)).thenReturn(BAZ_MODEL_HASH);
+		when(mockPersistencePolicy.getPrimaryKey(foo)).thenReturn(FOO_MODEL_ID);
+		when(mockPersistencePolicy.getPrimaryKey(baz)).thenReturn(BAZ_MODEL_ID);
 
 		// Run
 		int actualResults = sqliteSession.saveOrUpdateAll(models);
@@ -335,12 +376,12 @@ public class SqliteSessionTest {
 		verify(mockSqliteTemplate).saveOrUpdate(foo);
 		verify(mockSqliteTemplate).saveOrUpdate(bar);
 		verify(mockSqliteTemplate).saveOrUpdate(baz);
-		verify(mockPersistencePolicy).computeModelHash(foo);
-		verify(mockPersistencePolicy).computeModelHash(baz);
-		verify(mockPersistencePolicy, times(0)).computeModelHash(bar);
-		verify(mockSessionCache).put(FOO_MODEL_HASH, foo);
-		verify(mockSessionCache).put(BAZ_MODEL_HASH, baz);
-		verify(mockSessionCache, times(0)).put(BAR_MODEL_HASH, bar);
+		verify(mockPersistencePolicy).getPrimaryKey(foo);
+		verify(mockPersistencePolicy).getPrimaryKey(baz);
+		verify(mockPersistencePolicy, times(0)).getPrimaryKey(bar);
+		verify(mockSessionCache).put(FooModel.class, (Serializable) FOO_MODEL_ID, foo);
+		verify(mockSessionCache).put(BazModel.class, (Serializable) BAZ_MODEL_ID, baz);
+		verify(mockSessionCache, times(0)).put(BarModel.class, (Serializable) BAR_MODEL_ID, bar);
 		assertEquals("Number of items saved or updated should be 2", 2, actualResults);
 	}
 
@@ -354,25 +395,22 @@ public class SqliteSessionTest {
 		models.add(foo);
 		models.add(bar);
 		models.add(baz);
-		when(mockSqliteTemplate.save(foo)).thenReturn(FOO_MODEL_ID);
-		when(mockSqliteTemplate.save(bar)).thenReturn((long) -1);
-		when(mockSqliteTemplate.save(baz)).thenReturn(BAZ_MODEL_ID);
-		when(mockPersistencePolicy.computeModelHash(foo)).thenReturn(FOO_MODEL_HASH);
-		when(mockPersistencePolicy.computeModelHash(baz)).thenReturn(BAZ_MODEL_HASH);
+		when(mockSqliteTemplate.saveAll(models)).thenReturn(new long[] { FOO_MODEL_ID, -1, BAZ_MODEL_ID });
+		when(mockPersistencePolicy.getPrimaryKey(foo)).thenReturn(FOO_MODEL_ID);
+		when(mockPersistencePolicy.getPrimaryKey(baz)).thenReturn(BAZ_MODEL_ID);
 
 		// Run
 		int actualResults = sqliteSession.saveAll(models);
 
 		// Verify
-		verify(mockSqliteTemplate).save(foo);
-		verify(mockSqliteTemplate).save(bar);
-		verify(mockSqliteTemplate).save(baz);
-		verify(mockPersistencePolicy).computeModelHash(foo);
-		verify(mockPersistencePolicy).computeModelHash(baz);
-		verify(mockPersistencePolicy, times(0)).computeModelHash(bar);
-		verify(mockSessionCache).put(FOO_MODEL_HASH, foo);
-		verify(mockSessionCache).put(BAZ_MODEL_HASH, baz);
-		verify(mockSessionCache, times(0)).put(BAR_MODEL_HASH, bar);
+		verify(mockSqliteTemplate).saveAll(models);
+		verify(mockSqliteTemplate, times(0)).save(any(Object.class));
+		verify(mockPersistencePolicy).getPrimaryKey(foo);
+		verify(mockPersistencePolicy).getPrimaryKey(baz);
+		verify(mockPersistencePolicy, times(0)).getPrimaryKey(bar);
+		verify(mockSessionCache).put(FooModel.class, (Serializable) FOO_MODEL_ID, foo);
+		verify(mockSessionCache).put(BazModel.class, (Serializable) BAZ_MODEL_ID, baz);
+		verify(mockSessionCache, times(0)).put(BarModel.class, (Serializable) BAR_MODEL_ID, bar);
 		assertEquals("Number of items saved should be 2", 2, actualResults);
 	}
 
@@ -386,25 +424,20 @@ public class SqliteSessionTest {
 		models.add(foo);
 		models.add(bar);
 		models.add(baz);
-		when(mockSqliteTemplate.delete(foo)).thenReturn(true);
-		when(mockSqliteTemplate.delete(bar)).thenReturn(false);
-		when(mockSqliteTemplate.delete(baz)).thenReturn(true);
-		when(mockPersistencePolicy.computeModelHash(foo)).thenReturn(FOO_MODEL_HASH);
-		when(mockPersistencePolicy.computeModelHash(baz)).thenReturn(BAZ_MODEL_HASH);
+		when(mockSqliteTemplate.deleteAll(models)).thenReturn(2);
+		when(mockPersistencePolicy.getPrimaryKey(foo)).thenReturn(FOO_MODEL_ID);
+		when(mockPersistencePolicy.getPrimaryKey(bar)).thenReturn(BAR_MODEL_ID);
+		when(mockPersistencePolicy.getPrimaryKey(baz)).thenReturn(BAZ_MODEL_ID);
 
 		// Run
 		int actualResults = sqliteSession.deleteAll(models);
 
 		// Verify
-		verify(mockSqliteTemplate).delete(foo);
-		verify(mockSqliteTemplate).delete(bar);
-		verify(mockSqliteTemplate).delete(baz);
-		verify(mockPersistencePolicy).computeModelHash(foo);
-		verify(mockPersistencePolicy).computeModelHash(baz);
-		verify(mockPersistencePolicy, times(0)).computeModelHash(bar);
-		verify(mockSessionCache).remove(FOO_MODEL_HASH);
-		verify(mockSessionCache).remove(BAZ_MODEL_HASH);
-		verify(mockSessionCache, times(0)).remove(BAR_MODEL_HASH);
+		verify(mockSqliteTemplate).deleteAll(models);
+		verify(mockSqliteTemplate, times(0)).delete(any(Object.class));
+		verify(mockSessionCache).remove(FooModel.class, (Serializable) FOO_MODEL_ID);
+		verify(mockSessionCache).remove(BarModel.class, (Serializable) BAR_MODEL_ID);
+		verify(mockSessionCache).remove(BazModel.class, (Serializable) BAZ_MODEL_ID);
 		assertEquals("Number of items deleted should be 2", 2, actualResults);
 	}
 
@@ -413,17 +446,13 @@ public class SqliteSessionTest {
 		// Setup
 		FooModel expected = new FooModel();
 		expected.id = FOO_MODEL_ID;
-		when(mockPersistencePolicy.computeModelHash(FooModel.class, FOO_MODEL_ID)).thenReturn(FOO_MODEL_HASH);
-		when(mockSessionCache.containsKey(FOO_MODEL_HASH)).thenReturn(true);
-		when(mockSessionCache.get(FOO_MODEL_HASH)).thenReturn(expected);
+		when(mockSessionCache.get(FooModel.class, (Serializable) FOO_MODEL_ID)).thenReturn(expected);
 
 		// Run
 		FooModel actual = sqliteSession.load(FooModel.class, FOO_MODEL_ID);
 
 		// Verify
-		verify(mockPersistencePolicy).computeModelHash(FooModel.class, FOO_MODEL_ID);
-		verify(mockSessionCache).containsKey(FOO_MODEL_HASH);
-		verify(mockSessionCache).get(FOO_MODEL_HASH);
+		verify(mockSessionCache).get(FooModel.class, (Serializable) FOO_MODEL_ID);
 		verify(mockSqliteTemplate, times(0)).load(FooModel.class, FOO_MODEL_ID);
 		assertEquals("Loaded object ID should be equal to expected object ID", expected.id, actual.id);
 	}
@@ -433,21 +462,96 @@ public class SqliteSessionTest {
 		// Setup
 		FooModel expected = new FooModel();
 		expected.id = FOO_MODEL_ID;
-		when(mockPersistencePolicy.computeModelHash(FooModel.class, FOO_MODEL_ID)).thenReturn(FOO_MODEL_HASH);
-		when(mockSessionCache.containsKey(FOO_MODEL_HASH)).thenReturn(false);
 		when(mockSqliteTemplate.load(FooModel.class, FOO_MODEL_ID)).thenReturn(expected);
 
 		// Run
 		FooModel actual = sqliteSession.load(FooModel.class, FOO_MODEL_ID);
 
 		// Verify
-		verify(mockPersistencePolicy).computeModelHash(FooModel.class, FOO_MODEL_ID);
-		verify(mockSessionCache).containsKey(FOO_MODEL_HASH);
-		verify(mockSessionCache, times(0)).get(FOO_MODEL_HASH);
+		verify(mockSessionCache).get(FooModel.class, (Serializable) FOO_MODEL_ID);
 		verify(mockSqliteTemplate).load(FooModel.class, FOO_MODEL_ID);
 		assertEquals("Loaded object ID should be equal to expected object ID", expected.id, actual.id);
 	}
 
+	@Test
+	public void testLoad_negativeCacheHit() {
+		// Setup
+		when(mockSqliteTemplate.load(FooModel.class, FOO_MODEL_ID)).thenReturn(null);
+		sqliteSession.load(FooModel.class, FOO_MODEL_ID);
+
+		// Run
+		FooModel actual = sqliteSession.load(FooModel.class, FOO_MODEL_ID);
+
+		// Verify
+		verify(mockSqliteTemplate, times(1)).load(FooModel.class, FOO_MODEL_ID);
+		assertNull("Missing model should not be loaded", actual);
+	}
+
+	@Test
+	public void testLoad_negativeCacheInvalidatedBySave() {
+		// Setup
+		FooModel foo = new FooModel();
+		when(mockSqliteTemplate.load(FooModel.class, FOO_MODEL_ID)).thenReturn(null);
+		when(mockSqliteTemplate.save(foo)).thenReturn(FOO_MODEL_ID);
+		when(mockPersistencePolicy.getPrimaryKey(foo)).thenReturn(FOO_MODEL_ID);
+		sqliteSession.load(FooModel.class, FOO_MODEL_ID);
+		sqliteSession.save(foo);
+
+		// Run
+		sqliteSession.load(FooModel.class, FOO_MODEL_ID);
+
+		// Verify
+		verify(mockSqliteTemplate, times(2)).load(FooModel.class, FOO_MODEL_ID);
+	}
+
+	@Test
+	public void testLoad_negativeCacheInvalidatedByCascade() {
+		// Setup
+		when(mockPersistencePolicy.getModelTableName(FooModel.class)).thenReturn("foo");
+		when(mockQueryCache.getVersion("foo")).thenReturn(3L);
+		when(mockSqliteTemplate.load(FooModel.class, FOO_MODEL_ID)).thenReturn(null);
+		sqliteSession.load(FooModel.class, FOO_MODEL_ID);
+		// Saving another entity cascades to an insert into the same table, which bumps its version
+		when(mockQueryCache.getVersion("foo")).thenReturn(4L);
+
+		// Run
+		sqliteSession.load(FooModel.class, FOO_MODEL_ID);
+
+		// Verify
+		verify(mockSqliteTemplate, times(2)).load(FooModel.class, FOO_MODEL_ID);
+	}
+
+	@Test
+	public void testLoad_negativeCacheClearedByExecute() {
+		// Setup
+		when(mockSqliteTemplate.load(FooModel.class, FOO_MODEL_ID)).thenReturn(null);
+		sqliteSession.load(FooModel.class, FOO_MODEL_ID);
+		sqliteSession.execute("insert into foo (id) values (120)");
+
+		// Run
+		sqliteSession.load(FooModel.class, FOO_MODEL_ID);
+
+		// Verify
+		verify(mockSqliteTemplate, times(2)).load(FooModel.class, FOO_MODEL_ID);
+	}
+
+	@Test
+	public void testSetNegativeCacheSize() {
+		// Setup
+		when(mockSqliteTemplate.load(FooModel.class, FOO_MODEL_ID)).thenReturn(null);
+
+		// Run
+		Session session = sqliteSession.setNegativeCacheSize(0);
+		sqliteSession.load(FooModel.class, FOO_MODEL_ID);
+		sqliteSession.load(FooModel.class, FOO_MODEL_ID);
+
+		// Verify
+		verify(mockSqliteTemplate, times(2)).load(FooModel.class, FOO_MODEL_ID);
+		assertEquals("Negative cache size should be updated", 0, sqliteSession.getNegativeCacheSize());
+		assertEquals("Session returned from setNegativeCacheSize should be the same Session instance", sqliteSession,
+				session);
+	}
+
 	@Test
 	public void testExecute() {
 		// Setup
@@ -606,6 +710,199 @@ public class SqliteSessionTest {
 		assertEquals("Session returned from setAutocommit should be the same Session instance", sqliteSession, session);
 	}
 
+	@Test
+	public void testSetUpsert() {
+		// Run
+		Session session = sqliteSession.setUpsert(true);
+
+		// Verify
+		verify(mockSqliteTemplate).setUpsert(true);
+		assertEquals("Session returned from setUpsert should be the same Session instance", sqliteSession, session);
+	}
+
+	@Test
+	public void testSetDirtyChecking() {
+		// Run
+		Session session = sqliteSession.setDirtyChecking(true);
+
+		// Verify
+		verify(mockSqliteTemplate).setDirtyChecking(true);
+		assertEquals("Session returned from setDirtyChecking should be the same Session instance", sqliteSession, session);
+	}
+
+	@Test
+	public void testSave_unitOfWork_deferredUntilFlush() {
+		// Setup
+		FooModel foo = new FooModel();
+		when(mockSqliteTemplate.saveAll(any(List.class))).thenReturn(new long[] { FOO_MODEL_ID });
+		when(mockPersistencePolicy.getPrimaryKey(foo)).thenReturn(FOO_MODEL_ID);
+		sqliteSession.setUnitOfWork(true);
+
+		// Run
+		long id = sqliteSession.save(foo);
+
+		// Verify
+		verify(mockSqliteTemplate, times(0)).save(foo);
+		verify(mockSqliteTemplate, times(0)).saveAll(any(List.class));
+		assertEquals("Deferred save should return 0", 0, id);
+
+		// Run
+		Session session = sqliteSession.flush();
+
+		// Verify
+		verify(mockSqliteTemplate).saveAll(Arrays.asList(foo));
+		verify(mockSessionCache).put(FooModel.class, (Serializable) FOO_MODEL_ID, foo);
+		assertEquals("Session returned from flush should be the same Session instance", sqliteSession, session);
+	}
+
+	@Test
+	public void testUpdate_unitOfWork_collapsed() {
+		// Setup
+		FooModel foo = new FooModel();
+		when(mockSqliteTemplate.update(foo)).thenReturn(true);
+		sqliteSession.setUnitOfWork(true);
+
+		// Run
+		sqliteSession.update(foo);
+		sqliteSession.update(foo);
+		sqliteSession.commit();
+
+		// Verify
+		verify(mockSqliteTemplate, times(1)).update(foo);
+		verify(mockSqliteTemplate).commit();
+	}
+
+	@Test
+	public void testDelete_unitOfWork_pendingSaveDiscarded() {
+		// Setup
+		FooModel foo = new FooModel();
+		sqliteSession.setUnitOfWork(true);
+
+		// Run
+		sqliteSession.save(foo);
+		sqliteSession.delete(foo);
+		sqliteSession.flush();
+
+		// Verify
+		verify(mockSqliteTemplate, times(0)).saveAll(any(List.class));
+		verify(mockSqliteTemplate, times(0)).deleteAll(any(List.class));
+	}
+
+	@Test
+	public void testSave_unitOfWork_afterDelete_savesOrUpdates() {
+		// Setup
+		FooModel foo = new FooModel();
+		when(mockSqliteTemplate.saveOrUpdate(foo)).thenReturn(0L);
+		sqliteSession.setUnitOfWork(true);
+
+		// Run
+		sqliteSession.delete(foo);
+		sqliteSession.save(foo);
+		sqliteSession.flush();
+
+		// Verify
+		verify(mockSqliteTemplate).saveOrUpdate(foo);
+		verify(mockSqliteTemplate, times(0)).saveAll(any(List.class));
+		verify(mockSqliteTemplate, times(0)).deleteAll(any(List.class));
+	}
+
+	@Test
+	public void testSave_unitOfWork_afterUpdate_updates() {
+		// Setup
+		FooModel foo = new FooModel();
+		when(mockSqliteTemplate.update(foo)).thenReturn(true);
+		sqliteSession.setUnitOfWork(true);
+
+		// Run
+		sqliteSession.update(foo);
+		sqliteSession.save(foo);
+		sqliteSession.flush();
+
+		// Verify
+		verify(mockSqliteTemplate).update(foo);
+		verify(mockSqliteTemplate, times(0)).saveAll(any(List.class));
+	}
+
+	@Test
+	public void testSave_unitOfWork_afterSaveOrUpdate_savesOrUpdates() {
+		// Setup
+		FooModel foo = new FooModel();
+		when(mockSqliteTemplate.saveOrUpdate(foo)).thenReturn(0L);
+		sqliteSession.setUnitOfWork(true);
+
+		// Run
+		sqliteSession.saveOrUpdate(foo);
+		sqliteSession.save(foo);
+		sqliteSession.flush();
+
+		// Verify
+		verify(mockSqliteTemplate).saveOrUpdate(foo);
+		verify(mockSqliteTemplate, times(0)).saveAll(any(List.class));
+	}
+
+	@Test
+	public void testFlush_unitOfWork_failureKeepsPending() {
+		// Setup
+		FooModel foo = new FooModel();
+		when(mockSqliteTemplate.update(foo)).thenThrow(new InfinitumRuntimeException("Update failed"));
+		sqliteSession.setUnitOfWork(true);
+		sqliteSession.update(foo);
+
+		// Run
+		try {
+			sqliteSession.flush();
+			fail("Failed flush should rethrow the write's exception");
+		} catch (InfinitumRuntimeException e) {
+			// Expected
+		}
+
+		// Verify
+		verify(mockSqliteTemplate).beginNestedTransaction();
+		verify(mockSqliteTemplate).endNestedTransaction(false);
+
+		// Setup
+		doReturn(true).when(mockSqliteTemplate).update(foo);
+
+		// Run
+		sqliteSession.flush();
+
+		// Verify
+		verify(mockSqliteTemplate, times(2)).update(foo);
+		verify(mockSqliteTemplate).endNestedTransaction(true);
+	}
+
+	@Test
+	public void testRollback_unitOfWork_pendingDiscarded() {
+		// Setup
+		FooModel foo = new FooModel();
+		sqliteSession.setUnitOfWork(true);
+		sqliteSession.update(foo);
+
+		// Run
+		sqliteSession.rollback();
+		sqliteSession.flush();
+
+		// Verify
+		verify(mockSqliteTemplate).rollback();
+		verify(mockSqliteTemplate, times(0)).update(foo);
+	}
+
+	@Test
+	public void testSetUnitOfWork_disable_flushes() {
+		// Setup
+		FooModel foo = new FooModel();
+		when(mockSqliteTemplate.deleteAll(any(List.class))).thenReturn(1);
+		sqliteSession.setUnitOfWork(true);
+		sqliteSession.delete(foo);
+
+		// Run
+		sqliteSession.setUnitOfWork(false);
+
+		// Verify
+		verify(mockSqliteTemplate).deleteAll(Arrays.asList(foo));
+		assertFalse("Unit-of-work mode should be disabled", sqliteSession.isUnitOfWork());
+	}
+
 	@Test
 	public void testIsAutocommit() {
 		// Setup
@@ -637,43 +934,59 @@ public class SqliteSessionTest {
 	public void testCache_success() {
 		// Setup
 		FooModel foo = new FooModel();
-		when(mockSessionCache.size()).thenReturn(0);
 
 		// Run
-		boolean success = sqliteSession.cache(FOO_MODEL_HASH, foo);
+		boolean success = sqliteSession.cache(FooModel.class, FOO_MODEL_ID, foo);
 
 		// Verify
-		verify(mockSessionCache).size();
-		verify(mockSessionCache).put(FOO_MODEL_HASH, foo);
+		verify(mockSessionCache).put(FooModel.class, FOO_MODEL_ID, foo);
 		assertTrue("Cache should have been successful", success);
 	}
 
 	@Test
-	public void testCache_fail() {
+	public void testCache_full() {
 		// Setup
 		FooModel foo = new FooModel();
 		when(mockSessionCache.size()).thenReturn(Session.DEFAULT_CACHE_SIZE);
 
 		// Run
-		boolean success = sqliteSession.cache(FOO_MODEL_HASH, foo);
+		boolean success = sqliteSession.cache(FooModel.class, FOO_MODEL_ID, foo);
+
+		// Verify
+		verify(mockSessionCache).put(FooModel.class, FOO_MODEL_ID, foo);
+		assertTrue("Full cache should evict rather than reject", success);
+		assertEquals("No rejected put should be recorded", 0,
+				sqliteSession.getCacheStatistics().getRejectedPutCount(FooModel.class));
+	}
+
+	@Test
+	public void testCache_fail() {
+		// Setup
+		FooModel foo = new FooModel();
+		sqliteSession.setCacheSize(0);
+
+		// Run
+		boolean success = sqliteSession.cache(FooModel.class, FOO_MODEL_ID, foo);
 
 		// Verify
-		verify(mockSessionCache).size();
-		verify(mockSessionCache, times(0)).put(FOO_MODEL_HASH, foo);
+		verify(mockSessionCache, times(0)).put(FooModel.class, FOO_MODEL_ID, foo);
 		assertFalse("Cache should have been unsuccessful", success);
+		assertEquals("Rejected put should be recorded", 1,
+				sqliteSession.getCacheStatistics().getRejectedPutCount(FooModel.class));
 	}
 
 	@Test
 	public void testCheckCache() {
 		// Setup
-		when(mockSessionCache.containsKey(FOO_MODEL_HASH)).thenReturn(true);
+		when(mockSessionCache.contains(FooModel.class, FOO_MODEL_ID)).thenReturn(true);
 
 		// Run
-		boolean cached = sqliteSession.checkCache(FOO_MODEL_HASH);
+		boolean cached = sqliteSession.checkCache(FooModel.class, FOO_MODEL_ID);
 
 		// Verify
-		verify(mockSessionCache).containsKey(FOO_MODEL_HASH);
+		verify(mockSessionCache).contains(FooModel.class, FOO_MODEL_ID);
 		assertTrue("Cache should contain key", cached);
+		assertEquals("Hit should be recorded", 1, sqliteSession.getCacheStatistics().getHitCount(FooModel.class));
 	}
 
 	@Test
@@ -681,14 +994,32 @@ public class SqliteSessionTest {
 		// Setup
 		FooModel foo = new FooModel();
 		foo.id = FOO_MODEL_ID;
-		when(mockSessionCache.get(FOO_MODEL_HASH)).thenReturn(foo);
+		when(mockSessionCache.get(FooModel.class, FOO_MODEL_ID)).thenReturn(foo);
 
 		// Run
-		FooModel actual = (FooModel) sqliteSession.searchCache(FOO_MODEL_HASH);
+		FooModel actual = (FooModel) sqliteSession.searchCache(FooModel.class, FOO_MODEL_ID);
 
 		// Verify
-		verify(mockSessionCache).get(FOO_MODEL_HASH);
+		verify(mockSessionCache).get(FooModel.class, FOO_MODEL_ID);
 		assertEquals("Cached object ID should be the same as the expected object ID", foo.id, actual.id);
+		assertEquals("Hit should be recorded", 1, sqliteSession.getCacheStatistics().getHitCount(FooModel.class));
+	}
+
+	@Test
+	public void testGetCacheStatistics() {
+		// Setup
+		when(mockSessionCache.get(FooModel.class, FOO_MODEL_ID)).thenReturn(null);
+		sqliteSession.searchCache(FooModel.class, FOO_MODEL_ID);
+
+		// Run
+		CacheStatistics statistics = sqliteSession.getCacheStatistics();
+
+		// Verify
+		assertEquals("Miss should be recorded", 1, statistics.getMissCount());
+		assertEquals("Miss should be recorded by class", 1, statistics.getMissCount(FooModel.class));
+		assertEquals("Other classes should not have misses", 0, statistics.getMissCount(BarModel.class));
+		statistics.reset();
+		assertEquals("Misses should be reset", 0, statistics.getMissCount());
 	}
 
 	@Test
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.sqlite.impl;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import com.xtremelabs.robolectric.RobolectricTestRunner;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class SqliteStatementCacheTest {
+
+    private static final String SQL_A = "INSERT INTO foo (bar) VALUES (?)";
+    private static final String SQL_B = "INSERT INTO foo (baz) VALUES (?)";
+    private static final String SQL_C = "UPDATE foo SET bar = ? WHERE id = ?";
+
+    @Mock
+    private SQLiteDatabase mockSqliteDb;
+
+    @Mock
+    private SQLiteStatement mockStatementA;
+
+    @Mock
+    private SQLiteStatement mockStatementB;
+
+    @Mock
+    private SQLiteStatement mockStatementC;
+
+    private SqliteStatementCache statementCache;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        when(mockSqliteDb.compileStatement(SQL_A)).thenReturn(mockStatementA);
+        when(mockSqliteDb.compileStatement(SQL_B)).thenReturn(mockStatementB);
+        when(mockSqliteDb.compileStatement(SQL_C)).thenReturn(mockStatementC);
+        statementCache = new SqliteStatementCache(2);
+        statementCache.setDatabase(mockSqliteDb);
+    }
+
+    @Test
+    public void testGetStatement_hit() {
+        // Run
+        SQLiteStatement first = statementCache.getStatement(SQL_A);
+        SQLiteStatement second = statementCache.getStatement(SQL_A);
+
+        // Verify
+        verify(mockSqliteDb).compileStatement(SQL_A);
+        assertSame("Cached statement should be returned", first, second);
+        assertEquals("Hit count should be 1", 1, statementCache.getHitCount());
+        assertEquals("Miss count should be 1", 1, statementCache.getMissCount());
+    }
+
+    @Test
+    public void testGetStatement_evictsLeastRecentlyUsed() {
+        // Run
+        statementCache.getStatement(SQL_A);
+        statementCache.getStatement(SQL_B);
+        statementCache.getStatement(SQL_A);
+        statementCache.getStatement(SQL_C);
+
+        // Verify
+        verify(mockStatementB).close();
+        verify(mockStatementA, times(0)).close();
+        assertEquals("Cache should be at its maximum size", 2, statementCache.size());
+    }
+
+    @Test
+    public void testSetMaxSize_shrink() {
+        // Setup
+        statementCache.getStatement(SQL_A);
+        statementCache.getStatement(SQL_B);
+
+        // Run
+        statementCache.setMaxSize(1);
+
+        // Verify
+        verify(mockStatementA).close();
+        verify(mockStatementB, times(0)).close();
+        assertEquals("Cache should be shrunk to its new maximum size", 1, statementCache.size());
+    }
+
+    @Test
+    public void testClear() {
+        // Setup
+        statementCache.getStatement(SQL_A);
+        statementCache.getStatement(SQL_B);
+
+        // Run
+        statementCache.clear();
+
+        // Verify
+        verify(mockStatementA).close();
+        verify(mockStatementB).close();
+        assertEquals("Cache should be empty", 0, statementCache.size());
+        assertEquals("Miss count should be retained", 2, statementCache.getMissCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testGetStatement_noDatabase() {
+        // Setup
+        statementCache.clear();
+
+        // Run
+        statementCache.getStatement(SQL_A);
+    }
+
+}
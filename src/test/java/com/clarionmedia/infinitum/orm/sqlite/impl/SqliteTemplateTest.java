@@ -20,20 +20,29 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.Serializable;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Stack;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
@@ -42,6 +51,7 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 
 import com.clarionmedia.infinitum.exception.InfinitumRuntimeException;
 import com.clarionmedia.infinitum.internal.Pair;
@@ -49,8 +59,11 @@ import com.clarionmedia.infinitum.logging.Logger;
 import com.clarionmedia.infinitum.orm.ModelFactory;
 import com.clarionmedia.infinitum.orm.context.InfinitumOrmContext;
 import com.clarionmedia.infinitum.orm.criteria.Criteria;
+import com.clarionmedia.infinitum.orm.internal.IdentityMap;
+import com.clarionmedia.infinitum.orm.internal.bind.SqliteTypeAdapters;
 import com.clarionmedia.infinitum.orm.persistence.PersistencePolicy;
 import com.clarionmedia.infinitum.orm.persistence.PersistencePolicy.Cascade;
+import com.clarionmedia.infinitum.orm.persistence.TypeResolutionPolicy.SqliteDataType;
 import com.clarionmedia.infinitum.orm.relationship.ManyToManyRelationship;
 import com.clarionmedia.infinitum.orm.relationship.ManyToOneRelationship;
 import com.clarionmedia.infinitum.orm.relationship.OneToManyRelationship;
@@ -85,7 +98,7 @@ public class SqliteTemplateTest {
 	private Context mockContext;
 	
 	@Mock
-	private Map<Integer, Object> mockSessionCache;
+	private IdentityMap mockSnapshots;
 	
 	@Mock
 	private Criteria<FooModel> mockFooCriteria;
@@ -129,6 +142,12 @@ public class SqliteTemplateTest {
 	@Mock
 	private SqlBuilder mockSqlBuilder;
 	
+	@Mock
+	private SqliteSecondLevelCache mockSecondLevelCache;
+	
+	@Mock
+	private SqliteQueryCache mockQueryCache;
+	
 	private Field mockFooPkField;
 	private Field mockBarPkField;
 	private FooModel foo;
@@ -211,6 +230,33 @@ public class SqliteTemplateTest {
 		verify(mockDbHelper).close();
 	}
 	
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testSave_reusesCachedStatement() {
+		// Setup
+		final String INSERT_SQL = "INSERT INTO foo DEFAULT VALUES";
+		SQLiteStatement mockStatement = mock(SQLiteStatement.class);
+		when(mockPersistencePolicy.isPersistent(FooModel.class)).thenReturn(true);
+		when(mockPersistencePolicy.getCascadeMode(FooModel.class)).thenReturn(Cascade.NONE);
+		when(mockSqlBuilder.createInsertStatement(eq(FOO_MODEL_TABLE), any(List.class))).thenReturn(INSERT_SQL);
+		when(mockSqliteDb.compileStatement(INSERT_SQL)).thenReturn(mockStatement);
+		when(mockStatement.executeInsert()).thenReturn(FOO_MODEL_ID);
+
+		// Run
+		sqliteTemplate.save(foo);
+		sqliteTemplate.save(foo);
+		sqliteTemplate.close();
+
+		// Verify
+		verify(mockSqliteDb).compileStatement(INSERT_SQL);
+		verify(mockStatement, times(2)).executeInsert();
+		verify(mockStatement).close();
+		assertEquals("Second save should be served from the statement cache", 1,
+				sqliteTemplate.getStatementCache().getHitCount());
+		assertEquals("First save should compile the statement", 1, sqliteTemplate.getStatementCache().getMissCount());
+		assertEquals("Closing should clear the statement cache", 0, sqliteTemplate.getStatementCache().size());
+	}
+
 	@Test
 	public void testBeginTransaction_autocommitEnabled() {
 	    // Setup
@@ -302,6 +348,40 @@ public class SqliteTemplateTest {
 		// Verify
 		verify(mockSqliteDb).endTransaction();
 		verify(mockTransactionStack).pop();
+		verify(mockSecondLevelCache).clear();
+		verify(mockQueryCache).invalidateAll();
+		verify(mockSnapshots).clear();
+	}
+
+	@Test
+	public void testUpdate_afterRollback_updateIssued() {
+		// Setup
+		final String WHERE_CLAUSE = "id = ?";
+		final String[] WHERE_ARGS = new String[] { String.valueOf(FOO_MODEL_ID) };
+		ContentValues values = new ContentValues();
+		values.put("name", "foo");
+		ContentValues snapshot = new ContentValues();
+		snapshot.put("name", "foo");
+		sqliteTemplate.setDirtyChecking(true);
+		sqliteTemplate.mSnapshots = new IdentityMap(10);
+		sqliteTemplate.mSnapshots.put(FooModel.class, Long.valueOf(FOO_MODEL_ID), snapshot);
+		when(mockTransactionStack.size()).thenReturn(1);
+		when(mockPersistencePolicy.isPersistent(FooModel.class)).thenReturn(true);
+		when(mockPersistencePolicy.getCascadeMode(FooModel.class)).thenReturn(Cascade.NONE);
+		when(mockFooModelMap.getContentValues()).thenReturn(values);
+		when(mockSqliteUtil.getPreparedWhereClause(FooModel.class)).thenReturn(WHERE_CLAUSE);
+		when(mockSqliteUtil.getWhereArgs(foo)).thenReturn(WHERE_ARGS);
+		when(mockSqliteDb.update(eq(FOO_MODEL_TABLE), any(ContentValues.class), eq(WHERE_CLAUSE),
+				eq(WHERE_ARGS))).thenReturn(1);
+
+		// Run
+		sqliteTemplate.rollback();
+		boolean actual = sqliteTemplate.update(foo);
+
+		// Verify
+		verify(mockSqliteDb).update(eq(FOO_MODEL_TABLE), any(ContentValues.class), eq(WHERE_CLAUSE),
+				eq(WHERE_ARGS));
+		assertTrue("Updating a model after a rollback should succeed", actual);
 	}
 	
 	@Test(expected = InfinitumRuntimeException.class)
@@ -330,14 +410,19 @@ public class SqliteTemplateTest {
 		assertTrue("Saving with autocommit disabled and no transaction should have thrown an exception", false);
 	}
 	
+	@SuppressWarnings("unchecked")
 	@Test
 	public void testSave_cascadeOff_success() {
 		// Setup
+		final String INSERT_SQL = "INSERT INTO foo DEFAULT VALUES";
+		SQLiteStatement mockStatement = mock(SQLiteStatement.class);
 		when(mockPersistencePolicy.isPersistent(FooModel.class)).thenReturn(true);
 		when(mockPersistencePolicy.computeModelHash(foo)).thenReturn(FOO_MODEL_HASH);
 		when(mockSqliteMapper.mapModel(foo)).thenReturn(mockFooModelMap);
 		when(mockPersistencePolicy.getModelTableName(FooModel.class)).thenReturn(FOO_MODEL_TABLE);
-		when(mockSqliteDb.insert(FOO_MODEL_TABLE, null, mockContentValues)).thenReturn(FOO_MODEL_ID);
+		when(mockSqlBuilder.createInsertStatement(eq(FOO_MODEL_TABLE), any(List.class))).thenReturn(INSERT_SQL);
+		when(mockSqliteDb.compileStatement(INSERT_SQL)).thenReturn(mockStatement);
+		when(mockStatement.executeInsert()).thenReturn(FOO_MODEL_ID);
 		when(mockPersistencePolicy.getCascadeMode(FooModel.class)).thenReturn(Cascade.NONE);
 		
 		// Run
@@ -348,7 +433,7 @@ public class SqliteTemplateTest {
 		verify(mockPersistencePolicy, times(2)).computeModelHash(foo);
 		verify(mockSqliteMapper).mapModel(foo);
 		verify(mockPersistencePolicy).getModelTableName(FooModel.class);
-		verify(mockSqliteDb).insert(FOO_MODEL_TABLE, null, mockContentValues);
+		verify(mockStatement).executeInsert();
 		verify(mockPersistencePolicy).getCascadeMode(FooModel.class);
 		assertEquals("ID returned by save should be equal to the expected ID", FOO_MODEL_ID, actualId);
 	}
@@ -357,6 +442,8 @@ public class SqliteTemplateTest {
 	@Test
 	public void testSave_noRelationships_success() {
 		// Setup
+		final String INSERT_SQL = "INSERT INTO foo DEFAULT VALUES";
+		SQLiteStatement mockStatement = mock(SQLiteStatement.class);
 		List<Pair<ManyToManyRelationship, Iterable<Object>>> mtmRels = new ArrayList<Pair<ManyToManyRelationship, Iterable<Object>>>();
 		List<Pair<ManyToOneRelationship, Object>> mtoRels = new ArrayList<Pair<ManyToOneRelationship, Object>>();
 		List<Pair<OneToManyRelationship, Iterable<Object>>> otmRels = new ArrayList<Pair<OneToManyRelationship, Iterable<Object>>>();
@@ -365,7 +452,9 @@ public class SqliteTemplateTest {
 		when(mockPersistencePolicy.computeModelHash(foo)).thenReturn(FOO_MODEL_HASH);
 		when(mockSqliteMapper.mapModel(foo)).thenReturn(mockFooModelMap);
 		when(mockPersistencePolicy.getModelTableName(FooModel.class)).thenReturn(FOO_MODEL_TABLE);
-		when(mockSqliteDb.insert(FOO_MODEL_TABLE, null, mockContentValues)).thenReturn(FOO_MODEL_ID);
+		when(mockSqlBuilder.createInsertStatement(eq(FOO_MODEL_TABLE), any(List.class))).thenReturn(INSERT_SQL);
+		when(mockSqliteDb.compileStatement(INSERT_SQL)).thenReturn(mockStatement);
+		when(mockStatement.executeInsert()).thenReturn(FOO_MODEL_ID);
 		when(mockPersistencePolicy.getCascadeMode(FooModel.class)).thenReturn(Cascade.ALL);
 		when(mockFooModelMap.getManyToManyRelationships()).thenReturn(mtmRels);
 		when(mockFooModelMap.getManyToOneRelationships()).thenReturn(mtoRels);
@@ -380,7 +469,7 @@ public class SqliteTemplateTest {
 		verify(mockPersistencePolicy, times(2)).computeModelHash(foo);
 		verify(mockSqliteMapper).mapModel(foo);
 		verify(mockPersistencePolicy).getModelTableName(FooModel.class);
-		verify(mockSqliteDb).insert(FOO_MODEL_TABLE, null, mockContentValues);
+		verify(mockStatement).executeInsert();
 		verify(mockPersistencePolicy).getCascadeMode(FooModel.class);
 		verify(mockFooModelMap).getManyToManyRelationships();
 		verify(mockFooModelMap).getOneToManyRelationships();
@@ -399,6 +488,8 @@ public class SqliteTemplateTest {
 	@Test
 	public void testSave_noRelationships_fail() {
 		// Setup
+		final String INSERT_SQL = "INSERT INTO foo DEFAULT VALUES";
+		SQLiteStatement mockStatement = mock(SQLiteStatement.class);
 		List<Pair<ManyToManyRelationship, Iterable<Object>>> mtmRels = new ArrayList<Pair<ManyToManyRelationship, Iterable<Object>>>();
 		List<Pair<ManyToOneRelationship, Object>> mtoRels = new ArrayList<Pair<ManyToOneRelationship, Object>>();
 		List<Pair<OneToManyRelationship, Iterable<Object>>> otmRels = new ArrayList<Pair<OneToManyRelationship, Iterable<Object>>>();
@@ -407,7 +498,9 @@ public class SqliteTemplateTest {
 		when(mockPersistencePolicy.computeModelHash(foo)).thenReturn(FOO_MODEL_HASH);
 		when(mockSqliteMapper.mapModel(foo)).thenReturn(mockFooModelMap);
 		when(mockPersistencePolicy.getModelTableName(FooModel.class)).thenReturn(FOO_MODEL_TABLE);
-		when(mockSqliteDb.insert(FOO_MODEL_TABLE, null, mockContentValues)).thenReturn((long) -1);
+		when(mockSqlBuilder.createInsertStatement(eq(FOO_MODEL_TABLE), any(List.class))).thenReturn(INSERT_SQL);
+		when(mockSqliteDb.compileStatement(INSERT_SQL)).thenReturn(mockStatement);
+		when(mockStatement.executeInsert()).thenReturn((long) -1);
 		when(mockPersistencePolicy.getCascadeMode(FooModel.class)).thenReturn(Cascade.ALL);
 		when(mockFooModelMap.getManyToManyRelationships()).thenReturn(mtmRels);
 		when(mockFooModelMap.getManyToOneRelationships()).thenReturn(mtoRels);
@@ -422,12 +515,12 @@ public class SqliteTemplateTest {
 		verify(mockPersistencePolicy).computeModelHash(foo);
 		verify(mockSqliteMapper).mapModel(foo);
 		verify(mockPersistencePolicy).getModelTableName(FooModel.class);
-		verify(mockSqliteDb).insert(FOO_MODEL_TABLE, null, mockContentValues);
-		verify(mockPersistencePolicy, times(0)).getCascadeMode(FooModel.class);
-		verify(mockFooModelMap, times(0)).getManyToManyRelationships();
-		verify(mockFooModelMap, times(0)).getOneToManyRelationships();
-		verify(mockFooModelMap, times(0)).getManyToOneRelationships();
-		verify(mockFooModelMap, times(0)).getOneToOneRelationships();
+		verify(mockStatement).executeInsert();
+		verify(mockPersistencePolicy).getCascadeMode(FooModel.class);
+		verify(mockFooModelMap).getManyToManyRelationships();
+		verify(mockFooModelMap).getOneToManyRelationships();
+		verify(mockFooModelMap).getManyToOneRelationships();
+		verify(mockFooModelMap).getOneToOneRelationships();
 		verify(mockPersistencePolicy, times(0)).isPKNullOrZero(any(Object.class));
 		verify(mockSqlBuilder, times(0)).createDeleteStaleRelationshipQuery(any(ManyToManyRelationship.class), any(Object.class), any(List.class));
 		verify(mockSqlBuilder, times(0)).createUpdateForeignKeyQuery(any(OneToManyRelationship.class), any(Object.class), any(List.class));
@@ -437,6 +530,419 @@ public class SqliteTemplateTest {
 		assertEquals("ID returned by save should be -1", -1, actualId);
 	}
 	
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testSave_manyToOneRelationship_foreignKeyInserted() {
+		// Setup
+		final String FOO_INSERT_SQL = "INSERT INTO foo (name, bar_id) VALUES (?, ?)";
+		final String BAR_INSERT_SQL = "INSERT INTO bar (name) VALUES (?)";
+		final long BAR_MODEL_ID = 7;
+		ContentValues fooValues = new ContentValues();
+		fooValues.put("name", "foo");
+		ContentValues barValues = new ContentValues();
+		barValues.put("name", "bar");
+		ManyToOneRelationship mockRelationship = mock(ManyToOneRelationship.class);
+		List<Pair<ManyToOneRelationship, Object>> mtoRels = new ArrayList<Pair<ManyToOneRelationship, Object>>();
+		mtoRels.add(new Pair<ManyToOneRelationship, Object>(mockRelationship, bar));
+		SQLiteStatement mockFooStatement = mock(SQLiteStatement.class);
+		SQLiteStatement mockBarStatement = mock(SQLiteStatement.class);
+		when(mockPersistencePolicy.isPersistent(FooModel.class)).thenReturn(true);
+		when(mockPersistencePolicy.getCascadeMode(FooModel.class)).thenReturn(Cascade.ALL);
+		when(mockPersistencePolicy.getCascadeMode(BarModel.class)).thenReturn(Cascade.NONE);
+		when(mockPersistencePolicy.getPrimaryKey(bar)).thenReturn(BAR_MODEL_ID);
+		when(mockRelationship.getColumn()).thenReturn("bar_id");
+		when(mockFooModelMap.getContentValues()).thenReturn(fooValues);
+		when(mockFooModelMap.getManyToOneRelationships()).thenReturn(mtoRels);
+		when(mockBarModelMap.getContentValues()).thenReturn(barValues);
+		when(mockSqliteMapper.getSqliteDataType(mockBarPkField)).thenReturn(SqliteDataType.INTEGER);
+		when(mockSqlBuilder.createInsertStatement(eq(FOO_MODEL_TABLE), any(List.class))).thenReturn(FOO_INSERT_SQL);
+		when(mockSqlBuilder.createInsertStatement(eq(BAR_MODEL_TABLE), any(List.class))).thenReturn(BAR_INSERT_SQL);
+		when(mockSqliteDb.compileStatement(FOO_INSERT_SQL)).thenReturn(mockFooStatement);
+		when(mockSqliteDb.compileStatement(BAR_INSERT_SQL)).thenReturn(mockBarStatement);
+		when(mockFooStatement.executeInsert()).thenReturn(FOO_MODEL_ID);
+		when(mockBarStatement.executeInsert()).thenReturn(BAR_MODEL_ID);
+
+		// Run
+		long actualId = sqliteTemplate.save(foo);
+
+		// Verify
+		InOrder inOrder = inOrder(mockBarStatement, mockFooStatement);
+		inOrder.verify(mockBarStatement).executeInsert();
+		inOrder.verify(mockFooStatement).executeInsert();
+		verify(mockFooStatement).bindLong(anyInt(), eq(BAR_MODEL_ID));
+		verify(mockSqliteDb).beginTransaction();
+		verify(mockSqliteDb).setTransactionSuccessful();
+		verify(mockSqliteDb, times(0)).execSQL(any(String.class));
+		verify(mockSqlBuilder, times(0)).createUpdateForeignKeyStatement(any(Class.class), any(String.class),
+				anyInt());
+		assertEquals("Foreign key should be written with the model's row", BAR_MODEL_ID, fooValues.get("bar_id"));
+		assertEquals("ID returned by save should be equal to the expected ID", FOO_MODEL_ID, actualId);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testSave_cascadeFailsInTransaction_enclosingTransactionKept() {
+		// Setup
+		final String FOO_INSERT_SQL = "INSERT INTO foo (name, bar_id) VALUES (?, ?)";
+		final String BAR_INSERT_SQL = "INSERT INTO bar (name) VALUES (?)";
+		final long BAR_MODEL_ID = 7;
+		ContentValues fooValues = new ContentValues();
+		fooValues.put("name", "foo");
+		ContentValues barValues = new ContentValues();
+		barValues.put("name", "bar");
+		ManyToOneRelationship mockRelationship = mock(ManyToOneRelationship.class);
+		List<Pair<ManyToOneRelationship, Object>> mtoRels = new ArrayList<Pair<ManyToOneRelationship, Object>>();
+		mtoRels.add(new Pair<ManyToOneRelationship, Object>(mockRelationship, bar));
+		SQLiteStatement mockFooStatement = mock(SQLiteStatement.class);
+		SQLiteStatement mockBarStatement = mock(SQLiteStatement.class);
+		when(mockTransactionStack.size()).thenReturn(1);
+		when(mockPersistencePolicy.isPersistent(FooModel.class)).thenReturn(true);
+		when(mockPersistencePolicy.getCascadeMode(FooModel.class)).thenReturn(Cascade.ALL);
+		when(mockPersistencePolicy.getCascadeMode(BarModel.class)).thenReturn(Cascade.NONE);
+		when(mockPersistencePolicy.getPrimaryKey(bar)).thenReturn(BAR_MODEL_ID);
+		when(mockRelationship.getColumn()).thenReturn("bar_id");
+		when(mockFooModelMap.getContentValues()).thenReturn(fooValues);
+		when(mockFooModelMap.getManyToOneRelationships()).thenReturn(mtoRels);
+		when(mockBarModelMap.getContentValues()).thenReturn(barValues);
+		when(mockSqliteMapper.getSqliteDataType(mockBarPkField)).thenReturn(SqliteDataType.INTEGER);
+		when(mockSqlBuilder.createInsertStatement(eq(FOO_MODEL_TABLE), any(List.class))).thenReturn(FOO_INSERT_SQL);
+		when(mockSqlBuilder.createInsertStatement(eq(BAR_MODEL_TABLE), any(List.class))).thenReturn(BAR_INSERT_SQL);
+		when(mockSqliteDb.compileStatement(FOO_INSERT_SQL)).thenReturn(mockFooStatement);
+		when(mockSqliteDb.compileStatement(BAR_INSERT_SQL)).thenReturn(mockBarStatement);
+		when(mockFooStatement.executeInsert()).thenReturn(-1L);
+		when(mockBarStatement.executeInsert()).thenReturn(BAR_MODEL_ID);
+
+		// Run
+		long actualId = sqliteTemplate.save(foo);
+
+		// Verify
+		verify(mockSqliteDb, times(0)).beginTransaction();
+		verify(mockSqliteDb, times(0)).endTransaction();
+		assertEquals("save should report the failed root", -1, actualId);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testSave_manyToManyRelationship_joinRowsDiffed() {
+		// Setup
+		final String INSERT_SQL = "INSERT INTO foo DEFAULT VALUES";
+		final String KEYS_SQL = "SELECT bar_id_2 FROM foo_bar WHERE foo_id_1 = ?";
+		final String JOIN_INSERT_SQL = "INSERT OR IGNORE INTO foo_bar (foo_id_1, bar_id_2) SELECT ?, ?";
+		final String JOIN_DELETE_SQL = "DELETE FROM foo_bar WHERE foo_id_1 = ? AND bar_id_2 IN (?)";
+		BarModel otherBar = new BarModel();
+		ManyToManyRelationship mockRelationship = mock(ManyToManyRelationship.class);
+		List<Pair<ManyToManyRelationship, Iterable<Object>>> mtmRels = new ArrayList<Pair<ManyToManyRelationship, Iterable<Object>>>();
+		mtmRels.add(new Pair<ManyToManyRelationship, Iterable<Object>>(mockRelationship, Arrays.<Object> asList(bar,
+				otherBar)));
+		SQLiteStatement mockStatement = mock(SQLiteStatement.class);
+		SQLiteStatement mockJoinInsertStatement = mock(SQLiteStatement.class);
+		SQLiteStatement mockJoinDeleteStatement = mock(SQLiteStatement.class);
+		when(mockPersistencePolicy.isPersistent(FooModel.class)).thenReturn(true);
+		when(mockPersistencePolicy.getCascadeMode(FooModel.class)).thenReturn(Cascade.KEYS);
+		when(mockFooModelMap.getManyToManyRelationships()).thenReturn(mtmRels);
+		doReturn(FooModel.class).when(mockRelationship).getFirstType();
+		doReturn(BarModel.class).when(mockRelationship).getSecondType();
+		when(mockRelationship.getFirstField()).thenReturn(mockFooPkField);
+		when(mockRelationship.getSecondField()).thenReturn(mockBarPkField);
+		when(mockClassReflector.getFieldValue(foo, mockFooPkField)).thenReturn(FOO_MODEL_ID);
+		when(mockClassReflector.getFieldValue(bar, mockBarPkField)).thenReturn(7L);
+		when(mockClassReflector.getFieldValue(otherBar, mockBarPkField)).thenReturn(8L);
+		when(mockSqlBuilder.createInsertStatement(eq(FOO_MODEL_TABLE), any(List.class))).thenReturn(INSERT_SQL);
+		when(mockSqlBuilder.createManyToManyKeysQuery(FooModel.class, mockRelationship)).thenReturn(KEYS_SQL);
+		when(mockSqlBuilder.createManyToManyInsertStatement(mockRelationship, 1)).thenReturn(JOIN_INSERT_SQL);
+		when(mockSqlBuilder.createManyToManyDeleteStatement(FooModel.class, mockRelationship, 1)).thenReturn(
+				JOIN_DELETE_SQL);
+		when(mockSqliteDb.compileStatement(INSERT_SQL)).thenReturn(mockStatement);
+		when(mockSqliteDb.compileStatement(JOIN_INSERT_SQL)).thenReturn(mockJoinInsertStatement);
+		when(mockSqliteDb.compileStatement(JOIN_DELETE_SQL)).thenReturn(mockJoinDeleteStatement);
+		when(mockStatement.executeInsert()).thenReturn(FOO_MODEL_ID);
+		when(mockSqliteDb.rawQuery(eq(KEYS_SQL), any(String[].class))).thenReturn(mockCursor);
+		when(mockCursor.moveToNext()).thenReturn(true, true, false);
+		when(mockCursor.getString(0)).thenReturn("8", "9");
+
+		// Run
+		sqliteTemplate.save(foo);
+
+		// Verify
+		verify(mockSqliteDb).rawQuery(KEYS_SQL, new String[] { String.valueOf(FOO_MODEL_ID) });
+		verify(mockCursor).close();
+		verify(mockJoinInsertStatement).bindLong(1, FOO_MODEL_ID);
+		verify(mockJoinInsertStatement).bindLong(2, 7L);
+		verify(mockJoinInsertStatement).execute();
+		verify(mockJoinDeleteStatement).bindLong(1, FOO_MODEL_ID);
+		verify(mockJoinDeleteStatement).bindString(2, "9");
+		verify(mockJoinDeleteStatement).execute();
+		verify(mockSqliteDb, times(0)).execSQL(any(String.class));
+	}
+
+	@Test
+	public void testSaveAll_cascadeOff_success() throws NoSuchFieldException {
+		// Setup
+		final String INSERT_SQL = "INSERT INTO foo (name) VALUES (?)";
+		List<Object> models = new ArrayList<Object>();
+		models.add(foo);
+		foo.name = "foo";
+		Field nameField = FooModel.class.getField("name");
+		SQLiteStatement mockStatement = mock(SQLiteStatement.class);
+		when(mockPersistencePolicy.isPersistent(FooModel.class)).thenReturn(true);
+		when(mockPersistencePolicy.getCascadeMode(FooModel.class)).thenReturn(Cascade.NONE);
+		when(mockPersistencePolicy.getPersistentFields(FooModel.class)).thenReturn(
+				Arrays.asList(mockFooPkField, nameField));
+		when(mockPersistencePolicy.isFieldPrimaryKey(mockFooPkField)).thenReturn(true);
+		when(mockPersistencePolicy.isPrimaryKeyAutoIncrement(mockFooPkField)).thenReturn(true);
+		when(mockPersistencePolicy.getFieldColumnName(nameField)).thenReturn("name");
+		doReturn(SqliteTypeAdapters.STRING).when(mockSqliteMapper).resolveType(String.class);
+		when(mockSqlBuilder.createInsertStatement(FOO_MODEL_TABLE, Arrays.asList("name"))).thenReturn(INSERT_SQL);
+		when(mockSqliteDb.compileStatement(INSERT_SQL)).thenReturn(mockStatement);
+		when(mockStatement.executeInsert()).thenReturn(FOO_MODEL_ID);
+
+		// Run
+		long[] actualIds = sqliteTemplate.saveAll(models);
+
+		// Verify
+		verify(mockSqliteMapper, times(0)).mapModel(foo);
+		verify(mockSqliteDb).compileStatement(INSERT_SQL);
+		verify(mockSqliteDb).beginTransaction();
+		verify(mockStatement).bindString(1, "foo");
+		verify(mockStatement).executeInsert();
+		verify(mockClassReflector).setFieldValue(foo, mockFooPkField, FOO_MODEL_ID);
+		verify(mockSqliteDb).setTransactionSuccessful();
+		verify(mockSqliteDb).endTransaction();
+		verify(mockStatement, times(0)).close();
+		verify(mockSqliteDb, times(0)).insert(any(String.class), any(String.class), any(ContentValues.class));
+		assertEquals("saveAll should return a row ID for each model", 1, actualIds.length);
+		assertEquals("Row ID returned by saveAll should be equal to the expected ID", FOO_MODEL_ID, actualIds[0]);
+	}
+
+	@Test
+	public void testSaveAll_relationships_mapsModel() throws NoSuchFieldException {
+		// Setup
+		final String INSERT_SQL = "INSERT INTO foo (name) VALUES (?)";
+		List<Object> models = new ArrayList<Object>();
+		models.add(foo);
+		ContentValues values = new ContentValues();
+		values.put("name", "foo");
+		Field relationshipField = FooModel.class.getField("name");
+		SQLiteStatement mockStatement = mock(SQLiteStatement.class);
+		when(mockPersistencePolicy.isPersistent(FooModel.class)).thenReturn(true);
+		when(mockPersistencePolicy.getCascadeMode(FooModel.class)).thenReturn(Cascade.NONE);
+		when(mockPersistencePolicy.getPersistentFields(FooModel.class)).thenReturn(Arrays.asList(relationshipField));
+		when(mockPersistencePolicy.isRelationship(relationshipField)).thenReturn(true);
+		when(mockFooModelMap.getContentValues()).thenReturn(values);
+		when(mockFooModelMap.getModel()).thenReturn(foo);
+		when(mockSqlBuilder.createInsertStatement(FOO_MODEL_TABLE, Arrays.asList("name"))).thenReturn(INSERT_SQL);
+		when(mockSqliteDb.compileStatement(INSERT_SQL)).thenReturn(mockStatement);
+		when(mockStatement.executeInsert()).thenReturn(FOO_MODEL_ID);
+
+		// Run
+		long[] actualIds = sqliteTemplate.saveAll(models);
+
+		// Verify
+		verify(mockSqliteMapper).mapModel(foo);
+		verify(mockStatement).bindString(1, "foo");
+		verify(mockStatement).executeInsert();
+		assertEquals("Row ID returned by saveAll should be equal to the expected ID", FOO_MODEL_ID, actualIds[0]);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testSaveOrUpdate_upsert_inserted() {
+		// Setup
+		final String UPSERT_SQL = "INSERT OR IGNORE INTO foo (name, id) VALUES (?, ?)";
+		ContentValues values = new ContentValues();
+		values.put("name", "foo");
+		SQLiteStatement mockStatement = mock(SQLiteStatement.class);
+		SQLiteStatement mockChangesStatement = mock(SQLiteStatement.class);
+		SQLiteStatement mockRowIdStatement = mock(SQLiteStatement.class);
+		sqliteTemplate.setUpsert(true);
+		when(mockPersistencePolicy.isPersistent(FooModel.class)).thenReturn(true);
+		when(mockPersistencePolicy.isPKNullOrZero(foo)).thenReturn(false);
+		when(mockPersistencePolicy.getCascadeMode(FooModel.class)).thenReturn(Cascade.NONE);
+		when(mockFooModelMap.getContentValues()).thenReturn(values);
+		when(mockSqlBuilder.createUpsertStatement(eq(FOO_MODEL_TABLE), any(List.class))).thenReturn(UPSERT_SQL);
+		when(mockSqliteDb.compileStatement(UPSERT_SQL)).thenReturn(mockStatement);
+		when(mockSqliteDb.compileStatement("SELECT changes()")).thenReturn(mockChangesStatement);
+		when(mockChangesStatement.simpleQueryForLong()).thenReturn(1L);
+		when(mockSqliteDb.compileStatement("SELECT last_insert_rowid()")).thenReturn(mockRowIdStatement);
+		when(mockRowIdStatement.simpleQueryForLong()).thenReturn(FOO_MODEL_ID);
+		when(mockSqliteMapper.getSqliteDataType(mockFooPkField)).thenReturn(SqliteDataType.INTEGER);
+
+		// Run
+		long actual = sqliteTemplate.saveOrUpdate(foo);
+
+		// Verify
+		verify(mockSqliteDb).compileStatement(UPSERT_SQL);
+		verify(mockStatement).bindString(anyInt(), eq("foo"));
+		verify(mockStatement).bindLong(anyInt(), eq(FOO_MODEL_ID));
+		verify(mockStatement).execute();
+		verify(mockStatement, times(0)).close();
+		verify(mockSqliteDb, times(0)).update(any(String.class), any(ContentValues.class), any(String.class),
+				any(String[].class));
+		verify(mockSqliteDb, times(0)).insert(any(String.class), any(String.class), any(ContentValues.class));
+		assertEquals("saveOrUpdate should return the row ID of an inserted model", FOO_MODEL_ID, actual);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testSaveOrUpdate_upsert_existingRow() {
+		// Setup
+		// The existing row has an unmapped column and is referenced by a child row, neither of which may be lost
+		final String UPSERT_SQL = "INSERT OR IGNORE INTO foo (name, id) VALUES (?, ?)";
+		final String WHERE_CLAUSE = "id = ?";
+		final String[] WHERE_ARGS = new String[] { String.valueOf(FOO_MODEL_ID) };
+		ContentValues values = new ContentValues();
+		values.put("name", "foo");
+		SQLiteStatement mockStatement = mock(SQLiteStatement.class);
+		SQLiteStatement mockChangesStatement = mock(SQLiteStatement.class);
+		sqliteTemplate.setUpsert(true);
+		when(mockPersistencePolicy.isPersistent(FooModel.class)).thenReturn(true);
+		when(mockPersistencePolicy.isPKNullOrZero(foo)).thenReturn(false);
+		when(mockPersistencePolicy.getCascadeMode(FooModel.class)).thenReturn(Cascade.NONE);
+		when(mockFooModelMap.getContentValues()).thenReturn(values);
+		when(mockSqlBuilder.createUpsertStatement(eq(FOO_MODEL_TABLE), any(List.class))).thenReturn(UPSERT_SQL);
+		when(mockSqliteDb.compileStatement(UPSERT_SQL)).thenReturn(mockStatement);
+		when(mockSqliteDb.compileStatement("SELECT changes()")).thenReturn(mockChangesStatement);
+		when(mockChangesStatement.simpleQueryForLong()).thenReturn(0L);
+		when(mockSqliteMapper.getSqliteDataType(mockFooPkField)).thenReturn(SqliteDataType.INTEGER);
+		when(mockSqliteUtil.getPreparedWhereClause(FooModel.class)).thenReturn(WHERE_CLAUSE);
+		when(mockSqliteUtil.getWhereArgs(foo)).thenReturn(WHERE_ARGS);
+		when(mockSqliteDb.update(eq(FOO_MODEL_TABLE), any(ContentValues.class), eq(WHERE_CLAUSE),
+				eq(WHERE_ARGS))).thenReturn(1);
+
+		// Run
+		long actual = sqliteTemplate.saveOrUpdate(foo);
+
+		// Verify
+		ArgumentCaptor<ContentValues> captor = ArgumentCaptor.forClass(ContentValues.class);
+		verify(mockStatement).execute();
+		verify(mockSqliteDb).update(eq(FOO_MODEL_TABLE), captor.capture(), eq(WHERE_CLAUSE), eq(WHERE_ARGS));
+		assertEquals("Only mapped columns should be updated", 2, captor.getValue().size());
+		assertEquals("Mapped column should be updated", "foo", captor.getValue().get("name"));
+		verify(mockSqliteDb, times(0)).delete(any(String.class), any(String.class), any(String[].class));
+		verify(mockSqliteDb, times(0)).compileStatement(eq("INSERT OR REPLACE INTO foo (name, id) VALUES (?, ?)"));
+		verify(mockSqliteDb, times(0)).insert(any(String.class), any(String.class), any(ContentValues.class));
+		verify(mockSecondLevelCache).evict(FooModel.class, FOO_MODEL_ID);
+		assertEquals("saveOrUpdate should report an existing upserted model as updated", 0, actual);
+	}
+
+	@Test
+	public void testDeleteAll_success() {
+		// Setup
+		final String IN_CLAUSE = "id IN (?)";
+		final String DELETE_SQL = "DELETE FROM " + FOO_MODEL_TABLE + " WHERE " + IN_CLAUSE;
+		List<Object> models = new ArrayList<Object>();
+		models.add(foo);
+		SQLiteStatement mockStatement = mock(SQLiteStatement.class);
+		SQLiteStatement mockChangesStatement = mock(SQLiteStatement.class);
+		when(mockPersistencePolicy.isPersistent(FooModel.class)).thenReturn(true);
+		when(mockPersistencePolicy.getManyToManyRelationships(FooModel.class)).thenReturn(
+				new HashSet<ManyToManyRelationship>());
+		when(mockSqlBuilder.createPrimaryKeyInClause(FooModel.class, 1)).thenReturn(IN_CLAUSE);
+		when(mockSqliteDb.compileStatement(DELETE_SQL)).thenReturn(mockStatement);
+		when(mockSqliteDb.compileStatement("SELECT changes()")).thenReturn(mockChangesStatement);
+		when(mockChangesStatement.simpleQueryForLong()).thenReturn(1L);
+
+		// Run
+		int actual = sqliteTemplate.deleteAll(models);
+
+		// Verify
+		verify(mockSqliteDb).beginTransaction();
+		verify(mockStatement).bindLong(1, FOO_MODEL_ID);
+		verify(mockStatement).execute();
+		verify(mockSqliteDb, times(0)).delete(any(String.class), any(String.class), any(String[].class));
+		verify(mockSqliteDb).setTransactionSuccessful();
+		verify(mockSqliteDb).endTransaction();
+		verify(mockSqliteUtil, times(0)).getWhereClause(any(Object.class), any(SqliteMapper.class));
+		verify(mockSecondLevelCache).evict(FooModel.class, FOO_MODEL_ID);
+		verify(mockQueryCache).bumpVersion(FOO_MODEL_TABLE);
+		assertEquals("deleteAll should return the number of rows deleted", 1, actual);
+	}
+
+	@Test
+	public void testDeleteAll_blobPrimaryKey() {
+		// Setup
+		final String IN_CLAUSE = "id IN (?)";
+		final String DELETE_SQL = "DELETE FROM " + FOO_MODEL_TABLE + " WHERE " + IN_CLAUSE;
+		final byte[] KEY = new byte[] { 1, 2, 3 };
+		List<Object> models = new ArrayList<Object>();
+		models.add(foo);
+		SQLiteStatement mockStatement = mock(SQLiteStatement.class);
+		SQLiteStatement mockChangesStatement = mock(SQLiteStatement.class);
+		when(mockPersistencePolicy.isPersistent(FooModel.class)).thenReturn(true);
+		when(mockPersistencePolicy.getPrimaryKey(foo)).thenReturn(KEY);
+		when(mockPersistencePolicy.getManyToManyRelationships(FooModel.class)).thenReturn(
+				new HashSet<ManyToManyRelationship>());
+		when(mockSqlBuilder.createPrimaryKeyInClause(FooModel.class, 1)).thenReturn(IN_CLAUSE);
+		when(mockSqliteDb.compileStatement(DELETE_SQL)).thenReturn(mockStatement);
+		when(mockSqliteDb.compileStatement("SELECT changes()")).thenReturn(mockChangesStatement);
+		when(mockChangesStatement.simpleQueryForLong()).thenReturn(1L);
+
+		// Run
+		int actual = sqliteTemplate.deleteAll(models);
+
+		// Verify
+		verify(mockStatement).bindBlob(1, KEY);
+		verify(mockStatement, times(0)).bindString(anyInt(), any(String.class));
+		assertEquals("deleteAll should return the number of rows deleted", 1, actual);
+	}
+
+	@Test
+	public void testUpdate_dirtyChecking_unchanged() {
+		// Setup
+		ContentValues values = new ContentValues();
+		values.put("name", "foo");
+		ContentValues snapshot = new ContentValues();
+		snapshot.put("name", "foo");
+		sqliteTemplate.setDirtyChecking(true);
+		when(mockPersistencePolicy.isPersistent(FooModel.class)).thenReturn(true);
+		when(mockFooModelMap.getContentValues()).thenReturn(values);
+		when(mockSnapshots.get(FooModel.class, Long.valueOf(FOO_MODEL_ID))).thenReturn(snapshot);
+
+		// Run
+		boolean actual = sqliteTemplate.update(foo);
+
+		// Verify
+		verify(mockSqliteDb, times(0)).update(any(String.class), any(ContentValues.class), any(String.class),
+				any(String[].class));
+		verify(mockPersistencePolicy, times(0)).getCascadeMode(FooModel.class);
+		verify(mockSecondLevelCache, times(0)).evict(any(Class.class), any(Serializable.class));
+		assertTrue("Updating an unchanged model should succeed", actual);
+	}
+
+	@Test
+	public void testUpdate_dirtyChecking_changed() {
+		// Setup
+		final String WHERE_CLAUSE = "id = ?";
+		final String[] WHERE_ARGS = new String[] { String.valueOf(FOO_MODEL_ID) };
+		ContentValues values = new ContentValues();
+		values.put("name", "foo");
+		values.put("count", 2);
+		ContentValues snapshot = new ContentValues();
+		snapshot.put("name", "bar");
+		snapshot.put("count", 2);
+		sqliteTemplate.setDirtyChecking(true);
+		when(mockPersistencePolicy.isPersistent(FooModel.class)).thenReturn(true);
+		when(mockPersistencePolicy.getCascadeMode(FooModel.class)).thenReturn(Cascade.NONE);
+		when(mockFooModelMap.getContentValues()).thenReturn(values);
+		when(mockSqliteUtil.getPreparedWhereClause(FooModel.class)).thenReturn(WHERE_CLAUSE);
+		when(mockSqliteUtil.getWhereArgs(foo)).thenReturn(WHERE_ARGS);
+		when(mockSnapshots.get(FooModel.class, Long.valueOf(FOO_MODEL_ID))).thenReturn(snapshot);
+		when(mockSqliteDb.update(eq(FOO_MODEL_TABLE), any(ContentValues.class), eq(WHERE_CLAUSE),
+				eq(WHERE_ARGS))).thenReturn(1);
+
+		// Run
+		boolean actual = sqliteTemplate.update(foo);
+
+		// Verify
+		ArgumentCaptor<ContentValues> captor = ArgumentCaptor.forClass(ContentValues.class);
+		verify(mockSqliteDb).update(eq(FOO_MODEL_TABLE), captor.capture(), eq(WHERE_CLAUSE), eq(WHERE_ARGS));
+		assertEquals("Only changed columns should be updated", 1, captor.getValue().size());
+		assertEquals("Changed column should be updated", "foo", captor.getValue().get("name"));
+		verify(mockSecondLevelCache).evict(FooModel.class, FOO_MODEL_ID);
+		verify(mockQueryCache).bumpVersion(FOO_MODEL_TABLE);
+		assertTrue("Updating a changed model should succeed", actual);
+	}
+
 	@Test
 	public void testSave_oneToOneRelationship_updateRelated_success() {
 		// TODO
@@ -455,6 +961,7 @@ public class SqliteTemplateTest {
 	private static class FooModel {
 		@SuppressWarnings("unused")
 		public long id;
+		public String name;
 	}
 	
 	private static class BarModel {